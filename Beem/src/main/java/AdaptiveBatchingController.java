@@ -0,0 +1,170 @@
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the city producer's own metrics and switches it between the LATENCY and THROUGHPUT profiles. When
+ * jobs are coming in fast and the batches are filling up (or requests are getting slow because the brokers are
+ * drowning in tiny requests) we switch to THROUGHPUT. Once things quiet back down we go back to LATENCY.
+ *
+ * The numbers have to stay past a threshold for several checks in a row before we switch so we don't keep
+ * rebuilding the producer when the send rate bounces around a threshold.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see AdaptiveProducer
+ * @see ProducerProfile
+ * @see "https://kafka.apache.org/23/documentation.html#producer_monitoring"
+ */
+public class AdaptiveBatchingController
+{
+    public static final double DEFAULT_HIGH_SEND_RATE = 5000; // records per second
+    public static final double DEFAULT_LOW_SEND_RATE = 500; // records per second
+    public static final double DEFAULT_FULL_BATCH_RATIO = 0.8;
+    public static final double DEFAULT_SLOW_REQUEST_MS = 50;
+    public static final int DEFAULT_CHECKS_TO_SWITCH = 3;
+
+    private final AdaptiveProducer<?, ?> producer;
+    private final double highSendRate;
+    private final double lowSendRate;
+    private final double fullBatchRatio;
+    private final double slowRequestMs;
+    private final int checksToSwitch;
+
+    private ScheduledExecutorService scheduler;
+    private int streak = 0; // how many checks in a row have asked for the other profile
+
+    /**
+     * Constructor that uses the default thresholds.
+     * @param producer The producer we are controlling.
+     */
+    public AdaptiveBatchingController(AdaptiveProducer<?, ?> producer)
+    {
+        this(producer, DEFAULT_HIGH_SEND_RATE, DEFAULT_LOW_SEND_RATE, DEFAULT_FULL_BATCH_RATIO,
+                DEFAULT_SLOW_REQUEST_MS, DEFAULT_CHECKS_TO_SWITCH);
+    }
+
+    /**
+     * Constructor for the controller.
+     * @param producer The producer we are controlling.
+     * @param highSendRate Records per second above which we consider switching to THROUGHPUT.
+     * @param lowSendRate Records per second below which we switch back to LATENCY.
+     * @param fullBatchRatio How full (0 to 1) the average batch has to be for us to call it full.
+     * @param slowRequestMs Average request latency above which the brokers are struggling.
+     * @param checksToSwitch How many checks in a row have to agree before we switch.
+     * @throws IllegalArgumentException Throws if the low send rate isn't below the high send rate.
+     */
+    public AdaptiveBatchingController(AdaptiveProducer<?, ?> producer, double highSendRate, double lowSendRate,
+                                      double fullBatchRatio, double slowRequestMs, int checksToSwitch)
+            throws IllegalArgumentException
+    {
+        if (lowSendRate >= highSendRate)
+            throw new IllegalArgumentException("The low send rate must be less than the high send rate!");
+
+        this.producer = producer;
+        this.highSendRate = highSendRate;
+        this.lowSendRate = lowSendRate;
+        this.fullBatchRatio = fullBatchRatio;
+        this.slowRequestMs = slowRequestMs;
+        this.checksToSwitch = Math.max(1, checksToSwitch);
+    }
+
+    /**
+     * Starts checking the producer's metrics on a background thread.
+     * @param checkIntervalMs How often to check, in milliseconds.
+     */
+    public synchronized void start(long checkIntervalMs)
+    {
+        if (this.scheduler != null)
+            return;
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "adaptive-batching-controller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::check, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops checking. The producer stays on whatever profile it is on.
+     */
+    public synchronized void stop()
+    {
+        if (this.scheduler != null)
+            this.scheduler.shutdownNow();
+        this.scheduler = null;
+    }
+
+    /**
+     * Reads the producer's metrics and switches profiles if it is time to.
+     */
+    public void check()
+    {
+        Map<MetricName, ? extends Metric> metrics = this.producer.metrics();
+        ProducerProfile current = this.producer.getProfile();
+
+        double sendRate = getMetric(metrics, "record-send-rate");
+        double fillRatio = getMetric(metrics, "batch-size-avg") / current.getBatchSize();
+        double latencyMs = getMetric(metrics, "request-latency-avg");
+
+        ProducerProfile next = evaluate(current, sendRate, fillRatio, latencyMs);
+        if (next != current)
+            this.producer.switchTo(next);
+    }
+
+    /**
+     * Decides which profile the producer should be on given the latest numbers.
+     * @param current The profile the producer is on right now.
+     * @param sendRate Records sent per second.
+     * @param fillRatio How full the average batch is, between 0 and 1.
+     * @param latencyMs The average request latency in milliseconds.
+     * @return The profile we should be on. Only different from current once enough checks in a row agree.
+     */
+    public synchronized ProducerProfile evaluate(ProducerProfile current, double sendRate, double fillRatio,
+                                                 double latencyMs)
+    {
+        boolean wantsOther;
+        if (current == ProducerProfile.LATENCY)
+            wantsOther = sendRate >= this.highSendRate
+                    && (fillRatio >= this.fullBatchRatio || latencyMs >= this.slowRequestMs);
+        else
+            wantsOther = sendRate <= this.lowSendRate;
+
+        this.streak = wantsOther ? this.streak + 1 : 0;
+        if (this.streak < this.checksToSwitch)
+            return current;
+
+        this.streak = 0;
+        return current == ProducerProfile.LATENCY ? ProducerProfile.THROUGHPUT : ProducerProfile.LATENCY;
+    }
+
+    /**
+     * Finds one of the producer-metrics values.
+     * @param metrics All of the producer's metrics.
+     * @param name The name of the metric. Ex - record-send-rate
+     * @return The value, or 0 if the producer hasn't recorded anything for it yet.
+     */
+    private static double getMetric(Map<MetricName, ? extends Metric> metrics, String name)
+    {
+        for (Map.Entry<MetricName, ? extends Metric> entry : metrics.entrySet())
+        {
+            MetricName metricName = entry.getKey();
+            if (metricName.name().equals(name) && metricName.group().equals("producer-metrics"))
+            {
+                Object value = entry.getValue().metricValue();
+                if (value instanceof Double && !((Double) value).isNaN() && !((Double) value).isInfinite())
+                    return (Double) value;
+                return 0.0;
+            }
+        }
+
+        return 0.0;
+    }
+}
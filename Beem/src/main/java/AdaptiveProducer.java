@@ -0,0 +1,316 @@
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.errors.InterruptException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * A producer that can switch between ProducerProfiles while the router is running. Kafka producers can't change
+ * their batching settings once they are built, so switching builds a new producer and swaps it in. The old
+ * producer is flushed and closed after the swap, outside of the lock, so the routing threads only wait for the
+ * swap itself and never for the whole flush.
+ *
+ * Jobs with the same key stay in order across a switch. Every keyed send is counted against its topic and key until
+ * the broker answers it, and while the old producer is flushing a send for a key that still has jobs in flight on
+ * it waits for them to be answered before it goes to the new producer. Every other key goes straight to the new
+ * producer, so a switch only holds up the customers it has to. Jobs without a key have no order to keep.
+ *
+ * Sends only hold a read lock so any number of routing threads can send at once. Only send, flush and close are
+ * offered, transactions can't move between producers so it isn't a Producer.
+ *
+ * Never send to it from a producer callback. The callback runs on the producer's I/O thread and a send that
+ * blocks there (on a full buffer, a swap or a key still in flight on the old producer) can never be unblocked.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see ProducerProfile
+ * @see AdaptiveBatchingController
+ */
+public class AdaptiveProducer<K, V>
+{
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveProducer.class);
+
+    private final Properties baseProps;
+    private final Function<Properties, Producer<K, V>> factory;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile Producer<K, V> producer;
+    private volatile InFlight inFlight = new InFlight();
+    private volatile InFlight draining; // the old producer's keys while it is flushed after a switch
+    private volatile ProducerProfile profile;
+
+    /**
+     * Constructor for the producer.
+     * @param baseProps The connection and serializer properties, the profile sets the batching properties.
+     * @param profile The profile to start with.
+     */
+    public AdaptiveProducer(Properties baseProps, ProducerProfile profile)
+    {
+        this(baseProps, profile, KafkaProducer::new);
+    }
+
+    /**
+     * Constructor that builds its producers with the factory, like a MockProducer in tests.
+     * @param baseProps The connection and serializer properties, the profile sets the batching properties.
+     * @param profile The profile to start with.
+     * @param factory Builds a producer from the properties of a profile.
+     */
+    public AdaptiveProducer(Properties baseProps, ProducerProfile profile, Function<Properties, Producer<K, V>> factory)
+    {
+        this.baseProps = baseProps;
+        this.factory = factory;
+        this.profile = profile;
+        this.producer = factory.apply(profile.apply(baseProps));
+    }
+
+    /**
+     * Rebuilds the producer with a different profile. Sends only wait for the swap, the old producer is flushed and
+     * closed afterwards by the calling thread. Until it is, sends for keys still in flight on it wait for them.
+     * @param newProfile The profile to switch to.
+     */
+    public synchronized void switchTo(ProducerProfile newProfile)
+    {
+        if (newProfile == this.profile)
+            return;
+
+        // Building a producer is slow so do it before we stop everyone from sending
+        Producer<K, V> newProducer = this.factory.apply(newProfile.apply(this.baseProps));
+        Producer<K, V> oldProducer;
+        InFlight oldInFlight;
+
+        // Only held for the swap, a send that is already in the old producer finishes before we flush it
+        this.lock.writeLock().lock();
+        try
+        {
+            oldProducer = this.producer;
+            oldInFlight = this.inFlight;
+            oldInFlight.retire();
+            this.producer = newProducer;
+            this.inFlight = new InFlight();
+            this.draining = oldInFlight;
+            this.profile = newProfile;
+        }
+        finally
+        {
+            this.lock.writeLock().unlock();
+        }
+
+        try
+        {
+            oldProducer.flush();
+            oldProducer.close();
+        }
+        finally
+        {
+            // Everything on the old producer has been answered, nobody has to wait for it any more
+            this.draining = null;
+            oldInFlight.finish();
+        }
+
+        logger.info("City producer switched to the {} profile", newProfile);
+    }
+
+    public ProducerProfile getProfile()
+    {
+        return this.profile;
+    }
+
+    /**
+     * @param record The record to send.
+     * @return The future from the producer.
+     */
+    public Future<RecordMetadata> send(ProducerRecord<K, V> record)
+    {
+        return send(record, null);
+    }
+
+    /**
+     * Sends the record. Right after a switch it waits if jobs with the same key are still in flight on the old
+     * producer, so they can't be overtaken.
+     * @param record The record to send.
+     * @param callback Called on the producer's I/O thread once the broker answers. It must not send.
+     * @return The future from the producer.
+     * @throws InterruptException If we were interrupted waiting for the old producer.
+     */
+    public Future<RecordMetadata> send(ProducerRecord<K, V> record, Callback callback)
+    {
+        Map.Entry<String, Object> key = record.key() == null ? null
+                : new SimpleImmutableEntry<String, Object>(record.topic(), record.key());
+
+        while (true)
+        {
+            InFlight waitFor;
+            this.lock.readLock().lock();
+            try
+            {
+                waitFor = this.draining;
+                if (key == null)
+                    return this.producer.send(record, callback);
+                if (waitFor == null || !waitFor.contains(key))
+                    return send(this.producer, this.inFlight, record, key, callback);
+            }
+            finally
+            {
+                this.lock.readLock().unlock();
+            }
+
+            // Not under the lock, the switch that is flushing the old producer might need it
+            try
+            {
+                waitFor.awaitAnswered(key);
+            }
+            catch (InterruptedException e)
+            {
+                throw new InterruptException(e);
+            }
+        }
+    }
+
+    /**
+     * Sends a keyed record, counting it as in flight on the producer until the broker answers it.
+     * @param producer The producer to send with.
+     * @param inFlight The producer's keys in flight.
+     * @param record The record to send.
+     * @param key The record's topic and key.
+     * @param callback Called once the broker answers, may be null.
+     * @return The future from the producer.
+     */
+    private Future<RecordMetadata> send(Producer<K, V> producer, InFlight inFlight, ProducerRecord<K, V> record,
+                                        Map.Entry<String, Object> key, Callback callback)
+    {
+        inFlight.sent(key);
+        try
+        {
+            // The caller hears about the answer before the next job with the key can go
+            return producer.send(record, (metadata, e) -> {
+                try
+                {
+                    if (callback != null)
+                        callback.onCompletion(metadata, e);
+                }
+                finally
+                {
+                    inFlight.answered(key);
+                }
+            });
+        }
+        catch (RuntimeException e)
+        {
+            // Never made it into the producer so there is no answer coming
+            inFlight.answered(key);
+            throw e;
+        }
+    }
+
+    /**
+     * Blocks until everything sent so far has been answered. Doesn't hold the lock, a switch that happens while we
+     * wait flushes the old producer itself.
+     */
+    public void flush()
+    {
+        this.producer.flush();
+    }
+
+    public List<PartitionInfo> partitionsFor(String topic)
+    {
+        return this.producer.partitionsFor(topic);
+    }
+
+    public Map<MetricName, ? extends Metric> metrics()
+    {
+        return this.producer.metrics();
+    }
+
+    public void close()
+    {
+        close(Duration.ofMillis(Long.MAX_VALUE));
+    }
+
+    /**
+     * Closes the producer. Waiting for it to close happens outside of the lock too.
+     * @param timeout How long to wait for the jobs still in flight.
+     */
+    public synchronized void close(Duration timeout)
+    {
+        Producer<K, V> current;
+        this.lock.writeLock().lock();
+        try
+        {
+            current = this.producer;
+        }
+        finally
+        {
+            this.lock.writeLock().unlock();
+        }
+
+        current.close(timeout);
+    }
+
+    /**
+     * The keys one producer has sent and not had an answer for yet, with how many jobs each has in flight.
+     */
+    private static class InFlight
+    {
+        private final Map<Map.Entry<String, Object>, Integer> counts = new ConcurrentHashMap<>();
+        private volatile boolean retired; // swapped out, sends might be waiting on it
+        private volatile boolean finished; // flushed and closed, nothing left worth waiting for
+
+        void sent(Map.Entry<String, Object> key)
+        {
+            this.counts.merge(key, 1, Integer::sum);
+        }
+
+        void answered(Map.Entry<String, Object> key)
+        {
+            // Nobody waits on the current producer, so only a retired one pays for waking them
+            if (this.counts.computeIfPresent(key, (k, n) -> n == 1 ? null : n - 1) == null && this.retired)
+                wake();
+        }
+
+        boolean contains(Map.Entry<String, Object> key)
+        {
+            return this.counts.containsKey(key);
+        }
+
+        void retire()
+        {
+            this.retired = true;
+        }
+
+        synchronized void awaitAnswered(Map.Entry<String, Object> key) throws InterruptedException
+        {
+            while (!this.finished && this.counts.containsKey(key))
+                wait();
+        }
+
+        synchronized void finish()
+        {
+            this.finished = true;
+            notifyAll();
+        }
+
+        private synchronized void wake()
+        {
+            notifyAll();
+        }
+    }
+}
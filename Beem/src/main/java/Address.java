@@ -167,4 +167,28 @@ public class Address
         return false;
     }
 
+    /**
+     * Turns either a state code or a full state name into the 2 character state code, ignoring case. Used for data
+     * we didn't create ourselves, like the city gazetteer, where the state isn't always written the same way.
+     * @param state The state code or name. Ex: TX, tx, Texas
+     * @return The 2 character state code, or null if it isn't a state we know. Ex: TX
+     */
+    public static String toStateCode(String state)
+    {
+        if (state == null)
+            return null;
+
+        String upper = state.trim().toUpperCase();
+        if (states.containsKey(upper))
+            return upper;
+
+        for (Map.Entry<String, String> entry : states.entrySet())
+        {
+            if (entry.getValue().trim().equals(upper))
+                return entry.getKey();
+        }
+
+        return null;
+    }
+
 }
@@ -0,0 +1,417 @@
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.errors.TopicExistsException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Creates city topics without making the routing threads wait on the broker. The first job for a city we haven't
+ * seen starts creating the topic and every other job for that city (on any thread) shares that same creation
+ * instead of starting another one. Jobs for a topic that is still being created wait in a bounded buffer and
+ * get sent as soon as the topic exists, by a thread of our own so a routing thread never waits on a send it
+ * didn't make.
+ *
+ * If creating a topic fails, the jobs that were waiting on it are sent anyway from our thread (the producer reports
+ * the error for each of them) and the topic isn't tried again until a back off that doubles with every failure is
+ * over. Jobs for the topic during the back off are turned away instead of being sent, a send to a topic that doesn't
+ * exist blocks in the producer for up to max.block.ms and a routing thread must never wait on that.
+ *
+ * Uses one AdminClient for the life of the router instead of a new TopicCreator (and AdminClient) for every
+ * new city.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see TopicCreator
+ * @see SchoolToCityStream
+ */
+public class AsyncTopicCreator
+{
+    private final AdminClient admin; // null when the tests create the topics
+    private final boolean ownsAdmin; // false if someone else shares the admin client with us and closes it
+    private final Function<String, CompletableFuture<Void>> create;
+    private final int maxPending;
+    private final Consumer<String> onCreated;
+    private final BiConsumer<ProducerRecord<String, byte[]>, Callback> sender;
+    private final LongSupplier clock;
+    private final ExecutorService sendExecutor; // sends the jobs that were waiting, in order
+
+    private final Map<String, PendingTopic> creating = new ConcurrentHashMap<>();
+    private final Map<String, FailedTopic> failed = new ConcurrentHashMap<>(); // topics we are backing off from
+    private final AtomicInteger numPending = new AtomicInteger(0);
+    private final AtomicLong numCreated = new AtomicLong(0);
+    private final AtomicLong numFailed = new AtomicLong(0);
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncTopicCreator.class);
+    private static final long RETRY_BACKOFF_MS = 1000; // doubles on every failure in a row
+    private static final long MAX_RETRY_BACKOFF_MS = 60000;
+    private static final long CLOSE_TIMEOUT_MS = 30000;
+
+    /**
+     * Constructor for the topic creator.
+     * @param brokerAddress The address of the broker we are creating topics on.
+     * @param numPartitions The number of partitions every new topic gets.
+     * @param numReplication The replication factor every new topic gets.
+     * @param maxPending The most jobs we will hold onto (across every topic) while waiting for topics to be created.
+     * @param onCreated Called with the topic name once a topic exists so the router knows about it.
+     * @param sender Sends the jobs that were waiting once their topic exists, with the callback they were handed to
+     *      us with (which can be null). Must not throw.
+     */
+    public AsyncTopicCreator(String brokerAddress, int numPartitions, int numReplication, int maxPending,
+                             Consumer<String> onCreated, BiConsumer<ProducerRecord<String, byte[]>, Callback> sender)
+    {
+        this(AdminClient.create(new TopicCreator().configProps(brokerAddress)), true, numPartitions, numReplication,
+                maxPending, onCreated, sender);
+    }
+
+    /**
+     * Same as above but creates the topics with an admin client we already have. The admin client doesn't get
+     * closed by close(), whoever owns it has to close it (which is what waits on the topics still being created).
+     * @param admin The admin client for the broker we are creating topics on.
+     */
+    public AsyncTopicCreator(AdminClient admin, int numPartitions, int numReplication, int maxPending,
+                             Consumer<String> onCreated, BiConsumer<ProducerRecord<String, byte[]>, Callback> sender)
+    {
+        this(admin, false, numPartitions, numReplication, maxPending, onCreated, sender);
+    }
+
+    private AsyncTopicCreator(AdminClient admin, boolean ownsAdmin, int numPartitions, int numReplication,
+                              int maxPending, Consumer<String> onCreated,
+                              BiConsumer<ProducerRecord<String, byte[]>, Callback> sender)
+    {
+        this(admin, ownsAdmin, topic -> createTopic(admin, new NewTopic(topic, numPartitions, (short) numReplication)),
+                maxPending, onCreated, sender, System::currentTimeMillis);
+    }
+
+    /**
+     * Same as above but with our own way of creating topics and our own clock so the tests don't need a broker.
+     * @param create Starts creating a topic, the future completes once the broker answers.
+     */
+    AsyncTopicCreator(Function<String, CompletableFuture<Void>> create, int maxPending, Consumer<String> onCreated,
+                      BiConsumer<ProducerRecord<String, byte[]>, Callback> sender, LongSupplier clock)
+    {
+        this(null, false, create, maxPending, onCreated, sender, clock);
+    }
+
+    private AsyncTopicCreator(AdminClient admin, boolean ownsAdmin, Function<String, CompletableFuture<Void>> create,
+                              int maxPending, Consumer<String> onCreated,
+                              BiConsumer<ProducerRecord<String, byte[]>, Callback> sender, LongSupplier clock)
+    {
+        this.admin = admin;
+        this.ownsAdmin = ownsAdmin;
+        this.create = create;
+        this.maxPending = maxPending;
+        this.onCreated = onCreated;
+        this.sender = sender;
+        this.clock = clock;
+        this.sendExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "topic-creator-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts creating the topic if nobody else has already. Never blocks.
+     * @param topic The name of the topic we need.
+     * @return A future that completes once the topic exists. Fails right away if creating the topic failed and
+     *      we are still backing off.
+     */
+    public CompletableFuture<Void> ensureTopic(String topic)
+    {
+        return getPending(topic).future;
+    }
+
+    /**
+     * Sends the job once its topic has been created. If the topic got created while we were getting here the job is
+     * sent right away. Never blocks on the broker.
+     * @param record The job to send.
+     * @return False if the buffer is full or creating the topic failed and we are backing off, the job wasn't held
+     *      onto or sent. The caller needs to try again later (see isBackingOff()).
+     */
+    public boolean sendWhenCreated(ProducerRecord<String, byte[]> record)
+    {
+        return sendWhenCreated(record, null);
+    }
+
+    /**
+     * Same as above but the callback gets handed to the sender along with the job.
+     * @param done Called once the job has been sent, can be null.
+     */
+    public boolean sendWhenCreated(ProducerRecord<String, byte[]> record, Callback done)
+    {
+        PendingTopic pending = getPending(record.topic());
+
+        synchronized (pending)
+        {
+            if (!pending.done)
+            {
+                if (this.numPending.incrementAndGet() > this.maxPending)
+                {
+                    this.numPending.decrementAndGet();
+                    return false;
+                }
+
+                pending.records.add(record);
+                pending.callbacks.add(done);
+                return true;
+            }
+
+            if (pending.failed)
+                return false;
+        }
+
+        // Every job that was waiting has already been sent, so this one can't get ahead of them
+        this.sender.accept(record, done);
+        return true;
+    }
+
+    /**
+     * @param topic The topic we are checking on.
+     * @return True if the topic is still being created.
+     */
+    public boolean isCreating(String topic)
+    {
+        return this.creating.containsKey(topic);
+    }
+
+    /**
+     * @param topic The topic we are checking on.
+     * @return True if creating the topic failed and we won't try again until the back off is over.
+     */
+    public boolean isBackingOff(String topic)
+    {
+        FailedTopic failure = this.failed.get(topic);
+        return failure != null && this.clock.getAsLong() < failure.retryAt;
+    }
+
+    /**
+     * @return The number of jobs waiting on their topics to be created.
+     */
+    public int getNumPending()
+    {
+        return this.numPending.get();
+    }
+
+    /**
+     * @return The number of topics we have created (or found already existed when we went to create them).
+     */
+    public long getNumCreated()
+    {
+        return this.numCreated.get();
+    }
+
+    /**
+     * @return The number of times creating a topic failed.
+     */
+    public long getNumFailed()
+    {
+        return this.numFailed.get();
+    }
+
+    /**
+     * Closes the admin client if it's ours and waits for the jobs that were waiting to be handed to the sender.
+     * The topics still being created when an admin client we don't own gets closed send their jobs from its thread.
+     */
+    public void close()
+    {
+        if (this.ownsAdmin)
+            this.admin.close();
+
+        this.sendExecutor.shutdown();
+        try
+        {
+            this.sendExecutor.awaitTermination(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the creation that is already in progress for this topic or starts a new one. A topic we are backing off
+     * from gets the creation that failed.
+     * @param topic The topic we need.
+     * @return The creation for that topic.
+     */
+    private PendingTopic getPending(String topic)
+    {
+        PendingTopic pending = this.creating.get(topic);
+        if (pending != null)
+            return pending;
+
+        FailedTopic failure = this.failed.get(topic);
+        if (failure != null && this.clock.getAsLong() < failure.retryAt)
+            return failure.pending;
+
+        PendingTopic newPending = new PendingTopic();
+        pending = this.creating.putIfAbsent(topic, newPending);
+        if (pending != null)
+            return pending; // someone beat us to it
+
+        try
+        {
+            this.create.apply(topic).whenComplete((result, error) -> finish(topic, newPending, error));
+        }
+        catch (RuntimeException e)
+        {
+            finish(topic, newPending, e); // like the admin client already being closed
+        }
+
+        return newPending;
+    }
+
+    /**
+     * Called by the admin client's thread when the broker answers. Hands the jobs that were waiting on the topic
+     * to our own thread to send, so the admin client's thread never blocks on the producer.
+     * @param topic The topic that was being created.
+     * @param pending The creation for that topic.
+     * @param error Null if the topic was created, otherwise what went wrong.
+     */
+    private void finish(String topic, PendingTopic pending, Throwable error)
+    {
+        boolean exists = error == null || error instanceof TopicExistsException
+                || error.getCause() instanceof TopicExistsException;
+
+        if (exists)
+        {
+            this.numCreated.incrementAndGet();
+            this.failed.remove(topic);
+            logger.info("Topic {} created", topic);
+        }
+        else
+        {
+            this.numFailed.incrementAndGet();
+            logger.warn("Couldn't create topic {}", topic, error);
+
+            // Set before the creation is removed so the next job for the topic backs off instead of trying again
+            FailedTopic last = this.failed.get(topic);
+            int failures = last == null ? 1 : last.failures + 1;
+            long backoff = Math.min(MAX_RETRY_BACKOFF_MS, RETRY_BACKOFF_MS << Math.min(failures - 1, 16));
+            this.failed.put(topic, new FailedTopic(pending, failures, this.clock.getAsLong() + backoff));
+        }
+
+        try
+        {
+            this.sendExecutor.execute(() -> drain(topic, pending, exists, error));
+        }
+        catch (RejectedExecutionException e)
+        {
+            // Closing, nobody else is going to send them
+            drain(topic, pending, exists, error);
+        }
+    }
+
+    /**
+     * Sends every job that was waiting on the topic, outside of the lock so the routing threads adding jobs for the
+     * topic never wait on the producer. Jobs that show up while we send are still held onto, and sent after the
+     * ones before them, until the buffer is empty.
+     */
+    private void drain(String topic, PendingTopic pending, boolean exists, Throwable error)
+    {
+        while (true)
+        {
+            List<ProducerRecord<String, byte[]>> records;
+            List<Callback> callbacks;
+            synchronized (pending)
+            {
+                if (pending.records.isEmpty())
+                {
+                    pending.done = true;
+                    pending.failed = !exists;
+                    break;
+                }
+
+                records = new ArrayList<>(pending.records);
+                callbacks = new ArrayList<>(pending.callbacks);
+                pending.records.clear();
+                pending.callbacks.clear();
+            }
+
+            for (int i = 0; i < records.size(); i++)
+                this.sender.accept(records.get(i), callbacks.get(i));
+
+            this.numPending.addAndGet(-records.size());
+        }
+
+        // Only tell the router once the waiting jobs are sent so new jobs can't jump ahead of them
+        if (exists)
+            this.onCreated.accept(topic);
+
+        // If creating failed the next job for the topic tries again once the back off is over
+        this.creating.remove(topic, pending);
+
+        if (exists)
+            pending.future.complete(null);
+        else
+            pending.future.completeExceptionally(error);
+    }
+
+    /**
+     * Creates the topic with the admin client.
+     * @return A future that completes once the broker answers.
+     */
+    private static CompletableFuture<Void> createTopic(AdminClient admin, NewTopic newTopic)
+    {
+        CompletableFuture<Void> created = new CompletableFuture<>();
+        admin.createTopics(Collections.singletonList(newTopic)).values().get(newTopic.name())
+                .whenComplete((result, error) -> {
+                    if (error == null)
+                        created.complete(null);
+                    else
+                        created.completeExceptionally(error);
+                });
+
+        return created;
+    }
+
+    /**
+     * A topic that is being created and the jobs waiting on it.
+     */
+    private static class PendingTopic
+    {
+        private final List<ProducerRecord<String, byte[]>> records = new ArrayList<>(); // guarded by this
+        private final List<Callback> callbacks = new ArrayList<>(); // one per record, guarded by this
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private boolean done = false; // guarded by this, true once every waiting job was sent
+        private boolean failed = false; // guarded by this, true once done if the topic couldn't be created
+    }
+
+    /**
+     * A topic we couldn't create and when we can try again.
+     */
+    private static class FailedTopic
+    {
+        private final PendingTopic pending; // the creation that failed, jobs for the topic are turned away
+        private final int failures; // in a row
+        private final long retryAt;
+
+        private FailedTopic(PendingTopic pending, int failures, long retryAt)
+        {
+            this.pending = pending;
+            this.failures = failures;
+            this.retryAt = retryAt;
+        }
+    }
+}
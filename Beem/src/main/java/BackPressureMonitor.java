@@ -0,0 +1,227 @@
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of how many jobs (and roughly how many bytes) the router has handed to the producer that the city
+ * brokers haven't acknowledged yet, in total and for each city topic. Once the producer's buffer fills up send()
+ * blocks for max.block.ms, which stalls the poll loop long enough to get the consumer kicked out of its group. The
+ * router checks this before sending and pauses the school partitions instead, then resumes them once the brokers
+ * catch up.
+ *
+ * Each count has a high and a low water mark. We are saturated once we go over the high water mark and stay that
+ * way until we are back under the low water mark so the partitions don't flap between paused and resumed.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see SchoolToCityStream
+ */
+public class BackPressureMonitor
+{
+    private final Watermarks destinationLimits;
+
+    private final InFlight total;
+    private final Map<String, InFlight> destinations = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor for the monitor.
+     * @param totalLimits The limits across every city topic. The high water mark for bytes should be comfortably
+     *      under the producer's buffer.memory.
+     * @param destinationLimits The limits for a single city topic, so one slow partition leader can't use up
+     *      the whole buffer by itself.
+     */
+    public BackPressureMonitor(Watermarks totalLimits, Watermarks destinationLimits)
+    {
+        this.destinationLimits = destinationLimits;
+        this.total = new InFlight(totalLimits);
+    }
+
+    /**
+     * Counts a job as in flight. Pass the callback this returns to the producer's send() so the job stops being
+     * counted once the broker answers. If send() throws instead, call the callback yourself.
+     * @param record The job we are about to send.
+     * @return The callback that takes the job back out of the counts.
+     */
+    public Callback track(ProducerRecord<String, byte[]> record)
+    {
+        InFlight destination = getDestination(record.topic());
+        long bytes = estimateSize(record);
+
+        this.total.add(bytes);
+        destination.add(bytes);
+
+        return new Completion(destination, bytes);
+    }
+
+    /**
+     * @return True if there is too much in flight across all of the city topics.
+     */
+    public boolean isSaturated()
+    {
+        return this.total.saturated;
+    }
+
+    /**
+     * @param topic The city topic we want to send to.
+     * @return True if there is too much in flight to that topic or across all of the city topics.
+     */
+    public boolean isSaturated(String topic)
+    {
+        if (this.total.saturated)
+            return true;
+
+        InFlight destination = this.destinations.get(topic);
+        return destination != null && destination.saturated;
+    }
+
+    /**
+     * @return The number of jobs waiting on the city brokers.
+     */
+    public long getInFlightRecords()
+    {
+        return this.total.records.get();
+    }
+
+    /**
+     * @return Roughly how many bytes are waiting on the city brokers.
+     */
+    public long getInFlightBytes()
+    {
+        return this.total.bytes.get();
+    }
+
+    /**
+     * @param topic The city topic.
+     * @return The number of jobs for that topic waiting on the city brokers.
+     */
+    public long getInFlightRecords(String topic)
+    {
+        InFlight destination = this.destinations.get(topic);
+        return destination == null ? 0 : destination.records.get();
+    }
+
+    /**
+     * @param topic The city topic.
+     * @return Roughly how many bytes for that topic are waiting on the city brokers.
+     */
+    public long getInFlightBytes(String topic)
+    {
+        InFlight destination = this.destinations.get(topic);
+        return destination == null ? 0 : destination.bytes.get();
+    }
+
+    /**
+     * The keys are (almost always) ascii so the length of the key is close enough to its serialized size.
+     * @param record The job.
+     * @return About how many bytes the job takes up in the producer's buffer.
+     */
+    static long estimateSize(ProducerRecord<String, byte[]> record)
+    {
+        long size = record.value() == null ? 0 : record.value().length;
+        if (record.key() != null)
+            size += record.key().length();
+
+        return size;
+    }
+
+    private InFlight getDestination(String topic)
+    {
+        InFlight destination = this.destinations.get(topic);
+        if (destination == null)
+            destination = this.destinations.computeIfAbsent(topic, t -> new InFlight(this.destinationLimits));
+
+        return destination;
+    }
+
+    /**
+     * Takes a job back out of the counts when the broker answers, whether it was sent or not.
+     */
+    private class Completion implements Callback
+    {
+        private final InFlight destination;
+        private final long bytes;
+
+        private Completion(InFlight destination, long bytes)
+        {
+            this.destination = destination;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void onCompletion(RecordMetadata metadata, Exception exception)
+        {
+            total.remove(this.bytes);
+            this.destination.remove(this.bytes);
+        }
+    }
+
+    /**
+     * The in flight counts for one city topic or for all of them.
+     */
+    private static class InFlight
+    {
+        private final Watermarks limits;
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong records = new AtomicLong();
+        private volatile boolean saturated = false;
+
+        private InFlight(Watermarks limits)
+        {
+            this.limits = limits;
+        }
+
+        private void add(long size)
+        {
+            long numBytes = this.bytes.addAndGet(size);
+            long numRecords = this.records.incrementAndGet();
+
+            if (!this.saturated && (numBytes > this.limits.highBytes || numRecords > this.limits.highRecords))
+                this.saturated = true;
+        }
+
+        private void remove(long size)
+        {
+            long numBytes = this.bytes.addAndGet(-size);
+            long numRecords = this.records.decrementAndGet();
+
+            if (this.saturated && numBytes <= this.limits.lowBytes && numRecords <= this.limits.lowRecords)
+                this.saturated = false;
+        }
+    }
+
+    /**
+     * The high and low water marks for the bytes and the jobs in flight.
+     */
+    public static class Watermarks
+    {
+        private final long highBytes;
+        private final long lowBytes;
+        private final long highRecords;
+        private final long lowRecords;
+
+        /**
+         * @param highBytes Saturated once more bytes than this are in flight.
+         * @param lowBytes No longer saturated once this many bytes or less are in flight (and the jobs are low too).
+         * @param highRecords Saturated once more jobs than this are in flight.
+         * @param lowRecords No longer saturated once this many jobs or less are in flight (and the bytes are low too).
+         * @throws IllegalArgumentException Throws if a low water mark isn't under its high water mark.
+         */
+        public Watermarks(long highBytes, long lowBytes, long highRecords, long lowRecords)
+                throws IllegalArgumentException
+        {
+            if (lowBytes < 0 || lowBytes >= highBytes || lowRecords < 0 || lowRecords >= highRecords)
+                throw new IllegalArgumentException("Low water marks must be positive and under the high water marks!");
+
+            this.highBytes = highBytes;
+            this.lowBytes = lowBytes;
+            this.highRecords = highRecords;
+            this.lowRecords = lowRecords;
+        }
+    }
+}
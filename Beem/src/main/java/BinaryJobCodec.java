@@ -0,0 +1,671 @@
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compact binary format for DeliveryJob and RideShareJob, as a Kafka Serializer and Deserializer. Field names
+ * aren't written at all since the order of the fields is fixed by the version, numbers are varints, doubles are
+ * their raw 8 bytes instead of text, and the state and job type are a single byte from a dictionary.
+ *
+ * Every job starts with the magic byte 0xBE, then the format version and the type of job. No JSON text can start
+ * with 0xBE (it isn't a valid first byte in UTF-8), so the deserializer reads both formats and producers can switch
+ * over one at a time. Anything without the magic byte is read as JSON the way KafkaJsonDeserializer reads it.
+ *
+ * Version 1, after the magic byte, version and type (1 = DeliveryJob, 2 = RideShareJob):
+ * DeliveryJob - job_type, customer_id, school, to_address, to_city, to_state, to_zipcode, from_address, from_city,
+ *      from_state, from_zipcode, description, instructions, item_size
+ * RideShareJob - job_type, customer_id, school, to_latitude, to_longitude, to_address, to_city, to_state,
+ *      to_zipcode, from_latitude, from_longitude, from_address, from_city, from_state, from_zipcode, num_passengers,
+ *      which times are set (bit 0 pickup, bit 1 dropoff), pickup_time, dropoff_time
+ *
+ * Strings are a varint of their UTF-8 length plus 1 (0 is null) and then the bytes. Zip codes with exactly 5 digits
+ * are a varint of the number plus 2 (0 is null, 1 means a string follows). States and job types are a varint of
+ * their place in the dictionary plus 1 (0 is null, one past the end means a string follows). Whole numbers are zig
+ * zag varints. The dictionaries and the order of the fields can never change within a version, only grow in a new
+ * one.
+ *
+ * Safe to use from every thread at once.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see KafkaJsonSerializer
+ * @see KafkaJsonDeserializer
+ */
+public class BinaryJobCodec<T> implements Serializer<T>, Deserializer<T>
+{
+    public static final byte MAGIC = (byte) 0xBE;
+    public static final byte VERSION = 1;
+
+    static final byte DELIVERY_JOB = 1;
+    static final byte RIDE_SHARE_JOB = 2;
+
+    private static final String[] JOB_TYPES = { "delivery", "rideShare" };
+    private static final String[] STATES = { "AK", "AL", "AR", "AZ", "CA", "CO", "CT", "DC", "DE", "FL", "GA", "HI",
+            "IA", "ID", "IL", "IN", "KS", "KY", "LA", "MA", "MD", "ME", "MI", "MN", "MO", "MS", "MT", "NC", "ND", "NE",
+            "NH", "NJ", "NM", "NV", "NY", "OH", "OK", "OR", "PA", "RI", "SC", "SD", "TN", "TX", "UT", "VA", "VT", "WA",
+            "WI", "WV", "WY" };
+    private static final Map<String, Integer> JOB_TYPE_CODES = codes(JOB_TYPES);
+    private static final Map<String, Integer> STATE_CODES = codes(STATES);
+
+    private static final int INITIAL_BUFFER = 512;
+
+    private final Class<T> type; // null if we take whichever job the bytes hold
+
+    // Each thread encodes into its own buffer so a send doesn't allocate more than the bytes it returns
+    private final ThreadLocal<Writer> writers = ThreadLocal.withInitial(Writer::new);
+
+    /**
+     * Default constructor needed by Kafka. Deserializes into whichever job the bytes hold.
+     */
+    public BinaryJobCodec()
+    {
+        this(null);
+    }
+
+    /**
+     * Constructor for a deserializer of one kind of job.
+     * @param type DeliveryJob.class or RideShareJob.class, or null for either.
+     */
+    public BinaryJobCodec(Class<T> type)
+    {
+        this.type = type;
+    }
+
+    private static Map<String, Integer> codes(String[] dictionary)
+    {
+        Map<String, Integer> codes = new HashMap<>();
+        for (int i = 0; i < dictionary.length; i++)
+            codes.put(dictionary[i], i + 1);
+
+        return codes;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {}
+
+    /**
+     * Encodes the job into the binary format.
+     * @param topic The topic the job is going to.
+     * @param data A DeliveryJob or RideShareJob.
+     * @return The encoded job, or null if the job is null.
+     * @throws SerializationException Throws if it isn't a job we know how to encode.
+     */
+    @Override
+    public byte[] serialize(String topic, T data) throws SerializationException
+    {
+        if (data == null)
+            return null;
+
+        Writer out = this.writers.get();
+        out.reset();
+        out.writeByte(MAGIC);
+        out.writeByte(VERSION);
+
+        if (data instanceof DeliveryJob)
+        {
+            out.writeByte(DELIVERY_JOB);
+            writeDeliveryJob(out, (DeliveryJob) data);
+        }
+        else if (data instanceof RideShareJob)
+        {
+            out.writeByte(RIDE_SHARE_JOB);
+            writeRideShareJob(out, (RideShareJob) data);
+        }
+        else
+            throw new SerializationException("Can't encode a " + data.getClass().getName() + " as a job!");
+
+        return out.toByteArray();
+    }
+
+    /**
+     * What the producer calls. Stamps the routing headers (see RoutingHeaders) so the router doesn't have to decode
+     * the job, then encodes it like above.
+     * @param topic The topic the job is going to.
+     * @param headers The headers of the record the job is going out in.
+     * @param data A DeliveryJob or RideShareJob.
+     * @return The encoded job, or null if the job is null.
+     * @throws SerializationException Throws if it isn't a job we know how to encode.
+     */
+    @Override
+    public byte[] serialize(String topic, Headers headers, T data) throws SerializationException
+    {
+        if (headers != null && data != null)
+            RoutingHeaders.stamp(headers, data);
+
+        return serialize(topic, data);
+    }
+
+    private static void writeDeliveryJob(Writer out, DeliveryJob job)
+    {
+        out.writeDictionary(job.getJob_type(), JOB_TYPE_CODES);
+        out.writeVarLong(job.getCustomer_id());
+        out.writeString(job.getSchool());
+        out.writeString(job.getTo_address());
+        out.writeString(job.getTo_city());
+        out.writeDictionary(job.getTo_state(), STATE_CODES);
+        out.writeZipCode(job.getTo_zipcode());
+        out.writeString(job.getFrom_address());
+        out.writeString(job.getFrom_city());
+        out.writeDictionary(job.getFrom_state(), STATE_CODES);
+        out.writeZipCode(job.getFrom_zipcode());
+        out.writeString(job.getDescription());
+        out.writeString(job.getInstructions());
+        out.writeVarLong(job.getItem_size());
+    }
+
+    private static void writeRideShareJob(Writer out, RideShareJob job)
+    {
+        out.writeDictionary(job.getJob_type(), JOB_TYPE_CODES);
+        out.writeVarLong(job.getCustomer_id());
+        out.writeString(job.getSchool());
+        out.writeDouble(job.getTo_latitude());
+        out.writeDouble(job.getTo_longitude());
+        out.writeString(job.getTo_address());
+        out.writeString(job.getTo_city());
+        out.writeDictionary(job.getTo_state(), STATE_CODES);
+        out.writeZipCode(job.getTo_zipcode());
+        out.writeDouble(job.getFrom_latitude());
+        out.writeDouble(job.getFrom_longitude());
+        out.writeString(job.getFrom_address());
+        out.writeString(job.getFrom_city());
+        out.writeDictionary(job.getFrom_state(), STATE_CODES);
+        out.writeZipCode(job.getFrom_zipcode());
+        out.writeVarLong(job.getNum_passengers());
+
+        Date pickup = job.getPickup_time();
+        Date dropoff = job.getDropoff_time();
+        out.writeByte((byte) ((pickup == null ? 0 : 1) | (dropoff == null ? 0 : 2)));
+        if (pickup != null)
+            out.writeVarLong(pickup.getTime());
+        if (dropoff != null)
+            out.writeVarLong(dropoff.getTime());
+    }
+
+    /**
+     * Decodes a job in either the binary format or JSON.
+     * @param topic The topic the job came from.
+     * @param bytes The encoded job.
+     * @return The job, or null if the bytes are null.
+     * @throws SerializationException Throws if the bytes aren't a job, are cut off, were written by a newer version
+     *      or hold a different kind of job than this deserializer is for.
+     */
+    @Override
+    public T deserialize(String topic, byte[] bytes) throws SerializationException
+    {
+        if (bytes == null)
+            return null;
+
+        Object job = bytes.length > 0 && bytes[0] == MAGIC ? decode(bytes) : readJson(bytes);
+
+        if (this.type != null && !this.type.isInstance(job))
+            throw new SerializationException("Expected a " + this.type.getSimpleName() + " but got a "
+                    + job.getClass().getSimpleName() + "!");
+
+        @SuppressWarnings("unchecked")
+        T result = (T) job;
+        return result;
+    }
+
+    /**
+     * @param bytes A job in the binary format.
+     * @return The DeliveryJob or RideShareJob.
+     * @throws SerializationException Throws if the bytes aren't a job we can read.
+     */
+    static Object decode(byte[] bytes) throws SerializationException
+    {
+        Reader in = new Reader(bytes);
+        in.readByte(); // magic
+
+        int version = in.readByte();
+        if (version != VERSION)
+            throw new SerializationException("Can't read version " + version + " of the job format, only up to "
+                    + VERSION + "!");
+
+        Object job;
+        try
+        {
+            byte jobType = in.readByte();
+            if (jobType == DELIVERY_JOB)
+                job = readDeliveryJob(in);
+            else if (jobType == RIDE_SHARE_JOB)
+                job = readRideShareJob(in);
+            else
+                throw new SerializationException("Unknown type of job " + jobType + "!");
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new SerializationException("The job isn't valid: " + e.getMessage(), e);
+        }
+
+        if (in.remaining() != 0)
+            throw new SerializationException(in.remaining() + " bytes left over after the job!");
+
+        return job;
+    }
+
+    private static DeliveryJob readDeliveryJob(Reader in)
+    {
+        DeliveryJob job = new DeliveryJob();
+        String jobType = in.readDictionary(JOB_TYPES);
+        job.setCustomer_id(in.readVarLong());
+        job.setSchool(in.readString());
+
+        String toAddress = in.readString();
+        String toCity = in.readString();
+        String toState = in.readDictionary(STATES);
+        String toZipCode = in.readZipCode();
+        String fromAddress = in.readString();
+        String fromCity = in.readString();
+        String fromState = in.readDictionary(STATES);
+        String fromZipCode = in.readZipCode();
+        job.restore(jobType, toAddress, toCity, toState, toZipCode, fromAddress, fromCity, fromState, fromZipCode);
+
+        job.setDescription(in.readString());
+        job.setInstructions(in.readString());
+        job.setItem_size((int) in.readVarLong());
+
+        return job;
+    }
+
+    private static RideShareJob readRideShareJob(Reader in)
+    {
+        RideShareJob job = new RideShareJob();
+        String jobType = in.readDictionary(JOB_TYPES);
+        job.setCustomer_id(in.readVarLong());
+        job.setSchool(in.readString());
+
+        job.setTo_latitude(in.readDouble());
+        job.setTo_longitude(in.readDouble());
+        String toAddress = in.readString();
+        String toCity = in.readString();
+        String toState = in.readDictionary(STATES);
+        String toZipCode = in.readZipCode();
+        job.setFrom_latitude(in.readDouble());
+        job.setFrom_longitude(in.readDouble());
+        String fromAddress = in.readString();
+        String fromCity = in.readString();
+        String fromState = in.readDictionary(STATES);
+        String fromZipCode = in.readZipCode();
+        job.restore(jobType, toAddress, toCity, toState, toZipCode, fromAddress, fromCity, fromState, fromZipCode);
+
+        job.setNum_passengers((int) in.readVarLong());
+
+        int times = in.readByte();
+        if ((times & 1) != 0)
+            job.setPickup_time(new Date(in.readVarLong()));
+        if ((times & 2) != 0)
+            job.setDropoff_time(new Date(in.readVarLong()));
+
+        return job;
+    }
+
+    /**
+     * Reads a job that was sent before its producer switched to the binary format.
+     */
+    private Object readJson(byte[] bytes) throws SerializationException
+    {
+        try
+        {
+            // Don't know which job it is until we look at its job type
+            return this.type != null ? JobJsonCodec.fromJson(bytes, this.type) : JobJsonCodec.fromJson(bytes);
+        }
+        catch (Exception e)
+        {
+            throw new SerializationException(e);
+        }
+    }
+
+    @Override
+    public void close() {}
+
+    /**
+     * A growing buffer we write one job into at a time. JobBatch writes its envelopes with it too.
+     */
+    static class Writer
+    {
+        private byte[] buffer = new byte[INITIAL_BUFFER];
+        private int position = 0;
+
+        void reset()
+        {
+            this.position = 0;
+        }
+
+        void ensure(int needed)
+        {
+            if (this.position + needed > this.buffer.length)
+                this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.position + needed));
+        }
+
+        void writeByte(byte value)
+        {
+            ensure(1);
+            this.buffer[this.position++] = value;
+        }
+
+        void writeVarint(long value)
+        {
+            ensure(10);
+            while ((value & ~0x7FL) != 0)
+            {
+                this.buffer[this.position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            this.buffer[this.position++] = (byte) value;
+        }
+
+        /**
+         * Zig zag so small negative numbers stay small too.
+         */
+        void writeVarLong(long value)
+        {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        void writeDouble(double value)
+        {
+            ensure(8);
+            long bits = Double.doubleToRawLongBits(value);
+            for (int shift = 56; shift >= 0; shift -= 8)
+                this.buffer[this.position++] = (byte) (bits >>> shift);
+        }
+
+        void writeString(String value)
+        {
+            if (value == null)
+            {
+                writeVarint(0);
+                return;
+            }
+
+            int length = value.length();
+            int ascii = 0;
+            while (ascii < length && value.charAt(ascii) < 0x80)
+                ascii++;
+
+            if (ascii < length)
+            {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeVarint(bytes.length + 1L);
+                ensure(bytes.length);
+                System.arraycopy(bytes, 0, this.buffer, this.position, bytes.length);
+                this.position += bytes.length;
+                return;
+            }
+
+            // Nearly every job is plain ASCII, so copy the characters straight in
+            writeVarint(length + 1L);
+            ensure(length);
+            for (int i = 0; i < length; i++)
+                this.buffer[this.position++] = (byte) value.charAt(i);
+        }
+
+        void writeDictionary(String value, Map<String, Integer> codes)
+        {
+            if (value == null)
+            {
+                writeVarint(0);
+                return;
+            }
+
+            Integer code = codes.get(value);
+            if (code != null)
+                writeVarint(code);
+            else
+            {
+                writeVarint(codes.size() + 1L);
+                writeString(value);
+            }
+        }
+
+        void writeZipCode(String zipCode)
+        {
+            if (zipCode == null)
+            {
+                writeVarint(0);
+                return;
+            }
+
+            int number = zipCode.length() == 5 ? 0 : -1;
+            for (int i = 0; number >= 0 && i < 5; i++)
+            {
+                char c = zipCode.charAt(i);
+                number = c >= '0' && c <= '9' ? number * 10 + (c - '0') : -1;
+            }
+
+            if (number >= 0)
+                writeVarint(number + 2L);
+            else
+            {
+                writeVarint(1);
+                writeString(zipCode);
+            }
+        }
+
+        void writeBytes(byte[] value)
+        {
+            if (value == null)
+            {
+                writeVarint(0);
+                return;
+            }
+
+            writeVarint(value.length + 1L);
+            ensure(value.length);
+            System.arraycopy(value, 0, this.buffer, this.position, value.length);
+            this.position += value.length;
+        }
+
+        int size()
+        {
+            return this.position;
+        }
+
+        byte[] toByteArray()
+        {
+            return Arrays.copyOf(this.buffer, this.position);
+        }
+    }
+
+    /**
+     * Reads a job back field by field. Anything cut off or out of range is a SerializationException. JobView uses
+     * it to read a single field at a time, so it can start anywhere in the job and skip over fields too.
+     */
+    static class Reader
+    {
+        private final byte[] buffer;
+        private int position;
+
+        Reader(byte[] buffer)
+        {
+            this(buffer, 0);
+        }
+
+        Reader(byte[] buffer, int position)
+        {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        int getPosition()
+        {
+            return this.position;
+        }
+
+        int remaining()
+        {
+            return this.buffer.length - this.position;
+        }
+
+        private void need(long bytes)
+        {
+            if (bytes > remaining())
+                throw new SerializationException("The job is cut off!");
+        }
+
+        byte readByte()
+        {
+            need(1);
+            return this.buffer[this.position++];
+        }
+
+        long readVarint()
+        {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7)
+            {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0)
+                    return value;
+            }
+
+            throw new SerializationException("A number in the job is too long!");
+        }
+
+        long readVarLong()
+        {
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        double readDouble()
+        {
+            need(8);
+            long bits = 0;
+            for (int i = 0; i < 8; i++)
+                bits = (bits << 8) | (this.buffer[this.position++] & 0xFF);
+
+            return Double.longBitsToDouble(bits);
+        }
+
+        String readString()
+        {
+            long length = readVarint() - 1;
+            if (length < 0)
+                return null;
+
+            need(length);
+            String value = new String(this.buffer, this.position, (int) length, StandardCharsets.UTF_8);
+            this.position += (int) length;
+
+            return value;
+        }
+
+        byte[] readBytes()
+        {
+            long length = readVarint() - 1;
+            if (length < 0)
+                return null;
+
+            need(length);
+            byte[] value = Arrays.copyOfRange(this.buffer, this.position, this.position + (int) length);
+            this.position += (int) length;
+
+            return value;
+        }
+
+        String readState()
+        {
+            return readDictionary(STATES);
+        }
+
+        String readJobType()
+        {
+            return readDictionary(JOB_TYPES);
+        }
+
+        private String readDictionary(String[] dictionary)
+        {
+            long code = readVarint();
+            if (code == 0)
+                return null;
+            if (code <= dictionary.length)
+                return dictionary[(int) code - 1];
+            if (code == dictionary.length + 1)
+                return readString();
+
+            throw new SerializationException("Unknown dictionary entry " + code + "!");
+        }
+
+        String readZipCode()
+        {
+            long code = readVarint();
+            if (code == 0)
+                return null;
+            if (code == 1)
+                return readString();
+            if (code > 99999 + 2)
+                throw new SerializationException("Zip code " + (code - 2) + " is too long!");
+
+            // Keeps the leading zeros. Ex - 02134
+            char[] digits = new char[5];
+            long number = code - 2;
+            for (int i = 4; i >= 0; i--)
+            {
+                digits[i] = (char) ('0' + number % 10);
+                number /= 10;
+            }
+
+            return new String(digits);
+        }
+
+        void skipVarint()
+        {
+            readVarint();
+        }
+
+        void skipDouble()
+        {
+            need(8);
+            this.position += 8;
+        }
+
+        void skipString()
+        {
+            long length = readVarint() - 1;
+            if (length > 0)
+            {
+                need(length);
+                this.position += (int) length;
+            }
+        }
+
+        void skipState()
+        {
+            skipDictionary(STATES);
+        }
+
+        void skipJobType()
+        {
+            skipDictionary(JOB_TYPES);
+        }
+
+        private void skipDictionary(String[] dictionary)
+        {
+            long code = readVarint();
+            if (code == dictionary.length + 1)
+                skipString();
+            else if (code > dictionary.length + 1)
+                throw new SerializationException("Unknown dictionary entry " + code + "!");
+        }
+
+        void skipZipCode()
+        {
+            long code = readVarint();
+            if (code == 1)
+                skipString();
+            else if (code > 99999 + 2)
+                throw new SerializationException("Zip code " + (code - 2) + " is too long!");
+        }
+    }
+}
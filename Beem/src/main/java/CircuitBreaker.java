@@ -0,0 +1,156 @@
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops the router from sending jobs to the city brokers after too many sends in a row have failed. While the
+ * breaker is open the school partitions get paused instead of every job being retried and then dead lettered. Once
+ * the cool down is over one job is let through to test the brokers. If it makes it the breaker closes, otherwise
+ * it opens again for another cool down.
+ *
+ * Bad jobs never count against the breaker, those just go to the dead letter topic. This is only for the city
+ * brokers being down or unreachable.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see SchoolToCityStream
+ */
+public class CircuitBreaker
+{
+    public enum State
+    {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final LongSupplier clock;
+
+    private volatile State state = State.CLOSED;
+    private volatile long openedAt = 0;
+    private final AtomicInteger failures = new AtomicInteger(0); // failures in a row
+    private final AtomicBoolean probing = new AtomicBoolean(false); // a job is testing the brokers
+
+    /**
+     * Constructor for the breaker.
+     * @param failureThreshold How many sends in a row have to fail before the breaker opens.
+     * @param openMillis How long the breaker stays open before letting a job through to test the brokers.
+     * @throws IllegalArgumentException Throws if the threshold is less than 1 or the cool down is negative.
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis) throws IllegalArgumentException
+    {
+        this(failureThreshold, openMillis, System::currentTimeMillis);
+    }
+
+    /**
+     * Same as above but with our own clock so the tests don't need to sleep.
+     */
+    CircuitBreaker(int failureThreshold, long openMillis, LongSupplier clock) throws IllegalArgumentException
+    {
+        if (failureThreshold < 1 || openMillis < 0)
+            throw new IllegalArgumentException("The failure threshold must be at least 1 and the cool down positive!");
+
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Asks if a job can be sent. When the cool down is over this only says yes to the first caller until we
+     * hear back about that job.
+     * @return True if the job can be sent.
+     */
+    public boolean allowRequest()
+    {
+        State current = this.state;
+        if (current == State.CLOSED)
+            return true;
+
+        if (current == State.OPEN)
+        {
+            if (this.clock.getAsLong() - this.openedAt < this.openMillis)
+                return false;
+
+            synchronized (this)
+            {
+                if (this.state == State.OPEN)
+                    this.state = State.HALF_OPEN;
+            }
+        }
+
+        return this.probing.compareAndSet(false, true);
+    }
+
+    /**
+     * Gives back the test job allowRequest() handed out when that job didn't go out after all (it had to wait or the
+     * send threw), so the next job can test the brokers instead. Nothing changes unless the breaker is half open.
+     */
+    public void releaseProbe()
+    {
+        if (this.state == State.HALF_OPEN)
+            this.probing.set(false);
+    }
+
+    /**
+     * @return True if the breaker is open and still cooling down, so there is no point resuming anything yet.
+     */
+    public boolean isOpen()
+    {
+        return this.state == State.OPEN && this.clock.getAsLong() - this.openedAt < this.openMillis;
+    }
+
+    /**
+     * Called when a send made it to the brokers.
+     */
+    public void recordSuccess()
+    {
+        this.failures.set(0);
+
+        if (this.state != State.CLOSED)
+        {
+            synchronized (this)
+            {
+                this.state = State.CLOSED;
+                this.probing.set(false);
+            }
+
+            logger.info("Circuit breaker closed, the city brokers are back");
+        }
+    }
+
+    /**
+     * Called when a send failed after the producer was done retrying it.
+     */
+    public void recordFailure()
+    {
+        if (this.state == State.HALF_OPEN || this.failures.incrementAndGet() >= this.failureThreshold)
+            open();
+    }
+
+    /**
+     * @return What the breaker is doing right now.
+     */
+    public State getState()
+    {
+        return this.state;
+    }
+
+    private synchronized void open()
+    {
+        if (this.state != State.OPEN)
+        {
+            logger.warn("Circuit breaker opened for {} ms after {} failed sends", this.openMillis, this.failures.get());
+        }
+
+        this.openedAt = this.clock.getAsLong();
+        this.state = State.OPEN;
+        this.probing.set(false);
+    }
+}
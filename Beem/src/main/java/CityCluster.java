@@ -0,0 +1,72 @@
+/**
+ * Everything the router keeps for one city cluster: the producer, its batching controller, the topic metadata and
+ * the topic creator. The router's own city broker is one of these and the routing table can send jobs to others,
+ * which get connected the first time a table names them.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see RoutingTable
+ * @see SchoolToCityStream#setRoutingTable(RoutingTable)
+ */
+public class CityCluster
+{
+    private final String bootstrapServers;
+    private final AdaptiveProducer<String, byte[]> producer;
+    private final AdaptiveBatchingController batchingController;
+    private final TopicMetadataCache metadata;
+    private final AsyncTopicCreator topicCreator;
+
+    /**
+     * Constructor for the cluster. The clients are already connected, the cluster just keeps them together.
+     * @param bootstrapServers The cluster's bootstrap servers. Ex - 'ipaddress:portNum'
+     * @param producer The producer for the cluster's city topics.
+     * @param batchingController Switches the producer between batching profiles.
+     * @param metadata The cluster's city topics.
+     * @param topicCreator Creates the city topics the cluster doesn't have yet.
+     */
+    public CityCluster(String bootstrapServers, AdaptiveProducer<String, byte[]> producer,
+                       AdaptiveBatchingController batchingController, TopicMetadataCache metadata,
+                       AsyncTopicCreator topicCreator)
+    {
+        this.bootstrapServers = bootstrapServers;
+        this.producer = producer;
+        this.batchingController = batchingController;
+        this.metadata = metadata;
+        this.topicCreator = topicCreator;
+    }
+
+    /**
+     * Stops switching profiles, waits for the topics being created and sends their jobs, then flushes and closes
+     * the producer.
+     */
+    public void close()
+    {
+        this.batchingController.stop();
+        this.topicCreator.close();
+        this.metadata.close(); // closes the admin client the topic creator shares
+        this.producer.flush();
+        this.producer.close();
+    }
+
+    public String getBootstrapServers()
+    {
+        return this.bootstrapServers;
+    }
+
+    public AdaptiveProducer<String, byte[]> getProducer()
+    {
+        return this.producer;
+    }
+
+    public TopicMetadataCache getMetadata()
+    {
+        return this.metadata;
+    }
+
+    public AsyncTopicCreator getTopicCreator()
+    {
+        return this.topicCreator;
+    }
+}
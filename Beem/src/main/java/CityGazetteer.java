@@ -0,0 +1,341 @@
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The cities we serve and where they are, loaded from the city coordinate gazetteer (Cities/City Coordinates.txt).
+ * Used to route a job to the nearest city we serve by its coordinates instead of the city string in the job, so a
+ * job from a suburb ends up in the topic of the city next to it instead of a topic of its own.
+ *
+ * The cities are kept in a k-d tree built once when the gazetteer is loaded and never changed, so any number of
+ * routing threads can look up cities at once without locking. Every city is stored as a point on the unit sphere
+ * (x, y, z) rather than as a latitude and longitude. The straight line distance between two of those points only
+ * grows with the distance along the earth's surface, so the tree can compare plain squared distances and a lookup
+ * only needs the trig to convert the job's coordinates. Nothing is allocated on a lookup.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see SchoolToCityStream#setGazetteer(CityGazetteer, double)
+ */
+public class CityGazetteer
+{
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private static final Logger logger = LoggerFactory.getLogger(CityGazetteer.class);
+
+    // The tree is stored in these arrays, the city at the middle of a range splits the rest of that range
+    private final City[] cities;
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] zs;
+
+    /**
+     * Constructor for the gazetteer. Builds the k-d tree from the cities.
+     * @param cities The cities we serve.
+     * @throws IllegalArgumentException Throws if there are no cities.
+     */
+    public CityGazetteer(List<City> cities) throws IllegalArgumentException
+    {
+        if (cities == null || cities.isEmpty())
+            throw new IllegalArgumentException("The gazetteer needs at least 1 city!");
+
+        int size = cities.size();
+        this.cities = cities.toArray(new City[0]);
+        this.xs = new double[size];
+        this.ys = new double[size];
+        this.zs = new double[size];
+
+        build(0, size, 0);
+
+        for (int i = 0; i < size; i++)
+        {
+            City city = this.cities[i];
+            this.xs[i] = city.x;
+            this.ys[i] = city.y;
+            this.zs[i] = city.z;
+        }
+    }
+
+    /**
+     * Loads the gazetteer file. Every line is the city name, state and country separated by commas, then the
+     * latitude and longitude separated by tabs. Ex - 'College Station, TX, USA	30.601389	-96.314445'
+     * The state can be the code or the full name in any case. Lines we can't make sense of are skipped.
+     * @param file The gazetteer file.
+     * @return The gazetteer.
+     * @throws IOException Throws if the file can't be read.
+     * @throws IllegalArgumentException Throws if the file doesn't have a single city in it.
+     */
+    public static CityGazetteer load(Path file) throws IOException, IllegalArgumentException
+    {
+        List<City> cities = new ArrayList<>();
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+
+        for (int i = 0; i < lines.size(); i++)
+        {
+            String line = lines.get(i).trim();
+            if (line.isEmpty())
+                continue;
+
+            try
+            {
+                cities.add(parseLine(line));
+            }
+            catch (IllegalArgumentException e)
+            {
+                logger.warn("Skipping line {} of the gazetteer: {}", i + 1, e.getMessage());
+            }
+        }
+
+        return new CityGazetteer(cities);
+    }
+
+    /**
+     * Parses one line of the gazetteer.
+     * @param line The line. Ex - 'College Station, TX, USA	30.601389	-96.314445'
+     * @return The city on the line.
+     * @throws IllegalArgumentException Throws if the line isn't in the gazetteer's format.
+     */
+    static City parseLine(String line) throws IllegalArgumentException
+    {
+        String[] columns = line.split("\t");
+        if (columns.length < 3)
+            throw new IllegalArgumentException("Expected the name, latitude and longitude separated by tabs!");
+
+        String[] name = columns[0].split(",");
+        if (name.length < 2)
+            throw new IllegalArgumentException("Expected the city and state separated by a comma!");
+
+        String stateCode = Address.toStateCode(name[1]);
+        if (stateCode == null)
+            throw new IllegalArgumentException("'" + name[1].trim() + "' is not a state!");
+
+        double latitude;
+        double longitude;
+        try
+        {
+            latitude = Double.parseDouble(columns[1].trim());
+            longitude = Double.parseDouble(columns[2].trim());
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("The coordinates are not numbers!", e);
+        }
+
+        return new City(name[0].trim(), stateCode, latitude, longitude);
+    }
+
+    /**
+     * Finds the closest city we serve to the coordinates.
+     * @param latitude The latitude of the job.
+     * @param longitude The longitude of the job.
+     * @param maxDistanceKm How far away the city is allowed to be. Use Double.POSITIVE_INFINITY for no limit.
+     * @return The nearest city, or null if none are within maxDistanceKm or the coordinates aren't valid.
+     */
+    public City nearest(double latitude, double longitude, double maxDistanceKm)
+    {
+        if (!Address.isValidLatitude(latitude) || !Address.isValidLongitude(longitude))
+            return null;
+
+        double lat = Math.toRadians(latitude);
+        double lon = Math.toRadians(longitude);
+        double cosLat = Math.cos(lat);
+        double x = cosLat * Math.cos(lon);
+        double y = cosLat * Math.sin(lon);
+        double z = Math.sin(lat);
+
+        // Start the search at the cutoff so nothing further away is even looked at
+        double bestDistance = maxDistanceKm >= Math.PI * EARTH_RADIUS_KM ? Double.POSITIVE_INFINITY
+                : squaredChord(maxDistanceKm);
+
+        int found = search(x, y, z, 0, this.cities.length, 0, -1, bestDistance);
+        return found < 0 ? null : this.cities[found];
+    }
+
+    /**
+     * Recursive k-d tree search of the cities in [lo, hi). Goes down the side of the split the point is on first,
+     * then only looks at the other side if the splitting plane is closer than the best city found so far.
+     * @return The index of the best city so far, or -1 if there still isn't one.
+     */
+    private int search(double x, double y, double z, int lo, int hi, int axis, int best, double bestDistance)
+    {
+        if (lo >= hi)
+            return best;
+
+        int mid = (lo + hi) >>> 1;
+        double dx = x - this.xs[mid];
+        double dy = y - this.ys[mid];
+        double dz = z - this.zs[mid];
+        double distance = dx * dx + dy * dy + dz * dz;
+
+        if (distance < bestDistance)
+        {
+            best = mid;
+            bestDistance = distance;
+        }
+
+        double split = axis == 0 ? dx : axis == 1 ? dy : dz;
+        int nextAxis = axis == 2 ? 0 : axis + 1;
+
+        int nearLo = split < 0 ? lo : mid + 1;
+        int nearHi = split < 0 ? mid : hi;
+        int farLo = split < 0 ? mid + 1 : lo;
+        int farHi = split < 0 ? hi : mid;
+
+        best = search(x, y, z, nearLo, nearHi, nextAxis, best, bestDistance);
+        if (best >= 0)
+            bestDistance = squaredDistance(x, y, z, best);
+
+        if (split * split < bestDistance)
+            best = search(x, y, z, farLo, farHi, nextAxis, best, bestDistance);
+
+        return best;
+    }
+
+    private double squaredDistance(double x, double y, double z, int index)
+    {
+        double dx = x - this.xs[index];
+        double dy = y - this.ys[index];
+        double dz = z - this.zs[index];
+
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Sorts the cities in [lo, hi) so the middle one splits the range on the axis, then does the same to each half.
+     * There are only ever a few thousand cities so a sort per level is plenty fast for something done once.
+     */
+    private void build(int lo, int hi, int axis)
+    {
+        if (hi - lo <= 1)
+            return;
+
+        final int sortAxis = axis;
+        Arrays.sort(this.cities, lo, hi, (a, b) -> Double.compare(a.coordinate(sortAxis), b.coordinate(sortAxis)));
+
+        int mid = (lo + hi) >>> 1;
+        int nextAxis = axis == 2 ? 0 : axis + 1;
+        build(lo, mid, nextAxis);
+        build(mid + 1, hi, nextAxis);
+    }
+
+    /**
+     * @param distanceKm A distance along the earth's surface.
+     * @return The squared straight line distance between two points on the unit sphere that far apart.
+     */
+    static double squaredChord(double distanceKm)
+    {
+        double chord = 2 * Math.sin(Math.max(0, distanceKm) / (2 * EARTH_RADIUS_KM));
+        return chord * chord;
+    }
+
+    /**
+     * @return Every city in the gazetteer.
+     */
+    public List<City> getCities()
+    {
+        List<City> list = new ArrayList<>(this.cities.length);
+        Collections.addAll(list, this.cities);
+
+        return list;
+    }
+
+    public int size()
+    {
+        return this.cities.length;
+    }
+
+    /**
+     * A city we serve. The name and state are what the city's topics are named after.
+     */
+    public static class City
+    {
+        private final String name;
+        private final String state;
+        private final double latitude;
+        private final double longitude;
+        private final double x;
+        private final double y;
+        private final double z;
+
+        /**
+         * Constructor for a city.
+         * @param name The name of the city. Ex - College Station
+         * @param state The 2 character state code. Ex - TX
+         * @param latitude The latitude of the city.
+         * @param longitude The longitude of the city.
+         * @throws IllegalArgumentException Throws if the coordinates aren't valid.
+         */
+        public City(String name, String state, double latitude, double longitude) throws IllegalArgumentException
+        {
+            if (!Address.isValidLatitude(latitude) || !Address.isValidLongitude(longitude))
+                throw new IllegalArgumentException("The coordinates for " + name + " are not valid!");
+
+            this.name = name;
+            this.state = state;
+            this.latitude = latitude;
+            this.longitude = longitude;
+
+            double lat = Math.toRadians(latitude);
+            double lon = Math.toRadians(longitude);
+            this.x = Math.cos(lat) * Math.cos(lon);
+            this.y = Math.cos(lat) * Math.sin(lon);
+            this.z = Math.sin(lat);
+        }
+
+        private double coordinate(int axis)
+        {
+            return axis == 0 ? this.x : axis == 1 ? this.y : this.z;
+        }
+
+        /**
+         * @param latitude The latitude of a point.
+         * @param longitude The longitude of a point.
+         * @return How far the point is from this city along the earth's surface.
+         */
+        public double distanceKm(double latitude, double longitude)
+        {
+            double dLat = Math.toRadians(latitude - this.latitude);
+            double dLon = Math.toRadians(longitude - this.longitude);
+            double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) + Math.cos(Math.toRadians(this.latitude))
+                    * Math.cos(Math.toRadians(latitude)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+
+            return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+        }
+
+        public String getName()
+        {
+            return this.name;
+        }
+
+        public String getState()
+        {
+            return this.state;
+        }
+
+        public double getLatitude()
+        {
+            return this.latitude;
+        }
+
+        public double getLongitude()
+        {
+            return this.longitude;
+        }
+
+        @Override
+        public String toString()
+        {
+            return this.name + ", " + this.state;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.utils.Utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Partitions the city topics by where the job is instead of by customer, so every job from the same area lands on
+ * the same partition. A driver only has to read the partitions that cover their area (see partitionsFor()) instead
+ * of every partition of the city topic.
+ *
+ * The area is the geohash cell of the job's from_latitude and from_longitude, or the first digits of its
+ * from_zipcode. Jobs without either fall back to the customer id, hashed with murmur2 like the default partitioner
+ * does, so they land on the same partition a producer without this partitioner would pick. A job with no key at all
+ * is hashed on the whole job instead, so sending it again picks the same partition.
+ *
+ * Ordering: a customer's jobs from the same area always go to the same partition so they stay in order. With a
+ * span bigger than 1 a busy area gets spread over that many partitions and the customer id picks one of them, so
+ * that still holds. Jobs a customer posts from two different areas can end up on different partitions, if that
+ * matters use the CUSTOMER locality which orders every job of a customer.
+ *
+ * The router calls partition(RoutingFields, int) with the fields it already pulled out of the job. Any other
+ * producer can use this as its partitioner.class, then the job gets scanned again here, and set it up with:
+ * beem.partitioner.locality (GEOHASH, ZIP_PREFIX or CUSTOMER), beem.partitioner.geohash.precision,
+ * beem.partitioner.zip.digits and beem.partitioner.span.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see Geohash
+ * @see SchoolToCityStream#setPartitioner(CityPartitioner)
+ */
+public class CityPartitioner implements Partitioner
+{
+    public static final String LOCALITY_CONFIG = "beem.partitioner.locality";
+    public static final String GEOHASH_PRECISION_CONFIG = "beem.partitioner.geohash.precision";
+    public static final String ZIP_DIGITS_CONFIG = "beem.partitioner.zip.digits";
+    public static final String SPAN_CONFIG = "beem.partitioner.span";
+
+    public static final int DEFAULT_GEOHASH_PRECISION = 5; // about 4.9km across
+    public static final int DEFAULT_ZIP_DIGITS = 3; // the sectional center, roughly a metro area
+    public static final int DEFAULT_SPAN = 1;
+
+    private static final long NO_CELL = -1;
+    private static final long ZIP_CELL_TAG = 1L << 62; // keeps zip cells from landing on the same value as a geohash
+
+    /**
+     * What area a job is partitioned by.
+     */
+    public enum Locality
+    {
+        GEOHASH, // the geohash cell, falls back to the zip prefix if the job has no coordinates
+        ZIP_PREFIX,
+        CUSTOMER // same as the default partitioner, every job of a customer stays in order
+    }
+
+    private Locality locality = Locality.GEOHASH;
+    private int geohashPrecision = DEFAULT_GEOHASH_PRECISION;
+    private int zipDigits = DEFAULT_ZIP_DIGITS;
+    private int span = DEFAULT_SPAN;
+
+    // Only used when we are the producer's partitioner and have to scan the job ourselves
+    private final ThreadLocal<RoutingExtractor> extractors = ThreadLocal.withInitial(RoutingExtractor::new);
+
+    /**
+     * Constructor used by the producer when this is its partitioner.class. configure() gets called right after.
+     */
+    public CityPartitioner()
+    {
+        /* Set up in configure() */
+    }
+
+    /**
+     * Constructor for the router to use directly.
+     * @param locality What area the jobs are partitioned by.
+     * @param geohashPrecision The geohash length of an area, 1 to 12.
+     * @param zipDigits How many digits of the zip code make an area, 1 to 5.
+     * @param span How many partitions each area is spread over.
+     * @throws IllegalArgumentException Throws if any of the settings are out of range.
+     */
+    public CityPartitioner(Locality locality, int geohashPrecision, int zipDigits, int span)
+            throws IllegalArgumentException
+    {
+        set(locality, geohashPrecision, zipDigits, span);
+    }
+
+    private void set(Locality locality, int geohashPrecision, int zipDigits, int span) throws IllegalArgumentException
+    {
+        if (locality == null)
+            throw new IllegalArgumentException("The locality can't be empty!");
+        if (geohashPrecision < 1 || geohashPrecision > Geohash.MAX_PRECISION)
+            throw new IllegalArgumentException("The geohash precision must be between 1 and " + Geohash.MAX_PRECISION + "!");
+        if (zipDigits < 1 || zipDigits > 5)
+            throw new IllegalArgumentException("The zip code digits must be between 1 and 5!");
+        if (span < 1)
+            throw new IllegalArgumentException("Each area needs at least 1 partition!");
+
+        this.locality = locality;
+        this.geohashPrecision = geohashPrecision;
+        this.zipDigits = zipDigits;
+        this.span = span;
+    }
+
+    /**
+     * Reads the settings from the producer's properties. Anything not set keeps its default.
+     * @param configs The producer's properties.
+     * @throws IllegalArgumentException Throws if any of the settings are out of range or not numbers.
+     */
+    @Override
+    public void configure(Map<String, ?> configs) throws IllegalArgumentException
+    {
+        try
+        {
+            Object locality = configs.get(LOCALITY_CONFIG);
+            set(locality == null ? this.locality : Locality.valueOf(locality.toString().trim().toUpperCase()),
+                    intConfig(configs, GEOHASH_PRECISION_CONFIG, this.geohashPrecision),
+                    intConfig(configs, ZIP_DIGITS_CONFIG, this.zipDigits),
+                    intConfig(configs, SPAN_CONFIG, this.span));
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("The partitioner settings must be numbers!", e);
+        }
+    }
+
+    private static int intConfig(Map<String, ?> configs, String name, int fallback)
+    {
+        Object value = configs.get(name);
+        return value == null ? fallback : Integer.parseInt(value.toString().trim());
+    }
+
+    /**
+     * Called by the producer for every record when this is its partitioner.class. Scans the job for its area.
+     * @return The partition the job goes to.
+     */
+    @Override
+    public int partition(String topic, Object key, byte[] keyBytes, Object value, byte[] valueBytes, Cluster cluster)
+    {
+        int numPartitions = cluster.partitionsForTopic(topic).size();
+
+        if (this.locality != Locality.CUSTOMER && (value instanceof String || valueBytes != null))
+        {
+            try
+            {
+                RoutingExtractor extractor = this.extractors.get();
+                extractor.require(usesCoordinates(), usesZipcode());
+                RoutingFields fields = value instanceof String ? extractor.extract((String) value)
+                        : extractor.extract(valueBytes);
+                return partition(cellOf(fields), fields.getCustomer_id(), numPartitions);
+            }
+            catch (IllegalArgumentException | NoSuchElementException e)
+            {
+                // Not a job we can read, fall back to the key
+            }
+        }
+
+        return partition(NO_CELL, keyBytes != null ? keyBytes : valueBytes, numPartitions);
+    }
+
+    /**
+     * Picks the partition for a job the router has already scanned.
+     * @param fields The job's routing fields.
+     * @param numPartitions The number of partitions the city topic has.
+     * @return The partition the job goes to.
+     */
+    public int partition(RoutingFields fields, int numPartitions)
+    {
+        return partition(cellOf(fields), fields.getCustomer_id(), numPartitions);
+    }
+
+    /**
+     * The partitions a driver needs to read to get every job from an area.
+     * @param area A geohash of the partitioner's precision (Ex - 9vk1m) or the first digits of a zip code (Ex - 778),
+     *      whichever the partitioner's locality uses.
+     * @param numPartitions The number of partitions the city topic has.
+     * @return The partitions covering the area, every partition if we partition by customer.
+     * @throws IllegalArgumentException Throws if the area isn't a geohash or zip prefix of the right length.
+     */
+    public Set<Integer> partitionsFor(String area, int numPartitions) throws IllegalArgumentException
+    {
+        Set<Integer> partitions = new LinkedHashSet<>();
+        if (this.locality == Locality.CUSTOMER)
+        {
+            for (int i = 0; i < numPartitions; i++)
+                partitions.add(i);
+            return partitions;
+        }
+
+        long cell = areaCell(area);
+        int first = Utils.toPositive(mix(cell)) % numPartitions;
+        for (int i = 0; i < Math.min(this.span, numPartitions); i++)
+            partitions.add((first + i) % numPartitions);
+
+        return partitions;
+    }
+
+    /**
+     * @param area A geohash of the partitioner's precision or the first digits of a zip code.
+     * @return The area's cell.
+     * @throws IllegalArgumentException Throws if the area is neither.
+     */
+    private long areaCell(String area) throws IllegalArgumentException
+    {
+        if (area == null)
+            throw new IllegalArgumentException("The area is empty!");
+
+        // A job without coordinates falls back to its zip code even when we go by geohash
+        if (this.locality == Locality.GEOHASH && area.length() == this.geohashPrecision)
+            return Geohash.toBits(area);
+
+        long cell = area.length() == this.zipDigits ? zipCell(area) : NO_CELL;
+        if (cell == NO_CELL)
+            throw new IllegalArgumentException("The area must be a geohash with " + this.geohashPrecision
+                    + " characters or a zip code prefix with " + this.zipDigits + " digits!");
+
+        return cell;
+    }
+
+    /**
+     * The area cell for the job. The geohash needs the coordinates, if the job doesn't have them (like DeliveryJob)
+     * we try the zip code.
+     * @return The cell, or NO_CELL if the job doesn't say where it is.
+     */
+    private long cellOf(RoutingFields fields)
+    {
+        if (this.locality == Locality.CUSTOMER)
+            return NO_CELL;
+
+        if (this.locality == Locality.GEOHASH && fields.hasCoordinates())
+        {
+            try
+            {
+                return Geohash.toBits(fields.getFrom_latitude(), fields.getFrom_longitude(), this.geohashPrecision);
+            }
+            catch (IllegalArgumentException e)
+            {
+                // Coordinates off the map, try the zip code
+            }
+        }
+
+        return zipCell(fields.getFrom_zipcode());
+    }
+
+    /**
+     * @param zipCode The zip code, or just its first digits. Ex - 77840
+     * @return The first zipDigits digits as a cell, or NO_CELL if there aren't that many digits.
+     */
+    private long zipCell(String zipCode)
+    {
+        if (zipCode == null || zipCode.length() < this.zipDigits)
+            return NO_CELL;
+
+        long prefix = 0;
+        for (int i = 0; i < this.zipDigits; i++)
+        {
+            char c = zipCode.charAt(i);
+            if (c < '0' || c > '9')
+                return NO_CELL;
+            prefix = prefix * 10 + (c - '0');
+        }
+
+        return ZIP_CELL_TAG | prefix;
+    }
+
+    /**
+     * Same as below with the customer id as the StringSerializer would send it.
+     */
+    private int partition(long cell, String customer, int numPartitions)
+    {
+        return partition(cell, customer == null ? null : customer.getBytes(StandardCharsets.UTF_8), numPartitions);
+    }
+
+    /**
+     * @param cell The job's area, NO_CELL if it doesn't have one.
+     * @param customer The serialized key (or the job when there is no key) the partition within the area is picked
+     *      by. Null picks the area's first partition.
+     */
+    private int partition(long cell, byte[] customer, int numPartitions)
+    {
+        int customerHash = customer == null ? 0 : Utils.murmur2(customer);
+        if (cell == NO_CELL)
+            return Utils.toPositive(customerHash) % numPartitions;
+
+        int first = Utils.toPositive(mix(cell)) % numPartitions;
+        int offset = Utils.toPositive(customerHash) % Math.min(this.span, numPartitions);
+
+        return (first + offset) % numPartitions;
+    }
+
+    /**
+     * Spreads neighboring cells (whose bits only differ at the end) over the partitions.
+     */
+    private static int mix(long cell)
+    {
+        long hash = cell * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    @Override
+    public void close()
+    {
+        /* Nothing to close */
+    }
+
+    /**
+     * @return True if jobs are partitioned on their coordinates, so they have to be scanned for them.
+     */
+    public boolean usesCoordinates()
+    {
+        return this.locality == Locality.GEOHASH;
+    }
+
+    /**
+     * @return True if jobs are partitioned on their zip code, even if only when they have no coordinates.
+     */
+    public boolean usesZipcode()
+    {
+        return this.locality != Locality.CUSTOMER;
+    }
+
+    public Locality getLocality()
+    {
+        return this.locality;
+    }
+
+    public int getSpan()
+    {
+        return this.span;
+    }
+}
@@ -1,37 +1,388 @@
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
 import org.apache.kafka.common.serialization.Serdes;
-import org.apache.kafka.common.utils.Bytes;
 import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyValue;
 import org.apache.kafka.streams.StreamsBuilder;
 import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.errors.LogAndContinueExceptionHandler;
+import org.apache.kafka.streams.kstream.Consumed;
 import org.apache.kafka.streams.kstream.KStream;
-import org.apache.kafka.streams.kstream.KTable;
-import org.apache.kafka.streams.kstream.Materialized;
 import org.apache.kafka.streams.kstream.Produced;
-import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.RecordContext;
+import org.apache.kafka.streams.processor.TopicNameExtractor;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 
 /**
- * A streaming application that looks at
+ * A streaming application that does the same job as SchoolToCityStream (routing the jobs from a school topic to
+ * their "city-state-job" topics) but with Kafka Streams instead of our own consumer and producer. The topic for
+ * each job is picked per record by a TopicNameExtractor so we don't need a branch for every city, and Streams
+ * handles the threads (num.stream.threads), offsets and rebalancing for us.
+ *
+ * The topology routes the jobs as bytes, JSON and binary jobs alike, and getJobSerde() is the typed serde for
+ * reading them off the city topics.
+ *
+ * Which one is faster depends on the deployment, run RouterBenchmark against a broker to compare them.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see SchoolToCityStream
+ * @see "https://kafka.apache.org/23/documentation/streams/developer-guide/dsl-api.html#dynamically-choosing-the-output-topic"
  */
 public class CityStream
 {
-    public static void main(String[] args)
+    public static void main(String[] args) throws InterruptedException
     {
+        CityStream cityStream = new CityStream("texas-am-university", "localhost:9092",
+                "tx-school-city-stream", Runtime.getRuntime().availableProcessors());
+        Runtime.getRuntime().addShutdownHook(new Thread(cityStream::shutdown));
 
+        cityStream.start();
+        cityStream.awaitShutdown();
     }
 
     private String schoolTopic;
-    private int topicPartition;
+    private String brokerAddress;
+    private String appName;
+    private int numThreads;
 
+    private AsyncTopicCreator topicCreator;
+    private Set<String> cityTopics = ConcurrentHashMap.newKeySet(); // topics we know exist
+    private KafkaStreams streams;
+    private CountDownLatch latch = new CountDownLatch(1);
+
+    private static final int NEW_TOPIC_PARTITIONS = 1;
+    private static final int NEW_TOPIC_REPLICATION = 1;
+    private static final int MAX_CACHED_TOPICS = 4096;
+    private static final String DEAD_LETTER_SUFFIX = "-dead-letter";
 
     /**
-     * Default Constructor
+     * Constructor for the streaming application.
+     * @param schoolTopic The school topic we are routing jobs from.
+     * @param brokerAddress The kafka broker for both the school and city topics. Ex. - 'ipaddress:portNum'
+     * @param appName The application id Streams uses for its consumer group. Ex - tx-school-city-stream
+     * @param numThreads The number of stream threads. More than the school topic's partitions won't help.
      */
-    public CityStream(String schoolTopic, int topicPartition)
+    public CityStream(String schoolTopic, String brokerAddress, String appName, int numThreads)
     {
         this.schoolTopic = schoolTopic;
-        this.topicPartition = topicPartition;
+        this.brokerAddress = brokerAddress;
+        this.appName = appName;
+        this.numThreads = numThreads;
+
+        // Only used to start creating new city topics, Streams sends the jobs itself so nothing waits in here
+        this.topicCreator = new AsyncTopicCreator(brokerAddress, NEW_TOPIC_PARTITIONS, NEW_TOPIC_REPLICATION, 0,
+                this.cityTopics::add, (record, done) -> { });
+    }
+
+    /**
+     * Builds the topology and starts the stream threads.
+     */
+    public void start()
+    {
+        this.topicCreator.ensureTopic(getDeadLetterTopic());
+        this.streams = new KafkaStreams(buildTopology(), getStreamProps());
+        this.streams.start();
+    }
+
+    /**
+     * Stops the stream threads and waits for them to finish.
+     */
+    public void shutdown()
+    {
+        if (this.streams != null)
+            this.streams.close();
+
+        this.topicCreator.close();
+        this.latch.countDown();
+    }
+
+    /**
+     * Blocks until shutdown() is called.
+     * @throws InterruptedException Throws if we get interrupted while waiting.
+     */
+    public void awaitShutdown() throws InterruptedException
+    {
+        this.latch.await();
+    }
+
+    /**
+     * Create the properties for this streaming application.
+     * @return The configuration properties to connect to our brokers.
+     */
+    public Properties getStreamProps()
+    {
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, this.appName);
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, this.brokerAddress);
+        props.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, this.numThreads);
+
+        // The jobs are read as bytes and routed (or dead lettered) after, so only a key that can't be read ends up
+        // here. Skip it instead of stopping the stream thread.
+        props.put(StreamsConfig.DEFAULT_DESERIALIZATION_EXCEPTION_HANDLER_CLASS_CONFIG,
+                LogAndContinueExceptionHandler.class);
+
+        return props;
+    }
+
+    /**
+     * The topology is one source and two sinks. Every job is routed once on the way in: envelopes from bulk producers
+     * (see JobBatch) are unpacked into their jobs, the routing fields are read with a RoutingExtractor (so JSON and
+     * binary jobs both work, and the jobs are never parsed into a tree) and the key gets changed to the customer id
+     * like SchoolToCityStream does. Since nothing stateful comes after that Streams doesn't need a repartition topic.
+     * Routed jobs go to their city topic, the records we can't route go to the dead letter topic with the same
+     * headers SchoolToCityStream's DeadLetterPublisher adds.
+     * @return The topology for the router.
+     */
+    public Topology buildTopology()
+    {
+        StreamsBuilder builder = new StreamsBuilder();
+        Serde<RoutedJob> routedSerde = getRoutedSerde();
+        TopicResolver resolver = new TopicResolver(MAX_CACHED_TOPICS); // thread safe, shared by every stream thread
+
+        KStream<String, byte[]> records = builder.stream(this.schoolTopic,
+                Consumed.with(Serdes.String(), Serdes.ByteArray()));
+        KStream<String, RoutedJob>[] routes = records
+                .flatTransform(() -> new RouteTransformer(resolver))
+                .branch((key, job) -> job.isRouted(), (key, job) -> true);
+
+        routes[0].to(new CityTopicExtractor(this.cityTopics, this.topicCreator), Produced.with(Serdes.String(), routedSerde));
+        routes[1].to(getDeadLetterTopic(), Produced.with(Serdes.String(), routedSerde));
+
+        return builder.build();
+    }
+
+    /**
+     * @return The topic the records we can't route go to. Ex - tx-school-city-stream-dead-letter
+     */
+    public String getDeadLetterTopic()
+    {
+        return this.appName + DEAD_LETTER_SUFFIX;
+    }
+
+    /**
+     * Only the job itself goes on the wire, the topic it was routed to is just for the sink.
+     * @return The serde for a routed job.
+     */
+    public static Serde<RoutedJob> getRoutedSerde()
+    {
+        return Serdes.serdeFrom((topic, job) -> job == null ? null : job.getJob(),
+                (topic, bytes) -> bytes == null ? null : new RoutedJob(bytes, null));
+    }
+
+    /**
+     * The typed serde for the jobs on the city topics, for a Streams application (or consumer) that reads what we
+     * routed. Jobs are written as JSON with KafkaJsonSerializer. Reading goes by the first byte: jobs in the binary
+     * format go to BinaryJobCodec and everything else to KafkaJsonDeserializer. The router itself never needs this,
+     * it routes the bytes as they came in so it doesn't have to parse every job or turn binary jobs into JSON.
+     * @param type DeliveryJob.class or RideShareJob.class.
+     * @param <T> The kind of job on the topic.
+     * @return The serde for that kind of job.
+     */
+    public static <T> Serde<T> getJobSerde(Class<T> type)
+    {
+        return Serdes.serdeFrom(new KafkaJsonSerializer<T>(), new JobDeserializer<T>(type));
+    }
+
+    /**
+     * A job and the city topic it goes to, or no topic if it goes to the dead letter topic.
+     */
+    public static class RoutedJob
+    {
+        private final byte[] job;
+        private final String topic;
+
+        /**
+         * @param job The serialized job, exactly as it was consumed.
+         * @param topic The city topic it goes to, null if it couldn't be routed.
+         */
+        public RoutedJob(byte[] job, String topic)
+        {
+            this.job = job;
+            this.topic = topic;
+        }
+
+        public byte[] getJob()
+        {
+            return this.job;
+        }
+
+        public String getTopic()
+        {
+            return this.topic;
+        }
+
+        public boolean isRouted()
+        {
+            return this.topic != null;
+        }
+    }
+
+    /**
+     * Unpacks and routes the jobs in each record. Streams makes one of these for every task so each one gets its
+     * own RoutingExtractor.
+     */
+    public static class RouteTransformer implements Transformer<String, byte[], Iterable<KeyValue<String, RoutedJob>>>
+    {
+        private final RoutingExtractor extractor = new RoutingExtractor();
+        private final TopicResolver resolver;
+        private ProcessorContext context;
+
+        /**
+         * @param resolver Turns the routing fields into the city topic, shared by every task.
+         */
+        public RouteTransformer(TopicResolver resolver)
+        {
+            this.resolver = resolver;
+        }
+
+        @Override
+        public void init(ProcessorContext context)
+        {
+            this.context = context;
+        }
+
+        @Override
+        public Iterable<KeyValue<String, RoutedJob>> transform(String key, byte[] value)
+        {
+            return route(key, value, this.context.headers(), this.context.topic(), this.context.partition(),
+                    this.context.offset());
+        }
+
+        /**
+         * Routes every job in a record. Every job that comes out of a record shares the record's headers in Streams,
+         * so if any job in an envelope can't be routed the whole record goes to the dead letter topic as it came in.
+         * @param key The record's key.
+         * @param value The record's value, a job or an envelope of jobs.
+         * @param headers The record's headers. The dead letter headers are added to these.
+         * @param topic The school topic the record came from.
+         * @param partition The partition it came from.
+         * @param offset Its offset.
+         * @return Each job keyed by its customer id, or just the record if it goes to the dead letter topic.
+         */
+        List<KeyValue<String, RoutedJob>> route(String key, byte[] value, Headers headers, String topic,
+                                                int partition, long offset)
+        {
+            try
+            {
+                if (value == null)
+                    throw new IllegalArgumentException("The job is empty!");
+
+                // Stamped routing headers belong to the record, the jobs in an envelope have to be scanned
+                boolean batch = JobBatch.isBatch(value);
+                List<KeyValue<String, RoutedJob>> routed = new ArrayList<>();
+                for (byte[] job : JobBatch.unpackValues(value))
+                {
+                    RoutingFields fields = batch ? this.extractor.extract(job) : this.extractor.extract(headers, job);
+                    String cityTopic = this.resolver.resolve(fields.getCity(), fields.getState(), fields.getJob_type());
+                    routed.add(KeyValue.pair(fields.getCustomer_id(), new RoutedJob(job, cityTopic)));
+                }
+
+                return routed;
+            }
+            catch (IllegalArgumentException | NoSuchElementException e)
+            {
+                DeadLetterPublisher.addSourceHeaders(headers, e, topic, partition, offset);
+                return Collections.singletonList(KeyValue.pair(key, new RoutedJob(value, null)));
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            /* Nothing to close */
+        }
+    }
+
+    /**
+     * Reads one kind of job whether it was written as JSON or in the binary format. An envelope from a bulk producer
+     * (see JobBatch) holds more than one job so it can't be read as one, those have to be unpacked first.
+     * @param <T> The kind of job.
+     */
+    public static class JobDeserializer<T> implements Deserializer<T>
+    {
+        private final KafkaJsonDeserializer<T> json;
+        private final BinaryJobCodec<T> binary;
+
+        /**
+         * @param type DeliveryJob.class or RideShareJob.class.
+         */
+        public JobDeserializer(Class<T> type)
+        {
+            this.json = new KafkaJsonDeserializer<T>(type);
+            this.binary = new BinaryJobCodec<T>(type);
+        }
+
+        @Override
+        public void configure(Map<String, ?> configs, boolean isKey) {}
+
+        /**
+         * @param topic The topic the job came from.
+         * @param bytes The job as JSON or in the binary format.
+         * @return The job, or null if the bytes are null.
+         * @throws SerializationException Throws if the bytes are an envelope or aren't the kind of job we read.
+         */
+        @Override
+        public T deserialize(String topic, byte[] bytes) throws SerializationException
+        {
+            if (bytes == null)
+                return null;
+
+            if (JobBatch.isBatch(bytes))
+                throw new SerializationException("Got an envelope of jobs on " + topic + ", unpack it with JobBatch!");
+
+            return bytes[0] == BinaryJobCodec.MAGIC ? this.binary.deserialize(topic, bytes)
+                    : this.json.deserialize(topic, bytes);
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    /**
+     * Sends each routed job to the city topic it was routed to, and gets new city topics created.
+     */
+    public static class CityTopicExtractor implements TopicNameExtractor<String, RoutedJob>
+    {
+        private final Set<String> cityTopics;
+        private final AsyncTopicCreator topicCreator;
+
+        /**
+         * @param cityTopics The topics we know exist. The topic creator adds to this as it creates them.
+         * @param topicCreator Used to start creating topics we haven't sent to before. Can be null.
+         */
+        public CityTopicExtractor(Set<String> cityTopics, AsyncTopicCreator topicCreator)
+        {
+            this.cityTopics = cityTopics;
+            this.topicCreator = topicCreator;
+        }
+
+        @Override
+        public String extract(String key, RoutedJob job, RecordContext context)
+        {
+            String topic = job.getTopic();
+
+            // The producer waits (up to max.block.ms) for a new topic's metadata, this gets it created meanwhile
+            if (this.topicCreator != null && !this.cityTopics.contains(topic))
+                this.topicCreator.ensureTopic(topic);
+
+            return topic;
+        }
     }
 }
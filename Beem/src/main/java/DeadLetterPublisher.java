@@ -0,0 +1,137 @@
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.BiConsumer;
+
+/**
+ * Sends jobs the router couldn't route to a dead letter topic so one bad job (or one school producer sending
+ * garbage) doesn't stop the rest of the school from being routed. The job is sent untouched, with the headers it
+ * came with, and the added headers say what went wrong and where it came from, so it can be fixed and sent back to
+ * the school topic later.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see SchoolToCityStream
+ */
+public class DeadLetterPublisher
+{
+    public static final String ERROR_CLASS_HEADER = "error.class";
+    public static final String ERROR_MESSAGE_HEADER = "error.message";
+    public static final String SOURCE_TOPIC_HEADER = "source.topic";
+    public static final String SOURCE_PARTITION_HEADER = "source.partition";
+    public static final String SOURCE_OFFSET_HEADER = "source.offset";
+    public static final String DESTINATION_TOPIC_HEADER = "destination.topic";
+    public static final String ATTEMPTS_HEADER = "attempts";
+
+    private final String deadLetterTopic;
+    private final BiConsumer<ProducerRecord<String, byte[]>, Callback> sender;
+
+    /**
+     * Constructor for the publisher.
+     * @param deadLetterTopic The topic the jobs go to. Ex - tx-school-city-redirect-dead-letter
+     * @param sender Sends the dead letters and calls the callback (when there is one) once the broker answers.
+     */
+    public DeadLetterPublisher(String deadLetterTopic, BiConsumer<ProducerRecord<String, byte[]>, Callback> sender)
+    {
+        this.deadLetterTopic = deadLetterTopic;
+        this.sender = sender;
+    }
+
+    /**
+     * For jobs from the school topic that couldn't be routed at all, like malformed JSON or missing fields.
+     * @param record The job from the school topic.
+     * @param error Why it couldn't be routed.
+     */
+    public void publish(ConsumerRecord<String, byte[]> record, Throwable error)
+    {
+        publish(record, error, null);
+    }
+
+    /**
+     * Same as above but tells us once the dead letter has been sent.
+     * @param done Called once the broker answers, can be null.
+     */
+    public void publish(ConsumerRecord<String, byte[]> record, Throwable error, Callback done)
+    {
+        Headers headers = new RecordHeaders(record.headers().toArray());
+        addSourceHeaders(headers, error, record.topic(), record.partition(), record.offset());
+
+        send(record.key(), record.value(), headers, done);
+    }
+
+    /**
+     * Adds the headers publish() puts on a job from the school topic that couldn't be routed, for when something
+     * else sends the dead letter, like Kafka Streams in CityStream.
+     * @param headers The job's headers, changed in place.
+     * @param error Why it couldn't be routed.
+     * @param topic The school topic the job came from.
+     * @param partition The partition it came from.
+     * @param offset Its offset.
+     */
+    public static void addSourceHeaders(Headers headers, Throwable error, String topic, int partition, long offset)
+    {
+        addError(headers, error);
+        add(headers, SOURCE_TOPIC_HEADER, topic);
+        add(headers, SOURCE_PARTITION_HEADER, Integer.toString(partition));
+        add(headers, SOURCE_OFFSET_HEADER, Long.toString(offset));
+    }
+
+    /**
+     * For jobs that were routed but couldn't be sent to their city topic even after retrying.
+     * @param record The job that was going to the city topic.
+     * @param error Why the last send failed.
+     * @param attempts How many times we tried to send it.
+     */
+    public void publish(ProducerRecord<String, byte[]> record, Throwable error, int attempts)
+    {
+        publish(record, error, attempts, null);
+    }
+
+    /**
+     * Same as above but tells us once the dead letter has been sent.
+     * @param done Called once the broker answers, can be null.
+     */
+    public void publish(ProducerRecord<String, byte[]> record, Throwable error, int attempts, Callback done)
+    {
+        Headers headers = new RecordHeaders(record.headers().toArray());
+        addError(headers, error);
+        add(headers, DESTINATION_TOPIC_HEADER, record.topic());
+        add(headers, ATTEMPTS_HEADER, Integer.toString(attempts));
+
+        send(record.key(), record.value(), headers, done);
+    }
+
+    /**
+     * @return The topic the jobs go to.
+     */
+    public String getDeadLetterTopic()
+    {
+        return this.deadLetterTopic;
+    }
+
+    private void send(String key, byte[] value, Headers headers, Callback done)
+    {
+        this.sender.accept(new ProducerRecord<String, byte[]>(this.deadLetterTopic, null, key, value, headers), done);
+    }
+
+    private static void addError(Headers headers, Throwable error)
+    {
+        add(headers, ERROR_CLASS_HEADER, error.getClass().getName());
+        add(headers, ERROR_MESSAGE_HEADER, String.valueOf(error.getMessage()));
+    }
+
+    /**
+     * Replaces the header if the job already had it, like a dead letter that was fixed and sent back.
+     */
+    private static void add(Headers headers, String key, String value)
+    {
+        headers.remove(key);
+        headers.add(key, value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -2,8 +2,6 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.util.InputMismatchException;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 /**
  * This class represents a delivery job and the details of the job. I kept this as a separate class from the
  * rideshare class to enforce that these are 2 separate objects with separate responsibilities.
@@ -247,6 +245,25 @@ public class DeliveryJob implements Serializable
         this.item_size = calcSize(size);
     }
 
+    /**
+     * Sets the members that are normally derived from the addresses or set by the constructors, exactly as they
+     * were sent. Used by the codecs that rebuild a job field by field so the addresses don't get parsed again and
+     * the job comes back the same as it was, even if its city doesn't match its address.
+     */
+    void restore(String job_type, String to_address, String to_city, String to_state, String to_zipcode,
+                 String from_address, String from_city, String from_state, String from_zipcode)
+    {
+        this.job_type = job_type;
+        this.to_address = to_address;
+        this.to_city = to_city;
+        this.to_state = to_state;
+        this.to_zipcode = to_zipcode;
+        this.from_address = from_address;
+        this.from_city = from_city;
+        this.from_state = from_state;
+        this.from_zipcode = from_zipcode;
+    }
+
     /**
      * Determines what integer represents the item size. 'small' size = 1, 'medium' = 2, and 'large' = 3.
      * @param itemSize The size of the item. Valid sizes are 'small', 'medium' and 'large'
@@ -312,10 +329,9 @@ public class DeliveryJob implements Serializable
     {
         StringBuilder json = new StringBuilder();
 
-        ObjectMapper mapper = new ObjectMapper();
         try
         {
-            json.append(mapper.writerWithDefaultPrettyPrinter().writeValueAsString(this));
+            json.append(JobJsonCodec.toPrettyJson(this));
         }
         catch (IOException e)
         {
@@ -0,0 +1,553 @@
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.BusySpinWaitStrategy;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.EventTranslatorOneArg;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.SleepingWaitStrategy;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.WorkHandler;
+import com.lmax.disruptor.YieldingWaitStrategy;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Another way of running a SchoolToCityStream router that splits the work into a pipeline using the LMAX Disruptor.
+ * The consumer thread only polls and drops the raw records into a ring buffer. A pool of parsing handlers figure
+ * out where each job goes in parallel and one sending handler sends them in order. The consumer thread only commits
+ * a partition up to its oldest job that hasn't been acked yet (retries and dead letters included), so a job that is
+ * still being retried when we crash gets routed again instead of lost. This way a slow JSON parse or a full producer
+ * buffer doesn't hold up the poll loop (until the ring buffer fills up).
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see RecordEvent
+ * @see SchoolToCityStream
+ * @see "https://lmax-exchange.github.io/disruptor/user-guide/index.html"
+ */
+public class DisruptorRouter implements Runnable, ConsumerRebalanceListener
+{
+    private final SchoolToCityStream router;
+    private final Consumer<String, byte[]> schoolConsumer;
+    private final Disruptor<RecordEvent> disruptor;
+    private final SendHandler sendHandler;
+
+    // The jobs of every partition the sending handler has sent and that haven't been acked yet
+    private final Map<TopicPartition, PartitionOffsets> partitionOffsets = new ConcurrentHashMap<>();
+    // The generation each partition was last revoked in, guarded by itself so the sending handler can't start
+    // tracking a partition again while it is being taken away
+    private final Map<TopicPartition, Long> revokedIn = new HashMap<>();
+    private long generation = 0; // how many times we lost partitions, only the consumer thread touches it
+    private final AtomicInteger numInFlight = new AtomicInteger(0);
+    private final Object progress = new Object(); // notified when the sending handler catches up or the acks do
+
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final long ackTimeoutMs;
+
+    private static final long ACK_TIMEOUT_MS = 60000; // how long losing partitions waits on the jobs still in flight
+
+    public static void main(String[] args)
+    {
+        SchoolToCityStream router = new SchoolToCityStream("TX", "Texas A&M University",
+                "texas-am-university", "localhost:9092", "localhost:9092", "tx-school-city-redirect");
+
+        DisruptorRouter disruptorRouter = new DisruptorRouter(router, 4096, "yielding",
+                Math.max(1, Runtime.getRuntime().availableProcessors() - 2));
+        Runtime.getRuntime().addShutdownHook(new Thread(disruptorRouter::shutdown));
+
+        disruptorRouter.run();
+    }
+
+    /**
+     * Constructor for the disruptor router.
+     * @param router The router that decides where jobs go and owns the producer.
+     * @param ringSize The number of slots in the ring buffer. Must be a power of 2.
+     * @param waitStrategy How the handlers wait for new records. 'blocking', 'sleeping', 'yielding' or 'busyspin'.
+     * @param numParsers The number of handlers that parse and route jobs in parallel.
+     * @throws IllegalArgumentException Throws if the ring size, wait strategy, or number of parsers isn't valid.
+     */
+    public DisruptorRouter(SchoolToCityStream router, int ringSize, String waitStrategy, int numParsers)
+            throws IllegalArgumentException
+    {
+        this(router, ringSize, waitStrategy, numParsers, null);
+    }
+
+    /**
+     * Same as above but polls with a consumer that was already created.
+     * @param consumer The consumer for the school topic, null to create one from getConsumerProps().
+     */
+    DisruptorRouter(SchoolToCityStream router, int ringSize, String waitStrategy, int numParsers,
+                    Consumer<String, byte[]> consumer) throws IllegalArgumentException
+    {
+        this(router, ringSize, waitStrategy, numParsers, consumer, ACK_TIMEOUT_MS);
+    }
+
+    /**
+     * Same as above but with our own limit on how long losing partitions or shutting down waits for the handlers
+     * and the acks, so the tests don't have to wait a minute.
+     * @param ackTimeoutMs How long to wait, ACK_TIMEOUT_MS everywhere else.
+     */
+    DisruptorRouter(SchoolToCityStream router, int ringSize, String waitStrategy, int numParsers,
+                    Consumer<String, byte[]> consumer, long ackTimeoutMs) throws IllegalArgumentException
+    {
+        if (ringSize < 2 || Integer.bitCount(ringSize) != 1)
+            throw new IllegalArgumentException("The ring size must be a power of 2!");
+        if (numParsers < 1)
+            throw new IllegalArgumentException("There must be at least 1 parsing handler!");
+
+        this.router = router;
+        this.ackTimeoutMs = ackTimeoutMs;
+        this.schoolConsumer = consumer != null ? consumer : new KafkaConsumer<String, byte[]>(getConsumerProps());
+
+        AtomicInteger threadNum = new AtomicInteger();
+        ThreadFactory threads = runnable -> new Thread(runnable, "router-disruptor-" + threadNum.getAndIncrement());
+        this.disruptor = new Disruptor<RecordEvent>(RecordEvent.FACTORY, ringSize, threads,
+                ProducerType.SINGLE, getWaitStrategy(waitStrategy));
+
+        ParseHandler[] parsers = new ParseHandler[numParsers];
+        for (int i = 0; i < numParsers; i++)
+            parsers[i] = new ParseHandler();
+
+        this.sendHandler = new SendHandler();
+        this.disruptor.handleEventsWithWorkerPool(parsers).then(this.sendHandler);
+    }
+
+    /**
+     * Polls the school topic and publishes every record into the ring buffer until shutdown() is called.
+     */
+    public void run()
+    {
+        RingBuffer<RecordEvent> ringBuffer = this.disruptor.start();
+        this.router.getMetrics().registerConsumer(this.schoolConsumer);
+
+        try
+        {
+            this.router.subscribe(this.schoolConsumer, this);
+            while (!closed.get())
+            {
+                // Keep polling while the city brokers catch up so we stay in the group, just don't fetch anything
+                this.router.pauseWhileSaturated(this.schoolConsumer);
+                ConsumerRecords<String, byte[]> records = this.schoolConsumer.poll(Duration.ofMillis(500));
+
+                // One translator per poll, not per record, since it has to carry the poll time and generation
+                long polledAt = System.nanoTime();
+                long generation = this.generation;
+                EventTranslatorOneArg<RecordEvent, ConsumerRecord<String, byte[]>> translator =
+                        (event, sequence, rec) -> event.set(rec, polledAt, true, generation);
+                EventTranslatorOneArg<RecordEvent, ConsumerRecord<String, byte[]>> partTranslator =
+                        (event, sequence, rec) -> event.set(rec, polledAt, false, generation);
+
+                for (ConsumerRecord<String, byte[]> record : records)
+                    publish(ringBuffer, record, translator, partTranslator);
+
+                commitReady(false);
+            }
+        }
+        catch (WakeupException e)
+        {
+            // Ignore exception if closing
+            if (!closed.get())
+                throw e;
+        }
+        finally
+        {
+            // Let the handlers finish everything we already handed them before committing for the last time
+            this.disruptor.shutdown();
+            awaitAcks();
+            commitReady(true);
+            this.router.getMetrics().unregisterConsumer(this.schoolConsumer);
+            this.schoolConsumer.close();
+            this.router.closeClients();
+        }
+    }
+
+    /**
+     * Hands a record to the ring buffer, or every job in it if it is an envelope from a bulk producer (see
+     * JobBatch). An envelope that can't be unpacked is handed over as it is and ends up in the dead letter topic.
+     */
+    private void publish(RingBuffer<RecordEvent> ringBuffer, ConsumerRecord<String, byte[]> record,
+                         EventTranslatorOneArg<RecordEvent, ConsumerRecord<String, byte[]>> translator,
+                         EventTranslatorOneArg<RecordEvent, ConsumerRecord<String, byte[]>> partTranslator)
+    {
+        if (!JobBatch.isBatch(record.value()))
+        {
+            ringBuffer.publishEvent(translator, record);
+            return;
+        }
+
+        List<ConsumerRecord<String, byte[]>> jobs;
+        try
+        {
+            jobs = JobBatch.unpack(record);
+        }
+        catch (IllegalArgumentException e)
+        {
+            ringBuffer.publishEvent(translator, record);
+            return;
+        }
+
+        for (int i = 0; i < jobs.size(); i++)
+            ringBuffer.publishEvent(i == jobs.size() - 1 ? translator : partTranslator, jobs.get(i));
+    }
+
+    /**
+     * Stops the router. The consumer thread drains the ring buffer, commits and closes everything.
+     */
+    public void shutdown()
+    {
+        this.closed.set(true);
+        this.schoolConsumer.wakeup();
+    }
+
+    /**
+     * Before we lose partitions we need to wait for the handlers to send everything we already polled and for the
+     * brokers to ack it so we can commit it. Otherwise whoever gets the partitions next would route those jobs again.
+     * Jobs that still aren't sent and acked after the ack timeout aren't committed, the next owner routes them again.
+     * Whatever is still in the ring buffer for the partitions by then gets thrown away by the sending handler
+     * instead of being sent and tracked for a partition we no longer own.
+     * @param partitions The partitions being taken away.
+     */
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions)
+    {
+        long cursor = this.disruptor.getRingBuffer().getCursor();
+        long deadline = System.currentTimeMillis() + this.ackTimeoutMs;
+        try
+        {
+            synchronized (this.progress)
+            {
+                long left;
+                while (this.sendHandler.handled < cursor && (left = deadline - System.currentTimeMillis()) > 0)
+                    this.progress.wait(left);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        awaitAcks();
+        commitReady(true);
+
+        synchronized (this.revokedIn)
+        {
+            for (TopicPartition partition : partitions)
+            {
+                this.revokedIn.put(partition, this.generation);
+                this.partitionOffsets.remove(partition);
+            }
+        }
+        this.generation++;
+    }
+
+    @Override
+    public void onPartitionsAssigned(Collection<TopicPartition> partitions)
+    {
+        /* Nothing to do, we start from the committed offsets */
+    }
+
+    /**
+     * Sets the properties for the consumer. Same as the router's but we commit ourselves once the jobs are sent.
+     * @return The properties needed to start consuming from the school topic.
+     */
+    public Properties getConsumerProps()
+    {
+        Properties props = this.router.getConsumerProps();
+        props.setProperty(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+
+        return props;
+    }
+
+    /**
+     * Turns the name of a wait strategy into the Disruptor's wait strategy.
+     * @param name 'blocking' uses the least cpu, 'sleeping' and 'yielding' trade cpu for latency and 'busyspin'
+     *      has the lowest latency but burns a whole core per handler.
+     * @return The wait strategy.
+     * @throws IllegalArgumentException Throws if the name isn't one of the wait strategies.
+     */
+    public static WaitStrategy getWaitStrategy(String name) throws IllegalArgumentException
+    {
+        switch (name.toLowerCase().trim())
+        {
+            case "blocking":
+                return new BlockingWaitStrategy();
+            case "sleeping":
+                return new SleepingWaitStrategy();
+            case "yielding":
+                return new YieldingWaitStrategy();
+            case "busyspin":
+                return new BusySpinWaitStrategy();
+            default:
+                throw new IllegalArgumentException("Wait strategy must be 'blocking', 'sleeping', 'yielding' or 'busyspin'!");
+        }
+    }
+
+    /**
+     * Commits every partition up to its oldest job that hasn't been acked. Must be called from the consumer thread.
+     * @param sync True to wait for the commit to finish. Used when shutting down or losing partitions.
+     */
+    private void commitReady(boolean sync)
+    {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (Map.Entry<TopicPartition, PartitionOffsets> entry : this.partitionOffsets.entrySet())
+        {
+            long offset = entry.getValue().nextCommit();
+            if (offset >= 0)
+                offsets.put(entry.getKey(), new OffsetAndMetadata(offset));
+        }
+
+        if (offsets.isEmpty())
+            return;
+
+        if (sync)
+            this.schoolConsumer.commitSync(offsets);
+        else
+            this.schoolConsumer.commitAsync(offsets, null);
+    }
+
+    /**
+     * Sends everything the producer is holding onto and waits (up to the ack timeout) for the brokers to answer for
+     * every job in flight, including the ones being retried or dead lettered.
+     */
+    private void awaitAcks()
+    {
+        this.router.flush();
+
+        long deadline = System.currentTimeMillis() + this.ackTimeoutMs;
+        try
+        {
+            synchronized (this.progress)
+            {
+                long left;
+                while (this.numInFlight.get() > 0 && (left = deadline - System.currentTimeMillis()) > 0)
+                    this.progress.wait(left);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Figures out where a job goes. The ring buffer hands each record to exactly one of these.
+     */
+    private class ParseHandler implements WorkHandler<RecordEvent>
+    {
+        private final RoutingExtractor extractor = new RoutingExtractor();
+
+        @Override
+        public void onEvent(RecordEvent event)
+        {
+            try
+            {
+                ConsumerRecord<String, byte[]> record = event.getRecord();
+                if (JobBatch.isBatch(record.value()))
+                    JobBatch.unpack(record); // only an envelope that didn't unpack gets here, this throws why
+
+                RoutingFields fields = router.extractFields(this.extractor, record.headers(), record.value());
+                String topic = router.getDestinationTopic(fields);
+                event.setRoute(topic, router.getDestinationPartition(topic, fields), fields.getCustomer_id());
+            }
+            catch (RuntimeException e)
+            {
+                event.setError(e);
+            }
+        }
+    }
+
+    /**
+     * Sends the routed jobs in the order they were polled and keeps track of the ones that haven't been acked.
+     *
+     * The batching is left to the producer on purpose. A send only appends the job to its partition's batch in the
+     * producer's buffer, and the producer's own thread ships the batches once they fill up or linger.ms is over
+     * (which the AdaptiveBatchingController tunes to the load). Holding the jobs until endOfBatch to send them
+     * together wouldn't put any more of them in a request, and flushing at endOfBatch would wait on the brokers
+     * and cut every batch down to whatever the ring buffer had in it. endOfBatch is only used to tell whoever is
+     * waiting on us that we caught up.
+     */
+    private class SendHandler implements EventHandler<RecordEvent>
+    {
+        private volatile long handled = -1; // the sequence of the last event we are done with
+
+        @Override
+        public void onEvent(RecordEvent event, long sequence, boolean endOfBatch)
+        {
+            ConsumerRecord<String, byte[]> record = event.getRecord();
+            PartitionOffsets offsets = offsetsOf(event);
+            long offset = record.offset();
+
+            if (offsets == null)
+            {
+                // Polled before its partition was taken away, the next owner routes it again
+            }
+            else if (event.getError() != null)
+            {
+                // Bad jobs go to the dead letter topic and we keep going
+                router.getDeadLetters().publish(record, event.getError(), inFlight(offsets, offset));
+            }
+            else if (!alreadySent(record.value()))
+            {
+                // A job for a topic that is still being created waits in the topic creator, not in here
+                Callback done = inFlight(offsets, offset);
+                try
+                {
+                    router.sendWhenCreated(new ProducerRecord<String, byte[]>(event.getTopic(), event.getPartition(),
+                            event.getKey(), record.value(), record.headers()), event.getPolledAt(), done);
+                }
+                catch (RuntimeException e)
+                {
+                    router.getDeadLetters().publish(record, e, done);
+                }
+                router.getSchoolThroughput().record(record.topic());
+            }
+
+            // The jobs of an envelope share its offset, it isn't done until its last job is
+            if (offsets != null)
+                offsets.handled(offset, event.isLastOfRecord());
+            event.clear();
+
+            this.handled = sequence;
+            if (endOfBatch)
+            {
+                synchronized (progress)
+                {
+                    progress.notifyAll();
+                }
+            }
+        }
+
+        /**
+         * @return The offsets of the job's partition, or null if the partition was revoked after the job was polled.
+         */
+        private PartitionOffsets offsetsOf(RecordEvent event)
+        {
+            ConsumerRecord<String, byte[]> record = event.getRecord();
+            TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+
+            synchronized (revokedIn)
+            {
+                Long revoked = revokedIn.get(partition);
+                if (revoked != null && event.getGeneration() <= revoked)
+                    return null;
+
+                return partitionOffsets.computeIfAbsent(partition, key -> new PartitionOffsets());
+            }
+        }
+
+        /**
+         * Counts the job as in flight until the callback is called.
+         * @return The callback for the send (or dead letter) of the job.
+         */
+        private Callback inFlight(PartitionOffsets offsets, long offset)
+        {
+            offsets.sent(offset);
+            numInFlight.incrementAndGet();
+
+            return (metadata, error) -> {
+                // A dead letter that couldn't be sent was already logged, there is nothing left to wait on
+                offsets.acked(offset);
+                if (numInFlight.decrementAndGet() == 0)
+                {
+                    synchronized (progress)
+                    {
+                        progress.notifyAll();
+                    }
+                }
+            };
+        }
+
+        /**
+         * Checks the job against the router's deduplicator and remembers it if it is new. Only this thread sends,
+         * so nothing can slip in between the check and remembering the job.
+         * @return True if we already sent this job.
+         */
+        private boolean alreadySent(byte[] job)
+        {
+            JobDeduplicator dedup = router.getDeduplicator();
+            if (dedup == null)
+                return false;
+
+            long fingerprint = JobDeduplicator.fingerprint(job);
+            if (dedup.isDuplicate(fingerprint))
+            {
+                router.getMetrics().recordDuplicate();
+                return true;
+            }
+
+            dedup.add(fingerprint);
+            return false;
+        }
+    }
+
+    /**
+     * The offsets of one school partition whose jobs were sent but not acked yet. Newer jobs can be acked before
+     * older ones (like one that is being retried) so only the offsets below the oldest one still out are safe to
+     * commit. Called by the sending handler, the producer's thread, the retry thread and the consumer thread.
+     */
+    private static class PartitionOffsets
+    {
+        private final TreeMap<Long, Integer> inFlight = new TreeMap<>(); // offset to the number of its jobs still out
+        private long next = -1; // the offset after the last one the sending handler finished
+        private long committed = -1; // starts at the first offset we see, which was committed before we got it
+
+        synchronized void sent(long offset)
+        {
+            if (this.committed < 0)
+                this.committed = offset;
+            this.inFlight.merge(offset, 1, Integer::sum);
+        }
+
+        synchronized void acked(long offset)
+        {
+            this.inFlight.computeIfPresent(offset, (key, left) -> left == 1 ? null : left - 1);
+        }
+
+        /**
+         * @param lastOfRecord False for every job of an envelope but the last, the envelope isn't done until it is.
+         */
+        synchronized void handled(long offset, boolean lastOfRecord)
+        {
+            if (this.committed < 0)
+                this.committed = offset;
+            this.next = lastOfRecord ? offset + 1 : offset;
+        }
+
+        /**
+         * @return The offset to commit, or -1 if nothing new has been acked since the last commit.
+         */
+        synchronized long nextCommit()
+        {
+            long safe = this.inFlight.isEmpty() ? this.next : Math.min(this.inFlight.firstKey(), this.next);
+            if (safe <= this.committed)
+                return -1;
+
+            this.committed = safe;
+            return safe;
+        }
+    }
+}
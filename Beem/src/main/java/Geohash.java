@@ -0,0 +1,182 @@
+import java.util.Arrays;
+
+/**
+ * Geohashes split the map into a grid of cells where every extra character splits a cell into 32 smaller ones, so
+ * places close together share a prefix. At 5 characters a cell is about 4.9km by 4.9km, roughly a neighborhood.
+ * Ex - College Station is in '9vk1m'
+ *
+ * Besides the usual base 32 string this can also give the cell as a long (5 bits per character) so the
+ * partitioner can use it without creating a String for every job.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see CityPartitioner
+ * @see "https://en.wikipedia.org/wiki/Geohash"
+ */
+public final class Geohash
+{
+    public static final int MAX_PRECISION = 12; // 60 bits, still fits in a long
+
+    private static final char[] BASE_32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+    private static final int[] DECODE = new int[128];
+    static {
+        Arrays.fill(DECODE, -1);
+        for (int i = 0; i < BASE_32.length; i++)
+            DECODE[BASE_32[i]] = i;
+    }
+
+    private Geohash()
+    {
+        /* Only static helpers */
+    }
+
+    /**
+     * Gets the cell the coordinates are in as a long. Bits alternate between longitude and latitude, starting
+     * with longitude, exactly like the characters of the string.
+     * @param latitude Between -90 and 90.
+     * @param longitude Between -180 and 180.
+     * @param precision The number of characters the cell would have as a string, 1 to 12.
+     * @return The cell's bits.
+     * @throws IllegalArgumentException Throws if the coordinates or precision aren't valid.
+     */
+    public static long toBits(double latitude, double longitude, int precision) throws IllegalArgumentException
+    {
+        checkPrecision(precision);
+        if (!Address.isValidLatitude(latitude) || !Address.isValidLongitude(longitude))
+            throw new IllegalArgumentException("The coordinates are not valid!");
+
+        double minLat = -90, maxLat = 90;
+        double minLon = -180, maxLon = 180;
+        long bits = 0;
+
+        for (int i = 0; i < precision * 5; i++)
+        {
+            bits <<= 1;
+            if ((i & 1) == 0)
+            {
+                double mid = (minLon + maxLon) / 2;
+                if (longitude >= mid)
+                {
+                    bits |= 1;
+                    minLon = mid;
+                }
+                else
+                    maxLon = mid;
+            }
+            else
+            {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid)
+                {
+                    bits |= 1;
+                    minLat = mid;
+                }
+                else
+                    maxLat = mid;
+            }
+        }
+
+        return bits;
+    }
+
+    /**
+     * Turns a geohash string back into the cell's bits.
+     * @param geohash The geohash. Ex - 9vk1m
+     * @return The cell's bits, the same as toBits() for any point in the cell.
+     * @throws IllegalArgumentException Throws if the geohash is empty, too long or has a character that isn't used.
+     */
+    public static long toBits(String geohash) throws IllegalArgumentException
+    {
+        if (geohash == null)
+            throw new IllegalArgumentException("The geohash is empty!");
+        checkPrecision(geohash.length());
+
+        long bits = 0;
+        for (int i = 0; i < geohash.length(); i++)
+        {
+            char c = Character.toLowerCase(geohash.charAt(i));
+            int value = c < DECODE.length ? DECODE[c] : -1;
+            if (value < 0)
+                throw new IllegalArgumentException("'" + geohash.charAt(i) + "' is not a geohash character!");
+
+            bits = (bits << 5) | value;
+        }
+
+        return bits;
+    }
+
+    /**
+     * @param latitude Between -90 and 90.
+     * @param longitude Between -180 and 180.
+     * @param precision The number of characters, 1 to 12.
+     * @return The geohash of the cell the coordinates are in. Ex - 9vk1m
+     * @throws IllegalArgumentException Throws if the coordinates or precision aren't valid.
+     */
+    public static String encode(double latitude, double longitude, int precision) throws IllegalArgumentException
+    {
+        long bits = toBits(latitude, longitude, precision);
+
+        char[] geohash = new char[precision];
+        for (int i = precision - 1; i >= 0; i--)
+        {
+            geohash[i] = BASE_32[(int) (bits & 31)];
+            bits >>>= 5;
+        }
+
+        return new String(geohash);
+    }
+
+    /**
+     * @param bits The cell's bits, from toBits().
+     * @param precision The number of characters the cell has as a string, 1 to 12.
+     * @return The latitude of the middle of the cell.
+     * @throws IllegalArgumentException Throws if the precision isn't valid.
+     */
+    public static double latitude(long bits, int precision) throws IllegalArgumentException
+    {
+        return center(bits, precision, false);
+    }
+
+    /**
+     * @param bits The cell's bits, from toBits().
+     * @param precision The number of characters the cell has as a string, 1 to 12.
+     * @return The longitude of the middle of the cell.
+     * @throws IllegalArgumentException Throws if the precision isn't valid.
+     */
+    public static double longitude(long bits, int precision) throws IllegalArgumentException
+    {
+        return center(bits, precision, true);
+    }
+
+    /**
+     * Walks the bits of one of the coordinates the same way toBits() split them.
+     */
+    private static double center(long bits, int precision, boolean longitude) throws IllegalArgumentException
+    {
+        checkPrecision(precision);
+
+        double min = longitude ? -180 : -90;
+        double max = longitude ? 180 : 90;
+        int total = precision * 5;
+
+        // Longitude has the even bits counting from the top, latitude the odd ones
+        for (int i = longitude ? 0 : 1; i < total; i += 2)
+        {
+            double mid = (min + max) / 2;
+            if (((bits >>> (total - 1 - i)) & 1) != 0)
+                min = mid;
+            else
+                max = mid;
+        }
+
+        return (min + max) / 2;
+    }
+
+    private static void checkPrecision(int precision) throws IllegalArgumentException
+    {
+        if (precision < 1 || precision > MAX_PRECISION)
+            throw new IllegalArgumentException("The precision must be between 1 and " + MAX_PRECISION + "!");
+    }
+}
@@ -0,0 +1,457 @@
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * An envelope that carries many jobs in one record, for bulk producers (a campus move out can send thousands of
+ * small jobs at once). Every job keeps its own key and headers inside the envelope, so the router unpacks it and
+ * routes each job exactly like it would have if the job had come in its own record. The envelope can be compressed
+ * as a whole, similar jobs compress a lot better together than one at a time.
+ *
+ * The format, version 1: the magic byte 0xBA, the version, the compression (0 = none, 1 = deflate, 2 = LZ4), a
+ * varint of the length of the jobs before compression and then the jobs, compressed or not. The jobs are a varint
+ * of how many there are and then for each job its key, a varint of how many headers it has, each header's key and
+ * value, and the job itself. Keys and values are a varint of their length plus 1 (0 is null) and then the bytes,
+ * same as the strings in BinaryJobCodec. No JSON text (and no BinaryJobCodec job) can start with 0xBA, so an envelope
+ * can't be mistaken for a job.
+ *
+ * An envelope is filled up by one thread at a time, unpacking is safe from every thread.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see JobCreator#JobCreator(String, int, int, Compression)
+ */
+public class JobBatch
+{
+    public static final byte MAGIC = (byte) 0xBA;
+    public static final byte VERSION = 1;
+
+    // Unpacking never trusts the sizes in an envelope past this, a bad or hostile envelope can't take all the memory
+    public static final int MAX_BATCH_BYTES = 64 * 1024 * 1024;
+
+    /**
+     * How the jobs in an envelope are compressed. The order is the format, it can only grow.
+     */
+    public enum Compression
+    {
+        NONE,
+        DEFLATE, // smallest, for producers on a slow link
+        LZ4      // cheapest to unpack, the router pays for every envelope it reads
+    }
+
+    private final Compression compression;
+    private final List<String> keys = new ArrayList<>();
+    private final List<Headers> headers = new ArrayList<>();
+    private final List<byte[]> jobs = new ArrayList<>();
+    private int sizeInBytes = 0;
+
+    /**
+     * Constructor for an empty envelope.
+     * @param compression How to compress the jobs when the envelope is written.
+     * @throws IllegalArgumentException Throws if the compression is null.
+     */
+    public JobBatch(Compression compression) throws IllegalArgumentException
+    {
+        if (compression == null)
+            throw new IllegalArgumentException("The compression can't be null, use NONE!");
+
+        this.compression = compression;
+    }
+
+    /**
+     * Adds a job to the envelope.
+     * @param key The key the job would have had in its own record, the router keys it by its customer id anyway.
+     * @param headers The job's headers, like its routing headers. Can be null.
+     * @param job The serialized job.
+     * @throws IllegalArgumentException Throws if the job is null.
+     */
+    public void add(String key, Headers headers, byte[] job) throws IllegalArgumentException
+    {
+        if (job == null)
+            throw new IllegalArgumentException("Can't put a null job in a batch!");
+
+        this.keys.add(key);
+        this.headers.add(headers);
+        this.jobs.add(job);
+        this.sizeInBytes += sizeOf(key, headers, job);
+    }
+
+    /**
+     * Roughly how many bytes a job takes up in the envelope before compression, close enough to decide when it's full.
+     */
+    private static int sizeOf(String key, Headers headers, byte[] job)
+    {
+        int size = job.length + 3 + (key == null ? 0 : key.length());
+        if (headers != null)
+        {
+            for (Header header : headers)
+                size += header.key().length() + (header.value() == null ? 0 : header.value().length) + 2;
+        }
+
+        return size;
+    }
+
+    /**
+     * Writes the envelope. The envelope can still be added to or cleared afterwards.
+     * @return The envelope as the value of a record.
+     */
+    public byte[] toBytes()
+    {
+        BinaryJobCodec.Writer out = new BinaryJobCodec.Writer();
+        out.writeVarint(this.jobs.size());
+        for (int i = 0; i < this.jobs.size(); i++)
+        {
+            out.writeString(this.keys.get(i));
+
+            Headers jobHeaders = this.headers.get(i);
+            Header[] array = jobHeaders == null ? new Header[0] : jobHeaders.toArray();
+            out.writeVarint(array.length);
+            for (Header header : array)
+            {
+                out.writeString(header.key());
+                out.writeBytes(header.value());
+            }
+
+            out.writeBytes(this.jobs.get(i));
+        }
+        byte[] body = out.toByteArray();
+
+        BinaryJobCodec.Writer envelope = new BinaryJobCodec.Writer();
+        envelope.writeByte(MAGIC);
+        envelope.writeByte(VERSION);
+        envelope.writeByte((byte) this.compression.ordinal());
+        envelope.writeVarint(body.length);
+        byte[] prefix = envelope.toByteArray();
+
+        switch (this.compression)
+        {
+            case DEFLATE:
+                return deflate(prefix, body);
+            case LZ4:
+                return compressLz4(prefix, body);
+            default:
+                byte[] bytes = Arrays.copyOf(prefix, prefix.length + body.length);
+                System.arraycopy(body, 0, bytes, prefix.length, body.length);
+                return bytes;
+        }
+    }
+
+    private static byte[] deflate(byte[] prefix, byte[] body)
+    {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try
+        {
+            deflater.setInput(body);
+            deflater.finish();
+
+            byte[] bytes = Arrays.copyOf(prefix, prefix.length + body.length / 2 + 64);
+            int length = prefix.length;
+            while (!deflater.finished())
+            {
+                if (length == bytes.length)
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                length += deflater.deflate(bytes, length, bytes.length - length);
+            }
+
+            return Arrays.copyOf(bytes, length);
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+
+    private static byte[] compressLz4(byte[] prefix, byte[] body)
+    {
+        LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+        byte[] bytes = Arrays.copyOf(prefix, prefix.length + compressor.maxCompressedLength(body.length));
+        int length = compressor.compress(body, 0, body.length, bytes, prefix.length, bytes.length - prefix.length);
+
+        return Arrays.copyOf(bytes, prefix.length + length);
+    }
+
+    /**
+     * Empties the envelope so it can be filled again.
+     */
+    public void clear()
+    {
+        this.keys.clear();
+        this.headers.clear();
+        this.jobs.clear();
+        this.sizeInBytes = 0;
+    }
+
+    /**
+     * @param value The value of a record.
+     * @return True if it is an envelope and not a single job.
+     */
+    public static boolean isBatch(byte[] value)
+    {
+        return value != null && value.length > 0 && value[0] == MAGIC;
+    }
+
+    /**
+     * Unpacks an envelope into a record for each of its jobs, in the order they were added. Each one has the topic,
+     * partition, offset and timestamp of the envelope, the job's own key and value, and the envelope's headers
+     * followed by the job's own. A record that isn't an envelope comes back by itself, so a consumer can run every
+     * record through here.
+     * @param record The record we consumed.
+     * @return The jobs in it.
+     * @throws IllegalArgumentException Throws if it's an envelope we can't read.
+     */
+    public static List<ConsumerRecord<String, byte[]>> unpack(ConsumerRecord<String, byte[]> record)
+            throws IllegalArgumentException
+    {
+        if (!isBatch(record.value()))
+            return Collections.singletonList(record);
+
+        BinaryJobCodec.Reader in = new BinaryJobCodec.Reader(body(record.value()));
+        try
+        {
+            int count = readCount(in);
+            List<ConsumerRecord<String, byte[]>> jobs = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+            {
+                String key = in.readString();
+
+                Headers headers = new RecordHeaders();
+                for (Header header : record.headers())
+                    headers.add(header);
+                int numHeaders = readCount(in);
+                for (int h = 0; h < numHeaders; h++)
+                    headers.add(in.readString(), in.readBytes());
+
+                byte[] job = in.readBytes();
+                if (job == null)
+                    throw new IllegalArgumentException("The batch has a null job in it!");
+
+                jobs.add(new ConsumerRecord<String, byte[]>(record.topic(), record.partition(), record.offset(),
+                        record.timestamp(), record.timestampType(), null,
+                        key == null ? -1 : key.getBytes(StandardCharsets.UTF_8).length, job.length, key, job,
+                        headers));
+            }
+
+            if (in.remaining() != 0)
+                throw new IllegalArgumentException("The batch has " + in.remaining() + " bytes left after its jobs!");
+
+            return jobs;
+        }
+        catch (SerializationException e)
+        {
+            throw new IllegalArgumentException("The batch is cut off!", e);
+        }
+    }
+
+    /**
+     * Same as above for consumers (like Streams) that only see the value.
+     * @param value The value of a record.
+     * @return The jobs in it, or the value by itself if it isn't an envelope.
+     * @throws IllegalArgumentException Throws if it's an envelope we can't read.
+     */
+    public static List<byte[]> unpackValues(byte[] value) throws IllegalArgumentException
+    {
+        if (!isBatch(value))
+            return Collections.singletonList(value);
+
+        BinaryJobCodec.Reader in = new BinaryJobCodec.Reader(body(value));
+        try
+        {
+            int count = readCount(in);
+            List<byte[]> jobs = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+            {
+                in.readString();
+                int numHeaders = readCount(in);
+                for (int h = 0; h < numHeaders; h++)
+                {
+                    in.skipString();
+                    in.skipString();
+                }
+
+                byte[] job = in.readBytes();
+                if (job == null)
+                    throw new IllegalArgumentException("The batch has a null job in it!");
+                jobs.add(job);
+            }
+
+            if (in.remaining() != 0)
+                throw new IllegalArgumentException("The batch has " + in.remaining() + " bytes left after its jobs!");
+
+            return jobs;
+        }
+        catch (SerializationException e)
+        {
+            throw new IllegalArgumentException("The batch is cut off!", e);
+        }
+    }
+
+    /**
+     * A count can't be more than the bytes left, every job and header takes at least one.
+     */
+    private static int readCount(BinaryJobCodec.Reader in) throws IllegalArgumentException
+    {
+        long count = in.readVarint();
+        if (count > in.remaining())
+            throw new IllegalArgumentException("The batch says it has " + count + " entries but is too short for them!");
+
+        return (int) count;
+    }
+
+    /**
+     * @return The jobs of the envelope, uncompressed.
+     * @throws IllegalArgumentException Throws if it isn't an envelope we can read.
+     */
+    private static byte[] body(byte[] value) throws IllegalArgumentException
+    {
+        BinaryJobCodec.Reader in = new BinaryJobCodec.Reader(value);
+        int compression;
+        long length;
+        try
+        {
+            in.readByte(); // magic
+
+            int version = in.readByte();
+            if (version != VERSION)
+                throw new IllegalArgumentException("Can't read version " + version + " of the batch format, only up to "
+                        + VERSION + "!");
+
+            compression = in.readByte();
+            length = in.readVarint();
+        }
+        catch (SerializationException e)
+        {
+            throw new IllegalArgumentException("The batch is cut off!", e);
+        }
+
+        if (length > MAX_BATCH_BYTES)
+            throw new IllegalArgumentException("The batch says it's " + length + " bytes, more than the "
+                    + MAX_BATCH_BYTES + " we unpack!");
+
+        int start = in.getPosition();
+        if (compression == Compression.NONE.ordinal())
+        {
+            if (length != value.length - start)
+                throw new IllegalArgumentException("The batch should be " + length + " bytes but is "
+                        + (value.length - start) + "!");
+            return Arrays.copyOfRange(value, start, value.length);
+        }
+
+        if (compression == Compression.DEFLATE.ordinal())
+            return inflate(value, start, (int) length);
+
+        if (compression == Compression.LZ4.ordinal())
+            return decompressLz4(value, start, (int) length);
+
+        throw new IllegalArgumentException("Unknown compression " + compression + " on the batch!");
+    }
+
+    private static byte[] inflate(byte[] value, int start, int length) throws IllegalArgumentException
+    {
+        Inflater inflater = new Inflater(true);
+        try
+        {
+            inflater.setInput(value, start, value.length - start);
+
+            // One byte of room past the length to catch an envelope that inflates to more than it says
+            byte[] body = new byte[length + 1];
+            int read = 0;
+            while (read < body.length && !inflater.finished())
+            {
+                int n = inflater.inflate(body, read, body.length - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                read += n;
+            }
+
+            if (read != length || !inflater.finished() || inflater.getRemaining() != 0)
+                throw new IllegalArgumentException("The batch should be " + length + " bytes but didn't inflate to that!");
+
+            return Arrays.copyOf(body, length);
+        }
+        catch (DataFormatException e)
+        {
+            throw new IllegalArgumentException("The batch isn't valid deflate: " + e.getMessage(), e);
+        }
+        finally
+        {
+            inflater.end();
+        }
+    }
+
+    private static byte[] decompressLz4(byte[] value, int start, int length) throws IllegalArgumentException
+    {
+        try
+        {
+            byte[] body = new byte[length];
+            int read = LZ4Factory.fastestInstance().safeDecompressor().decompress(value, start, value.length - start,
+                    body, 0, length);
+            if (read != length)
+                throw new IllegalArgumentException("The batch should be " + length + " bytes but is " + read + "!");
+
+            return body;
+        }
+        catch (LZ4Exception e)
+        {
+            throw new IllegalArgumentException("The batch isn't valid LZ4: " + e.getMessage(), e);
+        }
+    }
+
+    /** Getters */
+
+    public Compression getCompression()
+    {
+        return this.compression;
+    }
+
+    /**
+     * @return How many jobs are in the envelope.
+     */
+    public int getCount()
+    {
+        return this.jobs.size();
+    }
+
+    /**
+     * @return Roughly how big the envelope is before compression.
+     */
+    public int getSizeInBytes()
+    {
+        return this.sizeInBytes;
+    }
+
+    public boolean isEmpty()
+    {
+        return this.jobs.isEmpty();
+    }
+
+    List<String> getKeys()
+    {
+        return this.keys;
+    }
+
+    List<Headers> getHeaders()
+    {
+        return this.headers;
+    }
+
+    List<byte[]> getJobs()
+    {
+        return this.jobs;
+    }
+}
@@ -1,12 +1,48 @@
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.utils.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class JobCreator
 {
+    private static final Logger logger = LoggerFactory.getLogger(JobCreator.class);
+
+    /** How long a job waits in an envelope that isn't full when no linger is given. */
+    public static final long DEFAULT_LINGER_MS = 100;
+
     String topic;
-    Producer<String, String> producer;
+    Producer<String, byte[]> producer;
+    KafkaJsonSerializer<Object> serializer = new KafkaJsonSerializer<>();
+
+    // Batching (see JobBatch), off unless the batching constructor is used. One envelope is filled per school
+    // partition so a customer's jobs stay in one partition and in order, like they would without batching. The
+    // partition count is read again from the producer's metadata every linger, so envelopes follow the partitions
+    // the producer would pick once partitions are added.
+    private final int maxBatchJobs;
+    private final int maxBatchBytes;
+    private final long lingerMs;
+    private final JobBatch.Compression compression;
+    private final Map<Integer, PendingBatch> batches = new HashMap<>();
+    private long nextLingerDeadline = Long.MAX_VALUE; // when the oldest envelope that isn't empty has to go
+    private ScheduledExecutorService lingerer; // sends lingering envelopes, keeps the partition count up to date
+    private int numPartitions = 0;
 
     /** Main method for testing **/
     public static void main(String[] args)
@@ -19,9 +55,80 @@ public class JobCreator
      */
     public JobCreator(String topic)
     {
+        this(topic, 1, 0, JobBatch.Compression.NONE);
+    }
+
+    /**
+     * Constructor for a bulk producer that lingers DEFAULT_LINGER_MS, see below.
+     * @param topic The school topic.
+     * @param maxJobs The most jobs in one envelope. 1 turns batching off.
+     * @param maxBytes The most bytes in one envelope before compression.
+     * @param compression How to compress each envelope.
+     * @throws IllegalArgumentException Throws if maxJobs is less than 1, maxBytes is too small for a batch or the
+     *      compression is null.
+     */
+    public JobCreator(String topic, int maxJobs, int maxBytes, JobBatch.Compression compression)
+            throws IllegalArgumentException
+    {
+        this(topic, maxJobs, maxBytes, DEFAULT_LINGER_MS, compression);
+    }
+
+    /**
+     * Constructor for a bulk producer. Jobs sent with sendJob() are packed into envelopes of up to maxJobs jobs or
+     * maxBytes bytes (whichever comes first) and every envelope goes out as one record, so thousands of small jobs
+     * don't each pay for their own record. The router unpacks them and routes every job on its own key and headers.
+     *
+     * An envelope that doesn't fill up is sent lingerMs after its first job went in, like the producer's own
+     * linger.ms, so a quiet producer's futures still complete. The deadline is checked on every sendJob() and by
+     * a background thread for when nothing is being sent. flush() sends every envelope right away.
+     * @param topic The school topic.
+     * @param maxJobs The most jobs in one envelope. 1 turns batching off.
+     * @param maxBytes The most bytes in one envelope before compression.
+     * @param lingerMs The longest a job waits in an envelope that isn't full.
+     * @param compression How to compress each envelope.
+     * @throws IllegalArgumentException Throws if maxJobs is less than 1, maxBytes is too small for a batch, lingerMs
+     *      is less than 1 or the compression is null.
+     */
+    public JobCreator(String topic, int maxJobs, int maxBytes, long lingerMs, JobBatch.Compression compression)
+            throws IllegalArgumentException
+    {
+        this(topic, maxJobs, maxBytes, lingerMs, compression, null);
+    }
+
+    /**
+     * Same as above but sends with the given producer. Mostly for the tests.
+     */
+    JobCreator(String topic, int maxJobs, int maxBytes, long lingerMs, JobBatch.Compression compression,
+               Producer<String, byte[]> producer) throws IllegalArgumentException
+    {
+        if (maxJobs < 1)
+            throw new IllegalArgumentException("An envelope has to hold at least 1 job, not " + maxJobs + "!");
+        if (maxJobs > 1 && (maxBytes < 1 || maxBytes > JobBatch.MAX_BATCH_BYTES))
+            throw new IllegalArgumentException("The most bytes in an envelope has to be between 1 and "
+                    + JobBatch.MAX_BATCH_BYTES + ", not " + maxBytes + "!");
+        if (maxJobs > 1 && lingerMs < 1)
+            throw new IllegalArgumentException("An envelope has to linger at least 1 ms, not " + lingerMs + "!");
+        if (compression == null)
+            throw new IllegalArgumentException("The compression can't be null, use NONE!");
+
+        this.maxBatchJobs = maxJobs;
+        this.maxBatchBytes = maxBytes;
+        this.lingerMs = lingerMs;
+        this.compression = compression;
+
         // Create a producer with our properties from configProps()
         this.topic = topic;
-        this.producer = new KafkaProducer<String, String>(configProps());
+        this.producer = producer != null ? producer : new KafkaProducer<String, byte[]>(configProps());
+
+        if (maxJobs > 1)
+        {
+            this.lingerer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "job-creator-linger");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.lingerer.scheduleWithFixedDelay(this::lingerQuietly, lingerMs, lingerMs, TimeUnit.MILLISECONDS);
+        }
 
         // producer.send(new ProducerRecord<String, String>(topic, )
     }
@@ -34,8 +141,8 @@ public class JobCreator
         Thread.currentThread().setContextClassLoader(null);
         for(int i = 0; i < 10; i++)
         {
-            ProducerRecord<String, String> message = new ProducerRecord<String, String>(topic,
-                    Integer.toString(i), Integer.toString(i));
+            ProducerRecord<String, byte[]> message = new ProducerRecord<String, byte[]>(topic,
+                    Integer.toString(i), Integer.toString(i).getBytes(StandardCharsets.UTF_8));
             System.out.println(message);
             producer.send(message);
         }
@@ -44,6 +151,204 @@ public class JobCreator
         producer.close();
     }
 
+    /**
+     * Sends a job to the school topic as JSON, keyed by its customer id. The record gets the job's routing headers
+     * (see RoutingHeaders) so the router can route it without reading the JSON. When batching, the job goes into
+     * the envelope for its partition instead and is sent once the envelope is full, it has lingered long enough or
+     * flush() is called.
+     * @param job A DeliveryJob or RideShareJob.
+     * @return The future from the producer. When batching it completes once the envelope the job is in is sent.
+     * @throws IllegalArgumentException Throws if it isn't a job.
+     */
+    public synchronized Future<RecordMetadata> sendJob(Object job) throws IllegalArgumentException
+    {
+        Headers headers = new RecordHeaders();
+        if (!RoutingHeaders.stamp(headers, job))
+            throw new IllegalArgumentException("Only DeliveryJobs and RideShareJobs can be sent!");
+
+        byte[] json = this.serializer.serialize(this.topic, job);
+        String key = new String(headers.lastHeader(RoutingHeaders.CUSTOMER_ID).value(), StandardCharsets.UTF_8);
+
+        if (this.maxBatchJobs <= 1)
+            return this.producer.send(new ProducerRecord<String, byte[]>(this.topic, null, key, json, headers));
+
+        // Same partition the producer would have picked for the job by itself
+        int partition = Utils.toPositive(Utils.murmur2(key.getBytes(StandardCharsets.UTF_8))) % getNumPartitions();
+        PendingBatch batch = this.batches.computeIfAbsent(partition, p -> new PendingBatch(this.compression));
+
+        long now = System.currentTimeMillis();
+        if (batch.envelope.isEmpty())
+        {
+            batch.lingerDeadline = now + this.lingerMs;
+            this.nextLingerDeadline = Math.min(this.nextLingerDeadline, batch.lingerDeadline);
+        }
+
+        CompletableFuture<RecordMetadata> future = new CompletableFuture<>();
+        batch.envelope.add(key, headers, json);
+        batch.futures.add(future);
+
+        if (batch.envelope.getCount() >= this.maxBatchJobs || batch.envelope.getSizeInBytes() >= this.maxBatchBytes)
+            sendBatch(partition, batch);
+
+        sendLingering(now);
+        return future;
+    }
+
+    /**
+     * Sends every envelope that has lingered past its deadline.
+     * @param now The time in ms.
+     */
+    private void sendLingering(long now)
+    {
+        if (now < this.nextLingerDeadline)
+            return;
+
+        long next = Long.MAX_VALUE;
+        for (Map.Entry<Integer, PendingBatch> entry : this.batches.entrySet())
+        {
+            PendingBatch batch = entry.getValue();
+            if (batch.envelope.isEmpty())
+                continue;
+
+            if (batch.lingerDeadline <= now)
+                sendBatch(entry.getKey(), batch);
+            else
+                next = Math.min(next, batch.lingerDeadline);
+        }
+
+        this.nextLingerDeadline = next;
+    }
+
+    /**
+     * Run by the lingerer. Sends the lingering envelopes and picks up partitions that were added to the topic. A
+     * failed send has already failed the futures of its jobs, so all that's left is to keep the lingerer running.
+     */
+    private void lingerQuietly()
+    {
+        try
+        {
+            // Out of the lock, the producer can block here if it has to fetch the metadata
+            int partitions = this.producer.partitionsFor(this.topic).size();
+
+            synchronized (this)
+            {
+                if (this.numPartitions != 0 && partitions != this.numPartitions)
+                {
+                    // Every envelope that isn't empty was packed for the old partitions, send them before the
+                    // customers that moved start filling envelopes on their new ones
+                    sendAllBatches();
+
+                    logger.info("{} went from {} to {} partitions", this.topic, this.numPartitions, partitions);
+                }
+                this.numPartitions = partitions;
+
+                sendLingering(System.currentTimeMillis());
+            }
+        }
+        catch (RuntimeException e)
+        {
+            logger.warn("Couldn't send the lingering envelopes to {}", this.topic, e);
+        }
+    }
+
+    /**
+     * Sends every envelope that isn't full yet and waits for everything sent so far to be acked.
+     */
+    public synchronized void flush()
+    {
+        sendAllBatches();
+        this.producer.flush();
+    }
+
+    /**
+     * Flushes and closes the producer.
+     */
+    public synchronized void close()
+    {
+        if (this.lingerer != null)
+            this.lingerer.shutdown();
+
+        flush();
+        this.producer.close();
+    }
+
+    /**
+     * Sends every envelope that isn't empty, however long it has lingered.
+     */
+    private void sendAllBatches()
+    {
+        for (Map.Entry<Integer, PendingBatch> entry : this.batches.entrySet())
+        {
+            if (!entry.getValue().envelope.isEmpty())
+                sendBatch(entry.getKey(), entry.getValue());
+        }
+        this.nextLingerDeadline = Long.MAX_VALUE;
+    }
+
+    /**
+     * Sends an envelope as one record and empties it. An envelope with a single job in it is sent as that job's
+     * own record, there is nothing to save.
+     */
+    private void sendBatch(int partition, PendingBatch batch)
+    {
+        JobBatch envelope = batch.envelope;
+        ProducerRecord<String, byte[]> record;
+        if (envelope.getCount() == 1)
+            record = new ProducerRecord<String, byte[]>(this.topic, partition, envelope.getKeys().get(0),
+                    envelope.getJobs().get(0), envelope.getHeaders().get(0));
+        else
+            record = new ProducerRecord<String, byte[]>(this.topic, partition, null, envelope.toBytes());
+
+        List<CompletableFuture<RecordMetadata>> futures = new ArrayList<>(batch.futures);
+        envelope.clear();
+        batch.futures.clear();
+
+        try
+        {
+            this.producer.send(record, (metadata, error) -> {
+                for (CompletableFuture<RecordMetadata> future : futures)
+                {
+                    if (error != null)
+                        future.completeExceptionally(error);
+                    else
+                        future.complete(metadata);
+                }
+            });
+        }
+        catch (RuntimeException e)
+        {
+            for (CompletableFuture<RecordMetadata> future : futures)
+                future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return The partition count, read from the producer the first time and kept up to date by the lingerer.
+     */
+    private int getNumPartitions()
+    {
+        if (this.numPartitions == 0)
+            this.numPartitions = this.producer.partitionsFor(this.topic).size();
+
+        return this.numPartitions;
+    }
+
+    /**
+     * The envelope being filled for one partition and the futures of the jobs in it.
+     */
+    private static class PendingBatch
+    {
+        private final JobBatch envelope;
+        private final List<CompletableFuture<RecordMetadata>> futures = new ArrayList<>();
+        private long lingerDeadline; // when it has to be sent, set when the first job goes in
+
+        private PendingBatch(JobBatch.Compression compression)
+        {
+            this.envelope = new JobBatch(compression);
+        }
+    }
+
     /**
      * Configure the properties that must be set for this producer. These properties are set for a broker
      * running on the local machine
@@ -74,8 +379,9 @@ public class JobCreator
         props.put("key.serializer",
                 "org.apache.kafka.common.serialization.StringSerializer");
 
+        // The jobs are serialized before they are sent so their routing headers can be stamped with them
         props.put("value.serializer",
-                "org.apache.kafka.common.serialization.StringSerializer");
+                "org.apache.kafka.common.serialization.ByteArraySerializer");
 
         return props;
     }
@@ -0,0 +1,372 @@
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers the jobs the router has sent lately so a job that shows up again within the window is dropped instead of
+ * going to the drivers a second time. Duplicates show up when the router restarts (auto commit means the last few
+ * hundred milliseconds of jobs get routed again) and when a client retries a send to the school topic that actually
+ * went through.
+ *
+ * The filters only live in this process's memory. A router that starts up should call seed() before it routes
+ * anything so the jobs the last run already sent are remembered. What this doesn't catch: a school partition that a
+ * rebalance moves from one running process to another, since the new owner never saw the jobs the old one sent
+ * right before giving the partition up, and jobs sent to city clusters other than the one that was seeded.
+ *
+ * Jobs are remembered by a 64 bit fingerprint of the whole job in a pair of Bloom filters that take turns: new jobs
+ * go into the current filter and every window the older filter is cleared and becomes the current one. A job is
+ * remembered for at least one window and at most two, and the memory never grows no matter how many jobs come
+ * through. Nothing is allocated and nothing is locked on a lookup, the bits are set with compare and swap.
+ *
+ * A Bloom filter can say it has seen a job it hasn't (a false positive), which here means dropping a real job. The
+ * chance of that is set in the constructor and only holds as long as no more than expectedJobsPerWindow come through
+ * in a window. It never misses a job it has seen, except for two copies of a job being routed at the exact same
+ * moment on two threads.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see SchoolToCityStream#setDeduplicator(JobDeduplicator)
+ */
+public class JobDeduplicator
+{
+    private final long windowMs;
+    private final LongSupplier clock;
+    private final long numBits; // per filter
+    private final int numHashes;
+
+    private volatile BloomFilter current;
+    private volatile BloomFilter previous;
+    private volatile long rotateAt;
+
+    /**
+     * Constructor for the deduplicator.
+     * @param expectedJobsPerWindow The most jobs we expect in one window. The filters are sized for this.
+     * @param falsePositiveRate The chance that a new job is mistaken for a duplicate. Ex - 0.0001
+     * @param windowMs How long a job is remembered for, at least. Ex - 600000 for 10 minutes
+     * @throws IllegalArgumentException Throws if any of the settings are out of range or the filters would be too big.
+     */
+    public JobDeduplicator(long expectedJobsPerWindow, double falsePositiveRate, long windowMs)
+            throws IllegalArgumentException
+    {
+        this(expectedJobsPerWindow, falsePositiveRate, windowMs, System::currentTimeMillis);
+    }
+
+    /**
+     * Same as above but with our own clock so the tests don't need to sleep.
+     */
+    JobDeduplicator(long expectedJobsPerWindow, double falsePositiveRate, long windowMs, LongSupplier clock)
+            throws IllegalArgumentException
+    {
+        if (expectedJobsPerWindow < 1)
+            throw new IllegalArgumentException("We need to expect at least 1 job per window!");
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1))
+            throw new IllegalArgumentException("The false positive rate must be between 0 and 1!");
+        if (windowMs < 1)
+            throw new IllegalArgumentException("The window must be at least 1 millisecond!");
+
+        // Every lookup checks both filters so each one gets half of the false positives
+        double perFilterRate = falsePositiveRate / 2;
+        long needed = (long) Math.ceil(-expectedJobsPerWindow * Math.log(perFilterRate) / (Math.log(2) * Math.log(2)));
+
+        // Rounded up to a power of two so a probe is a mask instead of a division, which only lowers the rate
+        long bits = Math.max(64, Long.highestOneBit(needed - 1) << 1);
+        if (needed > (1L << 36))
+            throw new IllegalArgumentException("The filters would be too big, expect fewer jobs or more false positives!");
+
+        this.windowMs = windowMs;
+        this.clock = clock;
+        this.numBits = bits;
+        this.numHashes = Math.max(1, (int) Math.round((double) needed / expectedJobsPerWindow * Math.log(2)));
+        this.current = new BloomFilter(bits);
+        this.previous = new BloomFilter(bits);
+        this.rotateAt = clock.getAsLong() + windowMs;
+    }
+
+    /**
+     * Remembers the jobs that were already sent to the city topics within the last window, so a router that just
+     * started doesn't send the jobs its last run sent again. Reads each partition from the first job inside the
+     * window up to where the partition ended when we started. The consumer should read committed jobs only, so an
+     * aborted transaction's jobs aren't remembered.
+     * @param consumer A consumer for the city broker that isn't in a group, the partitions are assigned to it here.
+     *      The caller closes it.
+     * @param topics The city topics the router sends to.
+     * @param timeoutMs How long to spend reading. Whatever isn't read by then isn't remembered.
+     * @return How many jobs were remembered.
+     */
+    public long seed(Consumer<String, byte[]> consumer, Collection<String> topics, long timeoutMs)
+    {
+        long since = this.clock.getAsLong() - this.windowMs;
+        Map<TopicPartition, Long> times = new HashMap<>();
+        for (String topic : topics)
+        {
+            List<PartitionInfo> partitions = consumer.partitionsFor(topic);
+            if (partitions != null)
+                for (PartitionInfo partition : partitions)
+                    times.put(new TopicPartition(topic, partition.partition()), since);
+        }
+        if (times.isEmpty())
+            return 0;
+
+        // Where the window starts and where each partition ends right now, jobs sent after that are ours to check
+        Map<TopicPartition, OffsetAndTimestamp> starts = consumer.offsetsForTimes(times);
+        Map<TopicPartition, Long> ends = consumer.endOffsets(times.keySet());
+        Map<TopicPartition, Long> remaining = new HashMap<>();
+        for (Map.Entry<TopicPartition, OffsetAndTimestamp> start : starts.entrySet())
+        {
+            Long end = ends.get(start.getKey());
+            if (start.getValue() != null && end != null && start.getValue().offset() < end)
+                remaining.put(start.getKey(), end);
+        }
+        if (remaining.isEmpty())
+            return 0;
+
+        consumer.assign(remaining.keySet());
+        for (TopicPartition partition : remaining.keySet())
+            consumer.seek(partition, starts.get(partition).offset());
+
+        long seeded = 0;
+        long deadline = System.nanoTime() + timeoutMs * 1000000;
+        while (!remaining.isEmpty() && System.nanoTime() < deadline)
+        {
+            for (ConsumerRecord<String, byte[]> record : consumer.poll(Duration.ofMillis(100)))
+            {
+                Long end = remaining.get(new TopicPartition(record.topic(), record.partition()));
+                if (end != null && record.offset() < end && record.value() != null)
+                {
+                    add(fingerprint(record.value()));
+                    seeded++;
+                }
+            }
+
+            for (TopicPartition partition : new ArrayList<>(remaining.keySet()))
+                if (consumer.position(partition) >= remaining.get(partition))
+                    remaining.remove(partition);
+        }
+
+        return seeded;
+    }
+
+    /**
+     * A 64 bit hash of the whole job. The same job serialized the same way always gets the same fingerprint.
+     * @param job The json string representing the job.
+     * @return The fingerprint.
+     */
+    public static long fingerprint(String job)
+    {
+        // Murmur style, 4 characters at a time so the multiplies aren't one long chain
+        int length = job.length();
+        long hash = 0x9E3779B97F4A7C15L ^ length;
+        int i = 0;
+
+        for (; i + 4 <= length; i += 4)
+        {
+            long block = job.charAt(i) | ((long) job.charAt(i + 1) << 16) | ((long) job.charAt(i + 2) << 32)
+                    | ((long) job.charAt(i + 3) << 48);
+            hash ^= mixBlock(block);
+            hash = Long.rotateLeft(hash, 27) * 5 + 0x52dce729;
+        }
+
+        long tail = 0;
+        for (int shift = 0; i < length; i++, shift += 16)
+            tail |= (long) job.charAt(i) << shift;
+        hash ^= mixBlock(tail);
+
+        return mix(hash);
+    }
+
+    /**
+     * Same as above for the bytes the router consumed. The fingerprint isn't the same as the String's, so stick to
+     * one or the other.
+     * @param job The serialized job.
+     * @return The fingerprint.
+     */
+    public static long fingerprint(byte[] job)
+    {
+        // Same as above, 8 bytes at a time
+        int length = job.length;
+        long hash = 0x9E3779B97F4A7C15L ^ length;
+        int i = 0;
+
+        for (; i + 8 <= length; i += 8)
+        {
+            long block = (job[i] & 0xFFL) | (job[i + 1] & 0xFFL) << 8 | (job[i + 2] & 0xFFL) << 16
+                    | (job[i + 3] & 0xFFL) << 24 | (job[i + 4] & 0xFFL) << 32 | (job[i + 5] & 0xFFL) << 40
+                    | (job[i + 6] & 0xFFL) << 48 | (job[i + 7] & 0xFFL) << 56;
+            hash ^= mixBlock(block);
+            hash = Long.rotateLeft(hash, 27) * 5 + 0x52dce729;
+        }
+
+        long tail = 0;
+        for (int shift = 0; i < length; i++, shift += 8)
+            tail |= (job[i] & 0xFFL) << shift;
+        hash ^= mixBlock(tail);
+
+        return mix(hash);
+    }
+
+    private static long mixBlock(long block)
+    {
+        block *= 0x87c37b91114253d5L;
+        block = Long.rotateLeft(block, 31);
+        return block * 0x4cf5ad432745937fL;
+    }
+
+    /**
+     * Checks if we have probably sent this job already.
+     * @param fingerprint The job's fingerprint.
+     * @return True if the job was probably seen within the window, false if it definitely wasn't.
+     */
+    public boolean isDuplicate(long fingerprint)
+    {
+        rotateIfDue();
+
+        long second = secondHash(fingerprint);
+        return this.current.mightContain(fingerprint, second) || this.previous.mightContain(fingerprint, second);
+    }
+
+    /**
+     * Remembers a job we just sent. Only call this once the job is really going out, a job that is rewound and
+     * polled again would otherwise be dropped as its own duplicate.
+     * @param fingerprint The job's fingerprint.
+     */
+    public void add(long fingerprint)
+    {
+        rotateIfDue();
+        this.current.add(fingerprint, secondHash(fingerprint));
+    }
+
+    /**
+     * Clears the older filter and starts putting jobs into it once the window is up. If we have been idle for more
+     * than two windows both filters are cleared.
+     */
+    private void rotateIfDue()
+    {
+        long now = this.clock.getAsLong();
+        if (now < this.rotateAt)
+            return;
+
+        synchronized (this)
+        {
+            if (now < this.rotateAt)
+                return;
+
+            BloomFilter oldest = this.previous;
+            oldest.clear();
+            if (now >= this.rotateAt + this.windowMs)
+                this.current.clear();
+
+            this.previous = this.current;
+            this.current = oldest;
+            this.rotateAt = now + this.windowMs;
+        }
+    }
+
+    private static long secondHash(long fingerprint)
+    {
+        return mix(fingerprint ^ 0x9E3779B97F4A7C15L) | 1; // odd so the probes don't repeat early
+    }
+
+    /**
+     * The finalizer from MurmurHash3.
+     */
+    private static long mix(long hash)
+    {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+
+        return hash;
+    }
+
+    /** Getters */
+
+    public long getBitsPerFilter()
+    {
+        return this.numBits;
+    }
+
+    public int getNumHashes()
+    {
+        return this.numHashes;
+    }
+
+    /**
+     * @return Roughly how much memory both filters take up.
+     */
+    public long getMemoryBytes()
+    {
+        return 2 * ((this.numBits + 63) / 64) * 8;
+    }
+
+    public long getWindowMs()
+    {
+        return this.windowMs;
+    }
+
+    /**
+     * One Bloom filter. The probes are h1 + i * h2 (double hashing) so one fingerprint gives every probe.
+     */
+    private class BloomFilter
+    {
+        private final AtomicLongArray words;
+        private final long mask;
+
+        private BloomFilter(long numBits)
+        {
+            this.mask = numBits - 1;
+            this.words = new AtomicLongArray((int) ((numBits + 63) / 64));
+        }
+
+        private boolean mightContain(long first, long second)
+        {
+            long probe = first;
+            for (int i = 0; i < numHashes; i++)
+            {
+                long bit = probe & this.mask;
+                if ((this.words.get((int) (bit >>> 6)) & (1L << bit)) == 0)
+                    return false;
+                probe += second;
+            }
+
+            return true;
+        }
+
+        private void add(long first, long second)
+        {
+            long probe = first;
+            for (int i = 0; i < numHashes; i++)
+            {
+                long bit = probe & this.mask;
+                int index = (int) (bit >>> 6);
+                long flag = 1L << bit;
+
+                long word = this.words.get(index);
+                while ((word & flag) == 0 && !this.words.compareAndSet(index, word, word | flag))
+                    word = this.words.get(index);
+
+                probe += second;
+            }
+        }
+
+        private void clear()
+        {
+            for (int i = 0; i < this.words.length(); i++)
+                this.words.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,544 @@
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reads and writes the JSON for DeliveryJob and RideShareJob by hand with Jackson's streaming JsonGenerator and
+ * JsonParser, instead of having ObjectMapper look the classes over with reflection for every job. The JSON is byte
+ * for byte what ObjectMapper writes: the same fields in the same order, numbers and escapes written the same way.
+ *
+ * Every thread writes into its own buffer and every parser and generator comes from one shared JsonFactory, which
+ * recycles its own buffers, so a job only allocates its parser or generator and the bytes it returns.
+ *
+ * Reading only handles the JSON we write ourselves. Anything else, like a number sent as text, a date as a string or
+ * a field we don't know, is handed to ObjectMapper so it gets read (or turned down) exactly like before.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see KafkaJsonSerializer
+ * @see KafkaJsonDeserializer
+ */
+public final class JobJsonCodec
+{
+    private static final JsonFactory FACTORY = new JsonFactory();
+    private static final ObjectMapper MAPPER = new ObjectMapper(FACTORY); // only for JSON we didn't write
+
+    // Which job each job_type is, looked up without caring about case so no String gets lowercased per job
+    private static final Map<String, Class<?>> TYPES = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private static final Map<String, JobReader> READERS = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    static {
+        TYPES.put("delivery", DeliveryJob.class);
+        TYPES.put("rideShare", RideShareJob.class);
+        READERS.put("delivery", JobJsonCodec::readDeliveryJob);
+        READERS.put("rideShare", JobJsonCodec::readRideShareJob);
+    }
+
+    private static final ThreadLocal<ByteArrayBuilder> BUFFERS = ThreadLocal.withInitial(() -> new ByteArrayBuilder(512));
+
+    // Names are quoted and encoded once instead of for every job
+    private static final SerializedString JOB_TYPE = new SerializedString("job_type");
+    private static final SerializedString CUSTOMER_ID = new SerializedString("customer_id");
+    private static final SerializedString SCHOOL = new SerializedString("school");
+    private static final SerializedString TO_LATITUDE = new SerializedString("to_latitude");
+    private static final SerializedString TO_LONGITUDE = new SerializedString("to_longitude");
+    private static final SerializedString TO_ADDRESS = new SerializedString("to_address");
+    private static final SerializedString TO_CITY = new SerializedString("to_city");
+    private static final SerializedString TO_STATE = new SerializedString("to_state");
+    private static final SerializedString TO_ZIPCODE = new SerializedString("to_zipcode");
+    private static final SerializedString FROM_LATITUDE = new SerializedString("from_latitude");
+    private static final SerializedString FROM_LONGITUDE = new SerializedString("from_longitude");
+    private static final SerializedString FROM_ADDRESS = new SerializedString("from_address");
+    private static final SerializedString FROM_CITY = new SerializedString("from_city");
+    private static final SerializedString FROM_STATE = new SerializedString("from_state");
+    private static final SerializedString FROM_ZIPCODE = new SerializedString("from_zipcode");
+    private static final SerializedString DESCRIPTION = new SerializedString("description");
+    private static final SerializedString INSTRUCTIONS = new SerializedString("instructions");
+    private static final SerializedString ITEM_SIZE = new SerializedString("item_size");
+    private static final SerializedString NUM_PASSENGERS = new SerializedString("num_passengers");
+    private static final SerializedString PICKUP_TIME = new SerializedString("pickup_time");
+    private static final SerializedString DROPOFF_TIME = new SerializedString("dropoff_time");
+
+    private JobJsonCodec()
+    {
+        /* Only static helpers */
+    }
+
+    /**
+     * @param type A class we might need to read or write.
+     * @return True if this codec handles it, false if it has to go through ObjectMapper.
+     */
+    public static boolean supports(Class<?> type)
+    {
+        return type == DeliveryJob.class || type == RideShareJob.class;
+    }
+
+    /**
+     * Writes the job as JSON, the same bytes ObjectMapper.writeValueAsBytes() would give.
+     * @param job A DeliveryJob or RideShareJob.
+     * @return The JSON as UTF-8.
+     * @throws IOException Throws if the job can't be written.
+     * @throws IllegalArgumentException Throws if it isn't a job this codec handles.
+     */
+    public static byte[] toJson(Object job) throws IOException, IllegalArgumentException
+    {
+        ByteArrayBuilder buffer = BUFFERS.get();
+        buffer.reset();
+
+        try (JsonGenerator generator = FACTORY.createGenerator(buffer))
+        {
+            write(generator, job);
+        }
+
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Writes the job as pretty printed JSON, the same as ObjectMapper.writerWithDefaultPrettyPrinter() would give.
+     * Used by the jobs' toString().
+     * @param job A DeliveryJob or RideShareJob.
+     * @return The pretty printed JSON.
+     * @throws IOException Throws if the job can't be written.
+     * @throws IllegalArgumentException Throws if it isn't a job this codec handles.
+     */
+    public static String toPrettyJson(Object job) throws IOException, IllegalArgumentException
+    {
+        ByteArrayBuilder buffer = BUFFERS.get();
+        buffer.reset();
+
+        try (JsonGenerator generator = FACTORY.createGenerator(buffer))
+        {
+            generator.useDefaultPrettyPrinter();
+            write(generator, job);
+        }
+
+        return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void write(JsonGenerator generator, Object job) throws IOException, IllegalArgumentException
+    {
+        if (job instanceof DeliveryJob)
+            writeDeliveryJob(generator, (DeliveryJob) job);
+        else if (job instanceof RideShareJob)
+            writeRideShareJob(generator, (RideShareJob) job);
+        else
+            throw new IllegalArgumentException("Can't write a " + job.getClass().getName() + " as a job!");
+    }
+
+    private static void writeDeliveryJob(JsonGenerator generator, DeliveryJob job) throws IOException
+    {
+        generator.writeStartObject();
+        writeString(generator, JOB_TYPE, job.getJob_type());
+        generator.writeFieldName(CUSTOMER_ID);
+        generator.writeNumber(job.getCustomer_id());
+        writeString(generator, SCHOOL, job.getSchool());
+        writeString(generator, TO_ADDRESS, job.getTo_address());
+        writeString(generator, TO_CITY, job.getTo_city());
+        writeString(generator, TO_STATE, job.getTo_state());
+        writeString(generator, TO_ZIPCODE, job.getTo_zipcode());
+        writeString(generator, FROM_ADDRESS, job.getFrom_address());
+        writeString(generator, FROM_CITY, job.getFrom_city());
+        writeString(generator, FROM_STATE, job.getFrom_state());
+        writeString(generator, FROM_ZIPCODE, job.getFrom_zipcode());
+        writeString(generator, DESCRIPTION, job.getDescription());
+        writeString(generator, INSTRUCTIONS, job.getInstructions());
+        generator.writeFieldName(ITEM_SIZE);
+        generator.writeNumber(job.getItem_size());
+        generator.writeEndObject();
+    }
+
+    private static void writeRideShareJob(JsonGenerator generator, RideShareJob job) throws IOException
+    {
+        generator.writeStartObject();
+        writeString(generator, JOB_TYPE, job.getJob_type());
+        generator.writeFieldName(CUSTOMER_ID);
+        generator.writeNumber(job.getCustomer_id());
+        writeString(generator, SCHOOL, job.getSchool());
+        generator.writeFieldName(TO_LATITUDE);
+        generator.writeNumber(job.getTo_latitude());
+        generator.writeFieldName(TO_LONGITUDE);
+        generator.writeNumber(job.getTo_longitude());
+        writeString(generator, TO_ADDRESS, job.getTo_address());
+        writeString(generator, TO_CITY, job.getTo_city());
+        writeString(generator, TO_STATE, job.getTo_state());
+        writeString(generator, TO_ZIPCODE, job.getTo_zipcode());
+        generator.writeFieldName(FROM_LATITUDE);
+        generator.writeNumber(job.getFrom_latitude());
+        generator.writeFieldName(FROM_LONGITUDE);
+        generator.writeNumber(job.getFrom_longitude());
+        writeString(generator, FROM_ADDRESS, job.getFrom_address());
+        writeString(generator, FROM_CITY, job.getFrom_city());
+        writeString(generator, FROM_STATE, job.getFrom_state());
+        writeString(generator, FROM_ZIPCODE, job.getFrom_zipcode());
+        generator.writeFieldName(NUM_PASSENGERS);
+        generator.writeNumber(job.getNum_passengers());
+        writeDate(generator, PICKUP_TIME, job.getPickup_time());
+        writeDate(generator, DROPOFF_TIME, job.getDropoff_time());
+        generator.writeEndObject();
+    }
+
+    private static void writeString(JsonGenerator generator, SerializedString name, String value) throws IOException
+    {
+        generator.writeFieldName(name);
+        generator.writeString(value); // writes null for a null value
+    }
+
+    /**
+     * Dates are the milliseconds since the epoch, like ObjectMapper writes them by default.
+     */
+    private static void writeDate(JsonGenerator generator, SerializedString name, Date value) throws IOException
+    {
+        generator.writeFieldName(name);
+        if (value == null)
+            generator.writeNull();
+        else
+            generator.writeNumber(value.getTime());
+    }
+
+    /**
+     * Reads a job from JSON, the same as ObjectMapper.readValue() would.
+     * @param json The JSON as UTF-8.
+     * @param type DeliveryJob.class or RideShareJob.class.
+     * @return The job.
+     * @throws IOException Throws if the JSON isn't a job, with the same errors ObjectMapper gives.
+     */
+    public static <T> T fromJson(byte[] json, Class<T> type) throws IOException
+    {
+        Object job = null;
+        try (JsonParser parser = FACTORY.createParser(json))
+        {
+            if (parser.nextToken() == JsonToken.START_OBJECT)
+            {
+                if (type == DeliveryJob.class)
+                    job = readDeliveryJob(parser, null);
+                else if (type == RideShareJob.class)
+                    job = readRideShareJob(parser, null);
+
+                // Only ours if the object was the whole message, like ObjectMapper expects
+                if (job != null && parser.nextToken() != null)
+                    job = null;
+            }
+        }
+        catch (IOException | RuntimeException e)
+        {
+            job = null; // let ObjectMapper give the same error it always has
+        }
+
+        if (job == null)
+            return MAPPER.readValue(json, type);
+
+        return type.cast(job);
+    }
+
+    /**
+     * Reads a job without knowing which one it is. The job_type picks the job, ignoring case since RideShareJob
+     * writes both "rideShare" and "RideShare". Our JSON always starts with the job_type, so it is read in the same
+     * pass as the rest of the job. JSON from anywhere else is read as a tree to find the job_type and then handed to
+     * ObjectMapper.
+     * @param json The JSON as UTF-8.
+     * @return The DeliveryJob or RideShareJob.
+     * @throws IOException Throws if the JSON isn't a job, or its job_type isn't one we know.
+     */
+    public static Object fromJson(byte[] json) throws IOException
+    {
+        Object job = null;
+        try (JsonParser parser = FACTORY.createParser(json))
+        {
+            if (parser.nextToken() == JsonToken.START_OBJECT && parser.nextToken() == JsonToken.FIELD_NAME
+                    && "job_type".equals(parser.getCurrentName()) && parser.nextToken() == JsonToken.VALUE_STRING)
+            {
+                String jobType = parser.getText();
+                JobReader reader = READERS.get(jobType);
+                if (reader == null)
+                    throw new JsonMappingException(parser, "Unknown job_type '" + jobType + "'");
+
+                job = reader.read(parser, jobType);
+                if (job != null && parser.nextToken() != null)
+                    job = null;
+            }
+        }
+        catch (JsonMappingException e)
+        {
+            throw e;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            job = null; // let ObjectMapper give the same error it always has
+        }
+
+        if (job != null)
+            return job;
+
+        JsonNode tree = MAPPER.readTree(json);
+        JsonNode jobType = tree == null ? null : tree.get("job_type");
+        Class<?> type = jobType == null ? null : TYPES.get(jobType.asText());
+        if (type == null)
+            throw new JsonMappingException(null, "The JSON isn't a job we know, job_type is " + jobType);
+
+        return MAPPER.treeToValue(tree, type);
+    }
+
+    /**
+     * @param jobType A job_type, any case.
+     * @return DeliveryJob.class or RideShareJob.class, or null if it isn't a job type we know.
+     */
+    public static Class<?> typeOf(String jobType)
+    {
+        return jobType == null ? null : TYPES.get(jobType);
+    }
+
+    /**
+     * @param parser The parser, after the start of the object or after the job_type field.
+     * @param jobType The job type if it was already read.
+     * @return The job, or null if the JSON isn't in the shape we write and ObjectMapper has to read it.
+     */
+    private static DeliveryJob readDeliveryJob(JsonParser parser, String jobType) throws IOException
+    {
+        DeliveryJob job = new DeliveryJob();
+        Location location = new Location();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME)
+        {
+            String name = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+
+            switch (name)
+            {
+                case "job_type":
+                    if (!isString(value))
+                        return null;
+                    jobType = parser.getValueAsString();
+                    break;
+                case "customer_id":
+                    if (value != JsonToken.VALUE_NUMBER_INT)
+                        return null;
+                    job.setCustomer_id(parser.getLongValue());
+                    break;
+                case "school":
+                    if (!isString(value))
+                        return null;
+                    job.setSchool(parser.getValueAsString());
+                    break;
+                case "description":
+                    if (!isString(value))
+                        return null;
+                    job.setDescription(parser.getValueAsString());
+                    break;
+                case "instructions":
+                    if (!isString(value))
+                        return null;
+                    job.setInstructions(parser.getValueAsString());
+                    break;
+                case "item_size":
+                    if (value != JsonToken.VALUE_NUMBER_INT || parser.getNumberType() != JsonParser.NumberType.INT)
+                        return null;
+                    job.setItem_size(parser.getIntValue());
+                    break;
+                default:
+                    if (!isString(value) || !location.read(name, parser.getValueAsString()))
+                        return null;
+            }
+        }
+
+        if (parser.currentToken() != JsonToken.END_OBJECT)
+            return null;
+
+        location.restore(job, jobType);
+        return job;
+    }
+
+    /**
+     * @param parser The parser, after the start of the object or after the job_type field.
+     * @param jobType The job type if it was already read.
+     * @return The job, or null if the JSON isn't in the shape we write and ObjectMapper has to read it.
+     */
+    private static RideShareJob readRideShareJob(JsonParser parser, String jobType) throws IOException
+    {
+        RideShareJob job = new RideShareJob();
+        Location location = new Location();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME)
+        {
+            String name = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+
+            switch (name)
+            {
+                case "job_type":
+                    if (!isString(value))
+                        return null;
+                    jobType = parser.getValueAsString();
+                    break;
+                case "customer_id":
+                    if (value != JsonToken.VALUE_NUMBER_INT)
+                        return null;
+                    job.setCustomer_id(parser.getLongValue());
+                    break;
+                case "school":
+                    if (!isString(value))
+                        return null;
+                    job.setSchool(parser.getValueAsString());
+                    break;
+                case "to_latitude":
+                    if (!isNumber(value))
+                        return null;
+                    job.setTo_latitude(parser.getDoubleValue());
+                    break;
+                case "to_longitude":
+                    if (!isNumber(value))
+                        return null;
+                    job.setTo_longitude(parser.getDoubleValue());
+                    break;
+                case "from_latitude":
+                    if (!isNumber(value))
+                        return null;
+                    job.setFrom_latitude(parser.getDoubleValue());
+                    break;
+                case "from_longitude":
+                    if (!isNumber(value))
+                        return null;
+                    job.setFrom_longitude(parser.getDoubleValue());
+                    break;
+                case "num_passengers":
+                    if (value != JsonToken.VALUE_NUMBER_INT || parser.getNumberType() != JsonParser.NumberType.INT)
+                        return null;
+                    job.setNum_passengers(parser.getIntValue());
+                    break;
+                case "pickup_time":
+                    if (value != JsonToken.VALUE_NULL && value != JsonToken.VALUE_NUMBER_INT)
+                        return null;
+                    job.setPickup_time(value == JsonToken.VALUE_NULL ? null : new Date(parser.getLongValue()));
+                    break;
+                case "dropoff_time":
+                    if (value != JsonToken.VALUE_NULL && value != JsonToken.VALUE_NUMBER_INT)
+                        return null;
+                    job.setDropoff_time(value == JsonToken.VALUE_NULL ? null : new Date(parser.getLongValue()));
+                    break;
+                default:
+                    if (!isString(value) || !location.read(name, parser.getValueAsString()))
+                        return null;
+            }
+        }
+
+        if (parser.currentToken() != JsonToken.END_OBJECT)
+            return null;
+
+        location.restore(job, jobType);
+        return job;
+    }
+
+    /**
+     * Reads the rest of one kind of job once the job_type has been read.
+     */
+    private interface JobReader
+    {
+        /**
+         * @return The job, or null if ObjectMapper has to read it.
+         */
+        Object read(JsonParser parser, String jobType) throws IOException;
+    }
+
+    private static boolean isString(JsonToken token)
+    {
+        return token == JsonToken.VALUE_STRING || token == JsonToken.VALUE_NULL;
+    }
+
+    private static boolean isNumber(JsonToken token)
+    {
+        return token == JsonToken.VALUE_NUMBER_FLOAT || token == JsonToken.VALUE_NUMBER_INT;
+    }
+
+    /**
+     * The address fields of a job as they are read. ObjectMapper sets the address through its setter, which works out
+     * the city, state and zip code from it, and then sets whichever of those come after it in the JSON. We do the
+     * same but only parse the address for the fields that didn't come after it, which for our own JSON is none.
+     */
+    private static class Location
+    {
+        private final String[] to = new String[4]; // address, city, state, zip code
+        private final String[] from = new String[4];
+        private final boolean[] toSet = new boolean[4]; // set since the address was
+        private final boolean[] fromSet = new boolean[4];
+
+        /**
+         * @return False if it isn't an address field.
+         */
+        private boolean read(String name, String value)
+        {
+            switch (name)
+            {
+                case "to_address":
+                    return set(this.to, this.toSet, 0, value);
+                case "to_city":
+                    return set(this.to, this.toSet, 1, value);
+                case "to_state":
+                    return set(this.to, this.toSet, 2, value);
+                case "to_zipcode":
+                    return set(this.to, this.toSet, 3, value);
+                case "from_address":
+                    return set(this.from, this.fromSet, 0, value);
+                case "from_city":
+                    return set(this.from, this.fromSet, 1, value);
+                case "from_state":
+                    return set(this.from, this.fromSet, 2, value);
+                case "from_zipcode":
+                    return set(this.from, this.fromSet, 3, value);
+                default:
+                    return false;
+            }
+        }
+
+        private static boolean set(String[] fields, boolean[] set, int index, String value)
+        {
+            fields[index] = value;
+            if (index == 0)
+                Arrays.fill(set, false);
+            set[index] = true;
+
+            return true;
+        }
+
+        private static void derive(String[] fields, boolean[] set)
+        {
+            if (!set[0])
+                return; // the address was never set, so nothing was worked out from it
+
+            if (!set[1])
+                fields[1] = Address.parseCity(fields[0]);
+            if (!set[2])
+                fields[2] = Address.parseState(fields[0]);
+            if (!set[3])
+                fields[3] = Address.parseZipCode(fields[0]);
+        }
+
+        private void restore(DeliveryJob job, String jobType)
+        {
+            derive(this.to, this.toSet);
+            derive(this.from, this.fromSet);
+            job.restore(jobType, this.to[0], this.to[1], this.to[2], this.to[3], this.from[0], this.from[1],
+                    this.from[2], this.from[3]);
+        }
+
+        private void restore(RideShareJob job, String jobType)
+        {
+            derive(this.to, this.toSet);
+            derive(this.from, this.fromSet);
+            job.restore(jobType, this.to[0], this.to[1], this.to[2], this.to[3], this.from[0], this.from[1],
+                    this.from[2], this.from[3]);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.util.Map;
+
+/**
+ * One Serde for every kind of job, for topics that carry both DeliveryJobs and RideShareJobs. Reading a job doesn't
+ * need to know which one it is up front: the job_type is the first field of our JSON, so it is read in the same pass
+ * as the rest of the job and picks the reader for that job (see JobJsonCodec#fromJson(byte[])). Jobs in the binary
+ * format say which job they are in their first bytes. Either way there is no String or JsonNode in between and the
+ * job is only parsed once.
+ *
+ * Works for plain consumers and producers (it is its own Serializer and Deserializer and has the default constructor
+ * Kafka needs) and for Streams, as a Serde or as default.value.serde. Writes JSON unless told to write the binary
+ * format, reads both.
+ *
+ * Safe to use from every thread at once.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see BinaryJobCodec
+ */
+public class JobSerde implements Serde<Object>, Serializer<Object>, Deserializer<Object>
+{
+    /**
+     * Set to true to write jobs in the binary format instead of JSON.
+     */
+    public static final String BINARY_CONFIG = "job.serde.binary";
+
+    private final BinaryJobCodec<Object> codec = new BinaryJobCodec<>();
+
+    private volatile boolean binary;
+
+    /**
+     * Default constructor needed by Kafka. Writes JSON.
+     */
+    public JobSerde()
+    {
+        this(false);
+    }
+
+    /**
+     * @param binary True to write jobs in the binary format, false for JSON.
+     */
+    public JobSerde(boolean binary)
+    {
+        this.binary = binary;
+    }
+
+    /**
+     * @param configs Can have BINARY_CONFIG, as a boolean or a string.
+     * @param isKey Ignored, jobs are always values.
+     */
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey)
+    {
+        Object binary = configs == null ? null : configs.get(BINARY_CONFIG);
+        if (binary != null)
+            this.binary = Boolean.parseBoolean(binary.toString());
+    }
+
+    /**
+     * @return True if jobs are written in the binary format.
+     */
+    public boolean isBinary()
+    {
+        return this.binary;
+    }
+
+    @Override
+    public Serializer<Object> serializer()
+    {
+        return this;
+    }
+
+    @Override
+    public Deserializer<Object> deserializer()
+    {
+        return this;
+    }
+
+    /**
+     * @param topic The topic the job is going to.
+     * @param data A DeliveryJob or RideShareJob.
+     * @return The job as JSON or in the binary format, or null if the job is null.
+     * @throws SerializationException Throws if it isn't a job.
+     */
+    @Override
+    public byte[] serialize(String topic, Object data) throws SerializationException
+    {
+        if (data == null)
+            return null;
+
+        if (this.binary)
+            return this.codec.serialize(topic, data);
+
+        try
+        {
+            return JobJsonCodec.toJson(data);
+        }
+        catch (Exception e)
+        {
+            throw new SerializationException("Error serializing the job", e);
+        }
+    }
+
+    /**
+     * What the producer calls. The job gets its routing headers (see RoutingHeaders) stamped first.
+     * @param topic The topic the job is going to.
+     * @param headers The headers of the record the job is going out in.
+     * @param data A DeliveryJob or RideShareJob.
+     * @return The job as JSON or in the binary format, or null if the job is null.
+     * @throws SerializationException Throws if it isn't a job.
+     */
+    @Override
+    public byte[] serialize(String topic, Headers headers, Object data) throws SerializationException
+    {
+        if (headers != null && data != null)
+            RoutingHeaders.stamp(headers, data);
+
+        return serialize(topic, data);
+    }
+
+    /**
+     * @param topic The topic the job came from.
+     * @param bytes The job as JSON or in the binary format.
+     * @return The DeliveryJob or RideShareJob, or null if the bytes are null.
+     * @throws SerializationException Throws if the bytes aren't a job we know.
+     */
+    @Override
+    public Object deserialize(String topic, byte[] bytes) throws SerializationException
+    {
+        if (bytes == null)
+            return null;
+
+        return this.codec.deserialize(topic, bytes);
+    }
+
+    @Override
+    public void close() {}
+}
@@ -0,0 +1,743 @@
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * A read only view of a serialized DeliveryJob or RideShareJob that only decodes the fields it is asked for. The
+ * first time a field is asked for the view makes one pass over the bytes and remembers where each top level field
+ * starts, without building any Strings. After that every field is decoded straight from its spot in the bytes.
+ * Consumers that only look at a field or two to decide whether they want a job (a driver filtering on item_size or
+ * num_passengers) skip everything else, and toJob() still gives the whole job when they do want it.
+ *
+ * Reads JSON (what KafkaJsonSerializer writes) and the binary format (what BinaryJobCodec writes). The JSON pass only
+ * finds where the values are, a value that isn't valid JSON is only noticed when it is read. Field names with
+ * escapes in them aren't recognized, we never write any.
+ *
+ * To allocate next to nothing for the jobs a consumer skips, consume with the ByteArrayDeserializer and reset() one
+ * view per thread for every record. ViewDeserializer is there for consumers that want a new view per record.
+ *
+ * This class is NOT thread safe.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see JobJsonCodec
+ * @see BinaryJobCodec
+ */
+public class JobView
+{
+    /**
+     * The fields of DeliveryJob and RideShareJob, by their JSON names.
+     */
+    public enum Field
+    {
+        JOB_TYPE("job_type", Kind.JOB_TYPE),
+        CUSTOMER_ID("customer_id", Kind.NUMBER),
+        SCHOOL("school", Kind.TEXT),
+        TO_LATITUDE("to_latitude", Kind.DECIMAL),
+        TO_LONGITUDE("to_longitude", Kind.DECIMAL),
+        TO_ADDRESS("to_address", Kind.TEXT),
+        TO_CITY("to_city", Kind.TEXT),
+        TO_STATE("to_state", Kind.STATE),
+        TO_ZIPCODE("to_zipcode", Kind.ZIPCODE),
+        FROM_LATITUDE("from_latitude", Kind.DECIMAL),
+        FROM_LONGITUDE("from_longitude", Kind.DECIMAL),
+        FROM_ADDRESS("from_address", Kind.TEXT),
+        FROM_CITY("from_city", Kind.TEXT),
+        FROM_STATE("from_state", Kind.STATE),
+        FROM_ZIPCODE("from_zipcode", Kind.ZIPCODE),
+        DESCRIPTION("description", Kind.TEXT),
+        INSTRUCTIONS("instructions", Kind.TEXT),
+        ITEM_SIZE("item_size", Kind.NUMBER),
+        NUM_PASSENGERS("num_passengers", Kind.NUMBER),
+        PICKUP_TIME("pickup_time", Kind.TIME),
+        DROPOFF_TIME("dropoff_time", Kind.TIME);
+
+        private final String jsonName;
+        private final byte[] nameBytes;
+        private final Kind kind;
+
+        Field(String jsonName, Kind kind)
+        {
+            this.jsonName = jsonName;
+            this.nameBytes = jsonName.getBytes(StandardCharsets.US_ASCII);
+            this.kind = kind;
+        }
+
+        /**
+         * @return The name of the field in the JSON. Ex - item_size
+         */
+        public String getJsonName()
+        {
+            return this.jsonName;
+        }
+    }
+
+    /**
+     * How a field is stored. In JSON the state, job type and zip code are plain text, in the binary format they
+     * each have their own encoding.
+     */
+    private enum Kind
+    {
+        TEXT, NUMBER, DECIMAL, STATE, JOB_TYPE, ZIPCODE, TIME
+    }
+
+    private static final Field[] FIELDS = Field.values();
+
+    // The order BinaryJobCodec writes the fields in, version 1. The RideShareJob times come after these.
+    private static final Field[] DELIVERY_LAYOUT = { Field.JOB_TYPE, Field.CUSTOMER_ID, Field.SCHOOL,
+            Field.TO_ADDRESS, Field.TO_CITY, Field.TO_STATE, Field.TO_ZIPCODE, Field.FROM_ADDRESS, Field.FROM_CITY,
+            Field.FROM_STATE, Field.FROM_ZIPCODE, Field.DESCRIPTION, Field.INSTRUCTIONS, Field.ITEM_SIZE };
+    private static final Field[] RIDE_SHARE_LAYOUT = { Field.JOB_TYPE, Field.CUSTOMER_ID, Field.SCHOOL,
+            Field.TO_LATITUDE, Field.TO_LONGITUDE, Field.TO_ADDRESS, Field.TO_CITY, Field.TO_STATE, Field.TO_ZIPCODE,
+            Field.FROM_LATITUDE, Field.FROM_LONGITUDE, Field.FROM_ADDRESS, Field.FROM_CITY, Field.FROM_STATE,
+            Field.FROM_ZIPCODE, Field.NUM_PASSENGERS };
+
+    // The factory is thread safe and expensive to create so everyone shares it
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private byte[] bytes;
+    private boolean binary;
+    private byte binaryType; // BinaryJobCodec's type of job, only for the binary format
+    private boolean indexed;
+
+    // Where each field's value starts, and for JSON where it ends (one past the last byte). -1 if the job doesn't
+    // have the field. Only created the first time a field is asked for.
+    private int[] starts;
+    private int[] ends;
+
+    /**
+     * Constructor for a view that gets its job from reset().
+     */
+    public JobView()
+    {
+        /* Default Empty Constructor */
+    }
+
+    /**
+     * Constructor for a view of a job. Nothing is read until a field is asked for.
+     * @param bytes The serialized job, either JSON in UTF-8 or the binary format.
+     * @throws IllegalArgumentException Throws if the bytes are null.
+     */
+    public JobView(byte[] bytes) throws IllegalArgumentException
+    {
+        reset(bytes);
+    }
+
+    /**
+     * Points the view at another job so the same view can be used for every record. Nothing is read until a field
+     * is asked for.
+     * @param bytes The serialized job, either JSON in UTF-8 or the binary format.
+     * @return This view.
+     * @throws IllegalArgumentException Throws if the bytes are null.
+     */
+    public JobView reset(byte[] bytes) throws IllegalArgumentException
+    {
+        if (bytes == null)
+            throw new IllegalArgumentException("The job is empty!");
+
+        this.bytes = bytes;
+        this.binary = bytes.length > 0 && bytes[0] == BinaryJobCodec.MAGIC;
+        this.indexed = false;
+
+        return this;
+    }
+
+    /**
+     * @param field The field.
+     * @return True if the job has a value for the field, false if it doesn't have the field or it is null.
+     * @throws IllegalArgumentException Throws if the bytes aren't a job we can read.
+     */
+    public boolean has(Field field) throws IllegalArgumentException
+    {
+        int start = startOf(field);
+        if (start < 0)
+            return false;
+
+        if (this.binary)
+        {
+            // Text is a varint of its length plus 1, so a null is a single 0. Numbers can't be null.
+            return !(isText(field.kind) && this.bytes[start] == 0);
+        }
+
+        return this.bytes[start] != 'n';
+    }
+
+    /**
+     * Decodes a text field, which includes the states, job type and zip codes.
+     * @param field The field.
+     * @return The field's value, or null if the job doesn't have it.
+     * @throws IllegalArgumentException Throws if the field isn't text, or the job or its value can't be read.
+     */
+    public String getString(Field field) throws IllegalArgumentException
+    {
+        if (!isText(field.kind))
+            throw new IllegalArgumentException(field.jsonName + " isn't a text field!");
+
+        int start = startOf(field);
+        if (start < 0)
+            return null;
+
+        if (this.binary)
+        {
+            BinaryJobCodec.Reader in = new BinaryJobCodec.Reader(this.bytes, start);
+            switch (field.kind)
+            {
+                case STATE:
+                    return in.readState();
+                case JOB_TYPE:
+                    return in.readJobType();
+                case ZIPCODE:
+                    return in.readZipCode();
+                default:
+                    return in.readString();
+            }
+        }
+
+        // Nearly every string has no escapes and can be decoded straight from the bytes
+        int end = this.ends[field.ordinal()];
+        if (this.bytes[start] == '"' && indexOf(this.bytes, (byte) '\\', start + 1, end - 1) < 0)
+            return new String(this.bytes, start + 1, end - start - 2, StandardCharsets.UTF_8);
+
+        try (JsonParser parser = parserAt(field))
+        {
+            return parser.getValueAsString();
+        }
+        catch (IOException e)
+        {
+            throw badValue(field, e);
+        }
+    }
+
+    /**
+     * Decodes a whole number field, like customer_id, item_size or num_passengers.
+     * @param field The field.
+     * @return The field's value, or 0 if the job doesn't have it or it is null.
+     * @throws IllegalArgumentException Throws if the field isn't a whole number, or the job or its value can't be read.
+     */
+    public long getLong(Field field) throws IllegalArgumentException
+    {
+        if (field.kind != Kind.NUMBER && field.kind != Kind.TIME)
+            throw new IllegalArgumentException(field.jsonName + " isn't a whole number!");
+
+        int start = startOf(field);
+        if (start < 0)
+            return 0;
+
+        if (this.binary)
+            return new BinaryJobCodec.Reader(this.bytes, start).readVarLong();
+
+        int end = this.ends[field.ordinal()];
+        if (this.bytes[start] == 'n')
+            return 0;
+
+        // Plain digits are read right here, anything else (text, a fraction) is read like ObjectMapper reads it
+        boolean negative = this.bytes[start] == '-';
+        int digits = negative ? start + 1 : start;
+        if (end > digits && end - digits <= 18)
+        {
+            long value = 0;
+            int i = digits;
+            for (; i < end && this.bytes[i] >= '0' && this.bytes[i] <= '9'; i++)
+                value = value * 10 + (this.bytes[i] - '0');
+
+            if (i == end)
+                return negative ? -value : value;
+        }
+
+        try (JsonParser parser = parserAt(field))
+        {
+            return parser.getValueAsLong();
+        }
+        catch (IOException e)
+        {
+            throw badValue(field, e);
+        }
+    }
+
+    /**
+     * Decodes a coordinate.
+     * @param field The field.
+     * @return The field's value, or 0 if the job doesn't have it or it is null.
+     * @throws IllegalArgumentException Throws if the field isn't a coordinate, or the job or its value can't be read.
+     */
+    public double getDouble(Field field) throws IllegalArgumentException
+    {
+        if (field.kind != Kind.DECIMAL)
+            throw new IllegalArgumentException(field.jsonName + " isn't a coordinate!");
+
+        int start = startOf(field);
+        if (start < 0)
+            return 0;
+
+        if (this.binary)
+            return new BinaryJobCodec.Reader(this.bytes, start).readDouble();
+
+        try (JsonParser parser = parserAt(field))
+        {
+            return parser.getValueAsDouble();
+        }
+        catch (IOException e)
+        {
+            throw badValue(field, e);
+        }
+    }
+
+    /**
+     * Decodes one of the RideShareJob times.
+     * @param field The field.
+     * @return The time, or null if the job doesn't have it.
+     * @throws IllegalArgumentException Throws if the field isn't a time, or the job or its value can't be read.
+     */
+    public Date getDate(Field field) throws IllegalArgumentException
+    {
+        if (field.kind != Kind.TIME)
+            throw new IllegalArgumentException(field.jsonName + " isn't a time!");
+
+        return has(field) ? new Date(getLong(field)) : null;
+    }
+
+    /**
+     * Decodes the whole job, the same as KafkaJsonDeserializer or BinaryJobCodec would. Every call decodes it again.
+     * @return The DeliveryJob or RideShareJob.
+     * @throws IllegalArgumentException Throws if the bytes aren't a job we can read.
+     */
+    public Object toJob() throws IllegalArgumentException
+    {
+        if (this.binary)
+        {
+            try
+            {
+                return BinaryJobCodec.decode(this.bytes);
+            }
+            catch (SerializationException e)
+            {
+                throw new IllegalArgumentException("The job is not a valid binary job!", e);
+            }
+        }
+
+        Class<?> type = getJobClass();
+        if (type == null)
+            throw new IllegalArgumentException("The JSON isn't a job we know!");
+
+        try
+        {
+            return JobJsonCodec.fromJson(this.bytes, type);
+        }
+        catch (IOException e)
+        {
+            throw new IllegalArgumentException("The job is not valid JSON!", e);
+        }
+    }
+
+    /**
+     * @return DeliveryJob or RideShareJob, or null if the job type is one we don't know.
+     * @throws IllegalArgumentException Throws if the bytes aren't a job we can read.
+     */
+    public Class<?> getJobClass() throws IllegalArgumentException
+    {
+        if (this.binary)
+        {
+            index();
+            return this.binaryType == BinaryJobCodec.DELIVERY_JOB ? DeliveryJob.class : RideShareJob.class;
+        }
+
+        String jobType = getJob_type();
+        if ("delivery".equals(jobType))
+            return DeliveryJob.class;
+        if ("rideshare".equalsIgnoreCase(jobType))
+            return RideShareJob.class;
+
+        return null;
+    }
+
+    /**
+     * @return The bytes the view is over. Not a copy.
+     */
+    public byte[] getBytes()
+    {
+        return this.bytes;
+    }
+
+    /**
+     * @return True if the job is in BinaryJobCodec's format instead of JSON.
+     */
+    public boolean isBinary()
+    {
+        return this.binary;
+    }
+
+    /** Getters for the fields consumers filter on most */
+
+    public String getJob_type()
+    {
+        return getString(Field.JOB_TYPE);
+    }
+
+    public long getCustomer_id()
+    {
+        return getLong(Field.CUSTOMER_ID);
+    }
+
+    public int getItem_size()
+    {
+        return (int) getLong(Field.ITEM_SIZE);
+    }
+
+    public int getNum_passengers()
+    {
+        return (int) getLong(Field.NUM_PASSENGERS);
+    }
+
+    public String getFrom_city()
+    {
+        return getString(Field.FROM_CITY);
+    }
+
+    public String getFrom_state()
+    {
+        return getString(Field.FROM_STATE);
+    }
+
+    public String getFrom_zipcode()
+    {
+        return getString(Field.FROM_ZIPCODE);
+    }
+
+    public String getTo_city()
+    {
+        return getString(Field.TO_CITY);
+    }
+
+    public String getTo_state()
+    {
+        return getString(Field.TO_STATE);
+    }
+
+    public String getTo_zipcode()
+    {
+        return getString(Field.TO_ZIPCODE);
+    }
+
+    /**
+     * @return Where the field's value starts, or -1 if the job doesn't have it.
+     */
+    private int startOf(Field field) throws IllegalArgumentException
+    {
+        index();
+        return this.starts[field.ordinal()];
+    }
+
+    /**
+     * Finds where every field is, the first time a field is asked for.
+     */
+    private void index() throws IllegalArgumentException
+    {
+        if (this.indexed)
+            return;
+
+        if (this.starts == null)
+        {
+            this.starts = new int[FIELDS.length];
+            this.ends = new int[FIELDS.length];
+        }
+        Arrays.fill(this.starts, -1);
+
+        if (this.binary)
+            indexBinary();
+        else
+            indexJson();
+
+        this.indexed = true;
+    }
+
+    /**
+     * Walks the fields in the order BinaryJobCodec wrote them, skipping over each one.
+     */
+    private void indexBinary() throws IllegalArgumentException
+    {
+        BinaryJobCodec.Reader in = new BinaryJobCodec.Reader(this.bytes, 1); // past the magic byte
+
+        try
+        {
+            int version = in.readByte();
+            if (version != BinaryJobCodec.VERSION)
+                throw new IllegalArgumentException("Can't read version " + version + " of the job format, only up to "
+                        + BinaryJobCodec.VERSION + "!");
+
+            this.binaryType = in.readByte();
+            Field[] layout = this.binaryType == BinaryJobCodec.DELIVERY_JOB ? DELIVERY_LAYOUT
+                    : this.binaryType == BinaryJobCodec.RIDE_SHARE_JOB ? RIDE_SHARE_LAYOUT : null;
+            if (layout == null)
+                throw new IllegalArgumentException("Unknown type of job " + this.binaryType + "!");
+
+            for (Field field : layout)
+            {
+                this.starts[field.ordinal()] = in.getPosition();
+                skip(in, field.kind);
+            }
+
+            if (this.binaryType == BinaryJobCodec.RIDE_SHARE_JOB)
+            {
+                int times = in.readByte();
+                if ((times & 1) != 0)
+                {
+                    this.starts[Field.PICKUP_TIME.ordinal()] = in.getPosition();
+                    in.skipVarint();
+                }
+                if ((times & 2) != 0)
+                {
+                    this.starts[Field.DROPOFF_TIME.ordinal()] = in.getPosition();
+                    in.skipVarint();
+                }
+            }
+
+            if (in.remaining() != 0)
+                throw new IllegalArgumentException(in.remaining() + " bytes left over after the job!");
+        }
+        catch (SerializationException e)
+        {
+            throw new IllegalArgumentException("The job is not a valid binary job!", e);
+        }
+    }
+
+    private static void skip(BinaryJobCodec.Reader in, Kind kind)
+    {
+        switch (kind)
+        {
+            case NUMBER:
+            case TIME:
+                in.skipVarint();
+                break;
+            case DECIMAL:
+                in.skipDouble();
+                break;
+            case STATE:
+                in.skipState();
+                break;
+            case JOB_TYPE:
+                in.skipJobType();
+                break;
+            case ZIPCODE:
+                in.skipZipCode();
+                break;
+            default:
+                in.skipString();
+                break;
+        }
+    }
+
+    /**
+     * One pass over the top level of the JSON object that only remembers where the values of the fields we know
+     * are. Nested objects and arrays are stepped over without looking inside.
+     */
+    private void indexJson() throws IllegalArgumentException
+    {
+        byte[] json = this.bytes;
+        int i = skipWhitespace(json, 0);
+        if (i >= json.length || json[i] != '{')
+            throw notJson();
+
+        i = skipWhitespace(json, i + 1);
+        if (i < json.length && json[i] == '}')
+            return;
+
+        while (true)
+        {
+            if (i >= json.length || json[i] != '"')
+                throw notJson();
+
+            int nameStart = i + 1;
+            i = skipString(json, i);
+            Field field = fieldNamed(json, nameStart, i - 1);
+
+            i = skipWhitespace(json, i);
+            if (i >= json.length || json[i] != ':')
+                throw notJson();
+            i = skipWhitespace(json, i + 1);
+
+            int valueStart = i;
+            i = skipValue(json, i);
+            if (field != null)
+            {
+                // The last one wins if a field shows up twice, like ObjectMapper
+                this.starts[field.ordinal()] = valueStart;
+                this.ends[field.ordinal()] = i;
+            }
+
+            i = skipWhitespace(json, i);
+            if (i >= json.length)
+                throw notJson();
+            if (json[i] == '}')
+                return;
+            if (json[i] != ',')
+                throw notJson();
+
+            i = skipWhitespace(json, i + 1);
+        }
+    }
+
+    private static Field fieldNamed(byte[] json, int start, int end)
+    {
+        int length = end - start;
+        for (Field field : FIELDS)
+        {
+            byte[] name = field.nameBytes;
+            if (name.length != length)
+                continue;
+
+            int i = 0;
+            while (i < length && json[start + i] == name[i])
+                i++;
+            if (i == length)
+                return field;
+        }
+
+        return null;
+    }
+
+    /**
+     * @param i Where the opening quote is.
+     * @return Just past the closing quote.
+     */
+    private static int skipString(byte[] json, int i) throws IllegalArgumentException
+    {
+        for (i++; i < json.length; i++)
+        {
+            if (json[i] == '\\')
+                i++; // whatever is escaped can't end the string
+            else if (json[i] == '"')
+                return i + 1;
+        }
+
+        throw notJson();
+    }
+
+    /**
+     * @param i Where the value starts.
+     * @return Just past the end of the value.
+     */
+    private static int skipValue(byte[] json, int i) throws IllegalArgumentException
+    {
+        if (i >= json.length)
+            throw notJson();
+
+        if (json[i] == '"')
+            return skipString(json, i);
+
+        if (json[i] == '{' || json[i] == '[')
+        {
+            int depth = 0;
+            while (i < json.length)
+            {
+                byte b = json[i];
+                if (b == '"')
+                {
+                    i = skipString(json, i);
+                    continue;
+                }
+
+                if (b == '{' || b == '[')
+                    depth++;
+                else if ((b == '}' || b == ']') && --depth == 0)
+                    return i + 1;
+                i++;
+            }
+
+            throw notJson();
+        }
+
+        // Numbers, true, false and null run up to whatever comes after them
+        int start = i;
+        while (i < json.length && json[i] != ',' && json[i] != '}' && json[i] != ']' && !isWhitespace(json[i]))
+            i++;
+        if (i == start)
+            throw notJson();
+
+        return i;
+    }
+
+    private static int skipWhitespace(byte[] json, int i)
+    {
+        while (i < json.length && isWhitespace(json[i]))
+            i++;
+
+        return i;
+    }
+
+    private static boolean isWhitespace(byte b)
+    {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static int indexOf(byte[] bytes, byte value, int from, int to)
+    {
+        for (int i = from; i < to; i++)
+            if (bytes[i] == value)
+                return i;
+
+        return -1;
+    }
+
+    private static boolean isText(Kind kind)
+    {
+        return kind == Kind.TEXT || kind == Kind.STATE || kind == Kind.JOB_TYPE || kind == Kind.ZIPCODE;
+    }
+
+    /**
+     * A parser over just the field's value, positioned on it.
+     */
+    private JsonParser parserAt(Field field) throws IOException
+    {
+        int start = this.starts[field.ordinal()];
+        JsonParser parser = JSON_FACTORY.createParser(this.bytes, start, this.ends[field.ordinal()] - start);
+        parser.nextToken();
+
+        return parser;
+    }
+
+    private static IllegalArgumentException notJson()
+    {
+        return new IllegalArgumentException("The job is not valid JSON!");
+    }
+
+    private static IllegalArgumentException badValue(Field field, IOException e)
+    {
+        return new IllegalArgumentException("The value of " + field.jsonName + " is not valid JSON!", e);
+    }
+
+    /**
+     * For consumers that want a view per record instead of reusing one. The view doesn't read anything until a
+     * field is asked for, so this is only the view itself.
+     */
+    public static class ViewDeserializer implements Deserializer<JobView>
+    {
+        /**
+         * Default constructor needed by Kafka
+         */
+        public ViewDeserializer()
+        {
+            /* Default Empty Constructor */
+        }
+
+        @Override
+        public void configure(Map<String, ?> configs, boolean isKey) {}
+
+        @Override
+        public JobView deserialize(String topic, byte[] bytes)
+        {
+            return bytes == null ? null : new JobView(bytes);
+        }
+
+        @Override
+        public void close() {}
+    }
+}
@@ -41,7 +41,11 @@ public class KafkaJsonDeserializer<T> implements Deserializer<T>
         T data;
         try
         {
-            data = objectMapper.readValue(bytes, tClass);
+            // The jobs are read by hand, anything else still goes through the ObjectMapper
+            if (JobJsonCodec.supports(tClass))
+                data = JobJsonCodec.fromJson(bytes, tClass);
+            else
+                data = objectMapper.readValue(bytes, tClass);
         }
         catch (Exception e)
         {
@@ -1,5 +1,6 @@
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
 import org.apache.kafka.common.serialization.Serializer;
 
 import java.util.Map;
@@ -35,6 +36,10 @@ public class KafkaJsonSerializer<T> implements Serializer<T> {
 
         try
         {
+            // The jobs are written by hand, anything else still goes through the ObjectMapper
+            if (JobJsonCodec.supports(data.getClass()))
+                return JobJsonCodec.toJson(data);
+
             return objectMapper.writeValueAsBytes(data);
         }
         catch (Exception e)
@@ -43,6 +48,23 @@ public class KafkaJsonSerializer<T> implements Serializer<T> {
         }
     }
 
+    /**
+     * What the producer calls. Jobs get their routing headers (see RoutingHeaders) stamped first so the router
+     * can route them without reading the JSON.
+     * @param topic The topic the data is going to.
+     * @param headers The headers of the record the data is going out in.
+     * @param data The java pojo to serialize.
+     * @return The json as bytes.
+     */
+    @Override
+    public byte[] serialize(String topic, Headers headers, T data)
+    {
+        if (headers != null && data != null)
+            RoutingHeaders.stamp(headers, data);
+
+        return serialize(topic, data);
+    }
+
     public void close() {}
 
 }
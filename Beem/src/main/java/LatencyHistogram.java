@@ -0,0 +1,153 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies that any number of threads can record into without allocating or locking, so it can
+ * sit on the routing hot path. Values are kept in microseconds in log-linear buckets: every power of two is split
+ * into 8 buckets, so a percentile is never off by more than about 12%. That is plenty to watch the p99.
+ *
+ * The counts are never reset, call getSnapshot() at two points in time and compare them to see a single interval.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see RouterMetrics
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Default Empty Constructor
+     */
+    public LatencyHistogram()
+    {
+        /* Default Empty Constructor */
+    }
+
+    /**
+     * Records one latency.
+     * @param nanos The latency in nanoseconds. Negative values (clock weirdness) count as 0.
+     */
+    public void recordNanos(long nanos)
+    {
+        long micros = Math.max(0, nanos / 1000);
+
+        this.buckets.incrementAndGet(bucketFor(micros));
+        this.count.incrementAndGet();
+        this.sum.addAndGet(micros);
+
+        long currentMax = this.max.get();
+        while (micros > currentMax && !this.max.compareAndSet(currentMax, micros))
+            currentMax = this.max.get();
+    }
+
+    /**
+     * @return The number of latencies recorded.
+     */
+    public long getCount()
+    {
+        return this.count.get();
+    }
+
+    /**
+     * @return The average latency in microseconds, 0 if nothing has been recorded.
+     */
+    public double getMeanMicros()
+    {
+        long num = this.count.get();
+        return num == 0 ? 0 : (double) this.sum.get() / num;
+    }
+
+    /**
+     * @return The highest latency recorded in microseconds.
+     */
+    public long getMaxMicros()
+    {
+        return this.max.get();
+    }
+
+    /**
+     * Works out a percentile from the buckets. Meant for whoever is reading the metrics, not the hot path.
+     * @param percentile Between 0 and 100. Ex - 99.9
+     * @return The latency in microseconds that the percentile of the recorded latencies are at or under. This is
+     *      the top of the bucket so it's never lower than the real value. 0 if nothing has been recorded.
+     * @throws IllegalArgumentException Throws if the percentile isn't between 0 and 100.
+     */
+    public long getPercentileMicros(double percentile) throws IllegalArgumentException
+    {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("The percentile must be between 0 and 100!");
+
+        long[] snapshot = getSnapshot();
+        long total = 0;
+        for (long bucket : snapshot)
+            total += bucket;
+
+        if (total == 0)
+            return 0;
+
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++)
+        {
+            seen += snapshot[i];
+            if (seen >= target)
+                return Math.min(upperBoundOf(i), getMaxMicros());
+        }
+
+        return getMaxMicros();
+    }
+
+    /**
+     * @return A copy of the bucket counts.
+     */
+    public long[] getSnapshot()
+    {
+        long[] snapshot = new long[NUM_BUCKETS];
+        for (int i = 0; i < NUM_BUCKETS; i++)
+            snapshot[i] = this.buckets.get(i);
+
+        return snapshot;
+    }
+
+    /**
+     * Values under 8 get a bucket each, after that each power of two gets 8 buckets.
+     * @param micros The latency in microseconds.
+     * @return The bucket for the latency.
+     */
+    static int bucketFor(long micros)
+    {
+        if (micros < SUB_BUCKETS)
+            return (int) micros;
+
+        int highestBit = 63 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) (micros >>> (highestBit - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+        return (highestBit - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @param bucket The bucket.
+     * @return The highest latency in microseconds that lands in the bucket.
+     */
+    static long upperBoundOf(int bucket)
+    {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+
+        int highestBit = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        long width = 1L << (highestBit - SUB_BUCKET_BITS);
+
+        return (1L << highestBit) + (subBucket + 1) * width - 1;
+    }
+}
@@ -0,0 +1,65 @@
+import org.apache.kafka.clients.producer.ProducerConfig;
+
+import java.util.Properties;
+
+/**
+ * Predefined producer batching setups for the city producer. LATENCY sends jobs almost as soon as they come in,
+ * which is what we want on a quiet night. THROUGHPUT waits a little to fill up big compressed batches, which is
+ * what we want during exam week when the brokers are getting hammered with tiny requests. BULK is for the
+ * ReplayRouter, which only cares about how fast the whole backlog gets through.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see AdaptiveProducer
+ * @see AdaptiveBatchingController
+ */
+public enum ProducerProfile
+{
+    LATENCY(1, 16384, "none"),
+    THROUGHPUT(20, 262144, "lz4"),
+    BULK(100, 1048576, "lz4"); // replaying history, nobody is waiting on any single job
+
+    private final int lingerMs;
+    private final int batchSize;
+    private final String compression;
+
+    ProducerProfile(int lingerMs, int batchSize, String compression)
+    {
+        this.lingerMs = lingerMs;
+        this.batchSize = batchSize;
+        this.compression = compression;
+    }
+
+    /**
+     * Copies the base properties and sets the batching properties for this profile on top of them.
+     * @param base The connection and serializer properties for the producer.
+     * @return The properties to build a producer with this profile.
+     */
+    public Properties apply(Properties base)
+    {
+        Properties props = new Properties();
+        props.putAll(base);
+        props.put(ProducerConfig.LINGER_MS_CONFIG, Integer.toString(this.lingerMs));
+        props.put(ProducerConfig.BATCH_SIZE_CONFIG, Integer.toString(this.batchSize));
+        props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, this.compression);
+
+        return props;
+    }
+
+    public int getLingerMs()
+    {
+        return this.lingerMs;
+    }
+
+    public int getBatchSize()
+    {
+        return this.batchSize;
+    }
+
+    public String getCompression()
+    {
+        return this.compression;
+    }
+}
@@ -0,0 +1,135 @@
+import com.lmax.disruptor.EventFactory;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+/**
+ * A slot in the DisruptorRouter's ring buffer. The ring buffer creates all of these up front and reuses them, the
+ * consumer thread drops a raw record into one, the parsing handlers fill in where it is going and the sending
+ * handler sends it.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see DisruptorRouter
+ */
+public class RecordEvent
+{
+    public static final EventFactory<RecordEvent> FACTORY = RecordEvent::new;
+
+    private ConsumerRecord<String, byte[]> record;
+    private String topic;
+    private Integer partition; // null lets the producer pick
+    private String key;
+    private RuntimeException error;
+    private long polledAt;
+    private boolean lastOfRecord; // false for every job of an envelope (see JobBatch) but its last one
+    private long generation; // how many times partitions had been revoked when the record was polled
+
+    /**
+     * Default Empty Constructor
+     */
+    public RecordEvent()
+    {
+        /* Default Empty Constructor */
+    }
+
+    /**
+     * Puts a new record into this slot and clears out whatever the last record left behind.
+     * @param record The raw record we consumed from the school topic.
+     * @param polledAt When the record was polled, from System.nanoTime().
+     */
+    public void set(ConsumerRecord<String, byte[]> record, long polledAt)
+    {
+        set(record, polledAt, true, 0);
+    }
+
+    /**
+     * Same as above for a job unpacked from an envelope. The envelope's offset is only done once its last job is.
+     * @param lastOfRecord False if more jobs from the same envelope come after this one.
+     * @param generation How many times partitions had been revoked when the record was polled, so the sending
+     *      handler can tell a record polled before its partition was taken away from one polled after.
+     */
+    public void set(ConsumerRecord<String, byte[]> record, long polledAt, boolean lastOfRecord, long generation)
+    {
+        this.record = record;
+        this.lastOfRecord = lastOfRecord;
+        this.polledAt = polledAt;
+        this.generation = generation;
+        this.topic = null;
+        this.partition = null;
+        this.key = null;
+        this.error = null;
+    }
+
+    /**
+     * Called by a parsing handler once it knows where the job goes.
+     * @param topic The city topic the job should be sent to.
+     * @param partition The partition of the city topic, null to let the producer pick.
+     * @param key The key to send the job with.
+     */
+    public void setRoute(String topic, Integer partition, String key)
+    {
+        this.topic = topic;
+        this.partition = partition;
+        this.key = key;
+    }
+
+    /**
+     * Called by a parsing handler if the job couldn't be routed.
+     * @param error What went wrong.
+     */
+    public void setError(RuntimeException error)
+    {
+        this.error = error;
+    }
+
+    /**
+     * Lets go of the record so it can be garbage collected while the slot waits to be reused.
+     */
+    public void clear()
+    {
+        this.record = null;
+    }
+
+    /** Getters */
+
+    public ConsumerRecord<String, byte[]> getRecord()
+    {
+        return this.record;
+    }
+
+    public String getTopic()
+    {
+        return this.topic;
+    }
+
+    public Integer getPartition()
+    {
+        return this.partition;
+    }
+
+    public String getKey()
+    {
+        return this.key;
+    }
+
+    public RuntimeException getError()
+    {
+        return this.error;
+    }
+
+    public long getPolledAt()
+    {
+        return this.polledAt;
+    }
+
+    public boolean isLastOfRecord()
+    {
+        return this.lastOfRecord;
+    }
+
+    public long getGeneration()
+    {
+        return this.generation;
+    }
+}
@@ -0,0 +1,620 @@
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Routes the history of the school topics again, for when we add a city or fix a routing bug. The live router only
+ * follows its consumer group, this reads a fixed range of offsets instead: from a point in time (or offsets we pick)
+ * up to the end of each partition as it was when the replay started, so jobs that come in while we replay are left
+ * to the live router.
+ *
+ * Where each job goes is still decided by the SchoolToCityStream, so a replay routes exactly like the live router
+ * does (gazetteer, partitioner, topic creation and all). Everything else is set up for getting through a big
+ * backlog: the consumers fetch megabytes at a time, the jobs go out through a separate producer with the BULK
+ * profile so the live router's latency isn't hurt, and the partitions are split over several threads. The replay
+ * doesn't use a consumer group, so it never moves the live router's offsets.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see SchoolToCityStream
+ * @see ProducerProfile#BULK
+ */
+public class ReplayRouter
+{
+    private static final Logger logger = LoggerFactory.getLogger(ReplayRouter.class);
+
+    private final SchoolToCityStream router;
+    private final int parallelism;
+    private final Producer<String, byte[]> producer;
+    private final Supplier<Consumer<String, byte[]>> consumers; // one for each worker
+
+    private final List<ReplayWorker> workers = new ArrayList<>();
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private volatile CountDownLatch finished = new CountDownLatch(0);
+    private final Set<TopicPartition> unfinished = ConcurrentHashMap.newKeySet(); // stopped before their end offset
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>(); // the first worker that died
+    private ScheduledExecutorService reporter;
+
+    // Progress
+    private final AtomicLong replayed = new AtomicLong(); // routed or sent to the dead letter topic
+    private final LongAdder deadLetters = new LongAdder();
+    private final LongAdder failedSends = new LongAdder();
+    private volatile long total;
+    private volatile long startedAt;
+    private long lastReportCount; // guarded by this
+    private long lastReportAt; // guarded by this
+
+    private static final long REPORT_INTERVAL_MS = 10000;
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+
+    // Big fetches so every request to the school broker brings back a lot of jobs
+    private static final int FETCH_MIN_BYTES = 1024 * 1024;
+    private static final int FETCH_MAX_WAIT_MS = 500;
+    private static final int MAX_PARTITION_FETCH_BYTES = 8 * 1024 * 1024;
+    private static final int FETCH_MAX_BYTES = 64 * 1024 * 1024;
+    private static final int MAX_POLL_RECORDS = 10000;
+    private static final long PRODUCER_BUFFER_BYTES = 128L * 1024 * 1024;
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        // Route the last day of texas-am-university again
+        SchoolToCityStream router = new SchoolToCityStream("TX", "Texas A&M University",
+                "texas-am-university", "localhost:9092", "localhost:9092", "tx-school-city-redirect");
+        ReplayRouter replay = new ReplayRouter(router, Runtime.getRuntime().availableProcessors());
+
+        replay.replayFrom(Collections.singletonList("texas-am-university"),
+                System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1));
+        try
+        {
+            // Throws if a replay thread died, the partitions it didn't finish are in the message
+            replay.awaitCompletion(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        finally
+        {
+            replay.close();
+            router.shutdown();
+        }
+    }
+
+    /**
+     * Constructor for the replay. Creates the bulk producer but doesn't read anything until start() is called.
+     * @param router The router that decides where each job goes.
+     * @param parallelism The most threads to read with. Each thread gets its own share of the partitions.
+     * @throws IllegalArgumentException Throws if parallelism is less than 1.
+     */
+    public ReplayRouter(SchoolToCityStream router, int parallelism) throws IllegalArgumentException
+    {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("The replay needs at least 1 thread!");
+
+        this.router = router;
+        this.parallelism = parallelism;
+        this.producer = new KafkaProducer<String, byte[]>(getProducerProps());
+        this.consumers = () -> new KafkaConsumer<String, byte[]>(getConsumerProps());
+    }
+
+    /**
+     * Same as above but with our own producer and consumers so the tests don't need a broker.
+     */
+    ReplayRouter(SchoolToCityStream router, int parallelism, Producer<String, byte[]> producer,
+                 Supplier<Consumer<String, byte[]>> consumers) throws IllegalArgumentException
+    {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("The replay needs at least 1 thread!");
+
+        this.router = router;
+        this.parallelism = parallelism;
+        this.producer = producer;
+        this.consumers = consumers;
+    }
+
+    /**
+     * Replays every job in the topics from a point in time up to where the topics end right now.
+     * @param topics The school topics to replay.
+     * @param timestampMs Where to start, in milliseconds since the epoch.
+     * @throws IllegalStateException Throws if the replay was already started.
+     * @throws NoSuchElementException Throws if one of the topics doesn't exist.
+     */
+    public void replayFrom(Collection<String> topics, long timestampMs) throws IllegalStateException, NoSuchElementException
+    {
+        try (KafkaConsumer<String, byte[]> consumer = new KafkaConsumer<String, byte[]>(getConsumerProps()))
+        {
+            List<TopicPartition> partitions = partitionsOf(consumer, topics);
+            Map<TopicPartition, Long> timestamps = new HashMap<>();
+            for (TopicPartition partition : partitions)
+                timestamps.put(partition, timestampMs);
+
+            Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+            start(startOffsets(consumer.offsetsForTimes(timestamps), endOffsets), endOffsets);
+        }
+    }
+
+    /**
+     * Replays every job in the topics from the offsets given up to where the topics end right now.
+     * @param startOffsets The offset to start each partition at.
+     * @throws IllegalStateException Throws if the replay was already started.
+     */
+    public void replayFrom(Map<TopicPartition, Long> startOffsets) throws IllegalStateException
+    {
+        try (KafkaConsumer<String, byte[]> consumer = new KafkaConsumer<String, byte[]>(getConsumerProps()))
+        {
+            start(startOffsets, consumer.endOffsets(startOffsets.keySet()));
+        }
+    }
+
+    /**
+     * Starts replaying. Returns right away, use awaitCompletion() to wait for it to finish.
+     * @param startOffsets The offset to start each partition at.
+     * @param endOffsets The offset to stop each partition at, the job at this offset isn't replayed.
+     * @throws IllegalArgumentException Throws if a partition doesn't have an end offset.
+     * @throws IllegalStateException Throws if the replay was already started.
+     */
+    public void start(Map<TopicPartition, Long> startOffsets, Map<TopicPartition, Long> endOffsets)
+            throws IllegalArgumentException, IllegalStateException
+    {
+        for (TopicPartition partition : startOffsets.keySet())
+        {
+            if (endOffsets.get(partition) == null)
+                throw new IllegalArgumentException("There is no end offset for " + partition + "!");
+        }
+
+        if (!this.started.compareAndSet(false, true))
+            throw new IllegalStateException("The replay was already started!");
+
+        // Partitions that have nothing to replay don't need a thread
+        List<TopicPartition> partitions = new ArrayList<>();
+        long jobs = 0;
+        for (Map.Entry<TopicPartition, Long> entry : startOffsets.entrySet())
+        {
+            long count = endOffsets.get(entry.getKey()) - entry.getValue();
+            if (count > 0)
+            {
+                partitions.add(entry.getKey());
+                jobs += count;
+            }
+        }
+
+        this.total = jobs;
+        this.startedAt = System.nanoTime();
+        synchronized (this)
+        {
+            this.lastReportAt = this.startedAt;
+        }
+
+        List<List<TopicPartition>> shares = split(partitions, this.parallelism);
+        this.finished = new CountDownLatch(shares.size());
+
+        for (int i = 0; i < shares.size(); i++)
+        {
+            ReplayWorker worker = new ReplayWorker(shares.get(i), startOffsets, endOffsets);
+            this.workers.add(worker);
+
+            Thread thread = new Thread(worker, "replay-" + i);
+            thread.start();
+        }
+
+        this.reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replay-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.reporter.scheduleAtFixedRate(this::reportProgress, REPORT_INTERVAL_MS, REPORT_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+
+        logger.info("Replaying {} jobs from {} partitions with {} threads", jobs, partitions.size(), shares.size());
+    }
+
+    /**
+     * Waits for every partition to reach its end offset and for the producer to send everything.
+     * @param timeout How long to wait.
+     * @param unit The unit of the timeout.
+     * @return True if the replay finished, false if we timed out first or it was shut down before every partition
+     *      reached its end (see getUnfinishedPartitions()).
+     * @throws InterruptedException Throws if the thread is interrupted while waiting.
+     * @throws IllegalStateException Throws if one of the replay threads died, the cause is what killed it. The other
+     *      threads still finish their partitions first.
+     */
+    public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException, IllegalStateException
+    {
+        if (!this.finished.await(timeout, unit))
+            return false;
+
+        this.producer.flush();
+        reportProgress();
+
+        RuntimeException error = this.failure.get();
+        if (error != null)
+            throw new IllegalStateException("The replay failed, " + this.unfinished.size()
+                    + " partitions didn't reach their end offset: " + this.unfinished, error);
+
+        return this.unfinished.isEmpty();
+    }
+
+    /**
+     * Stops the replay early. The jobs read so far are still sent.
+     */
+    public void shutdown()
+    {
+        this.closed.set(true);
+        for (ReplayWorker worker : this.workers)
+            worker.consumer.wakeup();
+    }
+
+    /**
+     * Stops the replay if it is still going and closes the producer once everything read has been sent.
+     * @throws InterruptedException Throws if the thread is interrupted while waiting for the readers to stop.
+     */
+    public void close() throws InterruptedException
+    {
+        shutdown();
+        this.finished.await();
+
+        if (this.reporter != null)
+            this.reporter.shutdownNow();
+
+        this.producer.flush();
+        this.producer.close();
+    }
+
+    /**
+     * Logs how far along we are and how fast we are going since the last report.
+     */
+    public synchronized void reportProgress()
+    {
+        long now = System.nanoTime();
+        long count = this.replayed.get();
+        double seconds = (now - this.lastReportAt) / 1e9;
+        double rate = seconds <= 0 ? 0 : (count - this.lastReportCount) / seconds;
+        double elapsed = (now - this.startedAt) / 1e9;
+        double overall = elapsed <= 0 ? 0 : count / elapsed;
+
+        this.lastReportCount = count;
+        this.lastReportAt = now;
+
+        long total = this.total;
+        double percent = total == 0 ? 100 : 100.0 * count / total;
+        long secondsLeft = overall <= 0 ? -1 : (long) ((total - count) / overall);
+
+        // Formatted by hand for the rounding, so don't bother when nobody is listening
+        if (logger.isInfoEnabled())
+            logger.info(String.format("Replayed %d of %d jobs (%.1f%%) at %.0f jobs/s, about %ds left. %d dead letters, %d failed sends",
+                    count, total, percent, rate, secondsLeft, this.deadLetters.sum(), this.failedSends.sum()));
+    }
+
+    /**
+     * Works out where each partition starts from what offsetsForTimes() found.
+     * @param found The first offset at or after the timestamp for each partition. Kafka gives back null for a
+     *      partition that has nothing that new.
+     * @param endOffsets Where each partition ends.
+     * @return The start offset for each partition. Partitions with nothing newer start at their end.
+     */
+    static Map<TopicPartition, Long> startOffsets(Map<TopicPartition, OffsetAndTimestamp> found,
+                                                  Map<TopicPartition, Long> endOffsets)
+    {
+        Map<TopicPartition, Long> starts = new HashMap<>();
+        for (Map.Entry<TopicPartition, Long> entry : endOffsets.entrySet())
+        {
+            OffsetAndTimestamp offset = found.get(entry.getKey());
+            starts.put(entry.getKey(), offset == null ? entry.getValue() : offset.offset());
+        }
+
+        return starts;
+    }
+
+    /**
+     * Deals the partitions out between the threads like cards so every thread gets about the same number.
+     * @param partitions The partitions to replay.
+     * @param threads The most threads to use.
+     * @return Each thread's partitions. Never more lists than partitions.
+     */
+    static List<List<TopicPartition>> split(Collection<TopicPartition> partitions, int threads)
+    {
+        int numShares = Math.min(threads, partitions.size());
+        List<List<TopicPartition>> shares = new ArrayList<>(numShares);
+        for (int i = 0; i < numShares; i++)
+            shares.add(new ArrayList<>());
+
+        int next = 0;
+        for (TopicPartition partition : partitions)
+        {
+            shares.get(next).add(partition);
+            next = (next + 1) % numShares;
+        }
+
+        return shares;
+    }
+
+    private static List<TopicPartition> partitionsOf(KafkaConsumer<String, byte[]> consumer, Collection<String> topics)
+            throws NoSuchElementException
+    {
+        List<TopicPartition> partitions = new ArrayList<>();
+        for (String topic : topics)
+        {
+            List<PartitionInfo> infos = consumer.partitionsFor(topic);
+            if (infos == null || infos.isEmpty())
+                throw new NoSuchElementException("The school topic '" + topic + "' doesn't exist!");
+
+            for (PartitionInfo info : infos)
+                partitions.add(new TopicPartition(info.topic(), info.partition()));
+        }
+
+        return partitions;
+    }
+
+    /**
+     * The router's consumer properties without the consumer group, with big fetches.
+     * @return The properties for the replay consumers.
+     */
+    public Properties getConsumerProps()
+    {
+        Properties props = this.router.getConsumerProps();
+        props.remove(ConsumerConfig.GROUP_ID_CONFIG);
+        props.remove(ConsumerConfig.AUTO_COMMIT_INTERVAL_MS_CONFIG);
+        props.setProperty(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        props.setProperty(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, Integer.toString(FETCH_MIN_BYTES));
+        props.setProperty(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, Integer.toString(FETCH_MAX_WAIT_MS));
+        props.setProperty(ConsumerConfig.MAX_PARTITION_FETCH_BYTES_CONFIG, Integer.toString(MAX_PARTITION_FETCH_BYTES));
+        props.setProperty(ConsumerConfig.FETCH_MAX_BYTES_CONFIG, Integer.toString(FETCH_MAX_BYTES));
+        props.setProperty(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, Integer.toString(MAX_POLL_RECORDS));
+        props.setProperty(ConsumerConfig.RECEIVE_BUFFER_CONFIG, Integer.toString(FETCH_MIN_BYTES));
+
+        return props;
+    }
+
+    /**
+     * The router's producer properties with the BULK profile and a bigger buffer.
+     * @return The properties for the replay producer.
+     */
+    public Properties getProducerProps()
+    {
+        Properties props = this.router.getProducerProps();
+        props.put(ProducerConfig.BUFFER_MEMORY_CONFIG, Long.toString(PRODUCER_BUFFER_BYTES));
+
+        return ProducerProfile.BULK.apply(props);
+    }
+
+    /** Getters */
+
+    public long getReplayed()
+    {
+        return this.replayed.get();
+    }
+
+    public long getTotal()
+    {
+        return this.total;
+    }
+
+    public long getDeadLetters()
+    {
+        return this.deadLetters.sum();
+    }
+
+    public long getFailedSends()
+    {
+        return this.failedSends.sum();
+    }
+
+    /**
+     * @return The partitions whose thread stopped before reaching their end offset, because it failed or the
+     *      replay was shut down. Only complete once awaitCompletion() returns.
+     */
+    public Set<TopicPartition> getUnfinishedPartitions()
+    {
+        return Collections.unmodifiableSet(this.unfinished);
+    }
+
+    /**
+     * Remembers why a replay thread died. The first failure is the one awaitCompletion() throws, the rest are
+     * added to it.
+     */
+    private void fail(RuntimeException e)
+    {
+        if (!this.failure.compareAndSet(null, e))
+            this.failure.get().addSuppressed(e);
+    }
+
+    /**
+     * Reads its share of the partitions from their start offsets to their end offsets and routes every job.
+     */
+    private class ReplayWorker implements Runnable
+    {
+        private final Consumer<String, byte[]> consumer;
+        private final RoutingExtractor extractor = new RoutingExtractor();
+        private final Map<TopicPartition, Long> remaining = new HashMap<>(); // partition -> end offset
+
+        private ReplayWorker(List<TopicPartition> partitions, Map<TopicPartition, Long> startOffsets,
+                             Map<TopicPartition, Long> endOffsets)
+        {
+            this.consumer = consumers.get();
+            this.consumer.assign(partitions);
+
+            for (TopicPartition partition : partitions)
+            {
+                this.consumer.seek(partition, startOffsets.get(partition));
+                this.remaining.put(partition, endOffsets.get(partition));
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                while (!this.remaining.isEmpty() && !closed.get())
+                {
+                    ConsumerRecords<String, byte[]> records = this.consumer.poll(POLL_TIMEOUT);
+
+                    for (TopicPartition partition : records.partitions())
+                    {
+                        Long end = this.remaining.get(partition);
+                        if (end == null)
+                            continue;
+
+                        for (ConsumerRecord<String, byte[]> record : records.records(partition))
+                        {
+                            if (record.offset() >= end)
+                                break;
+                            routeAll(record);
+                        }
+                    }
+
+                    finishPartitions();
+                }
+            }
+            catch (WakeupException e)
+            {
+                // Ignore exception if closing
+                if (!closed.get())
+                    fail(e);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            catch (RuntimeException e)
+            {
+                // Like the producer being closed under us, the rest of our partitions can't be replayed
+                fail(e);
+            }
+            finally
+            {
+                unfinished.addAll(this.remaining.keySet());
+                try
+                {
+                    this.consumer.close();
+                }
+                finally
+                {
+                    finished.countDown();
+                }
+            }
+        }
+
+        /**
+         * Stops reading partitions that have reached their end offset. Checks the position instead of the last
+         * job we saw since the last few offsets can be transaction markers that never show up as jobs.
+         */
+        private void finishPartitions()
+        {
+            List<TopicPartition> done = new ArrayList<>();
+            for (Map.Entry<TopicPartition, Long> entry : this.remaining.entrySet())
+            {
+                if (this.consumer.position(entry.getKey()) >= entry.getValue())
+                    done.add(entry.getKey());
+            }
+
+            if (done.isEmpty())
+                return;
+
+            this.consumer.pause(done);
+            for (TopicPartition partition : done)
+                this.remaining.remove(partition);
+        }
+
+        /**
+         * Routes the job in a record, or every job if it is an envelope from a bulk producer (see JobBatch).
+         */
+        private void routeAll(ConsumerRecord<String, byte[]> record) throws InterruptedException
+        {
+            List<ConsumerRecord<String, byte[]>> jobs;
+            try
+            {
+                jobs = JobBatch.unpack(record);
+            }
+            catch (IllegalArgumentException e)
+            {
+                router.getDeadLetters().publish(record, e);
+                deadLetters.increment();
+                replayed.incrementAndGet();
+                return;
+            }
+
+            for (ConsumerRecord<String, byte[]> job : jobs)
+                route(job);
+        }
+
+        /**
+         * Routes one job the same way the live router would. Waits for new city topics to be created since
+         * nobody is waiting on a replay.
+         */
+        private void route(ConsumerRecord<String, byte[]> record) throws InterruptedException
+        {
+            RoutingFields fields;
+            String topic;
+
+            try
+            {
+                fields = router.extractFields(this.extractor, record.headers(), record.value());
+                topic = router.getDestinationTopic(fields);
+            }
+            catch (IllegalArgumentException | NoSuchElementException e)
+            {
+                router.getDeadLetters().publish(record, e);
+                deadLetters.increment();
+                replayed.incrementAndGet();
+                return;
+            }
+
+            router.awaitTopic(topic);
+
+            // The producer already retried, so like the live router the job goes to the dead letter topic
+            ProducerRecord<String, byte[]> cityRecord = new ProducerRecord<String, byte[]>(topic,
+                    router.getDestinationPartition(topic, fields), fields.getCustomer_id(), record.value(),
+                    record.headers());
+            if (!router.isOnCityBroker(topic))
+            {
+                // The routing table sends it to another cluster, our bulk producer is only for the city broker
+                router.send(cityRecord);
+                replayed.incrementAndGet();
+                return;
+            }
+
+            producer.send(cityRecord, (metadata, error) -> {
+                if (error != null)
+                {
+                    failedSends.increment();
+                    router.publishDeadLetterLater(cityRecord, error, 1);
+                }
+            });
+
+            replayed.incrementAndGet();
+        }
+    }
+}
@@ -1,7 +1,5 @@
 //import sun.security.provider.AbstractDrbg;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.Date;
@@ -295,6 +293,15 @@ public class RideShareJob implements Serializable
             throw new IllegalArgumentException("Longitude coordinates must be > -180 and < 180");
     }
 
+    /**
+     * Sets how many passengers are riding.
+     * @param num_passengers Number of passengers for this ride.
+     */
+    public void setNum_passengers(int num_passengers)
+    {
+        this.num_passengers = num_passengers;
+    }
+
     public void setPickup_time(Date pickup_time)
     {
         this.pickup_time = pickup_time;
@@ -305,6 +312,24 @@ public class RideShareJob implements Serializable
         this.dropoff_time = dropoff_time;
     }
 
+    /**
+     * Sets the members that are normally derived from the addresses or set by the constructors, exactly as they
+     * were sent. Used by the codecs that rebuild a job field by field so the addresses don't get parsed again and
+     * the job comes back the same as it was, even if its city doesn't match its address.
+     */
+    void restore(String job_type, String to_address, String to_city, String to_state, String to_zipcode,
+                 String from_address, String from_city, String from_state, String from_zipcode)
+    {
+        this.job_type = job_type;
+        this.to_address = to_address;
+        this.to_city = to_city;
+        this.to_state = to_state;
+        this.to_zipcode = to_zipcode;
+        this.from_address = from_address;
+        this.from_city = from_city;
+        this.from_state = from_state;
+        this.from_zipcode = from_zipcode;
+    }
 
     /**
      * Compares this instance of the class to another instance of this class to see if they are equal. This is made
@@ -340,10 +365,9 @@ public class RideShareJob implements Serializable
     {
         StringBuilder json = new StringBuilder();
 
-        ObjectMapper mapper = new ObjectMapper();
         try
         {
-            json.append(mapper.writerWithDefaultPrettyPrinter().writeValueAsString(this));
+            json.append(JobJsonCodec.toPrettyJson(this));
         }
         catch (IOException e)
         {
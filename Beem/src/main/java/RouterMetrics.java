@@ -0,0 +1,317 @@
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Everything we measure about a SchoolToCityStream router, exported over JMX. Recording is just counter increments
+ * and a histogram bucket so none of it allocates on the hot path; the percentiles, maps and consumer lag are only
+ * worked out when someone reads them.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see RouterMetricsMXBean
+ * @see SchoolToCityStream
+ */
+public class RouterMetrics implements RouterMetricsMXBean
+{
+    private static final Logger logger = LoggerFactory.getLogger(RouterMetrics.class);
+
+    private final String appName;
+    private final TopicResolver topicResolver;
+    private final AsyncTopicCreator topicCreator;
+    private final BackPressureMonitor backPressure;
+    private final CircuitBreaker circuitBreaker;
+
+    private final LatencyHistogram routingLatency = new LatencyHistogram();
+    private final ThroughputTracker destinations = new ThroughputTracker();
+    private final ThroughputTracker schools = new ThroughputTracker();
+    private final LongAdder sendErrors = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder deadLetters = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+
+    // Every consumer polling for this router, we read the lag from their own metrics
+    private final Set<Consumer<?, ?>> consumers = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    private ObjectName objectName;
+
+    private static final String FETCH_METRICS_GROUP = "consumer-fetch-manager-metrics";
+    private static final String RECORDS_LAG_METRIC = "records-lag";
+
+    /**
+     * Constructor for the metrics. Any of the router parts can be null, their metrics just read 0.
+     * @param appName The router's name, used for the JMX name. Ex - tx-school-city-redirect
+     * @param topicResolver The router's topic name cache.
+     * @param topicCreator The router's topic creator.
+     * @param backPressure The router's in flight counts.
+     * @param circuitBreaker The router's circuit breaker.
+     */
+    public RouterMetrics(String appName, TopicResolver topicResolver, AsyncTopicCreator topicCreator,
+                         BackPressureMonitor backPressure, CircuitBreaker circuitBreaker)
+    {
+        this.appName = appName;
+        this.topicResolver = topicResolver;
+        this.topicCreator = topicCreator;
+        this.backPressure = backPressure;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Exports the metrics over JMX. If something with the same name is already there (two routers with the same
+     * app name in one process) we just don't export.
+     */
+    public void register()
+    {
+        try
+        {
+            ObjectName name = new ObjectName("Beem:type=SchoolToCityStream,name=" + ObjectName.quote(this.appName));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            this.objectName = name;
+        }
+        catch (JMException e)
+        {
+            logger.warn("Couldn't export the router metrics over JMX", e);
+        }
+    }
+
+    /**
+     * Stops exporting the metrics over JMX.
+     */
+    public void unregister()
+    {
+        if (this.objectName == null)
+            return;
+
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(this.objectName))
+                server.unregisterMBean(this.objectName);
+        }
+        catch (JMException e)
+        {
+            // Nothing to do, we are shutting down anyway
+        }
+
+        this.objectName = null;
+    }
+
+    /** Recording, called by the router */
+
+    /**
+     * A city broker acknowledged a job.
+     * @param topic The city topic the job went to.
+     * @param polledAtNanos When the job was polled, from System.nanoTime().
+     */
+    public void recordAck(String topic, long polledAtNanos)
+    {
+        this.routingLatency.recordNanos(System.nanoTime() - polledAtNanos);
+        this.destinations.record(topic);
+    }
+
+    public void recordSendError()
+    {
+        this.sendErrors.increment();
+    }
+
+    public void recordRetry()
+    {
+        this.retries.increment();
+    }
+
+    public void recordDeadLetter()
+    {
+        this.deadLetters.increment();
+    }
+
+    public void recordDuplicate()
+    {
+        this.duplicates.increment();
+    }
+
+    /**
+     * @param consumer A consumer that started polling for the router.
+     */
+    public void registerConsumer(Consumer<?, ?> consumer)
+    {
+        this.consumers.add(consumer);
+    }
+
+    /**
+     * @param consumer A consumer that is about to be closed.
+     */
+    public void unregisterConsumer(Consumer<?, ?> consumer)
+    {
+        this.consumers.remove(consumer);
+    }
+
+    /**
+     * @return The jobs routed from each school topic. The routing threads count into this.
+     */
+    public ThroughputTracker getSchoolThroughput()
+    {
+        return this.schools;
+    }
+
+    /**
+     * @return The histogram of poll to acknowledgement times.
+     */
+    public LatencyHistogram getRoutingLatency()
+    {
+        return this.routingLatency;
+    }
+
+    /** Reading, called over JMX */
+
+    @Override
+    public long getRecordsRouted()
+    {
+        return this.routingLatency.getCount();
+    }
+
+    @Override
+    public double getRoutingLatencyMeanMicros()
+    {
+        return this.routingLatency.getMeanMicros();
+    }
+
+    @Override
+    public long getRoutingLatencyP50Micros()
+    {
+        return this.routingLatency.getPercentileMicros(50);
+    }
+
+    @Override
+    public long getRoutingLatencyP99Micros()
+    {
+        return this.routingLatency.getPercentileMicros(99);
+    }
+
+    @Override
+    public long getRoutingLatencyP999Micros()
+    {
+        return this.routingLatency.getPercentileMicros(99.9);
+    }
+
+    @Override
+    public long getRoutingLatencyMaxMicros()
+    {
+        return this.routingLatency.getMaxMicros();
+    }
+
+    @Override
+    public Map<String, Long> getRecordsByDestination()
+    {
+        return this.destinations.getCounts();
+    }
+
+    @Override
+    public Map<String, Long> getRecordsBySchool()
+    {
+        return this.schools.getCounts();
+    }
+
+    /**
+     * The consumers already work out their lag for every partition they fetch, this just collects it.
+     * @return The lag for every school partition, keyed by 'topic-partition'.
+     */
+    @Override
+    public Map<String, Double> getConsumerLag()
+    {
+        Map<String, Double> lag = new HashMap<>();
+
+        for (Consumer<?, ?> consumer : this.consumers)
+        {
+            for (Map.Entry<MetricName, ? extends Metric> entry : consumer.metrics().entrySet())
+            {
+                MetricName name = entry.getKey();
+                if (!name.name().equals(RECORDS_LAG_METRIC) || !name.group().equals(FETCH_METRICS_GROUP))
+                    continue;
+
+                String topic = name.tags().get("topic");
+                String partition = name.tags().get("partition");
+                Object value = entry.getValue().metricValue();
+
+                if (topic != null && partition != null && value instanceof Double && !((Double) value).isNaN())
+                    lag.put(topic + "-" + partition, (Double) value);
+            }
+        }
+
+        return lag;
+    }
+
+    @Override
+    public long getSendErrors()
+    {
+        return this.sendErrors.sum();
+    }
+
+    @Override
+    public long getRetries()
+    {
+        return this.retries.sum();
+    }
+
+    @Override
+    public long getDeadLetters()
+    {
+        return this.deadLetters.sum();
+    }
+
+    @Override
+    public long getDuplicatesDropped()
+    {
+        return this.duplicates.sum();
+    }
+
+    @Override
+    public long getTopicsCreated()
+    {
+        return this.topicCreator == null ? 0 : this.topicCreator.getNumCreated();
+    }
+
+    @Override
+    public long getTopicCreationFailures()
+    {
+        return this.topicCreator == null ? 0 : this.topicCreator.getNumFailed();
+    }
+
+    @Override
+    public double getTopicCacheHitRate()
+    {
+        return this.topicResolver == null ? 0 : this.topicResolver.getHitRate();
+    }
+
+    @Override
+    public long getInFlightRecords()
+    {
+        return this.backPressure == null ? 0 : this.backPressure.getInFlightRecords();
+    }
+
+    @Override
+    public long getInFlightBytes()
+    {
+        return this.backPressure == null ? 0 : this.backPressure.getInFlightBytes();
+    }
+
+    @Override
+    public String getCircuitBreakerState()
+    {
+        return this.circuitBreaker == null ? CircuitBreaker.State.CLOSED.name() : this.circuitBreaker.getState().name();
+    }
+}
@@ -0,0 +1,71 @@
+import java.util.Map;
+
+/**
+ * What the router exports over JMX. Open jconsole (or point a JMX exporter) at the router's process and look under
+ * Beem:type=SchoolToCityStream.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see RouterMetrics
+ */
+public interface RouterMetricsMXBean
+{
+    /** @return The number of jobs the city brokers have acknowledged. */
+    long getRecordsRouted();
+
+    /** @return The average time from polling a job to the city broker acknowledging it. */
+    double getRoutingLatencyMeanMicros();
+
+    /** @return The median time from polling a job to the city broker acknowledging it. */
+    long getRoutingLatencyP50Micros();
+
+    /** @return The 99th percentile time from polling a job to the city broker acknowledging it. */
+    long getRoutingLatencyP99Micros();
+
+    /** @return The 99.9th percentile time from polling a job to the city broker acknowledging it. */
+    long getRoutingLatencyP999Micros();
+
+    /** @return The longest time from polling a job to the city broker acknowledging it. */
+    long getRoutingLatencyMaxMicros();
+
+    /** @return The jobs acknowledged for each city topic. */
+    Map<String, Long> getRecordsByDestination();
+
+    /** @return The jobs routed from each school topic. */
+    Map<String, Long> getRecordsBySchool();
+
+    /** @return How far behind each school partition is ('topic-partition' -> jobs behind). */
+    Map<String, Double> getConsumerLag();
+
+    /** @return The sends the city brokers failed, retries included. */
+    long getSendErrors();
+
+    /** @return The sends we retried after backing off. */
+    long getRetries();
+
+    /** @return The jobs sent to the dead letter topic. */
+    long getDeadLetters();
+
+    /** @return The jobs we didn't send because we had already sent them. */
+    long getDuplicatesDropped();
+
+    /** @return The city topics we created. */
+    long getTopicsCreated();
+
+    /** @return The times creating a city topic failed. */
+    long getTopicCreationFailures();
+
+    /** @return The fraction of jobs whose topic name was already cached. */
+    double getTopicCacheHitRate();
+
+    /** @return The jobs waiting on the city brokers. */
+    long getInFlightRecords();
+
+    /** @return Roughly how many bytes are waiting on the city brokers. */
+    long getInFlightBytes();
+
+    /** @return CLOSED, OPEN or HALF_OPEN. */
+    String getCircuitBreakerState();
+}
@@ -0,0 +1,141 @@
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One consumer thread of the RouterWorkerPool. Every worker has its own consumer in the router's consumer group
+ * (consumers aren't thread safe) but they all share the router's producer. Kafka splits the partitions of the
+ * school topic between the workers and the worker tells the pool whenever its partitions change so the pool
+ * can add or remove workers.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see RouterWorkerPool
+ */
+public class RouterWorker implements Runnable, ConsumerRebalanceListener
+{
+    private final int id;
+    private final SchoolToCityStream router;
+    private final RouterWorkerPool pool;
+    private final Consumer<String, byte[]> consumer;
+    private final RoutingExtractor extractor = new RoutingExtractor(); // extractors aren't thread safe so each worker gets one
+
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private volatile int numPartitions;
+
+    /**
+     * Constructor for a worker. Creates the consumer but doesn't subscribe until run() is called.
+     * @param id The id of this worker, used to name the thread.
+     * @param router The router that decides where each job goes and owns the shared producer.
+     * @param pool The pool that this worker reports partition changes to.
+     */
+    public RouterWorker(int id, SchoolToCityStream router, RouterWorkerPool pool)
+    {
+        this(id, router, pool, new KafkaConsumer<String, byte[]>(router.getConsumerProps()));
+    }
+
+    /**
+     * Constructor for a worker with a consumer that was already created.
+     * @param id The id of this worker, used to name the thread.
+     * @param router The router that decides where each job goes and owns the shared producer.
+     * @param pool The pool that this worker reports partition changes to.
+     * @param consumer The consumer this worker polls with, not subscribed yet.
+     */
+    RouterWorker(int id, SchoolToCityStream router, RouterWorkerPool pool, Consumer<String, byte[]> consumer)
+    {
+        this.id = id;
+        this.router = router;
+        this.pool = pool;
+        this.consumer = consumer;
+    }
+
+    /**
+     * Polls the school topic and routes every job until shutdown() is called.
+     */
+    public void run()
+    {
+        this.router.getMetrics().registerConsumer(this.consumer);
+
+        try
+        {
+            this.router.subscribe(this.consumer, this);
+            while (!closed.get())
+            {
+                ConsumerRecords<String, byte[]> records = this.consumer.poll(Duration.ofMillis(500));
+                this.router.routeRecords(records, this.extractor, this.consumer);
+            }
+        }
+        catch (WakeupException e)
+        {
+            // Ignore exception if closing
+            if (!closed.get())
+                throw e;
+        }
+        finally
+        {
+            this.router.getMetrics().unregisterConsumer(this.consumer);
+            this.consumer.close();
+            this.pool.workerStopped(this);
+        }
+    }
+
+    /**
+     * Stops this worker. Safe to call from any thread, the consumer gets closed by the worker's own thread.
+     */
+    public void shutdown()
+    {
+        this.closed.set(true);
+        this.consumer.wakeup();
+    }
+
+    /**
+     * Called by the consumer (on this worker's thread) before a rebalance takes partitions away. Makes sure
+     * everything we routed from those partitions has been sent before another worker picks them up.
+     * @param partitions The partitions that were taken away from this worker.
+     */
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions)
+    {
+        this.numPartitions = 0; // so the pool doesn't count them while the rest of the workers get new ones
+        this.router.flush();
+    }
+
+    /**
+     * Called by the consumer (on this worker's thread) after a rebalance gives this worker its new partitions.
+     * @param partitions The partitions this worker now owns.
+     */
+    @Override
+    public void onPartitionsAssigned(Collection<TopicPartition> partitions)
+    {
+        this.numPartitions = partitions.size();
+        int topicPartitions = this.router.getSchoolPartitionCount();
+
+        this.pool.onPartitionsAssigned(this, partitions.size(), topicPartitions);
+    }
+
+    /** Getters */
+
+    public int getId()
+    {
+        return this.id;
+    }
+
+    public int getNumPartitions()
+    {
+        return this.numPartitions;
+    }
+
+    public boolean isClosed()
+    {
+        return this.closed.get();
+    }
+}
@@ -0,0 +1,266 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * Runs a SchoolToCityStream router with multiple consumer threads so one process can use every core on a
+ * school topic with lots of partitions. All of the workers are in the same consumer group and share the
+ * router's producer. The pool never runs more workers than this process was given partitions (extra consumers
+ * would just sit there) so workers get added as partitions show up and idle workers get removed when a
+ * rebalance leaves them with nothing to do. Other processes in the group take their share of the partitions
+ * too, so once a worker comes back empty the pool stops growing until the school topic gets more partitions.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see RouterWorker
+ * @see SchoolToCityStream
+ */
+public class RouterWorkerPool
+{
+    private final SchoolToCityStream router;
+    private final int maxWorkers;
+    private final Map<RouterWorker, Thread> workers = new HashMap<>(); // guarded by this
+    private int nextWorkerId = 0; // guarded by this
+    private int workerCap = Integer.MAX_VALUE; // guarded by this, lowered when a worker comes back empty
+    private int capTopicPartitions = -1; // guarded by this, the partition count the cap was set at
+
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    private static final long REPORT_INTERVAL_MS = 10000;
+    private static final double GEO_MAX_DISTANCE_KM = 50;
+    private static final long DEDUP_EXPECTED_JOBS = 1000000; // per window
+    private static final double DEDUP_FALSE_POSITIVE_RATE = 0.0001;
+    private static final long DEDUP_WINDOW_MS = 10 * 60 * 1000;
+
+    public static void main(String[] args) throws InterruptedException, IOException
+    {
+        // Every texas school topic shares one router, so one producer and one set of city topic metadata
+        SchoolToCityStream router = new SchoolToCityStream("TX", "Texas Schools", Pattern.compile(".*-university"),
+                "localhost:9092", "localhost:9092", "tx-school-city-redirect");
+
+        // Jobs within 50km of a city we serve go to that city's topics
+        Path gazetteer = Paths.get("..", "Cities", "City Coordinates.txt");
+        if (Files.exists(gazetteer))
+            router.setGazetteer(CityGazetteer.load(gazetteer), GEO_MAX_DISTANCE_KM);
+
+        // Merged cities, job type overrides and other clusters, picked up again whenever the file is saved
+        Path routingTable = Paths.get("..", "Cities", "Routing Table.json");
+        if (Files.exists(routingTable))
+            router.watchRoutingTable(routingTable);
+
+        // Don't send a job again if it shows up within 10 minutes, about 5MB for a million jobs. Starts out knowing
+        // what the city topics got in the last 10 minutes so a restart doesn't send those again.
+        router.setDeduplicator(new JobDeduplicator(DEDUP_EXPECTED_JOBS, DEDUP_FALSE_POSITIVE_RATE, DEDUP_WINDOW_MS));
+        router.seedDeduplicator();
+
+        RouterWorkerPool pool = new RouterWorkerPool(router, Runtime.getRuntime().availableProcessors());
+        Runtime.getRuntime().addShutdownHook(new Thread(pool::shutdown));
+
+        Timer reporter = new Timer("school-throughput", true);
+        reporter.scheduleAtFixedRate(new TimerTask()
+        {
+            @Override
+            public void run()
+            {
+                router.reportThroughput();
+            }
+        }, REPORT_INTERVAL_MS, REPORT_INTERVAL_MS);
+
+        pool.start();
+        pool.awaitShutdown();
+    }
+
+    /**
+     * Constructor for the pool.
+     * @param router The router that decides where jobs go and owns the shared producer.
+     * @param maxWorkers The most consumer threads we are allowed to run. Usually the number of cores.
+     * @throws IllegalArgumentException Throws if maxWorkers is less than 1.
+     */
+    public RouterWorkerPool(SchoolToCityStream router, int maxWorkers) throws IllegalArgumentException
+    {
+        if (maxWorkers < 1)
+            throw new IllegalArgumentException("The pool needs at least 1 worker!");
+
+        this.router = router;
+        this.maxWorkers = maxWorkers;
+    }
+
+    /**
+     * Starts one worker. The rest get started as the first worker finds out how many partitions the school
+     * topic has.
+     */
+    public synchronized void start()
+    {
+        if (this.workers.isEmpty())
+            addWorker();
+    }
+
+    /**
+     * Called by a worker's rebalance listener after it gets its partitions. Retires the worker if it didn't get
+     * any and there are other workers, otherwise adds workers until there is one per partition this process owns
+     * (up to the max). The school topic's partition count is only used to notice new partitions: the rest of the
+     * group gets some of them, so sizing from it would start workers that get nothing, retire, and rebalance the
+     * group again forever.
+     * @param worker The worker that got new partitions.
+     * @param assigned The number of partitions the worker got.
+     * @param topicPartitions The number of partitions the school topic has.
+     */
+    synchronized void onPartitionsAssigned(RouterWorker worker, int assigned, int topicPartitions)
+    {
+        if (this.closed.get())
+            return;
+
+        if (topicPartitions != this.capTopicPartitions)
+        {
+            // New partitions (or the first rebalance), there could be room for more workers again
+            this.workerCap = Integer.MAX_VALUE;
+            this.capTopicPartitions = topicPartitions;
+        }
+
+        if (assigned == 0)
+        {
+            // The group has more consumers than partitions, adding workers again would only bring this back
+            int active = activeWorkers();
+            this.workerCap = Math.max(1, active - 1);
+
+            // Nothing for this worker to do, stopping it triggers another rebalance for the rest of the group
+            if (active > 1)
+                worker.shutdown();
+
+            return;
+        }
+
+        int wanted = Math.min(Math.min(this.maxWorkers, this.workerCap), ownedPartitions());
+        while (activeWorkers() < wanted)
+            addWorker();
+    }
+
+    /**
+     * Called by a worker once its consumer has been closed.
+     * @param worker The worker that stopped.
+     */
+    synchronized void workerStopped(RouterWorker worker)
+    {
+        this.workers.remove(worker);
+        notifyAll();
+    }
+
+    /**
+     * Stops every worker, waits for them to close their consumers and then closes the shared producer. Safe to
+     * call more than once and from any thread.
+     */
+    public void shutdown()
+    {
+        if (!this.closed.compareAndSet(false, true))
+            return;
+
+        List<Thread> threads;
+        synchronized (this)
+        {
+            for (RouterWorker worker : this.workers.keySet())
+                worker.shutdown();
+
+            threads = new ArrayList<>(this.workers.values());
+        }
+
+        for (Thread thread : threads)
+        {
+            try
+            {
+                thread.join();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        this.router.closeClients();
+    }
+
+    /**
+     * Blocks until every worker has stopped.
+     * @throws InterruptedException Throws if we get interrupted while waiting.
+     */
+    public synchronized void awaitShutdown() throws InterruptedException
+    {
+        while (!this.workers.isEmpty())
+            wait();
+    }
+
+    /**
+     * @return The number of workers that are currently running.
+     */
+    public synchronized int getNumWorkers()
+    {
+        return activeWorkers();
+    }
+
+    /**
+     * @return The workers that are currently running.
+     */
+    synchronized List<RouterWorker> getActiveWorkers()
+    {
+        List<RouterWorker> active = new ArrayList<>();
+        for (RouterWorker worker : this.workers.keySet())
+            if (!worker.isClosed())
+                active.add(worker);
+
+        return active;
+    }
+
+    private int activeWorkers()
+    {
+        int count = 0;
+        for (RouterWorker worker : this.workers.keySet())
+            if (!worker.isClosed())
+                count++;
+
+        return count;
+    }
+
+    /**
+     * @return The number of partitions this process's workers were given in the current rebalance. Workers that
+     * haven't been told their partitions yet count as 0.
+     */
+    private int ownedPartitions()
+    {
+        int owned = 0;
+        for (RouterWorker worker : this.workers.keySet())
+            if (!worker.isClosed())
+                owned += worker.getNumPartitions();
+
+        return owned;
+    }
+
+    /**
+     * Creates a worker for the pool, its thread gets started by the pool.
+     * @param id The id of the worker.
+     * @return The new worker.
+     */
+    RouterWorker newWorker(int id)
+    {
+        return new RouterWorker(id, this.router, this);
+    }
+
+    private void addWorker()
+    {
+        RouterWorker worker = newWorker(this.nextWorkerId++);
+        Thread thread = new Thread(worker, "router-worker-" + worker.getId());
+
+        this.workers.put(worker, thread);
+        thread.start();
+    }
+}
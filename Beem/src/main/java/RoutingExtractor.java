@@ -0,0 +1,263 @@
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+/**
+ * Pulls the routing fields (customer_id, city, state and job_type) out of a job in a single pass using Jackson's
+ * streaming parser. We used to parse every job into a JSONObject twice (once for the key and once for the topic)
+ * which built the whole tree each time. This only looks at the top level fields we care about and stops as soon as
+ * it has all of them. Jobs straight from DeliveryJob and RideShareJob don't have a city or state field, those get
+ * routed on the from_city and from_state fields instead. The coordinates the job starts from (from_latitude and
+ * from_longitude) and its from_zipcode are picked up too if they come before the routing fields. The router only
+ * has us keep scanning for them (see require()) when it routes to the nearest city or partitions by area.
+ *
+ * The router hands over the raw bytes it consumed so the job is never turned into a String. Jobs in the binary
+ * format (see BinaryJobCodec) are decoded instead of scanned, they are small and their fields are at fixed spots.
+ * Jobs that were stamped with routing headers when they were created (see RoutingHeaders) aren't read at all.
+ *
+ * This class is NOT thread safe since it reuses the same RoutingFields for every job. Each routing thread
+ * should have its own extractor.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see RoutingFields
+ */
+public class RoutingExtractor
+{
+    // The factory is thread safe and expensive to create so everyone shares it
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final RoutingFields fields = new RoutingFields();
+    private final BinaryJobCodec<Object> binaryCodec = new BinaryJobCodec<>();
+
+    /**
+     * Default Empty Constructor
+     */
+    public RoutingExtractor()
+    {
+        /* Default Empty Constructor */
+    }
+
+    /**
+     * Sets which of the optional fields a job has to be scanned for before we stop reading it. Neither by default,
+     * so a job is only read up to its routing fields.
+     * @param coordinates True to keep scanning for from_latitude and from_longitude.
+     * @param zipcode True to keep scanning for from_zipcode.
+     */
+    public void require(boolean coordinates, boolean zipcode)
+    {
+        this.fields.require(coordinates, zipcode);
+    }
+
+    /**
+     * Scans the job once and fills in the routing fields. The returned object is reused on the next call so
+     * callers need to grab what they need from it before extracting the next job.
+     * @param job The json string representing the job
+     * @return The routing fields of the job.
+     * @throws IllegalArgumentException Throws if the job is null or isn't valid JSON.
+     * @throws NoSuchElementException Throws if the job is missing one of the routing fields.
+     */
+    public RoutingFields extract(String job) throws IllegalArgumentException, NoSuchElementException
+    {
+        this.fields.reset();
+
+        if (job == null)
+            throw new IllegalArgumentException("The job is empty!");
+
+        try (JsonParser parser = JSON_FACTORY.createParser(job))
+        {
+            scan(parser);
+        }
+        catch (IOException e)
+        {
+            throw new IllegalArgumentException("The job is not valid JSON!", e);
+        }
+
+        validate();
+
+        return this.fields;
+    }
+
+    /**
+     * Same as above but reads the job straight from the bytes we consumed, without building a String first.
+     * @param job The serialized job, either JSON in UTF-8 or the binary format.
+     * @return The routing fields of the job.
+     * @throws IllegalArgumentException Throws if the job is null or isn't a job we can read.
+     * @throws NoSuchElementException Throws if the job is missing one of the routing fields.
+     */
+    public RoutingFields extract(byte[] job) throws IllegalArgumentException, NoSuchElementException
+    {
+        this.fields.reset();
+
+        if (job == null)
+            throw new IllegalArgumentException("The job is empty!");
+
+        if (job.length > 0 && job[0] == BinaryJobCodec.MAGIC)
+        {
+            readBinary(job);
+        }
+        else
+        {
+            try (JsonParser parser = JSON_FACTORY.createParser(job))
+            {
+                scan(parser);
+            }
+            catch (IOException e)
+            {
+                throw new IllegalArgumentException("The job is not valid JSON!", e);
+            }
+        }
+
+        validate();
+
+        return this.fields;
+    }
+
+    /**
+     * Routes on the record's headers if the job was stamped with them, otherwise scans the job like above. The
+     * headers cost the same to read no matter how big the job is.
+     * @param headers The headers of the record we consumed. Can be null.
+     * @param job The serialized job, either JSON in UTF-8 or the binary format.
+     * @return The routing fields of the job.
+     * @throws IllegalArgumentException Throws if the job has no routing headers and is null or isn't a job we
+     *      can read.
+     * @throws NoSuchElementException Throws if the job has no routing headers and is missing one of the routing
+     *      fields.
+     */
+    public RoutingFields extract(Headers headers, byte[] job) throws IllegalArgumentException, NoSuchElementException
+    {
+        this.fields.reset();
+
+        if (RoutingHeaders.read(headers, this.fields))
+            return this.fields;
+
+        return extract(job); // older producers don't stamp headers, or stamped only some of them
+    }
+
+    /**
+     * Decodes a job in the binary format and copies its routing fields over.
+     * @param job The serialized job, starting with the magic byte.
+     * @throws IllegalArgumentException Throws if the job can't be decoded.
+     */
+    private void readBinary(byte[] job) throws IllegalArgumentException
+    {
+        Object decoded;
+        try
+        {
+            decoded = this.binaryCodec.deserialize(null, job);
+        }
+        catch (SerializationException e)
+        {
+            throw new IllegalArgumentException("The job is not a valid binary job!", e);
+        }
+
+        if (decoded instanceof DeliveryJob)
+        {
+            DeliveryJob delivery = (DeliveryJob) decoded;
+            this.fields.setCustomer_id(Long.toString(delivery.getCustomer_id()));
+            this.fields.setJob_type(delivery.getJob_type());
+            this.fields.setFrom_city(delivery.getFrom_city());
+            this.fields.setFrom_state(delivery.getFrom_state());
+            this.fields.setFrom_zipcode(delivery.getFrom_zipcode());
+        }
+        else if (decoded instanceof RideShareJob)
+        {
+            RideShareJob ride = (RideShareJob) decoded;
+            this.fields.setCustomer_id(Long.toString(ride.getCustomer_id()));
+            this.fields.setJob_type(ride.getJob_type());
+            this.fields.setFrom_city(ride.getFrom_city());
+            this.fields.setFrom_state(ride.getFrom_state());
+            this.fields.setFrom_zipcode(ride.getFrom_zipcode());
+            this.fields.setFrom_latitude(ride.getFrom_latitude());
+            this.fields.setFrom_longitude(ride.getFrom_longitude());
+        }
+    }
+
+    /**
+     * Walks the top level of the JSON object and picks out the routing fields. Anything nested (objects or arrays)
+     * gets skipped without being built. A field set to null counts as missing.
+     * @param parser The parser positioned before the start of the job.
+     * @throws IOException Throws if the JSON is malformed.
+     */
+    private void scan(JsonParser parser) throws IOException
+    {
+        if (parser.nextToken() != JsonToken.START_OBJECT)
+            throw new IOException("Expected the job to be a JSON object");
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME)
+        {
+            String name = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+
+            if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY)
+            {
+                parser.skipChildren();
+                continue;
+            }
+
+            // getText() would hand us the string "null" and route the job to a "null" city
+            if (value == JsonToken.VALUE_NULL)
+                continue;
+
+            switch (name)
+            {
+                case "customer_id":
+                    this.fields.setCustomer_id(parser.getText());
+                    break;
+                case "city":
+                    this.fields.setCity(parser.getText());
+                    break;
+                case "state":
+                    this.fields.setState(parser.getText());
+                    break;
+                case "job_type":
+                    this.fields.setJob_type(parser.getText());
+                    break;
+                case "from_city":
+                    this.fields.setFrom_city(parser.getText());
+                    break;
+                case "from_state":
+                    this.fields.setFrom_state(parser.getText());
+                    break;
+                case "from_zipcode":
+                    this.fields.setFrom_zipcode(parser.getText());
+                    break;
+                case "from_latitude":
+                    this.fields.setFrom_latitude(parser.getValueAsDouble(Double.NaN));
+                    break;
+                case "from_longitude":
+                    this.fields.setFrom_longitude(parser.getValueAsDouble(Double.NaN));
+                    break;
+                default:
+                    break;
+            }
+
+            // No need to look at the rest of the job once we have everything
+            if (this.fields.isComplete())
+                return;
+        }
+    }
+
+    /**
+     * Makes sure we found every field we need to route the job.
+     * @throws NoSuchElementException Throws if a routing field is missing.
+     */
+    private void validate() throws NoSuchElementException
+    {
+        if (this.fields.getCustomer_id() == null)
+            throw new NoSuchElementException("The job is missing the 'customer_id' field!");
+        if (this.fields.getCity() == null)
+            throw new NoSuchElementException("The job is missing the 'city' (or 'from_city') field!");
+        if (this.fields.getState() == null)
+            throw new NoSuchElementException("The job is missing the 'state' (or 'from_state') field!");
+        if (this.fields.getJob_type() == null)
+            throw new NoSuchElementException("The job is missing the 'job_type' field!");
+    }
+}
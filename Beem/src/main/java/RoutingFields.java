@@ -0,0 +1,174 @@
+/**
+ * Holds only the fields of a job that the router needs in order to decide where the job goes. This is filled in
+ * by the RoutingExtractor and is meant to be reused for every record a routing thread handles so we aren't
+ * creating a new object (or a whole JSON tree) for every job that comes through.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see RoutingExtractor
+ */
+public class RoutingFields
+{
+    private String customer_id;
+    private String city;
+    private String state;
+    private String job_type;
+    private String from_city; // what DeliveryJob and RideShareJob actually serialize, used if there is no city
+    private String from_state;
+    private String from_zipcode; // only used to partition by area
+    private double from_latitude = Double.NaN; // NaN when the job doesn't have coordinates
+    private double from_longitude = Double.NaN;
+
+    // Whether the extractor has to keep scanning for these, only when the gazetteer or the partitioner uses them
+    private boolean needCoordinates;
+    private boolean needZipcode;
+
+    /**
+     * Default Empty Constructor
+     */
+    public RoutingFields()
+    {
+        /* Default Empty Constructor */
+    }
+
+    /**
+     * Clears out the fields from the last job so this tuple can be reused for the next one.
+     */
+    void reset()
+    {
+        this.customer_id = null;
+        this.city = null;
+        this.state = null;
+        this.job_type = null;
+        this.from_city = null;
+        this.from_state = null;
+        this.from_zipcode = null;
+        this.from_latitude = Double.NaN;
+        this.from_longitude = Double.NaN;
+    }
+
+    /**
+     * Sets which of the optional fields the job has to be scanned for. Kept across reset().
+     * @param coordinates True if the coordinates are used, to route to the nearest city or partition by geohash.
+     * @param zipcode True if the zip code is used, to partition by zip prefix.
+     */
+    void require(boolean coordinates, boolean zipcode)
+    {
+        this.needCoordinates = coordinates;
+        this.needZipcode = zipcode;
+    }
+
+    /**
+     * Used to tell if we have found every field we need so the extractor can stop scanning the job early. The
+     * from_city and from_state fields count for the city and state, so a job with both should put city and state
+     * first or it is routed on wherever it starts from.
+     * @return True if all of the routing fields we need have been set.
+     */
+    boolean isComplete()
+    {
+        return this.customer_id != null && getCity() != null && getState() != null && this.job_type != null
+                && (!this.needCoordinates || hasCoordinates()) && (!this.needZipcode || this.from_zipcode != null);
+    }
+
+    /**
+     * A RideShareJob made without coordinates still serializes them as 0, so those count as missing too.
+     * @return True if the job has the coordinates it starts from.
+     */
+    public boolean hasCoordinates()
+    {
+        return !Double.isNaN(this.from_latitude) && !Double.isNaN(this.from_longitude)
+                && (this.from_latitude != 0 || this.from_longitude != 0);
+    }
+
+    /** Getters */
+
+    public String getCustomer_id()
+    {
+        return this.customer_id;
+    }
+
+    /**
+     * @return The city the job is routed on. Falls back to the city the job starts from if there isn't one.
+     */
+    public String getCity()
+    {
+        return this.city != null ? this.city : this.from_city;
+    }
+
+    /**
+     * @return The state the job is routed on. Falls back to the state the job starts from if there isn't one.
+     */
+    public String getState()
+    {
+        return this.state != null ? this.state : this.from_state;
+    }
+
+    public String getJob_type()
+    {
+        return this.job_type;
+    }
+
+    public String getFrom_zipcode()
+    {
+        return this.from_zipcode;
+    }
+
+    public double getFrom_latitude()
+    {
+        return this.from_latitude;
+    }
+
+    public double getFrom_longitude()
+    {
+        return this.from_longitude;
+    }
+
+    /** Setters */
+
+    void setCustomer_id(String customer_id)
+    {
+        this.customer_id = customer_id;
+    }
+
+    void setCity(String city)
+    {
+        this.city = city;
+    }
+
+    void setState(String state)
+    {
+        this.state = state;
+    }
+
+    void setJob_type(String job_type)
+    {
+        this.job_type = job_type;
+    }
+
+    void setFrom_city(String from_city)
+    {
+        this.from_city = from_city;
+    }
+
+    void setFrom_state(String from_state)
+    {
+        this.from_state = from_state;
+    }
+
+    void setFrom_zipcode(String from_zipcode)
+    {
+        this.from_zipcode = from_zipcode;
+    }
+
+    void setFrom_latitude(double from_latitude)
+    {
+        this.from_latitude = from_latitude;
+    }
+
+    void setFrom_longitude(double from_longitude)
+    {
+        this.from_longitude = from_longitude;
+    }
+}
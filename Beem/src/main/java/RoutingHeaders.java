@@ -0,0 +1,176 @@
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Puts the routing fields of a job in its record headers when the job is created, so the router can route it
+ * without reading the job at all. The headers hold the customer id (the router's key), the job type, the city,
+ * state and zip code the job starts from and, if the job has coordinates, a geohash of them. Reading a handful of
+ * short headers costs the same no matter how big the job is.
+ *
+ * KafkaJsonSerializer and BinaryJobCodec stamp the headers on every DeliveryJob and RideShareJob they serialize.
+ * Jobs sent by anything else (or by older producers) don't have them and get routed on their payload like before.
+ * The router trusts the headers, a producer that stamps them has to stamp the same values the job has.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see RoutingExtractor#extract(Headers, byte[])
+ */
+public final class RoutingHeaders
+{
+    public static final String CUSTOMER_ID = "route.customer_id";
+    public static final String JOB_TYPE = "route.job_type";
+    public static final String CITY = "route.city";
+    public static final String STATE = "route.state";
+    public static final String ZIPCODE = "route.zipcode";
+    public static final String GEOHASH = "route.geohash";
+
+    // The full 12 characters are a couple of centimeters across, the middle of the cell is as good as the coordinates
+    public static final int GEOHASH_PRECISION = Geohash.MAX_PRECISION;
+
+    private RoutingHeaders()
+    {
+        /* Only static helpers */
+    }
+
+    /**
+     * Stamps the routing headers for a job, replacing any the record already had.
+     * @param headers The headers of the record the job is going out in.
+     * @param job The job.
+     * @return False if it isn't a DeliveryJob or a RideShareJob, those don't get headers.
+     */
+    public static boolean stamp(Headers headers, Object job)
+    {
+        if (job instanceof DeliveryJob)
+        {
+            DeliveryJob delivery = (DeliveryJob) job;
+            stamp(headers, delivery.getCustomer_id(), delivery.getJob_type(), delivery.getFrom_city(),
+                    delivery.getFrom_state(), delivery.getFrom_zipcode(), null);
+            return true;
+        }
+
+        if (job instanceof RideShareJob)
+        {
+            RideShareJob ride = (RideShareJob) job;
+            stamp(headers, ride.getCustomer_id(), ride.getJob_type(), ride.getFrom_city(), ride.getFrom_state(),
+                    ride.getFrom_zipcode(), geohashOf(ride.getFrom_latitude(), ride.getFrom_longitude()));
+            return true;
+        }
+
+        return false;
+    }
+
+    private static void stamp(Headers headers, long customerId, String jobType, String city, String state,
+                              String zipcode, String geohash)
+    {
+        put(headers, CUSTOMER_ID, Long.toString(customerId));
+        put(headers, JOB_TYPE, jobType);
+        put(headers, CITY, city);
+        put(headers, STATE, state);
+        put(headers, ZIPCODE, zipcode);
+        put(headers, GEOHASH, geohash);
+    }
+
+    /**
+     * Same rule as RoutingFields.hasCoordinates(), a RideShareJob made without coordinates has them at 0.
+     * @return The geohash of the coordinates, or null if the job doesn't have any we can use.
+     */
+    private static String geohashOf(double latitude, double longitude)
+    {
+        if (latitude == 0 && longitude == 0)
+            return null;
+
+        try
+        {
+            return Geohash.encode(latitude, longitude, GEOHASH_PRECISION);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return null; // off the map, the router goes by the city instead
+        }
+    }
+
+    private static void put(Headers headers, String key, String value)
+    {
+        headers.remove(key);
+        if (value != null)
+            headers.add(key, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Fills in the routing fields from the headers in one pass over them. The fields aren't reset first.
+     * @param headers The headers of the record we consumed. Can be null.
+     * @param fields Where the fields go.
+     * @return True if the headers had every field we need to route the job (customer id, job type, city and
+     *      state). False means the job has to be routed on its payload.
+     */
+    static boolean read(Headers headers, RoutingFields fields)
+    {
+        if (headers == null)
+            return false;
+
+        for (Header header : headers)
+        {
+            String key = header.key();
+            if (!key.startsWith("route.") || header.value() == null)
+                continue;
+
+            switch (key)
+            {
+                case CUSTOMER_ID:
+                    fields.setCustomer_id(text(header));
+                    break;
+                case JOB_TYPE:
+                    fields.setJob_type(text(header));
+                    break;
+                case CITY:
+                    fields.setFrom_city(text(header));
+                    break;
+                case STATE:
+                    fields.setFrom_state(text(header));
+                    break;
+                case ZIPCODE:
+                    fields.setFrom_zipcode(text(header));
+                    break;
+                case GEOHASH:
+                    if (!readGeohash(text(header), fields))
+                        return false;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        return fields.getCustomer_id() != null && fields.getJob_type() != null && fields.getCity() != null
+                && fields.getState() != null;
+    }
+
+    /**
+     * @return False if the geohash isn't one we stamped.
+     */
+    private static boolean readGeohash(String geohash, RoutingFields fields)
+    {
+        if (geohash.length() != GEOHASH_PRECISION)
+            return false;
+
+        try
+        {
+            long bits = Geohash.toBits(geohash);
+            fields.setFrom_latitude(Geohash.latitude(bits, GEOHASH_PRECISION));
+            fields.setFrom_longitude(Geohash.longitude(bits, GEOHASH_PRECISION));
+            return true;
+        }
+        catch (IllegalArgumentException e)
+        {
+            return false;
+        }
+    }
+
+    private static String text(Header header)
+    {
+        return new String(header.value(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,276 @@
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * The rules for which topic, and which city cluster, a job is routed to. Without any rules a job goes to the
+ * "city-state-job" topic on the router's city broker like it always has. On top of that the table can hold:
+ *
+ * aliases - other spellings of a city's name, in any state. Ex - "St. Louis": "Saint Louis"
+ * merges - cities whose jobs go to another city's topics. Ex - "Bryan, TX": "College Station, TX"
+ * job_types - job types whose jobs go to another job type's topics. Ex - "courier": "delivery"
+ * clusters - the city clusters besides the router's own, by name. Ex - "east": "east-kafka:9092"
+ * state_clusters - states whose jobs go to one of those clusters. Ex - "NY": "east"
+ * job_type_clusters - job types whose jobs go to one of those clusters, only used if the state doesn't have one.
+ *
+ * A table never changes once it is loaded. The router swaps in a whole new table when the file changes, so a routing
+ * thread always sees every rule from the same version of the file and never has to lock anything to read it.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see RoutingTableWatcher
+ * @see SchoolToCityStream#setRoutingTable(RoutingTable)
+ */
+public class RoutingTable
+{
+    /**
+     * No rules at all, every job goes to the "city-state-job" topic on the router's city broker.
+     */
+    public static final RoutingTable DEFAULT = new RoutingTable(Collections.<String, String>emptyMap(),
+            Collections.<String, String[]>emptyMap(), Collections.<String, String>emptyMap(),
+            Collections.<String, String>emptyMap(), Collections.<String, String>emptyMap(),
+            Collections.<String, String>emptyMap());
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // Every key is lowercased and trimmed
+    private final Map<String, String> aliases;
+    private final Map<String, String[]> merges; // "city, state" -> {city, state}
+    private final Map<String, String> jobTypes;
+    private final Map<String, String> clusters; // cluster name -> bootstrap servers
+    private final Map<String, String> stateClusters; // state -> bootstrap servers
+    private final Map<String, String> jobTypeClusters; // job type -> bootstrap servers
+
+    private RoutingTable(Map<String, String> aliases, Map<String, String[]> merges, Map<String, String> jobTypes,
+                         Map<String, String> clusters, Map<String, String> stateClusters,
+                         Map<String, String> jobTypeClusters)
+    {
+        this.aliases = aliases;
+        this.merges = merges;
+        this.jobTypes = jobTypes;
+        this.clusters = clusters;
+        this.stateClusters = stateClusters;
+        this.jobTypeClusters = jobTypeClusters;
+    }
+
+    /**
+     * Loads the table from a json file.
+     * @param file The routing table file.
+     * @return The table.
+     * @throws IOException Throws if the file can't be read.
+     * @throws IllegalArgumentException Throws if the file isn't a valid routing table.
+     */
+    public static RoutingTable load(Path file) throws IOException, IllegalArgumentException
+    {
+        return parse(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses a routing table. Every section is optional.
+     * Ex - {"merges": {"Bryan, TX": "College Station, TX"}, "clusters": {"east": "east-kafka:9092"},
+     *      "state_clusters": {"NY": "east"}}
+     * @param json The routing table as json.
+     * @return The table.
+     * @throws IllegalArgumentException Throws if the json isn't a valid routing table, like a merge that isn't
+     *      "city, state" or a state sent to a cluster that isn't listed.
+     */
+    public static RoutingTable parse(String json) throws IllegalArgumentException
+    {
+        JsonNode root;
+        try
+        {
+            root = MAPPER.readTree(json);
+        }
+        catch (IOException e)
+        {
+            throw new IllegalArgumentException("The routing table isn't valid json: " + e.getMessage(), e);
+        }
+
+        if (root == null || !root.isObject())
+            throw new IllegalArgumentException("The routing table must be a json object!");
+
+        Map<String, String> aliases = readSection(root, "aliases");
+        Map<String, String> jobTypes = readSection(root, "job_types");
+
+        Map<String, String[]> merges = new HashMap<>();
+        for (Map.Entry<String, String> merge : readSection(root, "merges").entrySet())
+        {
+            String[] from = splitCity(merge.getKey());
+            merges.put(from[0] + ", " + from[1], splitCity(merge.getValue()));
+        }
+
+        Map<String, String> clusters = readSection(root, "clusters");
+        Map<String, String> stateClusters = readClusters(root, "state_clusters", clusters);
+        Map<String, String> jobTypeClusters = readClusters(root, "job_type_clusters", clusters);
+
+        return new RoutingTable(aliases, Collections.unmodifiableMap(merges), jobTypes, clusters, stateClusters,
+                jobTypeClusters);
+    }
+
+    /**
+     * Reads one section of the table as lowercased and trimmed names.
+     * @throws IllegalArgumentException Throws if the section isn't an object of strings.
+     */
+    private static Map<String, String> readSection(JsonNode root, String section) throws IllegalArgumentException
+    {
+        JsonNode node = root.get(section);
+        if (node == null || node.isNull())
+            return Collections.emptyMap();
+        if (!node.isObject())
+            throw new IllegalArgumentException("The " + section + " section must be a json object!");
+
+        Map<String, String> entries = new HashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+        while (fields.hasNext())
+        {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (!field.getValue().isTextual() || field.getValue().asText().trim().isEmpty())
+                throw new IllegalArgumentException("'" + field.getKey() + "' in " + section + " must be a name!");
+
+            entries.put(normalize(field.getKey()), normalize(field.getValue().asText()));
+        }
+
+        return Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * Reads a section that sends jobs to clusters and swaps the cluster names for their bootstrap servers.
+     * @throws IllegalArgumentException Throws if a cluster isn't in the clusters section.
+     */
+    private static Map<String, String> readClusters(JsonNode root, String section, Map<String, String> clusters)
+            throws IllegalArgumentException
+    {
+        Map<String, String> entries = new HashMap<>();
+        for (Map.Entry<String, String> entry : readSection(root, section).entrySet())
+        {
+            String servers = clusters.get(entry.getValue());
+            if (servers == null)
+                throw new IllegalArgumentException("The cluster '" + entry.getValue() + "' in " + section
+                        + " isn't in the clusters section!");
+
+            entries.put(entry.getKey(), servers);
+        }
+
+        return Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * @param city A city and state separated by a comma. Ex - College Station, TX
+     * @return The lowercased city and state code.
+     * @throws IllegalArgumentException Throws if there is no state or it isn't one.
+     */
+    private static String[] splitCity(String city) throws IllegalArgumentException
+    {
+        int comma = city.lastIndexOf(',');
+        String stateCode = comma < 0 ? null : Address.toStateCode(city.substring(comma + 1));
+        if (stateCode == null || city.substring(0, comma).trim().isEmpty())
+            throw new IllegalArgumentException("'" + city + "' must be the city and state separated by a comma!");
+
+        return new String[] { normalize(city.substring(0, comma)), stateCode.toLowerCase() };
+    }
+
+    private static String normalize(String name)
+    {
+        return name.toLowerCase().trim();
+    }
+
+    /**
+     * Works out where a job goes. Only called when the TopicResolver hasn't seen these values with this table yet.
+     * @param city The city exactly as it was in the job. Ex - Bryan
+     * @param state The state exactly as it was in the job. Ex - TX
+     * @param jobType The job type exactly as it was in the job. Ex - rideShare
+     * @return Where the job goes. Ex - 'college station-tx-rideshare' on the router's own cluster
+     */
+    public Route route(String city, String state, String jobType)
+    {
+        String cityName = normalize(city);
+        String stateCode = normalize(state);
+        String type = normalize(jobType);
+
+        String alias = this.aliases.get(cityName);
+        if (alias != null)
+            cityName = alias;
+
+        String[] merged = this.merges.get(cityName + ", " + stateCode);
+        if (merged != null)
+        {
+            cityName = merged[0];
+            stateCode = merged[1];
+        }
+
+        String topicType = this.jobTypes.get(type);
+        if (topicType != null)
+            type = topicType;
+
+        String cluster = this.stateClusters.get(stateCode);
+        if (cluster == null)
+            cluster = this.jobTypeClusters.get(type);
+
+        return new Route(SchoolToCityStream.buildTopicName(cityName, stateCode, type).intern(), cluster, this);
+    }
+
+    /**
+     * @return The bootstrap servers of every cluster in the table by name.
+     */
+    public Map<String, String> getClusters()
+    {
+        return this.clusters;
+    }
+
+    /**
+     * Where a job goes: the topic, and the cluster that has it.
+     */
+    public static class Route
+    {
+        private final String topic;
+        private final String cluster;
+        private final RoutingTable table;
+
+        private Route(String topic, String cluster, RoutingTable table)
+        {
+            this.topic = topic;
+            this.cluster = cluster;
+            this.table = table;
+        }
+
+        /**
+         * @return The interned topic name. Ex - 'college station-tx-rideshare'
+         */
+        public String getTopic()
+        {
+            return this.topic;
+        }
+
+        /**
+         * @return The bootstrap servers of the cluster, or null for the router's own city broker.
+         */
+        public String getCluster()
+        {
+            return this.cluster;
+        }
+
+        /**
+         * @return The table this route came from.
+         */
+        public RoutingTable getTable()
+        {
+            return this.table;
+        }
+
+        @Override
+        public String toString()
+        {
+            return this.cluster == null ? this.topic : this.topic + " on " + this.cluster;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.function.Consumer;
+
+/**
+ * Watches the routing table file and hands every new version of it to the router, so the rules can change without
+ * restarting the routers and rebalancing their groups. Runs on its own daemon thread, the routing threads never
+ * wait on it.
+ *
+ * A version that can't be read or parsed (like a file that is only half written) is skipped and the router keeps
+ * the table it has. The same goes for a table the router turns down, like one naming a cluster it can't reach.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see RoutingTable
+ * @see SchoolToCityStream#watchRoutingTable(Path)
+ */
+public class RoutingTableWatcher implements AutoCloseable
+{
+    private static final Logger logger = LoggerFactory.getLogger(RoutingTableWatcher.class);
+
+    private final Path file;
+    private final Consumer<RoutingTable> onChange;
+    private final WatchService watcher;
+    private final Thread thread;
+
+    /**
+     * Constructor for the watcher. Starts watching right away.
+     * @param file The routing table file.
+     * @param onChange Gets every table loaded from the file after it changes. Throws IllegalArgumentException or
+     *      IllegalStateException to turn a table down.
+     * @throws IOException Throws if the file's directory can't be watched.
+     */
+    public RoutingTableWatcher(Path file, Consumer<RoutingTable> onChange) throws IOException
+    {
+        this.file = file.toAbsolutePath();
+        this.onChange = onChange;
+        this.watcher = FileSystems.getDefault().newWatchService();
+
+        try
+        {
+            // Editors usually write a new file and rename it over the old one, so watch the directory
+            this.file.getParent().register(this.watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+        catch (IOException e)
+        {
+            this.watcher.close();
+            throw e;
+        }
+
+        this.thread = new Thread(this::watch, "routing-table-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    private void watch()
+    {
+        try
+        {
+            while (true)
+            {
+                WatchKey key = this.watcher.take();
+
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents())
+                {
+                    Object changedFile = event.context();
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                            || this.file.getFileName().equals(changedFile))
+                        changed = true;
+                }
+
+                if (changed)
+                    reload();
+
+                if (!key.reset())
+                {
+                    logger.warn("Stopped watching the routing table, {} is gone", this.file.getParent());
+                    return;
+                }
+            }
+        }
+        catch (InterruptedException | ClosedWatchServiceException e)
+        {
+            // Closed
+        }
+    }
+
+    /**
+     * Loads the file again and hands it to the router. Keeps the old table if anything goes wrong.
+     */
+    void reload()
+    {
+        try
+        {
+            this.onChange.accept(RoutingTable.load(this.file));
+
+            logger.info("Loaded a new routing table from {}", this.file);
+        }
+        catch (IOException | IllegalArgumentException | IllegalStateException e)
+        {
+            logger.warn("Keeping the old routing table, couldn't use {}", this.file, e);
+        }
+    }
+
+    /**
+     * Stops watching the file.
+     */
+    @Override
+    public void close()
+    {
+        try
+        {
+            this.watcher.close();
+        }
+        catch (IOException e)
+        {
+            // Nothing left to do with it
+        }
+
+        this.thread.interrupt();
+    }
+}
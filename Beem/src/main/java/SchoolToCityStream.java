@@ -1,25 +1,42 @@
 import com.sun.tools.classfile.ConstantPool;
 import org.apache.kafka.clients.consumer.*;
+import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
 import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.TopicPartitionInfo;
+import org.apache.kafka.common.errors.RetriableException;
 import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.header.Headers;
 import org.apache.kafka.common.serialization.Serdes;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.streams.StreamsBuilder;
 import org.apache.kafka.streams.StreamsConfig;
 import org.apache.kafka.streams.Topology;
-import org.json.JSONObject;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.kafka.streams.kstream.KStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 
 /**
  * This class is meant to look at the topics of the schools set in the constructor and route the jobs
@@ -32,33 +49,86 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 public class SchoolToCityStream implements Runnable
 {
+    private static final Logger logger = LoggerFactory.getLogger(SchoolToCityStream.class);
+
     private String state;
     private String school;
     private String appName;
     private String schoolTopic;
+    private List<String> schoolTopics; // every school topic we route from when given a list
+    private Pattern schoolPattern; // matches the school topics we route from when given a pattern
     private String schoolBrokerAddress;
     private String cityBrokerAddress;
     private HashMap<String, String> cities; // used to keep the cities we have in our database and their topic names
-    private Map<String, String> cityTopics;
+    private TopicMetadataCache cityMetadata; // the city topics, refreshed in the background
+    private TopicMetadataCache schoolMetadata; // the same cache as the city's when both are on one broker
 
     // No longer used
     private Map<String, List<PartitionInfo>> cityDeliveryKTopics;
     private Map<String, List<PartitionInfo>> cityRideShareKTopics;
 
-    private KafkaConsumer<String, String> schoolConsumer;
-    private KafkaProducer<String, String> cityProducer;
+    private KafkaConsumer<String, byte[]> schoolConsumer;
+    private AdaptiveProducer<String, byte[]> cityProducer;
+    private AdaptiveBatchingController batchingController; // switches the city producer between batching profiles
+    private AsyncTopicCreator topicCreator; // creates new city topics without blocking the routing threads
+    private final Map<TopicPartition, String> waitingPartitions = new ConcurrentHashMap<>(); // paused until their topic exists
+    private final Map<TopicPartition, String> throttledPartitions = new ConcurrentHashMap<>(); // paused until their topic drains
+    private final Set<TopicPartition> saturatedPartitions = ConcurrentHashMap.newKeySet(); // paused until the producer drains
+    // The offset of the envelope (see JobBatch) a partition was rewound to and how many of its jobs already went out
+    private final Map<TopicPartition, Map.Entry<Long, Integer>> batchProgress = new ConcurrentHashMap<>();
+    private final BackPressureMonitor backPressure = new BackPressureMonitor(
+            new BackPressureMonitor.Watermarks(HIGH_WATER_BYTES, LOW_WATER_BYTES, HIGH_WATER_RECORDS, LOW_WATER_RECORDS),
+            new BackPressureMonitor.Watermarks(HIGH_WATER_BYTES / 2, LOW_WATER_BYTES / 2,
+                    HIGH_WATER_RECORDS / 2, LOW_WATER_RECORDS / 2));
     private Topology topology; // the final streams setup when it is complete
+    private final RoutingExtractor extractor = new RoutingExtractor(); // reused for every record on the routing thread
+    private final TopicResolver topicResolver = new TopicResolver(MAX_CACHED_TOPICS); // shared by every routing thread
+    private DeadLetterPublisher deadLetters; // where jobs we can't route end up
+    private ScheduledExecutorService retryScheduler; // resends failed jobs after backing off
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(BREAKER_FAILURE_THRESHOLD, BREAKER_OPEN_MS);
+    private RouterMetrics metrics; // exported over JMX
+    private volatile CityGazetteer gazetteer; // routes jobs with coordinates to the nearest city when set
+    private volatile double maxGeoDistanceKm;
+    private volatile CityPartitioner partitioner; // partitions the city topics by area when set
+    private volatile JobDeduplicator deduplicator; // drops jobs we have already sent when set
+    private volatile RoutingTable routingTable = RoutingTable.DEFAULT; // swapped whole when the rules change
+    private RoutingTableWatcher routingTableWatcher; // reloads the routing table when its file changes
+    private CityCluster defaultCluster; // the city broker's producer, metadata and topic creator
+    private final Map<String, CityCluster> clusters = new ConcurrentHashMap<>(); // other city clusters by bootstrap servers
+    private final Map<String, CityCluster> topicClusters = new ConcurrentHashMap<>(); // topics that aren't on the city broker
 
     private CountDownLatch latch; // used to kill the process when the time comes
     private final AtomicBoolean closed = new AtomicBoolean(false);
 
+    private static final int NEW_TOPIC_PARTITIONS = 1;
+    private static final int NEW_TOPIC_REPLICATION = 1;
+    private static final int MAX_PENDING_RECORDS = 10000; // jobs we hold onto while their topics are being created
+    private static final int MAX_CACHED_TOPICS = 4096;
+    private static final long BATCHING_CHECK_INTERVAL_MS = 10000;
+
+    // Kept under the producer's buffer.memory (32MB by default) so send() never has to block
+    private static final long HIGH_WATER_BYTES = 24 * 1024 * 1024;
+    private static final long LOW_WATER_BYTES = 8 * 1024 * 1024;
+    private static final long HIGH_WATER_RECORDS = 100000;
+    private static final long LOW_WATER_RECORDS = 25000;
+
+    private static final String DEAD_LETTER_SUFFIX = "-dead-letter";
+    private static final int MAX_SEND_ATTEMPTS = 3;
+    private static final long RETRY_BACKOFF_MS = 100; // doubles on every attempt
+    private static final long MAX_RETRY_BACKOFF_MS = 5000;
+    private static final long METADATA_TTL_MS = 30000;
+    private static final int BREAKER_FAILURE_THRESHOLD = 50;
+    private static final long BREAKER_OPEN_MS = 30000;
+    private static final long DEDUP_SEED_TIMEOUT_MS = 60000;
+
     public static void main(String[] args)
     {
         SchoolToCityStream cityStream = new SchoolToCityStream("TX", "Texas A&M University",
                 "texas-am-university", "localhost:9092", "localhost:9092", "tx-school-city-redirect");
     }
 
-    // TODO: MAKE THIS CLASS A MULTITHREADED CLASS SO WE CAN RUN MULTIPLE STREAMS FROM ONE MODULE
+    // Running this class as a Runnable only uses one consumer. Use RouterWorkerPool to run multiple consumers
+    // in the same group that share this class's producer.
     // INSTRUCTIONS HERE: 'https://kafka.apache.org/23/javadoc/index.html?org/apache/kafka/clients/consumer/KafkaConsumer.html'
 
     /**
@@ -88,21 +158,158 @@ public class SchoolToCityStream implements Runnable
     {
         setState(state);
         this.school = school;
+
+        // Get all of our topics in order so we can direct our messages to them.
+        connectMetadata(schoolBrokerAddress, cityBrokerAddress);
+        try
+        {
+            setSchoolTopic(schoolBrokerAddress, schoolTopic);
+        }
+        catch (NoSuchElementException e)
+        {
+            closeMetadata();
+            throw e;
+        }
+
+        connect(appName);
+    }
+
+    /**
+     * Constructor for routing several schools with one router. Every school shares the same producer, topic name
+     * cache and city topic metadata so adding a school doesn't add another set of connections to the city broker.
+     *
+     * @param state The state that the schools are located in. Two letter code: ex. TX, CA
+     * @param region What this group of schools is called. Only used for tracking. Ex - Texas Schools
+     * @param schoolTopics The school topics we are trying to stream from.
+     * @param schoolBrokerAddress The kafka broker topic connection string. Ex. - 'ipaddress:portNum'
+     * @param cityBrokerAddress The kafka broker that has the city topic we want. Ex - Ex. - 'ipaddress:portNum'.
+     * @param appName The name given to this splitter module. Ex - tx-school-city-redirect
+     * @throws NoSuchElementException Throws if any of the school topics don't exist at the school broker.
+     */
+    public SchoolToCityStream(String state, String region, Collection<String> schoolTopics,
+                              String schoolBrokerAddress, String cityBrokerAddress, String appName) throws NoSuchElementException
+    {
+        setState(state);
+        this.school = region;
+
+        connectMetadata(schoolBrokerAddress, cityBrokerAddress);
+        try
+        {
+            setSchoolTopics(schoolBrokerAddress, schoolTopics);
+        }
+        catch (NoSuchElementException | IllegalArgumentException e)
+        {
+            closeMetadata();
+            throw e;
+        }
+
+        connect(appName);
+    }
+
+    /**
+     * Constructor for routing every school topic that matches a pattern. Kafka checks for new matching topics
+     * every metadata.max.age.ms, so a new school gets picked up without restarting the router. The pattern must
+     * not match any of the city topics or we would end up routing the jobs we just routed.
+     *
+     * @param state The state that the schools are located in. Two letter code: ex. TX, CA
+     * @param region What this group of schools is called. Only used for tracking. Ex - Texas Schools
+     * @param schoolPattern Matches the school topics we are trying to stream from. Ex - .*-university
+     * @param schoolBrokerAddress The kafka broker topic connection string. Ex. - 'ipaddress:portNum'
+     * @param cityBrokerAddress The kafka broker that has the city topic we want. Ex - Ex. - 'ipaddress:portNum'.
+     * @param appName The name given to this splitter module. Ex - tx-school-city-redirect
+     */
+    public SchoolToCityStream(String state, String region, Pattern schoolPattern,
+                              String schoolBrokerAddress, String cityBrokerAddress, String appName)
+    {
+        setState(state);
+        this.school = region;
+        this.schoolPattern = schoolPattern;
+
+        connectMetadata(schoolBrokerAddress, cityBrokerAddress);
+        connect(appName);
+    }
+
+    /**
+     * For the tests, routes the school topics with the topics and producer we give it instead of connecting to the
+     * brokers. Creating a topic isn't possible, every topic it sends to has to be in the metadata.
+     * @param schoolTopics The school topics we are trying to stream from.
+     * @param metadata The topics on the school and city broker, which are the same broker here.
+     * @param producers Creates the city producer from its properties.
+     */
+    SchoolToCityStream(String state, String region, Collection<String> schoolTopics, TopicMetadataCache metadata,
+                       Function<Properties, Producer<String, byte[]>> producers, String appName)
+    {
+        setState(state);
+        this.school = region;
+        this.schoolBrokerAddress = "localhost:9092";
+        this.cityBrokerAddress = "localhost:9092";
+        this.cityMetadata = metadata;
+        this.schoolMetadata = metadata;
+        this.schoolTopics = Collections.unmodifiableList(new ArrayList<>(schoolTopics));
+        this.schoolTopic = this.schoolTopics.get(0);
+
+        connect(appName, producers);
+    }
+
+    /**
+     * Gets the topics from the school and city brokers once. From here on they are refreshed in the background.
+     */
+    private void connectMetadata(String schoolBrokerAddress, String cityBrokerAddress)
+    {
         this.schoolBrokerAddress = schoolBrokerAddress;
         this.cityBrokerAddress = cityBrokerAddress;
-        this.appName = appName;
 
-        // Get all of our topics in order so we can direct our messages to them.
-        setSchoolTopic(schoolBrokerAddress, schoolTopic);
 //        this.brokerKTopics = getKTopics(cityBrokerAddress);
-        this.cityTopics = getCityTopics(getKTopics(cityBrokerAddress));
+        this.cityMetadata = new TopicMetadataCache(cityBrokerAddress, METADATA_TTL_MS);
+        this.schoolMetadata = schoolBrokerAddress.equals(cityBrokerAddress) ? this.cityMetadata
+                : new TopicMetadataCache(schoolBrokerAddress, METADATA_TTL_MS);
+    }
+
+    private void closeMetadata()
+    {
+        this.cityMetadata.close();
+        if (this.schoolMetadata != this.cityMetadata)
+            this.schoolMetadata.close();
+    }
 
-        this.schoolConsumer = new KafkaConsumer<String, String>(getConsumerProps());
-        this.cityProducer = new KafkaProducer<String, String>(getProducerProps());
+    /**
+     * Sets up everything the schools share: the producer, the topic creator and the dead letter topic.
+     */
+    private void connect(String appName)
+    {
+        connect(appName, KafkaProducer::new);
+    }
 
+    private void connect(String appName, Function<Properties, Producer<String, byte[]>> producers)
+    {
+        this.appName = appName;
 
-        this.latch = new CountDownLatch(1);
+        // The consumer is created when run() starts since the worker pool brings its own consumers.
+        // The producer is thread safe so it gets shared by every thread routing for this school.
+        this.cityProducer = new AdaptiveProducer<String, byte[]>(getProducerProps(), ProducerProfile.LATENCY,
+                producers);
+        this.batchingController = new AdaptiveBatchingController(this.cityProducer);
+        this.batchingController.start(BATCHING_CHECK_INTERVAL_MS);
+        this.topicCreator = new AsyncTopicCreator(this.cityMetadata.getAdmin(), NEW_TOPIC_PARTITIONS,
+                NEW_TOPIC_REPLICATION, MAX_PENDING_RECORDS,
+                topic -> this.cityMetadata.markCreated(topic, NEW_TOPIC_PARTITIONS), this::sendCreated);
+        this.defaultCluster = new CityCluster(this.cityBrokerAddress, this.cityProducer, this.batchingController,
+                this.cityMetadata, this.topicCreator);
+
+        // Jobs we can't route go here instead of killing the routing thread
+        this.deadLetters = new DeadLetterPublisher(appName + DEAD_LETTER_SUFFIX, this::sendDeadLetter);
+        ensureTopicExists(this.deadLetters.getDeadLetterTopic());
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, appName + "-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.metrics = new RouterMetrics(appName, this.topicResolver, this.topicCreator, this.backPressure,
+                this.circuitBreaker);
+        this.metrics.register();
 
+        this.latch = new CountDownLatch(1);
     }
 
     /**
@@ -111,22 +318,16 @@ public class SchoolToCityStream implements Runnable
      */
     public void run()
     {
+        this.schoolConsumer = new KafkaConsumer<String, byte[]>(getConsumerProps());
+        this.metrics.registerConsumer(this.schoolConsumer);
+
         try
         {
-            this.schoolConsumer.subscribe(Arrays.asList(this.schoolTopic));
+            subscribe(this.schoolConsumer, null);
             while (!closed.get())
             {
-                ConsumerRecords records = this.schoolConsumer.poll(Duration.ofMillis(500));
-
-                records.forEach(record -> {
-                    String job = ((ConsumerRecord<String, String>) record).value();
-                    String key = getKey(job);
-                    String topic = getDestinationTopic((job));
-
-                    this.cityProducer.send(new ProducerRecord<String, String>(topic, key, job));
-                });
-
-                // Handle new records
+                ConsumerRecords<String, byte[]> records = this.schoolConsumer.poll(Duration.ofMillis(500));
+                routeRecords(records, this.extractor, this.schoolConsumer);
             }
         }
         catch (WakeupException e)
@@ -137,166 +338,1225 @@ public class SchoolToCityStream implements Runnable
         }
         finally
         {
+            // The consumer isn't thread safe so it has to be closed by the thread that polls it
+            this.metrics.unregisterConsumer(this.schoolConsumer);
             this.schoolConsumer.close();
+            closeClients();
+            this.latch.countDown();
         }
     }
 
     /**
-     * Gets called when we need to shut down this redirect module. Closes the consumer and the producer.
+     * Routes everything from one poll. If a partition hits a job whose topic is still being created and there is
+     * no room left to hold onto it, the partition gets rewound to that job and paused until the topic exists. The
+     * same happens if the city brokers are falling behind on that job's topic (or on all of them), until they catch
+     * up. That way the poll loop never waits on the broker and keeps polling so we stay in the group. This must be
+     * called from the thread that owns the consumer.
+     * @param records The records from the last poll.
+     * @param extractor The extractor owned by the calling thread.
+     * @param consumer The consumer the records came from.
      */
-    public void shutdown()
+    public void routeRecords(ConsumerRecords<String, byte[]> records, RoutingExtractor extractor,
+                             Consumer<String, byte[]> consumer)
     {
-        this.schoolConsumer.close();
-        this.cityProducer.close();
-        this.schoolConsumer.wakeup();
-        this.closed.set(true);
+        resumeWaitingPartitions(consumer);
+        long polledAt = System.nanoTime(); // routing latency is measured from here to the broker's ack
+
+        for (TopicPartition partition : records.partitions())
+        {
+            for (ConsumerRecord<String, byte[]> record : records.records(partition))
+            {
+                boolean routed = JobBatch.isBatch(record.value())
+                        ? routeBatch(partition, record, extractor, polledAt)
+                        : routeRecord(record, extractor, polledAt);
+                if (!routed)
+                {
+                    // Start from this job again once we resume
+                    rewindAndPause(consumer, partition, record.offset());
+                    break;
+                }
+            }
+        }
     }
 
     /**
-     * This is a helper to extract the key from the record. The key will be the string representation of the
-     * customer id. This can be changed at any point in the future as long as nothing is using the key for
-     * special things down stream.
-     * @param job The json string representing the job
-     * @return The customer id as a string to be sent as the key
+     * Routes every job in an envelope from a bulk producer (see JobBatch) on its own key and headers. An envelope
+     * that can't be unpacked goes to the dead letter topic whole. If one of the jobs has to wait, the partition gets
+     * rewound to the envelope like it would to a single job, and the jobs before it are remembered so they don't go
+     * out again when the envelope is polled again.
+     * @param partition The school partition the envelope came from.
+     * @param record The envelope.
+     * @param extractor The extractor owned by the calling thread.
+     * @param polledAt When the envelope was polled, from System.nanoTime().
+     * @return False if one of the jobs has to wait.
      */
-    public String getKey(String job)
+    private boolean routeBatch(TopicPartition partition, ConsumerRecord<String, byte[]> record,
+                               RoutingExtractor extractor, long polledAt)
+    {
+        List<ConsumerRecord<String, byte[]>> jobs;
+        try
+        {
+            jobs = JobBatch.unpack(record);
+        }
+        catch (IllegalArgumentException e)
+        {
+            this.deadLetters.publish(record, e);
+            return true;
+        }
+
+        Map.Entry<Long, Integer> progress = this.batchProgress.remove(partition);
+        int next = progress != null && progress.getKey() == record.offset() ? progress.getValue() : 0;
+
+        for (; next < jobs.size(); next++)
+        {
+            if (!routeRecord(jobs.get(next), extractor, polledAt))
+            {
+                this.batchProgress.put(partition, new AbstractMap.SimpleImmutableEntry<>(record.offset(), next));
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Routes a single job from the school topic to its city topic. This is safe to call from multiple threads
+     * as long as each thread passes in its own extractor. Jobs that can't be routed (bad JSON, missing fields) go
+     * to the dead letter topic so they don't stop the rest of the school from being routed. The job's bytes and
+     * headers go to the city topic exactly as they came in, they are never decoded into a String.
+     * @param record The record we consumed from the school topic.
+     * @param extractor The extractor owned by the calling thread.
+     * @return False if the job has to wait, either on its topic being created with no room left to hold onto it,
+     *      or on the city brokers catching up.
+     */
+    public boolean routeRecord(ConsumerRecord<String, byte[]> record, RoutingExtractor extractor)
     {
-        JSONObject json = new JSONObject(job);
-        return json.get("customer_id").toString();
+        return routeRecord(record, extractor, System.nanoTime());
     }
 
     /**
-     * Uses the city, state, and job type to determine what topic this job should be sent to. This uses the topic
-     * naming convention, which is "city-state-job"
-     * @param job The json representation of the job message that came from Kafka.
-     * @return The topic name that this job should be sent to.
+     * Same as above but the routing latency is measured from when the job was polled.
+     * @param polledAt When the job was polled, from System.nanoTime().
      */
-    public String getDestinationTopic(String job)
+    public boolean routeRecord(ConsumerRecord<String, byte[]> record, RoutingExtractor extractor, long polledAt)
     {
-        JSONObject json = new JSONObject(job);
-        String city = json.get("city").toString();
-        String stateCode = json.get("state").toString();
-        String jobType = json.get("job_type").toString();
+        byte[] job = record.value();
+        RoutingFields fields;
+        String topic;
+        JobDeduplicator dedup = this.deduplicator;
+        long fingerprint = 0;
 
-        StringBuilder topicName = new StringBuilder();
-        topicName.append(city.toLowerCase().trim())
-                .append("-")
-                .append(stateCode.toLowerCase().trim())
-                .append("-")
-                .append(jobType.toLowerCase().trim());
+        try
+        {
+            // Only scan the job once for both the key and the topic
+            fields = extractFields(extractor, record.headers(), job);
 
-        // TODO: NOTIFY USERS DOWNSTREAM THAT THERE IS A NEW TOPIC THAT NEEDS TO BE TRACKED AND CONSUMED
-        // If the topic doesn't exist, we need to create a new one and send it there.
-        if(!cityTopics.containsKey(topicName.toString()))
+            if (dedup != null)
+            {
+                fingerprint = JobDeduplicator.fingerprint(job);
+                if (dedup.isDuplicate(fingerprint))
+                {
+                    this.metrics.recordDuplicate();
+                    return true;
+                }
+            }
+
+            topic = getDestinationTopic(fields);
+        }
+        catch (IllegalArgumentException | NoSuchElementException e)
+        {
+            this.deadLetters.publish(record, e);
+            return true;
+        }
+
+        TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+
+        if (this.backPressure.isSaturated(topic) || this.circuitBreaker.isOpen())
         {
-            TopicCreator newTopic = new TopicCreator("localhost:2181", "localhost:9092");
-            newTopic.createTopic(topicName.toString(), 1, 1);
-            this.cityTopics.put(newTopic.getNewTopicName(), "new");
+            this.throttledPartitions.put(partition, topic);
+            return false;
         }
 
-        return topicName.toString();
+        ProducerRecord<String, byte[]> cityRecord = new ProducerRecord<String, byte[]>(topic,
+                getDestinationPartition(topic, fields), fields.getCustomer_id(), job, record.headers());
+        CityCluster cluster = clusterOf(topic);
+
+        if (cluster.getMetadata().contains(topic))
+        {
+            // Asked right before the send, the job testing a half open breaker has to actually go out
+            if (!this.circuitBreaker.allowRequest())
+            {
+                this.throttledPartitions.put(partition, topic);
+                return false;
+            }
+
+            try
+            {
+                send(cityRecord, polledAt);
+            }
+            catch (RuntimeException e)
+            {
+                this.circuitBreaker.releaseProbe();
+                throw e;
+            }
+        }
+        else if (!cluster.getTopicCreator().sendWhenCreated(cityRecord))
+        {
+            this.waitingPartitions.put(partition, topic);
+            return false;
+        }
+
+        // Only remembered once it is going out, a job we rewind to is polled again and isn't a duplicate
+        if (dedup != null)
+            dedup.add(fingerprint);
+
+        this.metrics.getSchoolThroughput().record(record.topic());
+        return true;
     }
 
     /**
-     * Sets the properties for us to start consuming messages from the school topic.
-     * @return The properties needed to start consuming from the school topic.
+     * Sends a job to the city producer and counts it as in flight until the broker answers. If the send fails
+     * after the producer is done retrying, it gets sent again a couple of times with a growing back off and then
+     * goes to the dead letter topic.
+     * @param record The job to send.
+     * @return The future from the producer for the first attempt.
      */
-    public Properties getConsumerProps()
+    public Future<RecordMetadata> send(ProducerRecord<String, byte[]> record)
     {
-        Properties props = new Properties();
-        props.setProperty(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, this.schoolBrokerAddress);
-        props.setProperty(ConsumerConfig.GROUP_ID_CONFIG, this.appName);
-        props.setProperty(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "true");
-        props.setProperty(ConsumerConfig.AUTO_COMMIT_INTERVAL_MS_CONFIG, "500"); // consume every 500 milliseconds
-        props.setProperty(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, "org.apache.kafka.common.serialization.StringDeserializer");
-        props.setProperty(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, "org.apache.kafka.common.serialization.StringDeserializer");
+        return send(record, 1, System.nanoTime(), null);
+    }
 
-        return props;
+    /**
+     * Same as above but the routing latency is measured from when the job was polled.
+     * @param polledAt When the job was polled, from System.nanoTime().
+     */
+    public Future<RecordMetadata> send(ProducerRecord<String, byte[]> record, long polledAt)
+    {
+        return send(record, 1, polledAt, null);
     }
 
     /**
-     * Sets the properties for us to start producing messages after we have processed the messages recieved
-     * by the consumer;
-     * @return The properties needed to start producing messages for the cities.
+     * Same as above but tells us once we are done with the job, for routers that commit their offsets themselves.
+     * That is after its retries, once the broker acked it or it went to the dead letter topic. The error is only set
+     * when even the dead letter couldn't be sent.
+     * @param done Called once we are done with the job, can be null. Runs on the producer's or the retry thread.
      */
-    public Properties getProducerProps()
+    public Future<RecordMetadata> send(ProducerRecord<String, byte[]> record, long polledAt, Callback done)
     {
-        Properties props = new Properties();
-        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, this.cityBrokerAddress);
-        props.put(ProducerConfig.ACKS_CONFIG, "all");
-        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, "org.apache.kafka.common.serialization.StringSerializer");
-        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, "org.apache.kafka.common.serialization.StringSerializer");
+        return send(record, 1, polledAt, done);
+    }
 
-        return props;
+    private Future<RecordMetadata> send(ProducerRecord<String, byte[]> record, int attempt, long polledAt,
+                                        Callback done)
+    {
+        Callback completion = this.backPressure.track(record);
+        Callback callback = (metadata, error) -> {
+            completion.onCompletion(metadata, error);
+            onSendComplete(record, attempt, polledAt, metadata, error, done);
+        };
+
+        try
+        {
+            return clusterOf(record.topic()).getProducer().send(record, callback);
+        }
+        catch (RuntimeException e)
+        {
+            completion.onCompletion(null, e); // the producer only calls back if it took the job
+            throw e;
+        }
     }
 
+    /**
+     * Called on the producer's thread once the broker answers, so nothing in here can block.
+     * @param record The job we sent.
+     * @param attempt Which attempt this was, starting at 1.
+     * @param polledAt When the job was polled, from System.nanoTime().
+     * @param metadata Where the job ended up, null if it wasn't sent.
+     * @param error Null if the job was sent, otherwise what went wrong.
+     * @param done Told once we are done with the job, can be null.
+     */
+    private void onSendComplete(ProducerRecord<String, byte[]> record, int attempt, long polledAt,
+                                RecordMetadata metadata, Exception error, Callback done)
+    {
+        if (error == null)
+        {
+            this.circuitBreaker.recordSuccess();
+            this.metrics.recordAck(record.topic(), polledAt);
+            complete(done, metadata, null);
+            return;
+        }
+
+        this.circuitBreaker.recordFailure();
+        this.metrics.recordSendError();
+
+        if (error instanceof RetriableException && attempt < MAX_SEND_ATTEMPTS && !this.closed.get())
+        {
+            long backoff = Math.min(MAX_RETRY_BACKOFF_MS, RETRY_BACKOFF_MS << (attempt - 1));
+
+            try
+            {
+                this.retryScheduler.schedule(() -> resend(record, attempt + 1, polledAt, done), backoff,
+                        TimeUnit.MILLISECONDS);
+                this.metrics.recordRetry();
+                return;
+            }
+            catch (RejectedExecutionException e)
+            {
+                // Shutting down, dead letter it below
+            }
+        }
+
+        publishDeadLetterLater(record, error, attempt, done);
+    }
 
     /**
-     * Setter and validator for the school topic we are going to be streaming data from. Throws an exception
-     * if the topic does not exists on the specified broker.
-     * @param schoolTopic The topic we need to verify actually exists before pulling data from it.
-     * @throws NoSuchElementException Throws if topic does not exist at the specified broker.
+     * Dead letters a job that couldn't be sent. Producer callbacks call this and a callback must never send itself
+     * (see AdaptiveProducer), so the dead letter goes out from the retry thread instead.
+     * @param record The job that was going to the city topic.
+     * @param error Why the last send failed.
+     * @param attempts How many times we tried to send it.
      */
-    public void setSchoolTopic(String brokerAddress, String schoolTopic) throws NoSuchElementException
+    public void publishDeadLetterLater(ProducerRecord<String, byte[]> record, Exception error, int attempts)
     {
-        Map<String, List<PartitionInfo>> existingTopics = getKTopics(brokerAddress);
+        publishDeadLetterLater(record, error, attempts, null);
+    }
 
-        if(!existingTopics.containsKey(schoolTopic)) // topic not found
-            throw new NoSuchElementException("The topic wasn't found at the broker!");
+    /**
+     * Same as above but tells us once the dead letter has been sent.
+     * @param done Called once the broker answers, can be null.
+     */
+    public void publishDeadLetterLater(ProducerRecord<String, byte[]> record, Exception error, int attempts,
+                                       Callback done)
+    {
+        try
+        {
+            this.retryScheduler.execute(() -> this.deadLetters.publish(record, error, attempts, done));
+        }
+        catch (RejectedExecutionException e)
+        {
+            // Only after closeClients() stopped the retry thread, the producers were flushed before that
+            logLostDeadLetter(record, error);
+            complete(done, null, e);
+        }
+    }
 
-        this.schoolTopic = schoolTopic;
+    private void resend(ProducerRecord<String, byte[]> record, int attempt, long polledAt, Callback done)
+    {
+        try
+        {
+            send(record, attempt, polledAt, done);
+        }
+        catch (RuntimeException e)
+        {
+            this.deadLetters.publish(record, e, attempt, done);
+        }
     }
 
     /**
-     * Setter and validator for the state for this class.
-     * @param state The 2 character state code for the state we are setting.
-     * @throws IllegalArgumentException Throws if the state was wrong format or doesn't exist.
+     * Sends a job that was waiting on its topic to be created.
      */
-    public void setState(String state) throws IllegalArgumentException
+    private void sendCreated(ProducerRecord<String, byte[]> record, Callback done)
     {
-        if (Address.isValidState(state))
-            this.state = state;
-        else
-            throw new IllegalArgumentException("State must be the 2 character state code! Ex: TX, CA");
+        try
+        {
+            send(record, 1, System.nanoTime(), done);
+        }
+        catch (RuntimeException e)
+        {
+            this.deadLetters.publish(record, e, 1, done);
+        }
     }
 
     /**
-     * Need to get the list of topics from the kafka broker so we can verify that the topic the user wants
-     * stream from actually exists.
-     * @param brokerAddress The kafka broker that has the city topic we want. Ex - Ex. - 'ipaddress:portNum'.
-     * @return A map of the topics. The key is the topic name, the PartitionInfo has the topic name, number of partitions,
-     *      the leader, number of replicas, the isr, and info on offline replicas
+     * Dead letters skip the retries, if the dead letter topic can't be written to there isn't anywhere left to
+     * put the job.
+     * @param record The dead letter.
+     * @param done Called once the broker answers, can be null.
      */
-    public Map<String, List<PartitionInfo>> getKTopics(String brokerAddress)
+    private void sendDeadLetter(ProducerRecord<String, byte[]> record, Callback done)
     {
-        Properties props = new Properties();
-        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, brokerAddress);
-//        props.put("group.id", this.schoolTopic);
-        props.put("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
-        props.put("value.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+        this.metrics.recordDeadLetter();
+        String topic = record.topic();
+        CityCluster cluster = clusterOf(topic);
 
-        KafkaConsumer<String, String> consumer = new KafkaConsumer<>(props);
-        Map<String, List<PartitionInfo>> topics = consumer.listTopics();
+        if (cluster.getMetadata().contains(topic))
+        {
+            try
+            {
+                cluster.getProducer().send(record, (metadata, error) -> {
+                    if (error != null)
+                        logLostDeadLetter(record, error);
+                    complete(done, metadata, error);
+                });
+            }
+            catch (RuntimeException e)
+            {
+                logLostDeadLetter(record, e);
+                complete(done, null, e);
+            }
+        }
+        else if (!cluster.getTopicCreator().sendWhenCreated(record, done))
+        {
+            IllegalStateException error = new IllegalStateException("No room left to hold jobs waiting on topics, or "
+                    + "creating the dead letter topic failed");
+            logLostDeadLetter(record, error);
+            complete(done, null, error);
+        }
+    }
 
-        consumer.close();
+    private static void complete(Callback done, RecordMetadata metadata, Exception error)
+    {
+        if (done != null)
+            done.onCompletion(metadata, error);
+    }
 
-        return topics;
+    private void logLostDeadLetter(ProducerRecord<String, byte[]> record, Exception error)
+    {
+        logger.error("Couldn't dead letter job for customer {}", record.key(), error);
     }
 
     /**
-     * Filters through the Map of topics retrieved from the broker and takes only the topic names and puts
-     * them into another hashmap for quick lookups of names.
-     * @param kTopics The topics we originally got from the broker.
-     * @return A map of the topic names and them all being originally retrieved from the broker, not created in this class.
+     * Starts creating the topic if it doesn't exist yet. Never blocks.
+     * @param topic The topic we need.
+     * @return True if the topic already exists.
      */
-    public Map<String, String> getCityTopics(Map<String, List<PartitionInfo>> kTopics)
+    public boolean ensureTopicExists(String topic)
     {
-        Map<String, String> map = new HashMap<>();
+        CityCluster cluster = clusterOf(topic);
+        if (cluster.getMetadata().contains(topic))
+            return true;
 
-        for (String topic : kTopics.keySet())
-            map.put(topic, "original"); // original since it was retrieved from the broker, not created from here
+        cluster.getTopicCreator().ensureTopic(topic);
+        return false;
+    }
 
-        return map;
+    /**
+     * For routers that hand the jobs to other threads, like the Disruptor, and can't pause a single partition when
+     * its job comes up. Pauses every partition the consumer has while the producer is saturated and resumes them
+     * once it drains. Call it before every poll, from the thread that owns the consumer.
+     * @param consumer The consumer that owns the partitions.
+     * @return True if the partitions are paused.
+     */
+    public boolean pauseWhileSaturated(Consumer<String, byte[]> consumer)
+    {
+        if (this.backPressure.isSaturated())
+        {
+            for (TopicPartition partition : consumer.assignment())
+            {
+                if (!consumer.paused().contains(partition) && this.saturatedPartitions.add(partition))
+                    consumer.pause(Collections.singleton(partition));
+            }
+
+            return true;
+        }
+
+        if (!this.saturatedPartitions.isEmpty())
+        {
+            Set<TopicPartition> assigned = consumer.assignment();
+            for (TopicPartition partition : assigned)
+            {
+                if (this.saturatedPartitions.remove(partition))
+                    consumer.resume(Collections.singleton(partition));
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Subscribes the consumer to every school we route from, either by pattern or by the list of topics.
+     * @param consumer The consumer that will poll the school topics.
+     * @param listener Gets told when partitions are assigned and revoked. Can be null.
+     */
+    public void subscribe(Consumer<String, byte[]> consumer, ConsumerRebalanceListener listener)
+    {
+        if (this.schoolPattern != null)
+        {
+            if (listener == null)
+                consumer.subscribe(this.schoolPattern);
+            else
+                consumer.subscribe(this.schoolPattern, listener);
+        }
+        else
+        {
+            if (listener == null)
+                consumer.subscribe(this.schoolTopics);
+            else
+                consumer.subscribe(this.schoolTopics, listener);
+        }
+    }
+
+    /**
+     * Counts the partitions across every school we route from, from the school broker's metadata. This is the most
+     * consumers in the group that can have work.
+     * @return The number of school topic partitions.
+     */
+    public int getSchoolPartitionCount()
+    {
+        int count = 0;
+
+        if (this.schoolPattern != null)
+        {
+            for (String topic : this.schoolMetadata.getTopics())
+                if (this.schoolPattern.matcher(topic).matches())
+                    count += this.schoolMetadata.getPartitionCount(topic);
+        }
+        else
+        {
+            for (String topic : this.schoolTopics)
+                count += this.schoolMetadata.getPartitionCount(topic);
+        }
+
+        return count;
+    }
+
+    /**
+     * Tells us if a city topic exists yet. Jobs can only be sent straight to the producer if it does.
+     * @param topic The city topic.
+     * @return True if the topic exists on the city cluster it is routed to.
+     */
+    public boolean topicExists(String topic)
+    {
+        return clusterOf(topic).getMetadata().contains(topic);
+    }
+
+    /**
+     * Rewinds the partition to the job we couldn't send and pauses it until the topic that job was waiting on has
+     * been created. resumeWaitingPartitions() picks it back up. Must be called from the thread that owns the consumer.
+     * @param consumer The consumer that owns the partition.
+     * @param partition The school topic partition the job came from.
+     * @param offset The offset of the job so we start from it again once we resume.
+     * @param topic The city topic the job is waiting on.
+     */
+    public void pauseUntilCreated(Consumer<String, byte[]> consumer, TopicPartition partition, long offset, String topic)
+    {
+        this.waitingPartitions.put(partition, topic);
+        rewindAndPause(consumer, partition, offset);
+    }
+
+    private void rewindAndPause(Consumer<String, byte[]> consumer, TopicPartition partition, long offset)
+    {
+        consumer.seek(partition, offset);
+        consumer.pause(Collections.singleton(partition));
+    }
+
+    /**
+     * For threads that can't pause a partition and must not wait on the broker, like the Disruptor's sending
+     * handler. Sends the job if its topic exists, otherwise the topic creator holds onto it and sends it once the
+     * topic has been created. A job the creator can't hold (its buffer is full, or creating the topic failed and it
+     * is backing off) goes to the dead letter topic.
+     * @param record The job to send.
+     * @param polledAt When the job was polled, from System.nanoTime().
+     * @param done Called once we are done with the job, can be null. See send(ProducerRecord, long, Callback).
+     */
+    public void sendWhenCreated(ProducerRecord<String, byte[]> record, long polledAt, Callback done)
+    {
+        CityCluster cluster = clusterOf(record.topic());
+        if (cluster.getMetadata().contains(record.topic()))
+            send(record, 1, polledAt, done);
+        else if (!cluster.getTopicCreator().sendWhenCreated(record, done))
+            this.deadLetters.publish(record, new IllegalStateException("Couldn't hold the job until " + record.topic()
+                    + " is created, there is no room left or creating it failed"), 1, done);
+    }
+
+    /**
+     * Blocks until the topic exists. Only for threads that aren't polling, like the replay workers.
+     * @param topic The topic we are waiting on.
+     * @throws InterruptedException Throws if we get interrupted while waiting.
+     */
+    public void awaitTopic(String topic) throws InterruptedException
+    {
+        CityCluster cluster = clusterOf(topic);
+        if (cluster.getMetadata().contains(topic))
+            return;
+
+        try
+        {
+            cluster.getTopicCreator().ensureTopic(topic).get();
+        }
+        catch (ExecutionException e)
+        {
+            // Nothing else we can do here. The producer will report the error when we send to the topic.
+        }
+    }
+
+    /**
+     * Resumes the partitions we paused whose topics have now been created (or are due to be tried again after
+     * creating them failed), or whose topics the city brokers have caught up on. Must be called from the thread
+     * that owns the consumer.
+     * @param consumer The consumer that owns the partitions.
+     */
+    public void resumeWaitingPartitions(Consumer<String, byte[]> consumer)
+    {
+        if (!this.waitingPartitions.isEmpty())
+        {
+            Set<TopicPartition> paused = consumer.paused();
+            for (Map.Entry<TopicPartition, String> entry : this.waitingPartitions.entrySet())
+            {
+                AsyncTopicCreator creator = clusterOf(entry.getValue()).getTopicCreator();
+                if (creator.isCreating(entry.getValue()) || creator.isBackingOff(entry.getValue()))
+                    continue;
+
+                if (paused.contains(entry.getKey()))
+                    consumer.resume(Collections.singleton(entry.getKey()));
+
+                this.waitingPartitions.remove(entry.getKey(), entry.getValue());
+            }
+        }
+
+        if (!this.throttledPartitions.isEmpty())
+        {
+            Set<TopicPartition> paused = consumer.paused();
+            for (Map.Entry<TopicPartition, String> entry : this.throttledPartitions.entrySet())
+            {
+                if (this.backPressure.isSaturated(entry.getValue()) || this.circuitBreaker.isOpen())
+                    continue;
+
+                if (paused.contains(entry.getKey()))
+                    consumer.resume(Collections.singleton(entry.getKey()));
+
+                this.throttledPartitions.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Gets called when we need to shut down this redirect module. Wakes up the consumer so run() can close the
+     * consumer and the producer from the routing thread.
+     */
+    public void shutdown()
+    {
+        this.closed.set(true);
+
+        if (this.schoolConsumer != null)
+            this.schoolConsumer.wakeup();
+    }
+
+    /**
+     * Blocks until run() has closed the consumer and the producer after shutdown() was called.
+     * @throws InterruptedException Throws if we get interrupted while waiting.
+     */
+    public void awaitShutdown() throws InterruptedException
+    {
+        this.latch.await();
+    }
+
+    /**
+     * Flushes anything still waiting to be sent and closes the producer and admin client shared by the
+     * routing threads.
+     */
+    public void closeClients()
+    {
+        if (this.routingTableWatcher != null)
+            this.routingTableWatcher.close();
+
+        this.batchingController.stop();
+
+        // The callbacks of everything in flight hand their dead letters to the retry thread, so it has to outlive them
+        flush();
+        this.retryScheduler.shutdown();
+        try
+        {
+            // Let the retries that are already waiting go out before we flush
+            this.retryScheduler.awaitTermination(MAX_RETRY_BACKOFF_MS * MAX_SEND_ATTEMPTS, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        this.topicCreator.close();
+        closeMetadata(); // closes the admin client, which waits for the topics being created and sends their jobs
+        this.cityProducer.flush();
+        this.cityProducer.close();
+
+        synchronized (this.clusters)
+        {
+            this.closed.set(true); // a routing table loaded from here on doesn't connect anything
+            for (CityCluster cluster : this.clusters.values())
+                cluster.close();
+        }
+
+        this.metrics.unregister();
+    }
+
+    /**
+     * Logs how many jobs per second each school has routed since the last report.
+     */
+    public void reportThroughput()
+    {
+        // Always read the rates, reading them starts the next interval
+        for (Map.Entry<String, Double> entry : this.metrics.getSchoolThroughput().getRates().entrySet())
+        {
+            if (logger.isInfoEnabled())
+                logger.info(String.format("%s: %.1f jobs/s", entry.getKey(), entry.getValue()));
+        }
+    }
+
+    /**
+     * Pulls the routing fields out of a job with a routing thread's extractor. The job is only scanned for its
+     * coordinates and zip code when the gazetteer or the partitioner is going to use them.
+     * @param extractor The routing thread's extractor.
+     * @param headers The headers of the record we consumed. Can be null.
+     * @param job The serialized job, either JSON in UTF-8 or the binary format.
+     * @return The routing fields of the job, reused on the extractor's next job.
+     * @throws IllegalArgumentException Throws if the job has no routing headers and isn't a job we can read.
+     * @throws NoSuchElementException Throws if the job has no routing headers and is missing a routing field.
+     */
+    public RoutingFields extractFields(RoutingExtractor extractor, Headers headers, byte[] job)
+            throws IllegalArgumentException, NoSuchElementException
+    {
+        require(extractor);
+        return extractor.extract(headers, job);
+    }
+
+    /**
+     * Tells the extractor which of the optional fields the gazetteer and the partitioner need right now.
+     * @param extractor The extractor about to scan a job.
+     */
+    private void require(RoutingExtractor extractor)
+    {
+        CityPartitioner areas = this.partitioner;
+        boolean coordinates = this.gazetteer != null || (areas != null && areas.usesCoordinates());
+        extractor.require(coordinates, areas != null && areas.usesZipcode());
+    }
+
+    /**
+     * This is a helper to extract the key from the record. The key will be the string representation of the
+     * customer id. This can be changed at any point in the future as long as nothing is using the key for
+     * special things down stream.
+     * @param job The json string representing the job
+     * @return The customer id as a string to be sent as the key
+     */
+    public String getKey(String job)
+    {
+        require(this.extractor);
+        return this.extractor.extract(job).getCustomer_id();
+    }
+
+    /**
+     * Uses the city, state, and job type to determine what topic this job should be sent to. This uses the topic
+     * naming convention, which is "city-state-job"
+     * @param job The json representation of the job message that came from Kafka.
+     * @return The topic name that this job should be sent to.
+     */
+    public String getDestinationTopic(String job)
+    {
+        require(this.extractor);
+        return getDestinationTopic(this.extractor.extract(job));
+    }
+
+    /**
+     * Same as getDestinationTopic(String) but uses routing fields that have already been pulled out of the job
+     * so we don't need to parse the job again.
+     * @param fields The routing fields extracted from the job.
+     * @return The topic name that this job should be sent to.
+     */
+    public String getDestinationTopic(RoutingFields fields)
+    {
+        RoutingTable table = this.routingTable; // one read so the whole job is routed by the same rules
+        RoutingTable.Route route = null;
+
+        // Jobs with coordinates go to the nearest city we serve, so a suburb doesn't get a topic of its own
+        CityGazetteer cities = this.gazetteer;
+        if (cities != null && fields.hasCoordinates())
+        {
+            CityGazetteer.City city = cities.nearest(fields.getFrom_latitude(), fields.getFrom_longitude(),
+                    this.maxGeoDistanceKm);
+            if (city != null)
+                route = this.topicResolver.resolve(city.getName(), city.getState(), fields.getJob_type(), table);
+        }
+
+        if (route == null)
+            route = this.topicResolver.resolve(fields.getCity(), fields.getState(), fields.getJob_type(), table);
+
+        String topicName = route.getTopic();
+        CityCluster cluster = route.getCluster() == null ? this.defaultCluster
+                : this.clusters.getOrDefault(route.getCluster(), this.defaultCluster);
+
+        // Remember where the topic lives so sends and retries that only have the record go to the same cluster
+        if (clusterOf(topicName) != cluster)
+        {
+            if (cluster == this.defaultCluster)
+                this.topicClusters.remove(topicName);
+            else
+                this.topicClusters.put(topicName, cluster);
+        }
+
+        // TODO: NOTIFY USERS DOWNSTREAM THAT THERE IS A NEW TOPIC THAT NEEDS TO BE TRACKED AND CONSUMED
+        // If the topic doesn't exist, we need to create a new one. This only starts creating it, it doesn't wait.
+        if(!cluster.getMetadata().contains(topicName))
+            cluster.getTopicCreator().ensureTopic(topicName);
+
+        return topicName;
+    }
+
+    /**
+     * @param topic A city topic.
+     * @return The city cluster the topic was last routed to, the city broker's unless the routing table said otherwise.
+     */
+    private CityCluster clusterOf(String topic)
+    {
+        CityCluster cluster = this.topicClusters.get(topic);
+        return cluster == null ? this.defaultCluster : cluster;
+    }
+
+    /**
+     * Tells us if a city topic is on the router's own city broker. Jobs for a topic the routing table sends to
+     * another cluster have to go through send() instead of a producer of our own for the city broker.
+     * @param topic The city topic.
+     * @return True if the topic is on the city broker.
+     */
+    public boolean isOnCityBroker(String topic)
+    {
+        return clusterOf(topic) == this.defaultCluster;
+    }
+
+    /**
+     * Swaps in new routing rules. The routing threads pick them up with their next job, jobs already sent stay where
+     * they are. Any cluster the table names that we aren't connected to yet gets connected first, so a routing
+     * thread never waits on a new cluster. Clusters a table stops using stay connected until the router shuts down
+     * since retries for them may still be waiting.
+     * @param table The new routing table.
+     * @throws IllegalArgumentException Throws if the table is empty.
+     * @throws IllegalStateException Throws if one of the table's clusters can't be reached or the router is closed.
+     *      The old table is kept.
+     */
+    public void setRoutingTable(RoutingTable table) throws IllegalArgumentException, IllegalStateException
+    {
+        if (table == null)
+            throw new IllegalArgumentException("The routing table can't be empty!");
+
+        synchronized (this.clusters)
+        {
+            if (this.closed.get())
+                throw new IllegalStateException("The router is shutting down!");
+
+            for (String servers : table.getClusters().values())
+                if (!servers.equals(this.cityBrokerAddress) && !this.clusters.containsKey(servers))
+                    this.clusters.put(servers, connectCluster(servers));
+
+            this.routingTable = table;
+        }
+    }
+
+    /**
+     * Loads the routing table from a file and reloads it every time the file changes, without restarting the
+     * router. A version of the file that can't be used is skipped and the router keeps routing by the last one.
+     * @param file The routing table file.
+     * @throws IOException Throws if the file can't be read or watched.
+     * @throws IllegalArgumentException Throws if the file isn't a valid routing table.
+     * @throws IllegalStateException Throws if one of the table's clusters can't be reached.
+     */
+    public synchronized void watchRoutingTable(Path file) throws IOException, IllegalArgumentException,
+            IllegalStateException
+    {
+        setRoutingTable(RoutingTable.load(file));
+
+        if (this.routingTableWatcher != null)
+            this.routingTableWatcher.close();
+        this.routingTableWatcher = new RoutingTableWatcher(file, this::setRoutingTable);
+    }
+
+    /**
+     * Connects to another city cluster the same way we connect to the city broker.
+     * @param servers The cluster's bootstrap servers.
+     * @return The connected cluster.
+     * @throws IllegalStateException Throws if we couldn't get the topics from the cluster.
+     */
+    private CityCluster connectCluster(String servers) throws IllegalStateException
+    {
+        TopicMetadataCache metadata = new TopicMetadataCache(servers, METADATA_TTL_MS);
+        AdaptiveProducer<String, byte[]> producer = new AdaptiveProducer<String, byte[]>(getProducerProps(servers),
+                ProducerProfile.LATENCY);
+        AdaptiveBatchingController batching = new AdaptiveBatchingController(producer);
+        batching.start(BATCHING_CHECK_INTERVAL_MS);
+        AsyncTopicCreator creator = new AsyncTopicCreator(metadata.getAdmin(), NEW_TOPIC_PARTITIONS,
+                NEW_TOPIC_REPLICATION, MAX_PENDING_RECORDS,
+                topic -> metadata.markCreated(topic, NEW_TOPIC_PARTITIONS), this::sendCreated);
+
+        logger.info("Connected to city cluster {}", servers);
+
+        return new CityCluster(servers, producer, batching, metadata, creator);
+    }
+
+    /**
+     * Flushes every city cluster's producer, blocking until everything sent so far has been answered.
+     */
+    public void flush()
+    {
+        this.cityProducer.flush();
+        for (CityCluster cluster : this.clusters.values())
+            cluster.getProducer().flush();
+    }
+
+    /**
+     * Picks the partition of the city topic a job goes to when we partition by area.
+     * @param topic The city topic the job is going to.
+     * @param fields The routing fields extracted from the job.
+     * @return The partition, or null to let the producer pick one by the customer id like it always has. It is
+     *      also null for a topic we haven't seen the partitions of yet, like one that is still being created.
+     */
+    public Integer getDestinationPartition(String topic, RoutingFields fields)
+    {
+        CityPartitioner areas = this.partitioner;
+        if (areas == null)
+            return null;
+
+        int numPartitions = clusterOf(topic).getMetadata().getPartitionCount(topic);
+        return numPartitions > 0 ? areas.partition(fields, numPartitions) : null;
+    }
+
+    /**
+     * Turns on dropping jobs we have already sent, like the ones routed again after a restart or sent twice by a
+     * client retrying. Can be changed while the router is running. A new deduplicator starts out empty, call
+     * seedDeduplicator() before routing to catch the jobs routed again after a restart.
+     * @param deduplicator Remembers the jobs we have sent, null to send every job.
+     */
+    public void setDeduplicator(JobDeduplicator deduplicator)
+    {
+        this.deduplicator = deduplicator;
+    }
+
+    /**
+     * Fills the deduplicator with the jobs already on the city broker's topics from within its window, the ones the
+     * last run of the router sent before it stopped. Topics the routing table sends to another cluster aren't read.
+     * @return How many jobs were remembered.
+     * @throws IllegalStateException Throws if there is no deduplicator to seed.
+     */
+    public long seedDeduplicator() throws IllegalStateException
+    {
+        JobDeduplicator dedup = this.deduplicator;
+        if (dedup == null)
+            throw new IllegalStateException("Set a deduplicator before seeding it!");
+
+        // Everything on the city broker but the schools, our dead letters and kafka's own topics
+        List<String> topics = new ArrayList<>();
+        for (String topic : this.cityMetadata.getTopics())
+        {
+            boolean school = this.schoolPattern != null ? this.schoolPattern.matcher(topic).matches()
+                    : this.schoolTopics != null && this.schoolTopics.contains(topic);
+            if (!school && !topic.startsWith("_") && !topic.endsWith(DEAD_LETTER_SUFFIX))
+                topics.add(topic);
+        }
+
+        Properties props = new Properties();
+        props.setProperty(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, this.cityBrokerAddress);
+        props.setProperty(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        props.setProperty(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+        props.setProperty(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, "org.apache.kafka.common.serialization.StringDeserializer");
+        props.setProperty(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, "org.apache.kafka.common.serialization.ByteArrayDeserializer");
+
+        try (KafkaConsumer<String, byte[]> consumer = new KafkaConsumer<>(props))
+        {
+            return dedup.seed(consumer, topics, DEDUP_SEED_TIMEOUT_MS);
+        }
+    }
+
+    /**
+     * Turns on partitioning the city topics by area, so drivers only have to read the partitions covering where
+     * they are. Can be changed while the router is running, jobs already sent stay where they are.
+     * @param partitioner Picks the partition for each job, null to go back to partitioning by customer id.
+     */
+    public void setPartitioner(CityPartitioner partitioner)
+    {
+        this.partitioner = partitioner;
+    }
+
+    /**
+     * Turns on routing by coordinates. Jobs that have the coordinates they start from go to the topic of the nearest
+     * city in the gazetteer instead of the city written in the job. Jobs without coordinates, or with no city within
+     * maxDistanceKm, still go by the city written in the job. Can be changed while the router is running.
+     * @param gazetteer The cities we serve, null to go back to routing on the city in the job.
+     * @param maxDistanceKm How far a job can be from the nearest city and still be sent there. Ex - 50
+     * @throws IllegalArgumentException Throws if maxDistanceKm is negative or not a number.
+     */
+    public void setGazetteer(CityGazetteer gazetteer, double maxDistanceKm) throws IllegalArgumentException
+    {
+        if (Double.isNaN(maxDistanceKm) || maxDistanceKm < 0)
+            throw new IllegalArgumentException("The max distance can't be negative!");
+
+        this.maxGeoDistanceKm = maxDistanceKm;
+        this.gazetteer = gazetteer; // written last so the routing threads see the distance that goes with it
+    }
+
+    /**
+     * Builds the topic name from the city, state and job type following the "city-state-job" naming convention.
+     * @param city The city the job is in. Ex - College Station
+     * @param stateCode The 2 character state code. Ex - TX
+     * @param jobType The type of job. Ex - delivery
+     * @return The topic name. Ex - 'college station-tx-delivery'
+     */
+    public static String buildTopicName(String city, String stateCode, String jobType)
+    {
+        StringBuilder topicName = new StringBuilder();
+        topicName.append(city.toLowerCase().trim())
+                .append("-")
+                .append(stateCode.toLowerCase().trim())
+                .append("-")
+                .append(jobType.toLowerCase().trim());
+
+        return topicName.toString();
+    }
+
+    /**
+     * Sets the properties for us to start consuming messages from the school topic. The jobs are read as the raw
+     * bytes the school sent, they only get scanned for their routing fields and are forwarded as they are.
+     * @return The properties needed to start consuming from the school topic.
+     */
+    public Properties getConsumerProps()
+    {
+        Properties props = new Properties();
+        props.setProperty(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, this.schoolBrokerAddress);
+        props.setProperty(ConsumerConfig.GROUP_ID_CONFIG, this.appName);
+        props.setProperty(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "true");
+        props.setProperty(ConsumerConfig.AUTO_COMMIT_INTERVAL_MS_CONFIG, "500"); // consume every 500 milliseconds
+        props.setProperty(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, "org.apache.kafka.common.serialization.StringDeserializer");
+        props.setProperty(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, "org.apache.kafka.common.serialization.ByteArrayDeserializer");
+
+        return props;
+    }
+
+    /**
+     * Sets the properties for us to start producing messages after we have processed the messages recieved
+     * by the consumer; The batching properties are set on top of these by the ProducerProfile.
+     * @return The properties needed to start producing messages for the cities.
+     */
+    public Properties getProducerProps()
+    {
+        return getProducerProps(this.cityBrokerAddress);
+    }
+
+    /**
+     * Same as above but for the city cluster the routing table sends some of the jobs to.
+     * @param brokerAddress The cluster's bootstrap servers. Ex. - 'ipaddress:portNum'
+     */
+    private Properties getProducerProps(String brokerAddress)
+    {
+        Properties props = new Properties();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, brokerAddress);
+        props.put(ProducerConfig.ACKS_CONFIG, "all");
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, "org.apache.kafka.common.serialization.StringSerializer");
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, "org.apache.kafka.common.serialization.ByteArraySerializer");
+
+        return props;
+    }
+
+
+    /**
+     * Getter for the school topic we are streaming from.
+     * @return The school topic.
+     */
+    public String getSchoolTopic()
+    {
+        return this.schoolTopic;
+    }
+
+    /**
+     * Getter for the school topics we are streaming from. Empty when we subscribe by pattern.
+     * @return The school topics.
+     */
+    public List<String> getSchoolTopics()
+    {
+        return this.schoolTopics == null ? Collections.<String>emptyList() : this.schoolTopics;
+    }
+
+    /**
+     * Getter for the pattern the school topics are matched by.
+     * @return The pattern, or null if we were given the school topics.
+     */
+    public Pattern getSchoolPattern()
+    {
+        return this.schoolPattern;
+    }
+
+    /**
+     * Getter for the router's metrics. The routing threads record into these and they are exported over JMX.
+     * @return The metrics.
+     */
+    public RouterMetrics getMetrics()
+    {
+        return this.metrics;
+    }
+
+    /**
+     * Getter for where the jobs we can't route go.
+     * @return The dead letter publisher.
+     */
+    public DeadLetterPublisher getDeadLetters()
+    {
+        return this.deadLetters;
+    }
+
+    /**
+     * Getter for the breaker that pauses routing while the city brokers are failing.
+     * @return The circuit breaker.
+     */
+    public CircuitBreaker getCircuitBreaker()
+    {
+        return this.circuitBreaker;
+    }
+
+    /**
+     * Getter for the in flight counts for the city producer.
+     * @return The monitor that decides when the school partitions get paused.
+     */
+    public BackPressureMonitor getBackPressure()
+    {
+        return this.backPressure;
+    }
+
+    /**
+     * Getter for the jobs routed from each school. Every routing thread counts into this.
+     * @return The tracker keyed by school topic.
+     */
+    public ThroughputTracker getSchoolThroughput()
+    {
+        return this.metrics.getSchoolThroughput();
+    }
+
+    /**
+     * @return What remembers the jobs we have sent, null if we send every job.
+     */
+    public JobDeduplicator getDeduplicator()
+    {
+        return this.deduplicator;
+    }
+
+    /**
+     * @return What partitions the city topics by area, null if the producer partitions by customer id.
+     */
+    public CityPartitioner getPartitioner()
+    {
+        return this.partitioner;
+    }
+
+    /**
+     * @return The cities jobs are routed to by coordinates, null if we route on the city in the job.
+     */
+    public CityGazetteer getGazetteer()
+    {
+        return this.gazetteer;
+    }
+
+    /**
+     * @return The routing rules the routing threads are using right now.
+     */
+    public RoutingTable getRoutingTable()
+    {
+        return this.routingTable;
+    }
+
+    /**
+     * Getter for the topic name cache. Mostly here so we can report its hit rate.
+     * @return The resolver that turns a job's city, state and job type into a topic name.
+     */
+    public TopicResolver getTopicResolver()
+    {
+        return this.topicResolver;
+    }
+
+    /**
+     * Getter for the producer that sends jobs to the city topics. The producer is thread safe.
+     * @return The producer for the city broker.
+     */
+    public AdaptiveProducer<String, byte[]> getCityProducer()
+    {
+        return this.cityProducer;
+    }
+
+    /**
+     * Setter and validator for the school topic we are going to be streaming data from. Throws an exception
+     * if the topic does not exists on the specified broker.
+     * @param schoolTopic The topic we need to verify actually exists before pulling data from it.
+     * @throws NoSuchElementException Throws if topic does not exist at the specified broker.
+     */
+    public void setSchoolTopic(String brokerAddress, String schoolTopic) throws NoSuchElementException
+    {
+        Set<String> existingTopics = getTopicNames(brokerAddress);
+
+        if(!existingTopics.contains(schoolTopic)) // topic not found
+            throw new NoSuchElementException("The topic wasn't found at the broker!");
+
+        this.schoolTopic = schoolTopic;
+        this.schoolTopics = Collections.singletonList(schoolTopic);
+    }
+
+    /**
+     * Setter and validator for the school topics when we are streaming from more than one school. Throws an
+     * exception if any of the topics do not exist on the specified broker.
+     * @param brokerAddress The kafka broker that has the school topics. Ex. - 'ipaddress:portNum'
+     * @param schoolTopics The topics we need to verify actually exist before pulling data from them.
+     * @throws NoSuchElementException Throws if a topic does not exist at the specified broker.
+     * @throws IllegalArgumentException Throws if there are no topics.
+     */
+    public void setSchoolTopics(String brokerAddress, Collection<String> schoolTopics)
+            throws NoSuchElementException, IllegalArgumentException
+    {
+        if (schoolTopics.isEmpty())
+            throw new IllegalArgumentException("Need at least one school topic!");
+
+        Set<String> existingTopics = getTopicNames(brokerAddress);
+
+        for (String topic : schoolTopics)
+            if (!existingTopics.contains(topic))
+                throw new NoSuchElementException("The topic " + topic + " wasn't found at the broker!");
+
+        this.schoolTopics = Collections.unmodifiableList(new ArrayList<>(schoolTopics));
+        this.schoolTopic = this.schoolTopics.get(0);
+    }
+
+    /**
+     * Setter and validator for the state for this class.
+     * @param state The 2 character state code for the state we are setting.
+     * @throws IllegalArgumentException Throws if the state was wrong format or doesn't exist.
+     */
+    public void setState(String state) throws IllegalArgumentException
+    {
+        if (Address.isValidState(state))
+            this.state = state;
+        else
+            throw new IllegalArgumentException("State must be the 2 character state code! Ex: TX, CA");
+    }
+
+    /**
+     * Gets the topic names from the metadata we already have for the broker. Only asks the broker if it isn't one
+     * of ours.
+     * @param brokerAddress The kafka broker we want the topics for. Ex. - 'ipaddress:portNum'
+     * @return The names of the topics on that broker.
+     */
+    private Set<String> getTopicNames(String brokerAddress)
+    {
+        if (this.schoolMetadata != null && brokerAddress.equals(this.schoolBrokerAddress))
+            return this.schoolMetadata.getTopics();
+        if (this.cityMetadata != null && brokerAddress.equals(this.cityBrokerAddress))
+            return this.cityMetadata.getTopics();
+
+        return getKTopics(brokerAddress).keySet();
+    }
+
+    /**
+     * Need to get the list of topics from the kafka broker so we can verify that the topic the user wants
+     * stream from actually exists. This makes a whole consumer just to ask, so the router only uses it for
+     * brokers it doesn't already keep a TopicMetadataCache for.
+     * @param brokerAddress The kafka broker that has the city topic we want. Ex - Ex. - 'ipaddress:portNum'.
+     * @return A map of the topics. The key is the topic name, the PartitionInfo has the topic name, number of partitions,
+     *      the leader, number of replicas, the isr, and info on offline replicas
+     */
+    public Map<String, List<PartitionInfo>> getKTopics(String brokerAddress)
+    {
+        Properties props = new Properties();
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, brokerAddress);
+//        props.put("group.id", this.schoolTopic);
+        props.put("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+        props.put("value.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+
+        KafkaConsumer<String, String> consumer = new KafkaConsumer<>(props);
+        Map<String, List<PartitionInfo>> topics = consumer.listTopics();
+
+        consumer.close();
+
+        return topics;
     }
 
     /**
@@ -0,0 +1,75 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts records per key (a school topic for example) from any number of threads and turns the counts into
+ * records per second. Counting is just a LongAdder increment so it is cheap enough for the hot path.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ */
+public class ThroughputTracker
+{
+    private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> lastCounts = new HashMap<>(); // guarded by this
+    private long lastRatesNanos = System.nanoTime(); // guarded by this
+
+    /**
+     * Default Empty Constructor
+     */
+    public ThroughputTracker()
+    {
+        /* Default Empty Constructor */
+    }
+
+    /**
+     * Counts one record for the key.
+     * @param key What the record is counted under. Ex - texas-am-university
+     */
+    public void record(String key)
+    {
+        LongAdder count = this.counts.get(key);
+        if (count == null)
+            count = this.counts.computeIfAbsent(key, k -> new LongAdder());
+
+        count.increment();
+    }
+
+    /**
+     * @return The total number of records counted for each key.
+     */
+    public Map<String, Long> getCounts()
+    {
+        Map<String, Long> totals = new HashMap<>();
+        for (Map.Entry<String, LongAdder> entry : this.counts.entrySet())
+            totals.put(entry.getKey(), entry.getValue().sum());
+
+        return totals;
+    }
+
+    /**
+     * Works out the records per second for each key since the last time this was called (or since we were
+     * created the first time).
+     * @return The records per second for each key.
+     */
+    public synchronized Map<String, Double> getRates()
+    {
+        long now = System.nanoTime();
+        double seconds = Math.max(1, now - this.lastRatesNanos) / 1e9;
+        this.lastRatesNanos = now;
+
+        Map<String, Double> rates = new HashMap<>();
+        for (Map.Entry<String, Long> entry : getCounts().entrySet())
+        {
+            Long last = this.lastCounts.put(entry.getKey(), entry.getValue());
+            long delta = entry.getValue() - (last == null ? 0 : last);
+            rates.put(entry.getKey(), delta / seconds);
+        }
+
+        return rates;
+    }
+}
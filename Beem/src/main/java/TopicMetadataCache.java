@@ -0,0 +1,231 @@
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.common.KafkaFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the topics (and how many partitions each one has) on a broker so the routing threads never have to ask
+ * the broker themselves. We used to spin up a KafkaConsumer just to call listTopics() and then kept a copy of the
+ * topics that went stale as soon as someone else created or deleted a topic.
+ *
+ * This uses one AdminClient for its whole life and refreshes the topics in the background every ttl. Reads never
+ * take a lock, they just look at the latest snapshot. Topics we create ourselves are added to the snapshot right
+ * away so we don't try creating them again before the next refresh.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see SchoolToCityStream
+ */
+public class TopicMetadataCache
+{
+    private static final Logger logger = LoggerFactory.getLogger(TopicMetadataCache.class);
+
+    private final AdminClient admin; // null when the topics come from somewhere else, like in the tests
+    private final Supplier<Map<String, Integer>> fetcher;
+    private final ScheduledExecutorService refresher;
+
+    private volatile Map<String, Integer> topics = Collections.emptyMap(); // topic name -> number of partitions
+    private final Map<String, Integer> createdDuringRefresh = new HashMap<>(); // guarded by this
+    private final Object refreshLock = new Object(); // only one refresh at a time
+
+    private static final long FETCH_TIMEOUT_MS = 30000;
+
+    /**
+     * Constructor for the cache. Gets the topics from the broker once before returning.
+     * @param brokerAddress The broker we are keeping the topics for. Ex. - 'ipaddress:portNum'
+     * @param ttlMs How old the topics are allowed to get before they are refreshed.
+     * @throws IllegalStateException Throws if we couldn't get the topics from the broker.
+     */
+    public TopicMetadataCache(String brokerAddress, long ttlMs) throws IllegalStateException
+    {
+        this(AdminClient.create(new TopicCreator().configProps(brokerAddress)), ttlMs);
+    }
+
+    private TopicMetadataCache(AdminClient admin, long ttlMs) throws IllegalStateException
+    {
+        this(admin, () -> fetchTopics(admin), ttlMs);
+    }
+
+    /**
+     * Same as above but the topics come from the fetcher. Mostly for the tests.
+     */
+    TopicMetadataCache(AdminClient admin, Supplier<Map<String, Integer>> fetcher, long ttlMs) throws IllegalStateException
+    {
+        this.admin = admin;
+        this.fetcher = fetcher;
+
+        try
+        {
+            refresh();
+        }
+        catch (RuntimeException e)
+        {
+            if (admin != null)
+                admin.close();
+            throw e;
+        }
+
+        this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "topic-metadata-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.refresher.scheduleWithFixedDelay(this::refreshQuietly, ttlMs, ttlMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param topic The topic we are looking for.
+     * @return True if the topic exists, as of the last refresh or since we created it.
+     */
+    public boolean contains(String topic)
+    {
+        return this.topics.containsKey(topic);
+    }
+
+    /**
+     * @param topic The topic we are looking for.
+     * @return The number of partitions the topic has, 0 if we don't know about the topic.
+     */
+    public int getPartitionCount(String topic)
+    {
+        Integer partitions = this.topics.get(topic);
+        return partitions == null ? 0 : partitions;
+    }
+
+    /**
+     * @return Every topic we know about. This doesn't change, the next refresh replaces it.
+     */
+    public Set<String> getTopics()
+    {
+        return this.topics.keySet();
+    }
+
+    /**
+     * Adds a topic we just created so we know about it before the next refresh.
+     * @param topic The topic we created.
+     * @param numPartitions The number of partitions we created it with.
+     */
+    public synchronized void markCreated(String topic, int numPartitions)
+    {
+        Map<String, Integer> updated = new HashMap<>(this.topics);
+        updated.put(topic, numPartitions);
+        this.topics = Collections.unmodifiableMap(updated);
+
+        this.createdDuringRefresh.put(topic, numPartitions);
+    }
+
+    /**
+     * Gets the topics from the broker right now instead of waiting on the next refresh. Blocks until it's done.
+     * @throws IllegalStateException Throws if we couldn't get the topics from the broker.
+     */
+    public void refresh() throws IllegalStateException
+    {
+        synchronized (this.refreshLock)
+        {
+            synchronized (this)
+            {
+                this.createdDuringRefresh.clear();
+            }
+
+            Map<String, Integer> fetched = new HashMap<>(this.fetcher.get());
+
+            synchronized (this)
+            {
+                // The broker might have answered before it knew about the topics we created meanwhile
+                for (Map.Entry<String, Integer> entry : this.createdDuringRefresh.entrySet())
+                    fetched.putIfAbsent(entry.getKey(), entry.getValue());
+
+                this.topics = Collections.unmodifiableMap(fetched);
+            }
+        }
+    }
+
+    /**
+     * @return The admin client for the broker, so the rest of the router can share it instead of making its own.
+     *      Null if this cache isn't connected to a broker.
+     */
+    public AdminClient getAdmin()
+    {
+        return this.admin;
+    }
+
+    /**
+     * Stops refreshing and closes the admin client. Waits for anything else using the admin client, like topics
+     * still being created, to finish.
+     */
+    public void close()
+    {
+        this.refresher.shutdownNow();
+
+        if (this.admin != null)
+            this.admin.close();
+    }
+
+    private void refreshQuietly()
+    {
+        try
+        {
+            refresh();
+        }
+        catch (RuntimeException e)
+        {
+            // Keep the topics we have, we'll try again next time
+            logger.warn("Couldn't refresh the topics", e);
+        }
+    }
+
+    /**
+     * Asks the broker for every topic and how many partitions each one has. Topics that get deleted between the
+     * two requests are left out.
+     * @param admin The admin client for the broker.
+     * @return The topic names and their number of partitions.
+     * @throws IllegalStateException Throws if the broker doesn't answer.
+     */
+    private static Map<String, Integer> fetchTopics(AdminClient admin) throws IllegalStateException
+    {
+        try
+        {
+            Set<String> names = admin.listTopics().names().get(FETCH_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            Map<String, KafkaFuture<TopicDescription>> descriptions = admin.describeTopics(names).values();
+
+            Map<String, Integer> topics = new HashMap<>();
+            for (Map.Entry<String, KafkaFuture<TopicDescription>> entry : descriptions.entrySet())
+            {
+                try
+                {
+                    topics.put(entry.getKey(), entry.getValue().get(FETCH_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                            .partitions().size());
+                }
+                catch (ExecutionException e)
+                {
+                    // Deleted since we listed it
+                }
+            }
+
+            return topics;
+        }
+        catch (ExecutionException | TimeoutException e)
+        {
+            throw new IllegalStateException("Couldn't get the topics from the broker!", e);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while getting the topics from the broker!", e);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches where the raw (city, state, job_type) values of a job are routed so we don't lowercase, trim, look up
+ * the routing table and build a new topic name for every job. Almost every job for a school goes to the same handful of cities
+ * so this is nearly always a hit. Looking up a hit doesn't allocate anything since each thread reuses its own
+ * lookup key, and every topic name handed out is the same interned String.
+ *
+ * Safe to use from every routing thread at once. The cache is bounded, once it is full an old entry gets
+ * thrown out for every new one. Every cached route remembers the routing table it came from, so once the router
+ * swaps in a new table the old routes count as misses and get replaced as the jobs come through.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see SchoolToCityStream#buildTopicName(String, String, String)
+ */
+public class TopicResolver
+{
+    private final int maxEntries;
+    private final Map<TripleKey, RoutingTable.Route> cache = new ConcurrentHashMap<>();
+
+    // Each thread fills in its own key for lookups so a hit doesn't create a new one
+    private final ThreadLocal<TripleKey> lookupKey = ThreadLocal.withInitial(TripleKey::new);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructor for the resolver.
+     * @param maxEntries The most (city, state, job_type) combinations we will keep.
+     * @throws IllegalArgumentException Throws if maxEntries is less than 1.
+     */
+    public TopicResolver(int maxEntries) throws IllegalArgumentException
+    {
+        if (maxEntries < 1)
+            throw new IllegalArgumentException("The cache must be able to hold at least 1 topic!");
+
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Gets the topic name for the raw values from the job, following the "city-state-job" naming convention.
+     * @param city The city exactly as it was in the job. Ex - College Station
+     * @param state The state exactly as it was in the job. Ex - TX
+     * @param jobType The job type exactly as it was in the job. Ex - rideShare
+     * @return The interned topic name. Ex - 'college station-tx-rideshare'
+     */
+    public String resolve(String city, String state, String jobType)
+    {
+        return resolve(city, state, jobType, RoutingTable.DEFAULT).getTopic();
+    }
+
+    /**
+     * Gets where the raw values from the job are routed by the routing table.
+     * @param city The city exactly as it was in the job. Ex - Bryan
+     * @param state The state exactly as it was in the job. Ex - TX
+     * @param jobType The job type exactly as it was in the job. Ex - rideShare
+     * @param table The routing table the router is using right now.
+     * @return The route, with the interned topic name. Ex - 'college station-tx-rideshare'
+     */
+    public RoutingTable.Route resolve(String city, String state, String jobType, RoutingTable table)
+    {
+        TripleKey key = this.lookupKey.get();
+        key.set(city, state, jobType);
+
+        RoutingTable.Route route = this.cache.get(key);
+        key.set(null, null, null); // don't hang onto the job's strings
+
+        if (route != null && route.getTable() == table)
+        {
+            this.hits.increment();
+            return route;
+        }
+
+        this.misses.increment();
+        route = table.route(city, state, jobType);
+
+        if (this.cache.size() >= this.maxEntries)
+            evictOne();
+
+        TripleKey newKey = new TripleKey();
+        newKey.set(city, state, jobType);
+        this.cache.put(newKey, route);
+
+        return route;
+    }
+
+    /**
+     * @return The fraction of lookups that were already cached, between 0 and 1.
+     */
+    public double getHitRate()
+    {
+        long hits = this.hits.sum();
+        long total = hits + this.misses.sum();
+
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    public long getHits()
+    {
+        return this.hits.sum();
+    }
+
+    public long getMisses()
+    {
+        return this.misses.sum();
+    }
+
+    public int getSize()
+    {
+        return this.cache.size();
+    }
+
+    /**
+     * Throws out whichever entry the map iterates to first. Only happens on a miss when we are full, which
+     * shouldn't be often unless there are more cities than the cache holds.
+     */
+    private void evictOne()
+    {
+        Iterator<TripleKey> keys = this.cache.keySet().iterator();
+        if (keys.hasNext())
+        {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    /**
+     * The raw (city, state, job_type) values used as the cache key. The lookup keys are mutable and reused, only
+     * keys that were copied into the cache are never changed.
+     */
+    private static class TripleKey
+    {
+        private String city;
+        private String state;
+        private String jobType;
+        private int hash;
+
+        private void set(String city, String state, String jobType)
+        {
+            this.city = city;
+            this.state = state;
+            this.jobType = jobType;
+            this.hash = city == null ? 0 : (31 * (31 * city.hashCode() + state.hashCode()) + jobType.hashCode());
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (this == other)
+                return true;
+            if (!(other instanceof TripleKey))
+                return false;
+
+            TripleKey key = (TripleKey) other;
+            return this.hash == key.hash && this.city.equals(key.city) && this.state.equals(key.state)
+                    && this.jobType.equals(key.jobType);
+        }
+    }
+}
@@ -0,0 +1,461 @@
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.AuthorizationException;
+import org.apache.kafka.common.errors.OutOfOrderSequenceException;
+import org.apache.kafka.common.errors.ProducerFencedException;
+import org.apache.kafka.common.errors.WakeupException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs a SchoolToCityStream router with exactly once delivery to the city topics. The jobs from one or more polls
+ * and the consumer offsets for those jobs are sent in a single transaction, so either the jobs show up in the city
+ * topics and the school offsets move forward together or neither happens. A crash or restart can't send a job
+ * twice (to consumers reading with isolation.level=read_committed).
+ *
+ * We don't want to pay for a transaction per job so a transaction stays open until it holds maxBatchRecords jobs
+ * or has been open for transactionIntervalMs, whichever comes first.
+ *
+ * A transaction can't span clusters, so jobs the routing table sends to a cluster other than the city broker go out
+ * through the router's own producer for that cluster and are only delivered at least once.
+ *
+ * Jobs sent in a transaction are recorded in the router's metrics once the broker answers, like the router's own
+ * sends. A job in a transaction that gets aborted is counted again when it is routed the second time.
+ *
+ * The transactional producer belongs to this router and can't be shared, so this runs as its own consumer and
+ * producer pair. Run one per thread with a different transactional id for each.
+ *
+ * @author Jonathan Westerfield
+ * @version 1.0
+ * @since 10/18/2026
+ *
+ * @see SchoolToCityStream
+ * @see "https://www.confluent.io/blog/transactions-apache-kafka/"
+ */
+public class TransactionalRouter implements Runnable, ConsumerRebalanceListener
+{
+    private final SchoolToCityStream router;
+    private final String transactionalId;
+    private final int maxBatchRecords;
+    private final long transactionIntervalMs;
+    private final String groupId;
+
+    private final Consumer<String, byte[]> schoolConsumer;
+    private final Producer<String, byte[]> cityProducer;
+    private final RoutingExtractor extractor = new RoutingExtractor();
+    private final DeadLetterPublisher deadLetters; // sends with the transactional producer
+
+    // Offsets to commit with the open transaction and where each partition started in it (so we can rewind on abort)
+    private final Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+    private final Map<TopicPartition, Long> startOffsets = new HashMap<>();
+    private boolean inTransaction = false;
+    private long transactionStart;
+    private int batchSize = 0;
+
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    public static void main(String[] args)
+    {
+        SchoolToCityStream router = new SchoolToCityStream("TX", "Texas A&M University",
+                "texas-am-university", "localhost:9092", "localhost:9092", "tx-school-city-redirect");
+
+        TransactionalRouter txRouter = new TransactionalRouter(router, "tx-school-city-redirect-0", 500, 100);
+        Runtime.getRuntime().addShutdownHook(new Thread(txRouter::shutdown));
+
+        txRouter.run();
+    }
+
+    /**
+     * Constructor for the transactional router.
+     * @param router The router that decides where jobs go.
+     * @param transactionalId Has to be unique for each instance and stay the same across restarts so the broker can
+     *      fence off a zombie instance. Ex - tx-school-city-redirect-0
+     * @param maxBatchRecords The most jobs we put into one transaction. Also used as max.poll.records.
+     * @param transactionIntervalMs The longest (in milliseconds) we keep a transaction open before committing it.
+     * @throws IllegalArgumentException Throws if the batch size or interval is less than 1.
+     */
+    public TransactionalRouter(SchoolToCityStream router, String transactionalId, int maxBatchRecords,
+                               long transactionIntervalMs) throws IllegalArgumentException
+    {
+        this(router, transactionalId, maxBatchRecords, transactionIntervalMs, null, null);
+    }
+
+    /**
+     * Same as above but with our own consumer and producer so the tests don't need a broker.
+     * @param consumer The school consumer, null to create one.
+     * @param producer The transactional city producer, null to create one.
+     */
+    TransactionalRouter(SchoolToCityStream router, String transactionalId, int maxBatchRecords,
+                        long transactionIntervalMs, Consumer<String, byte[]> consumer,
+                        Producer<String, byte[]> producer) throws IllegalArgumentException
+    {
+        if (maxBatchRecords < 1)
+            throw new IllegalArgumentException("A transaction must hold at least 1 job!");
+        if (transactionIntervalMs < 1)
+            throw new IllegalArgumentException("The transaction interval must be at least 1 millisecond!");
+
+        this.router = router;
+        this.transactionalId = transactionalId;
+        this.maxBatchRecords = maxBatchRecords;
+        this.transactionIntervalMs = transactionIntervalMs;
+
+        Properties consumerProps = getConsumerProps();
+        this.groupId = consumerProps.getProperty(ConsumerConfig.GROUP_ID_CONFIG);
+        this.schoolConsumer = consumer != null ? consumer : new KafkaConsumer<String, byte[]>(consumerProps);
+        this.cityProducer = producer != null ? producer : new KafkaProducer<String, byte[]>(getProducerProps());
+        this.deadLetters = new DeadLetterPublisher(router.getDeadLetters().getDeadLetterTopic(), (record, done) -> {
+            this.router.getMetrics().recordDeadLetter();
+            this.cityProducer.send(record, done);
+        });
+    }
+
+    /**
+     * Polls the school topic and routes the jobs in transactions until shutdown() is called.
+     */
+    public void run()
+    {
+        this.router.getMetrics().registerConsumer(this.schoolConsumer);
+
+        try
+        {
+            this.cityProducer.initTransactions();
+            this.router.subscribe(this.schoolConsumer, this);
+
+            while (!closed.get())
+            {
+                this.router.resumeWaitingPartitions(this.schoolConsumer);
+                ConsumerRecords<String, byte[]> records = this.schoolConsumer.poll(Duration.ofMillis(100));
+                long polledAt = System.nanoTime();
+
+                try
+                {
+                    routeRecords(records, polledAt);
+
+                    if (isTransactionDue())
+                        commitTransaction();
+                }
+                catch (ProducerFencedException | OutOfOrderSequenceException | AuthorizationException e)
+                {
+                    // Can't recover from these, another instance took over our transactional id or we lost access
+                    throw e;
+                }
+                catch (KafkaException e)
+                {
+                    abortTransaction();
+                }
+            }
+
+            if (this.inTransaction)
+                commitTransaction();
+        }
+        catch (WakeupException e)
+        {
+            // Ignore exception if closing, the wakeup can land in the poll after jobs went in the open transaction
+            if (!closed.get())
+                throw e;
+            if (this.inTransaction)
+                commitTransaction();
+        }
+        finally
+        {
+            // Anything not committed yet gets aborted when the producer closes and is routed again on restart
+            this.router.getMetrics().unregisterConsumer(this.schoolConsumer);
+            this.schoolConsumer.close();
+            this.cityProducer.close();
+        }
+    }
+
+    /**
+     * Stops the router. The open transaction gets committed on the way out if we can.
+     */
+    public void shutdown()
+    {
+        this.closed.set(true);
+        this.schoolConsumer.wakeup();
+    }
+
+    /**
+     * Commits what we have before losing partitions so the next owner starts right after it.
+     * @param partitions The partitions being taken away.
+     */
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions)
+    {
+        if (this.inTransaction)
+            commitTransaction();
+    }
+
+    @Override
+    public void onPartitionsAssigned(Collection<TopicPartition> partitions)
+    {
+        /* Nothing to do, we start from the committed offsets */
+    }
+
+    /**
+     * Sets the properties for the consumer. Offsets are committed through the transaction and we only read
+     * committed jobs in case the school topic is written to transactionally too.
+     * @return The properties needed to start consuming from the school topic.
+     */
+    public Properties getConsumerProps()
+    {
+        Properties props = this.router.getConsumerProps();
+        props.setProperty(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        props.setProperty(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+        props.setProperty(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, Integer.toString(this.maxBatchRecords));
+
+        return props;
+    }
+
+    /**
+     * Sets the properties for the transactional producer. Transactions need idempotence which needs acks=all.
+     * @return The properties needed to start producing jobs in transactions.
+     */
+    public Properties getProducerProps()
+    {
+        Properties props = this.router.getProducerProps();
+        props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, "true");
+        props.put(ProducerConfig.ACKS_CONFIG, "all");
+        props.put(ProducerConfig.TRANSACTIONAL_ID_CONFIG, this.transactionalId);
+
+        return props;
+    }
+
+    /**
+     * Sends every job from the poll as part of the open transaction. A job whose city topic doesn't exist yet
+     * can't be held outside of the transaction, so its partition gets rewound and paused until the topic exists.
+     * @param records The records from the last poll.
+     * @param polledAt When they were polled, from System.nanoTime().
+     */
+    private void routeRecords(ConsumerRecords<String, byte[]> records, long polledAt)
+    {
+        for (TopicPartition partition : records.partitions())
+        {
+            for (ConsumerRecord<String, byte[]> record : records.records(partition))
+            {
+                boolean routed = JobBatch.isBatch(record.value()) ? routeBatch(partition, record, polledAt)
+                        : routeRecord(partition, record, polledAt);
+                if (!routed)
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Sends one job as part of the open transaction.
+     * @return False if the partition had to be paused until a topic exists.
+     */
+    private boolean routeRecord(TopicPartition partition, ConsumerRecord<String, byte[]> record, long polledAt)
+    {
+        RoutingFields fields;
+        String topic;
+
+        try
+        {
+            fields = this.router.extractFields(this.extractor, record.headers(), record.value());
+            topic = this.router.getDestinationTopic(fields); // starts creating the topic if it is new
+        }
+        catch (IllegalArgumentException | NoSuchElementException e)
+        {
+            // The dead letter goes out in the same transaction as the offsets that skip the job
+            String deadLetterTopic = this.deadLetters.getDeadLetterTopic();
+            if (!this.router.ensureTopicExists(deadLetterTopic))
+            {
+                this.router.pauseUntilCreated(this.schoolConsumer, partition, record.offset(), deadLetterTopic);
+                return false;
+            }
+
+            beginTransaction();
+            this.deadLetters.publish(record, e);
+            addToTransaction(partition, record);
+            return true;
+        }
+
+        if (!this.router.topicExists(topic))
+        {
+            this.router.pauseUntilCreated(this.schoolConsumer, partition, record.offset(), topic);
+            return false;
+        }
+
+        beginTransaction();
+        send(cityRecord(record, fields, topic), record.topic(), polledAt);
+        addToTransaction(partition, record);
+        return true;
+    }
+
+    /**
+     * Sends every job in an envelope from a bulk producer (see JobBatch) as part of the open transaction. The
+     * envelope has one offset, so either all of its jobs go in the transaction or none do: every job is routed
+     * before any is sent, and if one of their topics doesn't exist yet the partition is paused on the envelope.
+     * @return False if the partition had to be paused until a topic exists.
+     */
+    private boolean routeBatch(TopicPartition partition, ConsumerRecord<String, byte[]> record, long polledAt)
+    {
+        List<ConsumerRecord<String, byte[]>> badJobs = new ArrayList<>();
+        List<RuntimeException> errors = new ArrayList<>();
+        List<ProducerRecord<String, byte[]>> cityRecords = new ArrayList<>();
+
+        try
+        {
+            for (ConsumerRecord<String, byte[]> job : JobBatch.unpack(record))
+            {
+                RoutingFields fields;
+                String topic;
+
+                try
+                {
+                    fields = this.router.extractFields(this.extractor, job.headers(), job.value());
+                    topic = this.router.getDestinationTopic(fields);
+                }
+                catch (IllegalArgumentException | NoSuchElementException e)
+                {
+                    badJobs.add(job);
+                    errors.add(e);
+                    continue;
+                }
+
+                if (!this.router.topicExists(topic))
+                {
+                    this.router.pauseUntilCreated(this.schoolConsumer, partition, record.offset(), topic);
+                    return false;
+                }
+
+                cityRecords.add(cityRecord(job, fields, topic));
+            }
+        }
+        catch (IllegalArgumentException e)
+        {
+            // Couldn't unpack it, the whole envelope is the dead letter
+            badJobs.add(record);
+            errors.add(e);
+        }
+
+        String deadLetterTopic = this.deadLetters.getDeadLetterTopic();
+        if (!badJobs.isEmpty() && !this.router.ensureTopicExists(deadLetterTopic))
+        {
+            this.router.pauseUntilCreated(this.schoolConsumer, partition, record.offset(), deadLetterTopic);
+            return false;
+        }
+
+        beginTransaction();
+        for (int i = 0; i < badJobs.size(); i++)
+            this.deadLetters.publish(badJobs.get(i), errors.get(i));
+        for (ProducerRecord<String, byte[]> cityRecord : cityRecords)
+            send(cityRecord, record.topic(), polledAt);
+        addToTransaction(partition, record);
+        return true;
+    }
+
+    private ProducerRecord<String, byte[]> cityRecord(ConsumerRecord<String, byte[]> record, RoutingFields fields,
+                                                      String topic)
+    {
+        return new ProducerRecord<String, byte[]>(topic, this.router.getDestinationPartition(topic, fields),
+                fields.getCustomer_id(), record.value(), record.headers());
+    }
+
+    /**
+     * Sends a routed job, in the open transaction if its topic is on the city broker.
+     * @param cityRecord The job on its way to its city topic.
+     * @param schoolTopic The school topic the job came from, for the throughput.
+     * @param polledAt When the job was polled, from System.nanoTime(), for the routing latency.
+     */
+    private void send(ProducerRecord<String, byte[]> cityRecord, String schoolTopic, long polledAt)
+    {
+        RouterMetrics metrics = this.router.getMetrics();
+        if (this.router.isOnCityBroker(cityRecord.topic()))
+        {
+            // A failed send fails the commit too, the job is routed again after the abort
+            this.cityProducer.send(cityRecord, (metadata, error) -> {
+                if (error == null)
+                    metrics.recordAck(cityRecord.topic(), polledAt);
+                else
+                    metrics.recordSendError();
+            });
+        }
+        else
+            this.router.send(cityRecord, polledAt); // a transaction can't span clusters, so this one is at least once
+        this.router.getSchoolThroughput().record(schoolTopic);
+    }
+
+    /**
+     * Counts the job as part of the open transaction so its offset gets committed with it.
+     */
+    private void addToTransaction(TopicPartition partition, ConsumerRecord<String, byte[]> record)
+    {
+        this.startOffsets.putIfAbsent(partition, record.offset());
+        this.offsets.put(partition, new OffsetAndMetadata(record.offset() + 1));
+        this.batchSize++;
+    }
+
+    /**
+     * @return True if the open transaction is full or has been open for too long.
+     */
+    private boolean isTransactionDue()
+    {
+        return this.inTransaction && (this.batchSize >= this.maxBatchRecords
+                || System.currentTimeMillis() - this.transactionStart >= this.transactionIntervalMs);
+    }
+
+    private void beginTransaction()
+    {
+        if (this.inTransaction)
+            return;
+
+        this.cityProducer.beginTransaction();
+        this.inTransaction = true;
+        this.transactionStart = System.currentTimeMillis();
+    }
+
+    /**
+     * Commits the consumer offsets along with the jobs we sent in one transaction.
+     */
+    private void commitTransaction()
+    {
+        this.cityProducer.sendOffsetsToTransaction(this.offsets, this.groupId);
+        this.cityProducer.commitTransaction();
+        resetTransaction();
+    }
+
+    /**
+     * Throws away the jobs we sent in the open transaction and rewinds the consumer so they get routed again.
+     */
+    private void abortTransaction()
+    {
+        if (!this.inTransaction)
+            return;
+
+        this.cityProducer.abortTransaction();
+
+        for (Map.Entry<TopicPartition, Long> entry : this.startOffsets.entrySet())
+            if (this.schoolConsumer.assignment().contains(entry.getKey()))
+                this.schoolConsumer.seek(entry.getKey(), entry.getValue());
+
+        resetTransaction();
+    }
+
+    private void resetTransaction()
+    {
+        this.offsets.clear();
+        this.startOffsets.clear();
+        this.batchSize = 0;
+        this.inTransaction = false;
+    }
+}
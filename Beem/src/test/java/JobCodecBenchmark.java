@@ -0,0 +1,155 @@
+/**
+ * Quick and dirty benchmark of the job formats. Run the main method and compare the numbers, this doesn't need a
+ * broker. Prints the size of each job and how long encoding and decoding takes in JSON (KafkaJsonSerializer and
+ * KafkaJsonDeserializer), in JSON through a plain ObjectMapper (what the serdes did before JobJsonCodec) and in the
+ * binary format (BinaryJobCodec). Reading a job off a topic with both kinds of job is timed through JobSerde and
+ * the old way, as a String and then a JsonNode to find the job_type before reading the job. Then how long a consumer filtering on one field takes when it decodes the whole
+ * job compared to reading the field through a JobView.
+ */
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class JobCodecBenchmark
+{
+    private static final int WARMUP = 200000;
+    private static final int ITERATIONS = 1000000;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static void main(String[] args) throws IOException
+    {
+        benchmark(Test_BinaryJobCodec.deliveryJob(), DeliveryJob.class);
+        benchmark(Test_BinaryJobCodec.rideShareJob(), RideShareJob.class);
+        benchmarkFilter(Test_BinaryJobCodec.deliveryJob());
+    }
+
+    private static void benchmarkFilter(DeliveryJob job)
+    {
+        KafkaJsonDeserializer<DeliveryJob> jsonDeserializer = new KafkaJsonDeserializer<>(DeliveryJob.class);
+        BinaryJobCodec<DeliveryJob> binary = new BinaryJobCodec<>(DeliveryJob.class);
+        byte[] json = new KafkaJsonSerializer<DeliveryJob>().serialize("t", job);
+        byte[] encoded = binary.serialize("t", job);
+        JobView view = new JobView();
+
+        for (int i = 0; i < WARMUP; i++)
+        {
+            jsonDeserializer.deserialize("t", json).getItem_size();
+            view.reset(json).getItem_size();
+            binary.deserialize("t", encoded).getItem_size();
+            view.reset(encoded).getItem_size();
+        }
+
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            sink += jsonDeserializer.deserialize("t", json).getItem_size();
+        long jsonNs = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            sink += view.reset(json).getItem_size();
+        long jsonViewNs = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            sink += binary.deserialize("t", encoded).getItem_size();
+        long binaryNs = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            sink += view.reset(encoded).getItem_size();
+        long binaryViewNs = System.nanoTime() - start;
+
+        System.out.printf("Filter on item_size:%n");
+        System.out.printf("  JSON: whole job %.1f ns, view %.1f ns (%.2fx)%n", (double) jsonNs / ITERATIONS,
+                (double) jsonViewNs / ITERATIONS, (double) jsonNs / jsonViewNs);
+        System.out.printf("  binary: whole job %.1f ns, view %.1f ns (%.2fx) (ignore: %d)%n",
+                (double) binaryNs / ITERATIONS, (double) binaryViewNs / ITERATIONS, (double) binaryNs / binaryViewNs,
+                sink);
+    }
+
+    private static <T> void benchmark(T job, Class<T> type) throws IOException
+    {
+        KafkaJsonSerializer<T> jsonSerializer = new KafkaJsonSerializer<>();
+        KafkaJsonDeserializer<T> jsonDeserializer = new KafkaJsonDeserializer<>(type);
+        BinaryJobCodec<T> binary = new BinaryJobCodec<>(type);
+
+        byte[] json = jsonSerializer.serialize("t", job);
+        byte[] encoded = binary.serialize("t", job);
+
+        for (int i = 0; i < WARMUP; i++)
+        {
+            jsonDeserializer.deserialize("t", jsonSerializer.serialize("t", job));
+            binary.deserialize("t", binary.serialize("t", job));
+            MAPPER.readValue(MAPPER.writeValueAsBytes(job), type);
+        }
+
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            sink += MAPPER.writeValueAsBytes(job).length;
+        long mapperEncodeNs = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            sink += jsonSerializer.serialize("t", job).length;
+        long jsonEncodeNs = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            sink += binary.serialize("t", job).length;
+        long binaryEncodeNs = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            sink += jsonDeserializer.deserialize("t", json).hashCode();
+        long jsonDecodeNs = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            sink += MAPPER.readValue(json, type).hashCode();
+        long mapperDecodeNs = System.nanoTime() - start;
+
+        JobSerde serde = new JobSerde();
+        for (int i = 0; i < WARMUP; i++)
+            sink += serde.deserialize("t", json).hashCode() + readMixed(json).hashCode();
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            sink += serde.deserialize("t", json).hashCode();
+        long serdeDecodeNs = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            sink += readMixed(json).hashCode();
+        long mixedDecodeNs = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            sink += binary.deserialize("t", encoded).hashCode();
+        long binaryDecodeNs = System.nanoTime() - start;
+
+        System.out.printf("%s: JSON %d bytes, binary %d bytes (%.1fx smaller)%n", type.getSimpleName(), json.length,
+                encoded.length, (double) json.length / encoded.length);
+        System.out.printf("  ObjectMapper: encode %.1f ns, decode %.1f ns%n", (double) mapperEncodeNs / ITERATIONS,
+                (double) mapperDecodeNs / ITERATIONS);
+        System.out.printf("  encode: JSON %.1f ns, binary %.1f ns (%.2fx)%n", (double) jsonEncodeNs / ITERATIONS,
+                (double) binaryEncodeNs / ITERATIONS, (double) jsonEncodeNs / binaryEncodeNs);
+        System.out.printf("  decode: JSON %.1f ns, binary %.1f ns (%.2fx) (ignore: %d)%n",
+                (double) jsonDecodeNs / ITERATIONS, (double) binaryDecodeNs / ITERATIONS,
+                (double) jsonDecodeNs / binaryDecodeNs, sink);
+        System.out.printf("  mixed topic decode: JobSerde %.1f ns, String and JsonNode %.1f ns (%.2fx)%n",
+                (double) serdeDecodeNs / ITERATIONS, (double) mixedDecodeNs / ITERATIONS,
+                (double) mixedDecodeNs / serdeDecodeNs);
+    }
+
+    private static Object readMixed(byte[] json) throws IOException
+    {
+        JsonNode tree = MAPPER.readTree(new String(json, StandardCharsets.UTF_8));
+        Class<?> type = "delivery".equals(tree.get("job_type").asText()) ? DeliveryJob.class : RideShareJob.class;
+        return MAPPER.treeToValue(tree, type);
+    }
+}
@@ -0,0 +1,248 @@
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Quick and dirty benchmarks for the hot path of the router. Run the main method and compare the numbers,
+ * this doesn't need a broker.
+ *
+ * Run it with 'engines <brokerAddress> <numJobs>' to race the hand rolled router against the Kafka Streams
+ * router (CityStream) on the same jobs. That one needs a broker.
+ */
+public class RouterBenchmark
+{
+    private static final int WARMUP = 200000;
+    private static final int ITERATIONS = 1000000;
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        String job = sampleJob();
+
+        if (args.length == 3 && args[0].equals("engines"))
+        {
+            benchmarkEngines(args[1], Integer.parseInt(args[2]), job);
+            return;
+        }
+
+        benchmarkRoutingExtraction(job);
+    }
+
+    /**
+     * @return The json string for a job exactly the way DeliveryJob serializes it, routed on from_city and from_state.
+     */
+    public static String sampleJob()
+    {
+        return sampleDeliveryJob().toString();
+    }
+
+    private static DeliveryJob sampleDeliveryJob()
+    {
+        return new DeliveryJob(123456789, "Texas A&M University",
+                "400 Bizzell St, College Station, TX 77843", "11410 Century Oaks Terrace, Austin, TX 78758",
+                "Shelf", "My dad will help you load it up.", DeliveryJob.Sizes.MEDIUM);
+    }
+
+    /**
+     * Compares the old way of routing (parsing the job into a JSONObject once for the key and once for the
+     * topic) against the single pass RoutingExtractor, and the single pass on a String (decoded from the bytes we
+     * consume and encoded again to send) against the single pass straight on the bytes, and against routing on
+     * the headers the job was stamped with. The job is a real DeliveryJob so the extractor stops where it would on
+     * the jobs the router actually gets.
+     * @param job The json string for the job.
+     */
+    public static void benchmarkRoutingExtraction(String job)
+    {
+        RoutingExtractor extractor = new RoutingExtractor();
+        RoutingExtractor geoExtractor = new RoutingExtractor(); // what a router with a gazetteer and partitioner uses
+        geoExtractor.require(true, true);
+        byte[] bytes = job.getBytes(StandardCharsets.UTF_8);
+        Headers headers = new RecordHeaders();
+        RoutingHeaders.stamp(headers, sampleDeliveryJob());
+
+        for (int i = 0; i < WARMUP; i++)
+        {
+            twoParse(job);
+            singlePass(extractor, job);
+            throughString(extractor, bytes);
+            passthrough(extractor, bytes);
+            passthrough(geoExtractor, bytes);
+            extractor.extract(headers, bytes);
+        }
+
+        long start = System.nanoTime();
+        long sink = 0;
+        for (int i = 0; i < ITERATIONS; i++)
+            sink += twoParse(job).length();
+        long twoParseNs = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            sink += singlePass(extractor, job).length();
+        long singlePassNs = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            sink += throughString(extractor, bytes).length;
+        long throughStringNs = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            sink += passthrough(extractor, bytes).length;
+        long passthroughNs = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            sink += passthrough(geoExtractor, bytes).length;
+        long geoNs = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            sink += extractor.extract(headers, bytes).getCustomer_id().length();
+        long headersNs = System.nanoTime() - start;
+
+        System.out.printf("Two JSONObject parses: %.1f ns/record%n", (double) twoParseNs / ITERATIONS);
+        System.out.printf("Single pass extractor: %.1f ns/record%n", (double) singlePassNs / ITERATIONS);
+        System.out.printf("Speedup: %.2fx%n", (double) twoParseNs / singlePassNs);
+        System.out.printf("Bytes -> String -> bytes: %.1f ns/record%n", (double) throughStringNs / ITERATIONS);
+        System.out.printf("Bytes passed through: %.1f ns/record%n", (double) passthroughNs / ITERATIONS);
+        System.out.printf("Speedup: %.2fx%n", (double) throughStringNs / passthroughNs);
+        System.out.printf("Also scanning for coordinates and zip: %.1f ns/record%n", (double) geoNs / ITERATIONS);
+        System.out.printf("Routing headers: %.1f ns/record (%.2fx) (ignore: %d)%n", (double) headersNs / ITERATIONS,
+                (double) passthroughNs / headersNs, sink);
+    }
+
+    /**
+     * Routes the same jobs through SchoolToCityStream and then through CityStream and times how long it takes
+     * each of them to get every job into the city topic. Each engine gets its own consumer group on a brand new
+     * school topic so neither one can see the other's offsets.
+     * @param brokerAddress The broker to run against. Ex - localhost:9092
+     * @param numJobs How many jobs to route through each engine.
+     * @param job The job to send over and over.
+     * @throws InterruptedException Throws if we get interrupted while waiting for an engine.
+     */
+    public static void benchmarkEngines(String brokerAddress, int numJobs, String job) throws InterruptedException
+    {
+        String schoolTopic = "bench-school-" + System.currentTimeMillis();
+        new TopicCreator("localhost:2181", brokerAddress).createTopic(schoolTopic, 4, 1);
+
+        RoutingFields fields = new RoutingExtractor().extract(job);
+        String cityTopic = SchoolToCityStream.buildTopicName(fields.getCity(), fields.getState(), fields.getJob_type());
+
+        // Hand rolled consumer/producer router with a worker per core
+        SchoolToCityStream router = new SchoolToCityStream("TX", "Benchmark", schoolTopic, brokerAddress,
+                brokerAddress, schoolTopic + "-router");
+        RouterWorkerPool pool = new RouterWorkerPool(router, Runtime.getRuntime().availableProcessors());
+        pool.start();
+        long routerMs = timeEngine(brokerAddress, schoolTopic, cityTopic, numJobs, job);
+        pool.shutdown();
+
+        // Kafka Streams router with a stream thread per core
+        CityStream streams = new CityStream(schoolTopic, brokerAddress, schoolTopic + "-streams",
+                Runtime.getRuntime().availableProcessors());
+        streams.start();
+        long streamsMs = timeEngine(brokerAddress, schoolTopic, cityTopic, numJobs, job);
+        streams.shutdown();
+
+        System.out.printf("SchoolToCityStream: %d jobs in %d ms (%.0f jobs/s)%n", numJobs, routerMs,
+                numJobs * 1000.0 / routerMs);
+        System.out.printf("CityStream:         %d jobs in %d ms (%.0f jobs/s)%n", numJobs, streamsMs,
+                numJobs * 1000.0 / streamsMs);
+    }
+
+    /**
+     * Gives the engine time to join its group, sends the jobs and waits for all of them to show up in the city topic.
+     * @return How long it took from the first job being sent to the last job landing in the city topic.
+     */
+    private static long timeEngine(String brokerAddress, String schoolTopic, String cityTopic, int numJobs,
+                                   String job) throws InterruptedException
+    {
+        Thread.sleep(10000); // engines start from the latest offset so they need to be assigned before we send
+
+        Properties props = new Properties();
+        props.put("bootstrap.servers", brokerAddress);
+        props.put("key.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+        props.put("value.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+        props.put("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+        props.put("value.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+
+        try (Producer<String, String> producer = new KafkaProducer<>(props);
+             KafkaConsumer<String, String> consumer = new KafkaConsumer<>(props))
+        {
+            long start = System.currentTimeMillis();
+            long target = cityTopicSize(consumer, cityTopic) + numJobs;
+
+            for (int i = 0; i < numJobs; i++)
+                producer.send(new ProducerRecord<String, String>(schoolTopic, Integer.toString(i), job));
+            producer.flush();
+
+            while (cityTopicSize(consumer, cityTopic) < target)
+                Thread.sleep(50);
+
+            return System.currentTimeMillis() - start;
+        }
+    }
+
+    private static long cityTopicSize(KafkaConsumer<String, String> consumer, String cityTopic)
+    {
+        List<PartitionInfo> infos = consumer.partitionsFor(cityTopic);
+        if (infos == null)
+            return 0;
+
+        List<TopicPartition> partitions = new ArrayList<>();
+        for (PartitionInfo info : infos)
+            partitions.add(new TopicPartition(info.topic(), info.partition()));
+
+        long size = 0;
+        for (long offset : consumer.endOffsets(partitions).values())
+            size += offset;
+
+        return size;
+    }
+
+    private static String twoParse(String job)
+    {
+        // This is what getKey() and getDestinationTopic() used to do
+        String key = new JSONObject(job).get("customer_id").toString();
+
+        JSONObject json = new JSONObject(job);
+        String topic = SchoolToCityStream.buildTopicName(json.get("from_city").toString(),
+                json.get("from_state").toString(), json.get("job_type").toString());
+
+        return key + topic;
+    }
+
+    private static byte[] throughString(RoutingExtractor extractor, byte[] consumed)
+    {
+        // What StringDeserializer and StringSerializer used to do around the extractor
+        String job = new String(consumed, StandardCharsets.UTF_8);
+        extractor.extract(job);
+
+        return job.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] passthrough(RoutingExtractor extractor, byte[] consumed)
+    {
+        extractor.extract(consumed);
+
+        return consumed;
+    }
+
+    private static String singlePass(RoutingExtractor extractor, String job)
+    {
+        RoutingFields fields = extractor.extract(job);
+        String topic = SchoolToCityStream.buildTopicName(fields.getCity(), fields.getState(), fields.getJob_type());
+
+        return fields.getCustomer_id() + topic;
+    }
+}
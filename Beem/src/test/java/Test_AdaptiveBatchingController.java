@@ -0,0 +1,93 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.Properties;
+
+public class Test_AdaptiveBatchingController
+{
+    // evaluate() doesn't touch the producer so we don't need a broker for these
+    AdaptiveBatchingController controller = new AdaptiveBatchingController(null, 1000, 100, 0.8, 50, 3);
+
+    @Test
+    public void testSwitchToThroughput()
+    {
+        ProducerProfile profile = ProducerProfile.LATENCY;
+
+        // Busy with full batches, has to stay that way for 3 checks before we switch
+        assertEquals(ProducerProfile.LATENCY, controller.evaluate(profile, 2000, 0.9, 5));
+        assertEquals(ProducerProfile.LATENCY, controller.evaluate(profile, 2000, 0.9, 5));
+        assertEquals(ProducerProfile.THROUGHPUT, controller.evaluate(profile, 2000, 0.9, 5));
+
+        System.out.println("evaluate() switches to THROUGHPUT!");
+    }
+
+    @Test
+    public void testSlowRequestsSwitch()
+    {
+        ProducerProfile profile = ProducerProfile.LATENCY;
+
+        // Batches aren't full but the brokers are slow
+        controller.evaluate(profile, 2000, 0.1, 80);
+        controller.evaluate(profile, 2000, 0.1, 80);
+        assertEquals(ProducerProfile.THROUGHPUT, controller.evaluate(profile, 2000, 0.1, 80));
+
+        System.out.println("evaluate() switches on slow requests!");
+    }
+
+    @Test
+    public void testNoFlapping()
+    {
+        ProducerProfile profile = ProducerProfile.LATENCY;
+
+        // A quiet check in the middle resets the streak
+        controller.evaluate(profile, 2000, 0.9, 5);
+        controller.evaluate(profile, 2000, 0.9, 5);
+        assertEquals(ProducerProfile.LATENCY, controller.evaluate(profile, 50, 0.1, 5));
+        assertEquals(ProducerProfile.LATENCY, controller.evaluate(profile, 2000, 0.9, 5));
+
+        // Busy but the batches aren't full and the brokers are fine, no reason to switch
+        for (int i = 0; i < 5; i++)
+            assertEquals(ProducerProfile.LATENCY, controller.evaluate(profile, 2000, 0.2, 5));
+
+        System.out.println("evaluate() doesn't flap!");
+    }
+
+    @Test
+    public void testSwitchBackToLatency()
+    {
+        ProducerProfile profile = ProducerProfile.THROUGHPUT;
+
+        // In between the thresholds we stay where we are
+        for (int i = 0; i < 5; i++)
+            assertEquals(ProducerProfile.THROUGHPUT, controller.evaluate(profile, 500, 0.5, 5));
+
+        controller.evaluate(profile, 50, 0.1, 5);
+        controller.evaluate(profile, 50, 0.1, 5);
+        assertEquals(ProducerProfile.LATENCY, controller.evaluate(profile, 50, 0.1, 5));
+
+        System.out.println("evaluate() switches back to LATENCY!");
+    }
+
+    @Test
+    public void testProfileProps()
+    {
+        Properties base = new Properties();
+        base.put("bootstrap.servers", "localhost:9092");
+
+        Properties props = ProducerProfile.THROUGHPUT.apply(base);
+        assertEquals("localhost:9092", props.get("bootstrap.servers"));
+        assertEquals("lz4", props.get("compression.type"));
+        assertEquals("20", props.get("linger.ms"));
+
+        // The base properties shouldn't be changed
+        assertNull(base.get("linger.ms"));
+
+        System.out.println("apply() passed!");
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testInvalidRates()
+    {
+        new AdaptiveBatchingController(null, 100, 1000, 0.8, 50, 3);
+    }
+}
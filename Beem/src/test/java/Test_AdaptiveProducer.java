@@ -0,0 +1,218 @@
+import static org.junit.Assert.*;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Test_AdaptiveProducer
+{
+    private final List<MockProducer<String, String>> built = new CopyOnWriteArrayList<>();
+    private final List<Properties> builtWith = new CopyOnWriteArrayList<>();
+
+    private MockProducer<String, String> build(Properties props)
+    {
+        MockProducer<String, String> producer = new MockProducer<>(true, new StringSerializer(), new StringSerializer());
+        this.built.add(producer);
+        this.builtWith.add(props);
+        return producer;
+    }
+
+    @Test
+    public void testSwitchAppliesProfile()
+    {
+        AdaptiveProducer<String, String> producer = new AdaptiveProducer<>(new Properties(), ProducerProfile.LATENCY,
+                this::build);
+        producer.send(new ProducerRecord<>("t", "a"));
+
+        producer.switchTo(ProducerProfile.THROUGHPUT);
+        producer.switchTo(ProducerProfile.THROUGHPUT); // already on it, nothing gets built
+        producer.send(new ProducerRecord<>("t", "b"));
+
+        assertEquals(ProducerProfile.THROUGHPUT, producer.getProfile());
+        assertEquals(2, this.built.size());
+        assertEquals("lz4", this.builtWith.get(1).get(ProducerConfig.COMPRESSION_TYPE_CONFIG));
+        assertTrue(this.built.get(0).closed());
+        assertFalse(this.built.get(1).closed());
+        assertEquals("a", this.built.get(0).history().get(0).value());
+        assertEquals("b", this.built.get(1).history().get(0).value());
+
+        producer.close();
+        assertTrue(this.built.get(1).closed());
+
+        System.out.println("switchTo() applies the profile passed!");
+    }
+
+    @Test
+    public void testSendsDuringSlowFlush() throws Exception
+    {
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // The first producer takes forever to flush, like one waiting on its I/O thread
+        AdaptiveProducer<String, String> producer = new AdaptiveProducer<>(new Properties(), ProducerProfile.LATENCY,
+                props -> {
+                    if (!this.built.isEmpty())
+                        return build(props);
+
+                    MockProducer<String, String> slow = new MockProducer<String, String>(true, new StringSerializer(),
+                            new StringSerializer())
+                    {
+                        @Override
+                        public void flush()
+                        {
+                            flushing.countDown();
+                            try
+                            {
+                                release.await();
+                            }
+                            catch (InterruptedException e)
+                            {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                    };
+                    this.built.add(slow);
+                    return slow;
+                });
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> switching = executor.submit(() -> producer.switchTo(ProducerProfile.THROUGHPUT));
+        assertTrue(flushing.await(5, TimeUnit.SECONDS));
+
+        // The swap is done and the old producer is flushing, a send (like one from a callback) can't wait on it
+        Future<?> sending = Executors.newSingleThreadExecutor().submit(() -> producer.send(new ProducerRecord<>("t", "x")));
+        sending.get(5, TimeUnit.SECONDS);
+        assertEquals("x", this.built.get(1).history().get(0).value());
+
+        release.countDown();
+        switching.get(5, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        System.out.println("send() during a slow flush passed!");
+    }
+
+    @Test
+    public void testKeepsKeyOrderAcrossSwitch() throws Exception
+    {
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = new CopyOnWriteArrayList<>();
+
+        // The first producer doesn't answer until it is flushed, and the flush waits for the test
+        AdaptiveProducer<String, String> producer = new AdaptiveProducer<>(new Properties(), ProducerProfile.LATENCY,
+                props -> {
+                    if (!this.built.isEmpty())
+                        return build(props);
+
+                    MockProducer<String, String> slow = new MockProducer<String, String>(false, new StringSerializer(),
+                            new StringSerializer())
+                    {
+                        @Override
+                        public void flush()
+                        {
+                            flushing.countDown();
+                            try
+                            {
+                                release.await();
+                            }
+                            catch (InterruptedException e)
+                            {
+                                Thread.currentThread().interrupt();
+                            }
+                            super.flush();
+                        }
+                    };
+                    this.built.add(slow);
+                    return slow;
+                });
+        producer.send(new ProducerRecord<>("t", "42", "a"), (metadata, e) -> order.add("a answered"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        Future<?> switching = executor.submit(() -> producer.switchTo(ProducerProfile.THROUGHPUT));
+        assertTrue(flushing.await(5, TimeUnit.SECONDS));
+
+        // Another customer doesn't wait for the old producer
+        executor.submit(() -> producer.send(new ProducerRecord<>("t", "7", "x"))).get(5, TimeUnit.SECONDS);
+        assertEquals("x", this.built.get(1).history().get(0).value());
+
+        // The same customer waits until its job on the old producer has been answered
+        Future<?> sending = executor.submit(() -> {
+            producer.send(new ProducerRecord<>("t", "42", "b"));
+            order.add("b sent");
+        });
+        Thread.sleep(200);
+        assertFalse(sending.isDone());
+        assertEquals(1, this.built.get(1).history().size());
+
+        release.countDown();
+        sending.get(5, TimeUnit.SECONDS);
+        switching.get(5, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        assertEquals("a answered", order.get(0));
+        assertEquals("b sent", order.get(1));
+        assertEquals("a", this.built.get(0).history().get(0).value());
+        assertEquals("b", this.built.get(1).history().get(1).value());
+
+        System.out.println("key order across a switch passed!");
+    }
+
+    @Test
+    public void testConcurrentSendsWhileSwitching() throws Exception
+    {
+        AdaptiveProducer<String, String> producer = new AdaptiveProducer<>(new Properties(), ProducerProfile.LATENCY,
+                this::build);
+        int threads = 4;
+        int perThread = 5000;
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(threads);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++)
+        {
+            executor.execute(() -> {
+                try
+                {
+                    for (int i = 0; i < perThread; i++)
+                        producer.send(new ProducerRecord<>("t", Integer.toString(i)));
+                }
+                catch (RuntimeException e)
+                {
+                    failures.incrementAndGet(); // like sending to a producer that was already closed
+                }
+                finally
+                {
+                    done.countDown();
+                }
+            });
+        }
+
+        for (int i = 0; done.getCount() > 0; i++)
+            producer.switchTo(i % 2 == 0 ? ProducerProfile.THROUGHPUT : ProducerProfile.LATENCY);
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(0, failures.get());
+        int sent = 0;
+        for (MockProducer<String, String> mock : this.built)
+            sent += mock.history().size();
+        assertEquals(threads * perThread, sent);
+
+        // Every producer but the current one was closed by a switch
+        for (int i = 0; i < this.built.size() - 1; i++)
+            assertTrue(this.built.get(i).closed());
+
+        System.out.println("sends while switching passed!");
+    }
+}
@@ -0,0 +1,182 @@
+import static org.junit.Assert.*;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.errors.TopicExistsException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+public class Test_AsyncTopicCreator
+{
+    private final AtomicLong now = new AtomicLong(0);
+    private final List<String> creates = new CopyOnWriteArrayList<>();
+    private final Map<String, CompletableFuture<Void>> creations = new ConcurrentHashMap<>();
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+    private final List<String> created = new CopyOnWriteArrayList<>();
+    private volatile CountDownLatch sending = new CountDownLatch(0); // the sender waits on this, like a full producer
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private AsyncTopicCreator creator(int maxPending)
+    {
+        return new AsyncTopicCreator(topic -> {
+            this.creates.add(topic);
+            CompletableFuture<Void> creation = new CompletableFuture<>();
+            this.creations.put(topic, creation);
+            return creation;
+        }, maxPending, topic -> this.created.add(topic), (record, done) -> {
+            try
+            {
+                this.sending.await();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            this.sent.add(record.value() == null ? null : new String(record.value()));
+        }, this.now::get);
+    }
+
+    private static ProducerRecord<String, byte[]> record(String topic, String job)
+    {
+        return new ProducerRecord<String, byte[]>(topic, "42", job.getBytes());
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException
+    {
+        for (int i = 0; i < 500 && !condition.getAsBoolean(); i++)
+            Thread.sleep(10);
+
+        assertTrue(condition.getAsBoolean());
+    }
+
+    @After
+    public void stop()
+    {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void testSendsOutsideTheLock() throws Exception
+    {
+        AsyncTopicCreator creator = creator(100);
+        assertTrue(creator.sendWhenCreated(record("waco-tx-delivery", "a")));
+        assertTrue(creator.sendWhenCreated(record("waco-tx-delivery", "b")));
+        assertEquals(1, this.creates.size());
+        assertTrue(creator.isCreating("waco-tx-delivery"));
+        assertEquals(2, creator.getNumPending());
+        CompletableFuture<Void> creation = creator.ensureTopic("waco-tx-delivery");
+
+        // The broker answers while the producer is full, the admin client's thread doesn't wait on it
+        this.sending = new CountDownLatch(1);
+        Future<?> answered = this.executor.submit(() -> this.creations.get("waco-tx-delivery").complete(null));
+        answered.get(5, TimeUnit.SECONDS);
+
+        // And neither does a routing thread adding another job for the topic while the first ones go out
+        Future<Boolean> added = this.executor.submit(() -> creator.sendWhenCreated(record("waco-tx-delivery", "c")));
+        assertTrue(added.get(5, TimeUnit.SECONDS));
+        assertTrue(this.sent.isEmpty());
+        assertTrue(this.created.isEmpty());
+
+        this.sending.countDown();
+        await(() -> !creator.isCreating("waco-tx-delivery"));
+        assertEquals("[a, b, c]", this.sent.toString());
+        assertEquals("[waco-tx-delivery]", this.created.toString());
+        assertEquals(0, creator.getNumPending());
+        assertTrue(creation.isDone());
+        assertEquals(1, this.creates.size());
+
+        creator.close();
+        System.out.println("AsyncTopicCreator sends outside the lock passed!");
+    }
+
+    @Test
+    public void testBacksOffAfterFailure() throws Exception
+    {
+        AsyncTopicCreator creator = creator(100);
+        creator.sendWhenCreated(record("waco-tx-delivery", "a"));
+        this.creations.get("waco-tx-delivery").completeExceptionally(new TimeoutException("No answer"));
+
+        // The job that was waiting still gets sent, the producer reports the error
+        await(() -> this.sent.size() == 1);
+        await(() -> !creator.isCreating("waco-tx-delivery"));
+        assertEquals(1, creator.getNumFailed());
+        assertTrue(this.created.isEmpty());
+
+        // Backing off, jobs are turned away instead of sent and nothing asks the broker again
+        this.now.set(999);
+        assertTrue(creator.isBackingOff("waco-tx-delivery"));
+        assertFalse(creator.sendWhenCreated(record("waco-tx-delivery", "b")));
+        assertTrue(creator.ensureTopic("waco-tx-delivery").isCompletedExceptionally());
+        assertEquals("[a]", this.sent.toString());
+        assertEquals(0, creator.getNumPending());
+        assertEquals(1, this.creates.size());
+
+        // The back off is over, try again and fail again so the next back off is twice as long
+        this.now.set(1000);
+        assertFalse(creator.isBackingOff("waco-tx-delivery"));
+        creator.ensureTopic("waco-tx-delivery");
+        assertEquals(2, this.creates.size());
+        this.creations.get("waco-tx-delivery").completeExceptionally(new TimeoutException("Still no answer"));
+        await(() -> !creator.isCreating("waco-tx-delivery"));
+
+        this.now.set(2999);
+        creator.ensureTopic("waco-tx-delivery");
+        assertEquals(2, this.creates.size());
+
+        // Somebody else created it in the meantime, which counts as created
+        this.now.set(3000);
+        CompletableFuture<Void> creation = creator.ensureTopic("waco-tx-delivery");
+        assertEquals(3, this.creates.size());
+        this.creations.get("waco-tx-delivery").completeExceptionally(new TopicExistsException("Already there"));
+        await(creation::isDone);
+        assertFalse(creation.isCompletedExceptionally());
+        assertEquals("[waco-tx-delivery]", this.created.toString());
+
+        creator.close();
+        System.out.println("AsyncTopicCreator backs off passed!");
+    }
+
+    @Test
+    public void testNeverSendsFromCallerWhileBackingOff() throws Exception
+    {
+        AsyncTopicCreator creator = creator(100);
+        creator.ensureTopic("waco-tx-delivery");
+        this.creations.get("waco-tx-delivery").completeExceptionally(new TimeoutException("No answer"));
+        await(() -> creator.ensureTopic("waco-tx-delivery").isDone());
+
+        // The topic doesn't exist, so a send would block in the producer waiting on its metadata
+        this.sending = new CountDownLatch(1);
+        Future<Boolean> added = this.executor.submit(() -> creator.sendWhenCreated(record("waco-tx-delivery", "a")));
+        assertFalse(added.get(5, TimeUnit.SECONDS));
+        assertTrue(this.sent.isEmpty());
+
+        this.sending.countDown();
+        creator.close();
+        System.out.println("AsyncTopicCreator never sends from the caller while backing off passed!");
+    }
+
+    @Test
+    public void testBufferFull()
+    {
+        AsyncTopicCreator creator = creator(2);
+        assertTrue(creator.sendWhenCreated(record("waco-tx-delivery", "a")));
+        assertTrue(creator.sendWhenCreated(record("bryan-tx-delivery", "b")));
+        assertFalse(creator.sendWhenCreated(record("waco-tx-delivery", "c")));
+        assertEquals(2, creator.getNumPending());
+
+        creator.close();
+        System.out.println("AsyncTopicCreator buffer full passed!");
+    }
+}
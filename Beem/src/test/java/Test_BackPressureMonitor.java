@@ -0,0 +1,78 @@
+import static org.junit.Assert.*;
+
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class Test_BackPressureMonitor
+{
+    // 10 jobs total and 4 jobs per topic, the bytes are high enough that only the jobs matter
+    BackPressureMonitor monitor = new BackPressureMonitor(
+            new BackPressureMonitor.Watermarks(1000000, 500000, 10, 5),
+            new BackPressureMonitor.Watermarks(1000000, 500000, 4, 2));
+
+    ProducerRecord<String, byte[]> austin = new ProducerRecord<>("austin-tx-delivery", "123456789", new byte[2]);
+    ProducerRecord<String, byte[]> houston = new ProducerRecord<>("houston-tx-delivery", "123456789", new byte[2]);
+
+    @Test
+    public void testDestinationSaturates()
+    {
+        List<Callback> callbacks = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+            callbacks.add(monitor.track(austin));
+
+        assertTrue(monitor.isSaturated("austin-tx-delivery"));
+        assertFalse(monitor.isSaturated("houston-tx-delivery"));
+        assertFalse(monitor.isSaturated());
+        assertEquals(5, monitor.getInFlightRecords("austin-tx-delivery"));
+        assertEquals(5 * BackPressureMonitor.estimateSize(austin), monitor.getInFlightBytes("austin-tx-delivery"));
+
+        // Still saturated until we get down to the low water mark
+        callbacks.remove(0).onCompletion(null, null);
+        callbacks.remove(0).onCompletion(null, null);
+        assertTrue(monitor.isSaturated("austin-tx-delivery"));
+
+        callbacks.remove(0).onCompletion(null, null);
+        assertFalse(monitor.isSaturated("austin-tx-delivery"));
+
+        System.out.println("isSaturated(topic) passed!");
+    }
+
+    @Test
+    public void testTotalSaturates()
+    {
+        List<Callback> callbacks = new ArrayList<>();
+        for (int i = 0; i < 4; i++)
+        {
+            callbacks.add(monitor.track(austin));
+            callbacks.add(monitor.track(houston));
+        }
+        assertFalse(monitor.isSaturated());
+
+        for (int i = 0; i < 3; i++)
+            callbacks.add(monitor.track(new ProducerRecord<>("dallas-tx-delivery", "1", new byte[2])));
+
+        // Every topic is saturated when the total is, even ones we haven't sent to yet
+        assertTrue(monitor.isSaturated());
+        assertTrue(monitor.isSaturated("waco-tx-delivery"));
+        assertEquals(11, monitor.getInFlightRecords());
+
+        for (Callback callback : callbacks)
+            callback.onCompletion(null, new RuntimeException("failed sends count as done too"));
+
+        assertFalse(monitor.isSaturated());
+        assertEquals(0, monitor.getInFlightRecords());
+        assertEquals(0, monitor.getInFlightBytes());
+
+        System.out.println("isSaturated() passed!");
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testInvalidWatermarks()
+    {
+        new BackPressureMonitor.Watermarks(100, 100, 10, 5);
+    }
+}
@@ -0,0 +1,157 @@
+import static org.junit.Assert.*;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+
+public class Test_BinaryJobCodec
+{
+    static DeliveryJob deliveryJob()
+    {
+        return new DeliveryJob(123456789, "Texas A&M University", "400 Bizzell St, College Station, TX 77843",
+                "11410 Century Oaks Terrace, Austin, TX 78758", "Shelf", "My dad will help you load it up.",
+                DeliveryJob.Sizes.MEDIUM);
+    }
+
+    static RideShareJob rideShareJob()
+    {
+        RideShareJob job = new RideShareJob(123456789, "Texas A&M University",
+                "400 Bizzell St, College Station, TX 77843", "11410 Century Oaks Terrace, Austin, TX 78758", 2);
+        job.setTo_latitude(30.6187);
+        job.setTo_longitude(-96.3365);
+        job.setFrom_latitude(30.4016);
+        job.setFrom_longitude(-97.7194);
+        job.setPickup_time(new Date(1792310400000L));
+        job.setDropoff_time(new Date(1792314000000L));
+
+        return job;
+    }
+
+    @Test
+    public void testDeliveryJob()
+    {
+        BinaryJobCodec<DeliveryJob> codec = new BinaryJobCodec<>(DeliveryJob.class);
+        DeliveryJob job = deliveryJob();
+
+        byte[] bytes = codec.serialize("texas-am-university", job);
+        assertEquals(BinaryJobCodec.MAGIC, bytes[0]);
+        assertEquals(BinaryJobCodec.VERSION, bytes[1]);
+
+        DeliveryJob decoded = codec.deserialize("texas-am-university", bytes);
+        assertTrue(job.equals(decoded));
+        assertEquals(job.toString(), decoded.toString()); // every field, including the ones from the addresses
+
+        System.out.println("DeliveryJob round trip passed!");
+    }
+
+    @Test
+    public void testRideShareJob()
+    {
+        BinaryJobCodec<RideShareJob> codec = new BinaryJobCodec<>(RideShareJob.class);
+        RideShareJob job = rideShareJob();
+
+        RideShareJob decoded = codec.deserialize("texas-am-university", codec.serialize("texas-am-university", job));
+        assertTrue(job.equals(decoded));
+        assertEquals(job.toString(), decoded.toString());
+
+        // Nothing set but the defaults
+        RideShareJob empty = new RideShareJob();
+        assertEquals(empty.toString(), codec.deserialize("t", codec.serialize("t", empty)).toString());
+
+        System.out.println("RideShareJob round trip passed!");
+    }
+
+    @Test
+    public void testOutsideDictionary()
+    {
+        BinaryJobCodec<DeliveryJob> codec = new BinaryJobCodec<>(DeliveryJob.class);
+
+        // Lowercase state, a zip+4 and a zip with a leading zero all have to come back exactly
+        DeliveryJob job = new DeliveryJob(7, "Harvard University", "1 Main St, Boston, ma 02134",
+                "5 Elm St, Houston, TX 77002-1234", "Box", "\u00dcn\u00efc\u00f6d\u00e9", DeliveryJob.Sizes.SMALL);
+
+        DeliveryJob decoded = codec.deserialize("t", codec.serialize("t", job));
+        assertEquals(job.toString(), decoded.toString());
+        assertEquals("02134", decoded.getTo_zipcode());
+
+        System.out.println("Values outside the dictionaries passed!");
+    }
+
+    @Test
+    public void testJsonFallback()
+    {
+        DeliveryJob job = deliveryJob();
+        byte[] json = new KafkaJsonSerializer<DeliveryJob>().serialize("t", job);
+
+        DeliveryJob decoded = new BinaryJobCodec<>(DeliveryJob.class).deserialize("t", json);
+        assertEquals(job.toString(), decoded.toString());
+
+        // Without a type the job type in the JSON picks the class
+        Object any = new BinaryJobCodec<Object>().deserialize("t",
+                new KafkaJsonSerializer<RideShareJob>().serialize("t", rideShareJob()));
+        assertTrue(any instanceof RideShareJob);
+
+        System.out.println("JSON fallback passed!");
+    }
+
+    @Test
+    public void testSmaller()
+    {
+        BinaryJobCodec<Object> codec = new BinaryJobCodec<>();
+        KafkaJsonSerializer<Object> json = new KafkaJsonSerializer<>();
+
+        for (Object job : new Object[] { deliveryJob(), rideShareJob() })
+        {
+            int jsonSize = json.serialize("t", job).length;
+            int binarySize = codec.serialize("t", job).length;
+            assertTrue(job.getClass().getSimpleName() + " " + binarySize + " of " + jsonSize,
+                    binarySize * 2 < jsonSize);
+        }
+
+        System.out.println("Binary smaller than JSON passed!");
+    }
+
+    @Test
+    public void testBadBytes()
+    {
+        BinaryJobCodec<DeliveryJob> codec = new BinaryJobCodec<>(DeliveryJob.class);
+        byte[] bytes = codec.serialize("t", deliveryJob());
+
+        byte[][] bad = {
+                Arrays.copyOf(bytes, bytes.length - 3), // cut off
+                Arrays.copyOf(bytes, bytes.length + 1), // left over
+                { BinaryJobCodec.MAGIC, 2, 1 }, // newer version
+                { BinaryJobCodec.MAGIC, 1, 9 } // unknown job
+        };
+
+        for (byte[] job : bad)
+        {
+            try
+            {
+                codec.deserialize("t", job);
+                fail("Should have thrown for " + Arrays.toString(job));
+            }
+            catch (SerializationException e)
+            {
+                // Expected
+            }
+        }
+
+        // A RideShareJob isn't a DeliveryJob
+        try
+        {
+            codec.deserialize("t", new BinaryJobCodec<RideShareJob>().serialize("t", rideShareJob()));
+            fail("Should have thrown for the wrong kind of job");
+        }
+        catch (SerializationException e)
+        {
+            // Expected
+        }
+
+        assertNull(codec.deserialize("t", null));
+        assertNull(codec.serialize("t", null));
+
+        System.out.println("Bad bytes passed!");
+    }
+}
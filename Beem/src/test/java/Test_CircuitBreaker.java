@@ -0,0 +1,86 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Test_CircuitBreaker
+{
+    AtomicLong now = new AtomicLong(0);
+    CircuitBreaker breaker = new CircuitBreaker(3, 1000, now::get);
+
+    @Test
+    public void testOpensAfterFailuresInARow()
+    {
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordSuccess(); // resets the streak
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertTrue(breaker.allowRequest());
+
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+        assertTrue(breaker.isOpen());
+
+        System.out.println("CircuitBreaker opens!");
+    }
+
+    @Test
+    public void testHalfOpenProbe()
+    {
+        for (int i = 0; i < 3; i++)
+            breaker.recordFailure();
+
+        now.set(1000);
+        assertFalse(breaker.isOpen());
+
+        // Only one job gets to test the brokers
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+
+        // The test failed so it opens for another cool down
+        breaker.recordFailure();
+        assertFalse(breaker.allowRequest());
+
+        now.set(2000);
+        assertTrue(breaker.allowRequest());
+        breaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+        assertTrue(breaker.allowRequest());
+
+        System.out.println("CircuitBreaker half open passed!");
+    }
+
+    @Test
+    public void testReleaseProbe()
+    {
+        for (int i = 0; i < 3; i++)
+            breaker.recordFailure();
+
+        now.set(1000);
+        assertTrue(breaker.allowRequest());
+        assertFalse(breaker.allowRequest());
+
+        // The test job never went out, so another one gets to go instead of the breaker waiting forever
+        breaker.releaseProbe();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.allowRequest());
+        assertFalse(breaker.allowRequest());
+
+        breaker.recordSuccess();
+        breaker.releaseProbe(); // closed, nothing to give back
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+
+        System.out.println("CircuitBreaker releaseProbe() passed!");
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testInvalidThreshold()
+    {
+        new CircuitBreaker(0, 1000);
+    }
+}
@@ -0,0 +1,128 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class Test_CityGazetteer
+{
+    private CityGazetteer texas()
+    {
+        List<CityGazetteer.City> cities = new ArrayList<>();
+        cities.add(new CityGazetteer.City("College Station", "TX", 30.601389, -96.314445));
+        cities.add(new CityGazetteer.City("Austin", "TX", 30.266666, -97.733330));
+        cities.add(new CityGazetteer.City("Houston", "TX", 29.749907, -95.358421));
+        cities.add(new CityGazetteer.City("Tyler", "TX", 32.349998, -95.300003));
+
+        return new CityGazetteer(cities);
+    }
+
+    @Test
+    public void testParseLine()
+    {
+        CityGazetteer.City city = CityGazetteer.parseLine("College Station, TX, USA\t30.601389\t-96.314445");
+        assertEquals("College Station", city.getName());
+        assertEquals("TX", city.getState());
+        assertEquals(30.601389, city.getLatitude(), 0.0);
+
+        // The gazetteer doesn't always write the state the same way
+        assertEquals("IL", CityGazetteer.parseLine("Rockford, Il, the US\t42.259445\t-89.064445").getState());
+        assertEquals("IL", CityGazetteer.parseLine("Joliet, Illinois, USA\t41.520557\t-88.150558").getState());
+
+        System.out.println("parseLine() passed!");
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testParseBadState()
+    {
+        CityGazetteer.parseLine("Somewhere, ZZ, USA\t30.0\t-96.0");
+    }
+
+    @Test
+    public void testNearest()
+    {
+        CityGazetteer gazetteer = texas();
+
+        // Bryan is right next to College Station
+        assertEquals("College Station", gazetteer.nearest(30.674364, -96.369963, 50).getName());
+        // Round Rock is just north of Austin
+        assertEquals("Austin", gazetteer.nearest(30.508255, -97.678896, 50).getName());
+        // Katy is about 45km from Houston
+        assertEquals("Houston", gazetteer.nearest(29.785785, -95.824396, 50).getName());
+
+        System.out.println("nearest() passed!");
+    }
+
+    @Test
+    public void testDistanceCutoff()
+    {
+        CityGazetteer gazetteer = texas();
+
+        // El Paso is hundreds of kilometers from all of them
+        assertNull(gazetteer.nearest(31.761878, -106.485022, 50));
+        assertEquals("Austin", gazetteer.nearest(31.761878, -106.485022, Double.POSITIVE_INFINITY).getName());
+        assertNull(gazetteer.nearest(95, -96, Double.POSITIVE_INFINITY));
+
+        System.out.println("Distance cutoff passed!");
+    }
+
+    @Test
+    public void testMatchesBruteForce()
+    {
+        List<CityGazetteer.City> cities = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++)
+            cities.add(new CityGazetteer.City("city" + i, "TX", 25 + random.nextDouble() * 24,
+                    -124 + random.nextDouble() * 57));
+
+        CityGazetteer gazetteer = new CityGazetteer(cities);
+
+        for (int i = 0; i < 5000; i++)
+        {
+            double latitude = 24 + random.nextDouble() * 26;
+            double longitude = -125 + random.nextDouble() * 59;
+
+            double best = Double.POSITIVE_INFINITY;
+            for (CityGazetteer.City city : cities)
+            {
+                double distance = city.distanceKm(latitude, longitude);
+                best = Math.min(best, distance);
+            }
+
+            CityGazetteer.City found = gazetteer.nearest(latitude, longitude, Double.POSITIVE_INFINITY);
+            assertEquals(best, found.distanceKm(latitude, longitude), 1e-6);
+
+            CityGazetteer.City withinCutoff = gazetteer.nearest(latitude, longitude, 100);
+            if (best <= 100)
+                assertEquals(best, withinCutoff.distanceKm(latitude, longitude), 1e-6);
+            else
+                assertNull(withinCutoff);
+        }
+
+        System.out.println("nearest() matches brute force!");
+    }
+
+    @Test
+    public void testLoadGazetteer() throws Exception
+    {
+        Path file = Paths.get("..", "Cities", "City Coordinates.txt");
+        if (!Files.exists(file))
+            return;
+
+        CityGazetteer gazetteer = CityGazetteer.load(file);
+        assertTrue(gazetteer.size() > 40);
+        assertEquals("College Station", gazetteer.nearest(30.62, -96.33, 50).getName());
+
+        long start = System.nanoTime();
+        int lookups = 1000000;
+        for (int i = 0; i < lookups; i++)
+            gazetteer.nearest(30.62 + (i % 100) * 0.01, -96.33, 50);
+        System.out.printf("Gazetteer lookups took %d ns each%n", (System.nanoTime() - start) / lookups);
+
+        System.out.println("load() passed!");
+    }
+}
@@ -0,0 +1,163 @@
+import static org.junit.Assert.*;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.utils.Utils;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+public class Test_CityPartitioner
+{
+    private RoutingFields job(String customer, double latitude, double longitude, String zipCode)
+    {
+        // Scanned for everything, like the router does when it has a partitioner
+        RoutingExtractor extractor = new RoutingExtractor();
+        extractor.require(true, true);
+        return extractor.extract("{\"job_type\":\"rideShare\",\"customer_id\":\"" + customer + "\"," +
+                "\"from_city\":\"College Station\",\"from_state\":\"TX\",\"from_zipcode\":\"" + zipCode + "\"," +
+                "\"from_latitude\":" + latitude + ",\"from_longitude\":" + longitude + "}");
+    }
+
+    @Test
+    public void testSameAreaSamePartition()
+    {
+        CityPartitioner partitioner = new CityPartitioner(CityPartitioner.Locality.GEOHASH, 5, 3, 1);
+
+        // Different customers in the same neighborhood
+        int partition = partitioner.partition(job("1", 30.6014, -96.3144, "77840"), 32);
+        for (int customer = 2; customer < 50; customer++)
+            assertEquals(partition, partitioner.partition(job(Integer.toString(customer), 30.6014, -96.3144, "77840"), 32));
+
+        // And a driver there only needs that one partition
+        String area = Geohash.encode(30.6014, -96.3144, 5);
+        assertEquals(1, partitioner.partitionsFor(area, 32).size());
+        assertTrue(partitioner.partitionsFor(area, 32).contains(partition));
+
+        System.out.println("Same area passed!");
+    }
+
+    @Test
+    public void testAreasSpread()
+    {
+        CityPartitioner partitioner = new CityPartitioner(CityPartitioner.Locality.GEOHASH, 5, 3, 1);
+
+        Set<Integer> used = new HashSet<>();
+        for (int i = 0; i < 200; i++)
+            used.add(partitioner.partition(job("1", 29.5 + i * 0.05, -96.3, "77840"), 16));
+
+        assertTrue("Only used " + used.size() + " partitions", used.size() > 12);
+
+        System.out.println("Areas spread passed!");
+    }
+
+    @Test
+    public void testSpanKeepsCustomerOrder()
+    {
+        CityPartitioner partitioner = new CityPartitioner(CityPartitioner.Locality.GEOHASH, 5, 3, 4);
+        Set<Integer> area = partitioner.partitionsFor(Geohash.encode(30.6014, -96.3144, 5), 32);
+        assertEquals(4, area.size());
+
+        Map<String, Integer> customers = new HashMap<>();
+        for (int i = 0; i < 400; i++)
+        {
+            String customer = Integer.toString(i % 40);
+            int partition = partitioner.partition(job(customer, 30.6014, -96.3144, "77840"), 32);
+
+            assertTrue(area.contains(partition));
+            assertEquals(partition, (int) customers.computeIfAbsent(customer, c -> partition));
+        }
+
+        System.out.println("Span passed!");
+    }
+
+    @Test
+    public void testZipPrefix()
+    {
+        CityPartitioner partitioner = new CityPartitioner(CityPartitioner.Locality.ZIP_PREFIX, 5, 3, 1);
+
+        int partition = partitioner.partition(job("1", 30.6014, -96.3144, "77840"), 32);
+        assertEquals(partition, partitioner.partition(job("2", 30.5, -96.2, "77845"), 32));
+        assertEquals(1, partitioner.partitionsFor("778", 32).size());
+        assertTrue(partitioner.partitionsFor("778", 32).contains(partition));
+
+        // Geohash falls back to the zip code when a job doesn't have coordinates
+        CityPartitioner geohash = new CityPartitioner(CityPartitioner.Locality.GEOHASH, 5, 3, 1);
+        int noCoordinates = geohash.partition(job("1", 0, 0, "77840"), 32);
+        assertEquals(noCoordinates, geohash.partition(job("2", 0, 0, "77845"), 32));
+        assertTrue(geohash.partitionsFor("778", 32).contains(noCoordinates));
+
+        System.out.println("Zip prefix passed!");
+    }
+
+    @Test
+    public void testSameAsDefaultPartitioner()
+    {
+        // By customer, every job lands where the producer's default partitioner would have put it
+        CityPartitioner partitioner = new CityPartitioner(CityPartitioner.Locality.CUSTOMER, 5, 3, 1);
+        for (int i = 0; i < 100; i++)
+        {
+            String customer = "customer-" + i;
+            assertEquals(Utils.toPositive(Utils.murmur2(customer.getBytes(StandardCharsets.UTF_8))) % 12,
+                    partitioner.partition(job(customer, 30.6187, -96.3365, "77840"), 12));
+        }
+
+        // Same for the jobs by area that don't have one
+        partitioner = new CityPartitioner(CityPartitioner.Locality.GEOHASH, 5, 3, 1);
+        assertEquals(Utils.toPositive(Utils.murmur2("42".getBytes(StandardCharsets.UTF_8))) % 12,
+                partitioner.partition(job("42", 0, 0, "none"), 12));
+
+        System.out.println("same partitions as the default partitioner passed!");
+    }
+
+    @Test
+    public void testNoKeyIsDeterministic()
+    {
+        Node node = new Node(0, "localhost", 9092);
+        List<PartitionInfo> partitions = new ArrayList<>();
+        for (int i = 0; i < 12; i++)
+            partitions.add(new PartitionInfo("college station-tx-rideshare", i, node, null, null));
+        Cluster cluster = new Cluster("test", Collections.singletonList(node), partitions, Collections.emptySet(),
+                Collections.emptySet());
+
+        // Not a job we can read and no key, so the whole value picks the partition, the same one every time
+        CityPartitioner partitioner = new CityPartitioner();
+        partitioner.configure(new HashMap<>());
+        byte[] value = "not a job".getBytes(StandardCharsets.UTF_8);
+        int first = partitioner.partition("college station-tx-rideshare", null, null, null, value, cluster);
+        for (int i = 0; i < 20; i++)
+            assertEquals(first, partitioner.partition("college station-tx-rideshare", null, null, null, value, cluster));
+        assertEquals(Utils.toPositive(Utils.murmur2(value)) % 12, first);
+
+        System.out.println("partition() without a key passed!");
+    }
+
+    @Test
+    public void testConfigure()
+    {
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(CityPartitioner.LOCALITY_CONFIG, "zip_prefix");
+        configs.put(CityPartitioner.SPAN_CONFIG, "2");
+
+        CityPartitioner partitioner = new CityPartitioner();
+        partitioner.configure(configs);
+
+        assertEquals(CityPartitioner.Locality.ZIP_PREFIX, partitioner.getLocality());
+        assertEquals(2, partitioner.getSpan());
+
+        System.out.println("configure() passed!");
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testBadSpan()
+    {
+        new CityPartitioner(CityPartitioner.Locality.GEOHASH, 5, 3, 0);
+    }
+}
@@ -0,0 +1,135 @@
+import static org.junit.Assert.*;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.streams.KeyValue;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+public class Test_CityStream
+{
+    String job = "{\"job_type\":\"delivery\",\"customer_id\":123456789,\"city\":\"College Station\",\"state\":\"TX\"}";
+
+    private final CityStream.RouteTransformer transformer = new CityStream.RouteTransformer(new TopicResolver(16));
+
+    private List<KeyValue<String, CityStream.RoutedJob>> route(byte[] value, Headers headers)
+    {
+        return this.transformer.route("school-key", value, headers, "texas-am-university", 3, 42);
+    }
+
+    private static String header(Headers headers, String key)
+    {
+        return new String(headers.lastHeader(key).value(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testRoute()
+    {
+        Headers headers = new RecordHeaders();
+        List<KeyValue<String, CityStream.RoutedJob>> routed = route(job.getBytes(StandardCharsets.UTF_8), headers);
+
+        assertEquals(1, routed.size());
+        assertEquals("123456789", routed.get(0).key);
+        assertEquals("college station-tx-delivery", routed.get(0).value.getTopic());
+        assertArrayEquals(job.getBytes(StandardCharsets.UTF_8), routed.get(0).value.getJob());
+        assertFalse(headers.iterator().hasNext());
+
+        // Binary jobs are decoded instead of failing to parse as JSON
+        RideShareJob ride = Test_BinaryJobCodec.rideShareJob();
+        routed = route(new BinaryJobCodec<RideShareJob>().serialize("t", ride), new RecordHeaders());
+        assertEquals(Long.toString(ride.getCustomer_id()), routed.get(0).key);
+        assertTrue(routed.get(0).value.isRouted());
+
+        // Only the job goes on the wire
+        Serde<CityStream.RoutedJob> serde = CityStream.getRoutedSerde();
+        assertArrayEquals(routed.get(0).value.getJob(), serde.serializer().serialize("t", routed.get(0).value));
+
+        System.out.println("RouteTransformer route() passed!");
+    }
+
+    @Test
+    public void testDeadLetters()
+    {
+        for (String bad : Arrays.asList("{\"job_type\":\"delivery\",\"city\":\"Austin\",\"state\":\"TX\"}",
+                "{\"job_type\":\"delivery\",\"customer_id\":1,\"state\":\"TX\"}", "{\"job_type\":\"delivery\","))
+        {
+            Headers headers = new RecordHeaders();
+            byte[] value = bad.getBytes(StandardCharsets.UTF_8);
+            List<KeyValue<String, CityStream.RoutedJob>> routed = route(value, headers);
+
+            // The record goes to the dead letter topic untouched, with why and where it came from
+            assertEquals(1, routed.size());
+            assertEquals("school-key", routed.get(0).key);
+            assertFalse(routed.get(0).value.isRouted());
+            assertSame(value, routed.get(0).value.getJob());
+            assertEquals("texas-am-university", header(headers, DeadLetterPublisher.SOURCE_TOPIC_HEADER));
+            assertEquals("3", header(headers, DeadLetterPublisher.SOURCE_PARTITION_HEADER));
+            assertEquals("42", header(headers, DeadLetterPublisher.SOURCE_OFFSET_HEADER));
+            assertNotNull(headers.lastHeader(DeadLetterPublisher.ERROR_CLASS_HEADER));
+        }
+
+        assertFalse(route(null, new RecordHeaders()).get(0).value.isRouted());
+
+        System.out.println("RouteTransformer dead letters passed!");
+    }
+
+    @Test
+    public void testTopology()
+    {
+        CityStream stream = new CityStream("texas-am-university", "localhost:9092", "tx-school-city-stream", 1);
+        String topology = stream.buildTopology().describe().toString();
+        stream.shutdown();
+
+        assertTrue(topology.contains("texas-am-university"));
+        assertTrue(topology.contains("tx-school-city-stream-dead-letter"));
+
+        System.out.println("buildTopology() passed!");
+    }
+
+    @Test
+    public void testJobSerde()
+    {
+        Serde<DeliveryJob> serde = CityStream.getJobSerde(DeliveryJob.class);
+        DeliveryJob delivery = Test_BinaryJobCodec.deliveryJob();
+
+        // Written as JSON, read back from JSON or from the binary format
+        byte[] json = serde.serializer().serialize("t", delivery);
+        assertEquals('{', (char) json[0]);
+        assertTrue(delivery.equals(serde.deserializer().deserialize("t", json)));
+        byte[] binary = new BinaryJobCodec<DeliveryJob>().serialize("t", delivery);
+        assertTrue(delivery.equals(serde.deserializer().deserialize("t", binary)));
+        assertNull(serde.deserializer().deserialize("t", null));
+
+        // An envelope is more than one job
+        JobBatch batch = new JobBatch(JobBatch.Compression.NONE);
+        batch.add("1", null, json);
+        try
+        {
+            serde.deserializer().deserialize("t", batch.toBytes());
+            fail("Read an envelope as one job");
+        }
+        catch (SerializationException e)
+        {
+            // expected
+        }
+
+        System.out.println("getJobSerde() passed!");
+    }
+
+    @Test
+    public void testCityTopicExtractor()
+    {
+        CityStream.CityTopicExtractor extractor = new CityStream.CityTopicExtractor(new HashSet<>(), null);
+        CityStream.RoutedJob routed = new CityStream.RoutedJob(job.getBytes(StandardCharsets.UTF_8),
+                "college station-tx-delivery");
+        assertEquals("college station-tx-delivery", extractor.extract("0", routed, null));
+
+        System.out.println("CityTopicExtractor passed!");
+    }
+}
@@ -0,0 +1,88 @@
+import static org.junit.Assert.*;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+public class Test_DeadLetterPublisher
+{
+    List<ProducerRecord<String, byte[]>> sent = new ArrayList<>();
+    DeadLetterPublisher publisher = new DeadLetterPublisher("tx-school-city-redirect-dead-letter",
+            (record, done) -> sent.add(record));
+
+    @Test
+    public void testUnroutableJob()
+    {
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>("texas-am-university", 3, 42L, "key", bytes("{bad"));
+        publisher.publish(record, new IllegalArgumentException("The job is not valid JSON!"));
+
+        ProducerRecord<String, byte[]> deadLetter = sent.get(0);
+        assertEquals("tx-school-city-redirect-dead-letter", deadLetter.topic());
+        assertEquals("key", deadLetter.key());
+        assertArrayEquals(bytes("{bad"), deadLetter.value());
+        assertEquals("java.lang.IllegalArgumentException", header(deadLetter, DeadLetterPublisher.ERROR_CLASS_HEADER));
+        assertEquals("The job is not valid JSON!", header(deadLetter, DeadLetterPublisher.ERROR_MESSAGE_HEADER));
+        assertEquals("texas-am-university", header(deadLetter, DeadLetterPublisher.SOURCE_TOPIC_HEADER));
+        assertEquals("3", header(deadLetter, DeadLetterPublisher.SOURCE_PARTITION_HEADER));
+        assertEquals("42", header(deadLetter, DeadLetterPublisher.SOURCE_OFFSET_HEADER));
+
+        System.out.println("publish(ConsumerRecord) passed!");
+    }
+
+    @Test
+    public void testFailedSend()
+    {
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>("austin-tx-delivery", "123", bytes("{}"));
+        publisher.publish(record, new TimeoutException("Expiring 1 record(s)"), 3);
+
+        ProducerRecord<String, byte[]> deadLetter = sent.get(0);
+        assertArrayEquals(bytes("{}"), deadLetter.value());
+        assertEquals("austin-tx-delivery", header(deadLetter, DeadLetterPublisher.DESTINATION_TOPIC_HEADER));
+        assertEquals("3", header(deadLetter, DeadLetterPublisher.ATTEMPTS_HEADER));
+
+        System.out.println("publish(ProducerRecord) passed!");
+    }
+
+    @Test
+    public void testNullMessage()
+    {
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>("texas-am-university", 0, 0L, null, null);
+        publisher.publish(record, new NoSuchElementException());
+
+        assertEquals("null", header(sent.get(0), DeadLetterPublisher.ERROR_MESSAGE_HEADER));
+
+        System.out.println("publish() without a message passed!");
+    }
+
+    @Test
+    public void testKeepsHeaders()
+    {
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>("texas-am-university", 0, 7L, "key", bytes("{"));
+        record.headers().add("trace.id", bytes("abc"));
+        record.headers().add(DeadLetterPublisher.ERROR_CLASS_HEADER, bytes("from.the.last.Time"));
+        publisher.publish(record, new IllegalArgumentException("Still bad"));
+
+        ProducerRecord<String, byte[]> deadLetter = sent.get(0);
+        assertEquals("abc", header(deadLetter, "trace.id"));
+        assertEquals(6, deadLetter.headers().toArray().length); // the trace id and our 5, the old error is replaced
+        assertEquals("java.lang.IllegalArgumentException", header(deadLetter, DeadLetterPublisher.ERROR_CLASS_HEADER));
+
+        System.out.println("publish() keeps the job's headers passed!");
+    }
+
+    private static byte[] bytes(String value)
+    {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String header(ProducerRecord<String, byte[]> record, String key)
+    {
+        return new String(record.headers().lastHeader(key).value(), StandardCharsets.UTF_8);
+    }
+}
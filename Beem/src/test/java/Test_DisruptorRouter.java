@@ -0,0 +1,244 @@
+import static org.junit.Assert.*;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+public class Test_DisruptorRouter
+{
+    private static final AtomicInteger routers = new AtomicInteger();
+    private static final String SCHOOL = "texas-am-university";
+
+    private final TopicPartition partition = new TopicPartition(SCHOOL, 0);
+    private volatile String blockKey; // the job whose send holds up the sending handler until unblock
+    private final CountDownLatch unblock = new CountDownLatch(1);
+    private final MockProducer<String, byte[]> producer = new MockProducer<String, byte[]>(false,
+            new StringSerializer(), new ByteArraySerializer())
+    {
+        // Like a producer whose buffer is full, the sending handler waits in here
+        @Override
+        public Future<RecordMetadata> send(ProducerRecord<String, byte[]> record, Callback callback)
+        {
+            if (record.key() != null && record.key().equals(blockKey))
+            {
+                try
+                {
+                    unblock.await();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return super.send(record, callback);
+        }
+    };
+    private final AtomicBoolean consumerClosed = new AtomicBoolean(false);
+    private final MockConsumer<String, byte[]> consumer = new MockConsumer<String, byte[]>(OffsetResetStrategy.EARLIEST)
+    {
+        // Stays open so the test can still look at what was committed
+        @Override
+        public synchronized void close()
+        {
+            consumerClosed.set(true);
+        }
+
+        @Override
+        public synchronized void close(Duration timeout)
+        {
+            consumerClosed.set(true);
+        }
+    };
+    private final String appName = "test-disruptor-router-" + routers.incrementAndGet();
+    private DisruptorRouter disruptorRouter;
+    private Thread thread;
+
+    @Before
+    public void start()
+    {
+        Map<String, Integer> topics = new HashMap<>();
+        topics.put(SCHOOL, 1);
+        topics.put("austin-tx-delivery", 1);
+        topics.put(this.appName + "-dead-letter", 1);
+
+        SchoolToCityStream router = new SchoolToCityStream("TX", "Texas A&M University",
+                Collections.singletonList(SCHOOL), new TopicMetadataCache(null, () -> topics, 60000),
+                props -> this.producer, this.appName);
+        this.disruptorRouter = new DisruptorRouter(router, 64, "blocking", 2, this.consumer, 1000);
+
+        this.consumer.schedulePollTask(() -> {
+            this.consumer.rebalance(Collections.singletonList(this.partition));
+            this.consumer.updateBeginningOffsets(Collections.singletonMap(this.partition, 0L));
+        });
+
+        this.thread = new Thread(this.disruptorRouter, "test-disruptor-router");
+        this.thread.start();
+    }
+
+    @After
+    public void stop() throws InterruptedException
+    {
+        this.unblock.countDown();
+        this.disruptorRouter.shutdown();
+        this.thread.join(10000);
+    }
+
+    private void poll(String... jobs)
+    {
+        pollFrom(0, jobs);
+    }
+
+    private void pollFrom(long offset, String... jobs)
+    {
+        this.consumer.schedulePollTask(() -> {
+            for (int i = 0; i < jobs.length; i++)
+                this.consumer.addRecord(new ConsumerRecord<String, byte[]>(SCHOOL, 0, offset + i, null,
+                        jobs[i].getBytes(StandardCharsets.UTF_8)));
+        });
+    }
+
+    private static String job(int customer)
+    {
+        return "{\"job_type\":\"delivery\",\"customer_id\":" + customer + ",\"from_city\":\"Austin\",\"from_state\":\"TX\"}";
+    }
+
+    private Long committed()
+    {
+        OffsetAndMetadata committed = this.consumer.committed(this.partition);
+        return committed == null ? null : committed.offset();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException
+    {
+        for (int i = 0; i < 500 && !condition.getAsBoolean(); i++)
+            Thread.sleep(10);
+
+        assertTrue(condition.getAsBoolean());
+    }
+
+    private void awaitCommitted(long offset) throws InterruptedException
+    {
+        await(() -> Long.valueOf(offset).equals(committed()));
+    }
+
+    @Test
+    public void testCommitsOnlyAckedPrefix() throws InterruptedException
+    {
+        poll(job(0), job(1), "{\"job_type\":\"delivery\",", job(3), job(4));
+
+        // Four jobs and the dead letter for the bad one, nothing acked so nothing committed
+        await(() -> this.producer.history().size() == 5);
+        Thread.sleep(100);
+        assertNull(committed());
+        assertEquals(this.appName + "-dead-letter", this.producer.history().get(2).topic());
+
+        this.producer.completeNext();
+        awaitCommitted(1);
+
+        // The second job fails and waits on a retry, everything after it is acked but can't be committed yet
+        this.producer.errorNext(new TimeoutException("The city broker went away"));
+        this.producer.completeNext();
+        this.producer.completeNext();
+        this.producer.completeNext();
+        Thread.sleep(100);
+        assertEquals(1L, (long) committed());
+
+        await(() -> this.producer.history().size() == 6);
+        ProducerRecord<String, byte[]> retry = this.producer.history().get(5);
+        assertEquals("austin-tx-delivery", retry.topic());
+        assertEquals("1", retry.key());
+
+        this.producer.completeNext();
+        awaitCommitted(5);
+
+        System.out.println("DisruptorRouter commits after acks passed!");
+    }
+
+    @Test
+    public void testWaitsOnDeadLetters() throws InterruptedException
+    {
+        poll(job(0), job(1));
+        await(() -> this.producer.history().size() == 2);
+
+        // Can't ever be sent, so it goes to the dead letter topic from the retry thread
+        this.producer.errorNext(new RecordTooLargeException("Too big"));
+        this.producer.completeNext();
+        await(() -> this.producer.history().size() == 3);
+        assertEquals(this.appName + "-dead-letter", this.producer.history().get(2).topic());
+        Thread.sleep(100);
+        assertNull(committed());
+
+        this.producer.completeNext();
+        awaitCommitted(2);
+
+        System.out.println("DisruptorRouter waits on dead letters passed!");
+    }
+
+    @Test
+    public void testDropsRevokedPartition() throws InterruptedException
+    {
+        this.blockKey = "1";
+        poll(job(0), job(1), job(2), job(3));
+        await(() -> this.producer.history().size() == 1);
+
+        // The partition is taken away while the sending handler is stuck, it never catches up on the ring
+        this.consumer.schedulePollTask(() -> this.disruptorRouter.onPartitionsRevoked(
+                Collections.singletonList(this.partition)));
+        awaitCommitted(1);
+
+        // What was still in the ring for the partition is thrown away instead of sent and committed later
+        this.unblock.countDown();
+        await(() -> this.producer.history().size() == 2);
+        Thread.sleep(200);
+        assertEquals(2, this.producer.history().size());
+
+        // Polled after we got the partition back, so it goes out
+        pollFrom(4, job(4));
+        await(() -> this.producer.history().size() == 3);
+        assertEquals("4", this.producer.history().get(2).key());
+        this.producer.completeNext();
+        this.producer.completeNext();
+        awaitCommitted(5);
+
+        System.out.println("DisruptorRouter drops revoked partitions passed!");
+    }
+
+    @Test
+    public void testShutdownCommitsEverything() throws InterruptedException
+    {
+        poll(job(0), job(1), job(2));
+        await(() -> this.producer.history().size() == 3);
+
+        // Shutting down flushes the producer (which completes everything for the mock) before the last commit
+        stop();
+        assertFalse(this.thread.isAlive());
+        assertTrue(this.consumerClosed.get());
+        assertEquals(3L, (long) committed());
+        assertTrue(this.producer.closed());
+
+        System.out.println("DisruptorRouter shutdown commit passed!");
+    }
+}
@@ -0,0 +1,59 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class Test_Geohash
+{
+    @Test
+    public void testEncode()
+    {
+        // The example from the geohash wikipedia page
+        assertEquals("u4pruydqqvj", Geohash.encode(57.64911, 10.40744, 11));
+        assertEquals("u4pru", Geohash.encode(57.64911, 10.40744, 5));
+
+        System.out.println("encode() passed!");
+    }
+
+    @Test
+    public void testBitsMatchString()
+    {
+        long bits = Geohash.toBits(57.64911, 10.40744, 5);
+        assertEquals(bits, Geohash.toBits("u4pru"));
+        assertEquals(bits, Geohash.toBits("U4PRU"));
+
+        // Close points share the cell, far ones don't
+        assertEquals(Geohash.toBits(30.6014, -96.3144, 4), Geohash.toBits(30.6020, -96.3150, 4));
+        assertTrue(Geohash.toBits(30.6014, -96.3144, 4) != Geohash.toBits(29.7499, -95.3584, 4));
+
+        System.out.println("toBits() passed!");
+    }
+
+    @Test
+    public void testCenter()
+    {
+        // Wikipedia's example decodes to 57.64911, 10.40744 give or take half a cell
+        long bits = Geohash.toBits("u4pruydqqvj");
+        assertEquals(57.64911, Geohash.latitude(bits, 11), 0.00001);
+        assertEquals(10.40744, Geohash.longitude(bits, 11), 0.00001);
+
+        // The middle of a cell is in the same cell at every coarser precision too
+        bits = Geohash.toBits(30.6187, -96.3365, Geohash.MAX_PRECISION);
+        double latitude = Geohash.latitude(bits, Geohash.MAX_PRECISION);
+        double longitude = Geohash.longitude(bits, Geohash.MAX_PRECISION);
+        for (int precision = 1; precision <= Geohash.MAX_PRECISION; precision++)
+            assertEquals(Geohash.toBits(30.6187, -96.3365, precision), Geohash.toBits(latitude, longitude, precision));
+
+        System.out.println("latitude() and longitude() passed!");
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testBadCharacter()
+    {
+        Geohash.toBits("u4pra"); // 'a' isn't used in geohashes
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testBadPrecision()
+    {
+        Geohash.encode(57.64911, 10.40744, 13);
+    }
+}
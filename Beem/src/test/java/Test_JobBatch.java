@@ -0,0 +1,160 @@
+import static org.junit.Assert.*;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+public class Test_JobBatch
+{
+    private JobBatch batch(JobBatch.Compression compression)
+    {
+        JobBatch batch = new JobBatch(compression);
+        for (int i = 0; i < 50; i++)
+        {
+            Object job = i % 2 == 0 ? Test_BinaryJobCodec.deliveryJob() : Test_BinaryJobCodec.rideShareJob();
+            Headers headers = new RecordHeaders();
+            RoutingHeaders.stamp(headers, job);
+            batch.add("customer-" + i, headers, new KafkaJsonSerializer<Object>().serialize("t", job));
+        }
+        batch.add(null, null, new byte[0]);
+
+        return batch;
+    }
+
+    private ConsumerRecord<String, byte[]> record(byte[] value)
+    {
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<String, byte[]>("texas-am-university", 3, 42,
+                1000L, TimestampType.CREATE_TIME, null, -1, value.length, null, value, new RecordHeaders());
+        record.headers().add("trace.id", "abc".getBytes(StandardCharsets.UTF_8));
+
+        return record;
+    }
+
+    @Test
+    public void testRoundTrip()
+    {
+        for (JobBatch.Compression compression : JobBatch.Compression.values())
+        {
+            JobBatch batch = batch(compression);
+            byte[] envelope = batch.toBytes();
+            assertTrue(JobBatch.isBatch(envelope));
+
+            List<ConsumerRecord<String, byte[]>> jobs = JobBatch.unpack(record(envelope));
+            assertEquals(batch.getCount(), jobs.size());
+            for (int i = 0; i < jobs.size(); i++)
+            {
+                ConsumerRecord<String, byte[]> job = jobs.get(i);
+                assertEquals(batch.getKeys().get(i), job.key());
+                assertArrayEquals(batch.getJobs().get(i), job.value());
+                assertEquals("texas-am-university", job.topic());
+                assertEquals(3, job.partition());
+                assertEquals(42, job.offset());
+                assertEquals(1000L, job.timestamp());
+
+                // The envelope's headers and then the job's own
+                assertEquals("trace.id", job.headers().toArray()[0].key());
+                Headers own = batch.getHeaders().get(i);
+                assertEquals(1 + (own == null ? 0 : own.toArray().length), job.headers().toArray().length);
+                if (own != null)
+                    assertArrayEquals(own.lastHeader(RoutingHeaders.CITY).value(),
+                            job.headers().lastHeader(RoutingHeaders.CITY).value());
+            }
+
+            List<byte[]> values = JobBatch.unpackValues(envelope);
+            assertEquals(batch.getCount(), values.size());
+            for (int i = 0; i < values.size(); i++)
+                assertArrayEquals(batch.getJobs().get(i), values.get(i));
+        }
+
+        System.out.println("JobBatch round trip passed!");
+    }
+
+    @Test
+    public void testCompression()
+    {
+        int plain = batch(JobBatch.Compression.NONE).toBytes().length;
+        assertTrue(batch(JobBatch.Compression.DEFLATE).toBytes().length < plain / 4);
+        assertTrue(batch(JobBatch.Compression.LZ4).toBytes().length < plain / 4);
+
+        System.out.println("JobBatch compression passed!");
+    }
+
+    @Test
+    public void testNotABatch()
+    {
+        byte[] json = new KafkaJsonSerializer<Object>().serialize("t", Test_BinaryJobCodec.deliveryJob());
+        ConsumerRecord<String, byte[]> record = record(json);
+        assertFalse(JobBatch.isBatch(json));
+        assertSame(record, JobBatch.unpack(record).get(0));
+        assertSame(json, JobBatch.unpackValues(json).get(0));
+
+        byte[] binary = new BinaryJobCodec<Object>().serialize("t", Test_BinaryJobCodec.deliveryJob());
+        assertFalse(JobBatch.isBatch(binary));
+
+        System.out.println("JobBatch not a batch passed!");
+    }
+
+    @Test
+    public void testFull()
+    {
+        JobBatch batch = batch(JobBatch.Compression.NONE);
+        assertEquals(51, batch.getCount());
+        assertTrue(batch.getSizeInBytes() > 50 * 400);
+        assertTrue(batch.getSizeInBytes() <= batch.toBytes().length + 51 * 8);
+
+        batch.clear();
+        assertTrue(batch.isEmpty());
+        assertEquals(0, batch.getSizeInBytes());
+
+        System.out.println("JobBatch size passed!");
+    }
+
+    @Test
+    public void testBadBatches()
+    {
+        for (JobBatch.Compression compression : JobBatch.Compression.values())
+        {
+            byte[] envelope = batch(compression).toBytes();
+
+            byte[] cutOff = Arrays.copyOf(envelope, envelope.length - 10);
+            byte[] newer = envelope.clone();
+            newer[1] = 2;
+            byte[] unknown = envelope.clone();
+            unknown[2] = 9;
+            byte[] extra = Arrays.copyOf(envelope, envelope.length + 1);
+
+            for (byte[] bad : new byte[][] { cutOff, newer, unknown, extra, { JobBatch.MAGIC },
+                    { JobBatch.MAGIC, JobBatch.VERSION, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x7F } })
+            {
+                try
+                {
+                    JobBatch.unpack(record(bad));
+                    fail("Should have thrown for a bad " + compression + " batch");
+                }
+                catch (IllegalArgumentException e)
+                {
+                    // Expected
+                }
+            }
+        }
+
+        // Says it has more jobs than it could possibly hold
+        byte[] tooMany = { JobBatch.MAGIC, JobBatch.VERSION, 0, 2, (byte) 0xFF, 0x7F };
+        try
+        {
+            JobBatch.unpackValues(tooMany);
+            fail("Should have thrown for a batch with too many jobs");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // Expected
+        }
+
+        System.out.println("JobBatch bad batches passed!");
+    }
+}
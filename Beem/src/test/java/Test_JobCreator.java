@@ -3,6 +3,23 @@ import static org.junit.Assert.*;
 import org.junit.Test;
 import org.apache.kafka.clients.consumer.*;
 import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.clients.producer.internals.DefaultPartitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.common.utils.Utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Test_JobCreator
 {
@@ -24,4 +41,85 @@ public class Test_JobCreator
         }
 
     }
+
+    private static MockProducer<String, byte[]> mockProducer(String topic, int partitions)
+    {
+        Node node = new Node(0, "localhost", 9092);
+        List<PartitionInfo> infos = new ArrayList<>();
+        for (int i = 0; i < partitions; i++)
+            infos.add(new PartitionInfo(topic, i, node, new Node[] { node }, new Node[] { node }));
+
+        Cluster cluster = new Cluster("test", Collections.singletonList(node), infos, Collections.emptySet(),
+                Collections.emptySet());
+        return new MockProducer<>(cluster, true, new DefaultPartitioner(), new StringSerializer(),
+                new ByteArraySerializer());
+    }
+
+    private static DeliveryJob job(int customer)
+    {
+        return new DeliveryJob(customer, "Texas A&M University", "400 Bizzell St, College Station, TX 77843",
+                "11410 Century Oaks Terrace, Austin, TX 78758", "Shelf", "", DeliveryJob.Sizes.MEDIUM);
+    }
+
+    @Test
+    public void testLingeringEnvelopeIsSent() throws Exception
+    {
+        MockProducer<String, byte[]> producer = mockProducer(topicName, 3);
+        JobCreator creator = new JobCreator(topicName, 100, 1024 * 1024, 50, JobBatch.Compression.NONE, producer);
+
+        // Nowhere near full and nobody sends again or flushes, the envelope still goes out once it has lingered
+        Future<RecordMetadata> first = creator.sendJob(job(1));
+        Future<RecordMetadata> second = creator.sendJob(job(1));
+        assertFalse(first.isDone());
+        assertEquals(0, producer.history().size());
+
+        assertNotNull(first.get(5, TimeUnit.SECONDS));
+        assertNotNull(second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, producer.history().size());
+        assertTrue(JobBatch.isBatch(producer.history().get(0).value()));
+
+        creator.close();
+        assertTrue(producer.closed());
+
+        System.out.println("JobCreator lingering envelope passed!");
+    }
+
+    @Test
+    public void testFollowsAddedPartitions() throws Exception
+    {
+        AtomicInteger partitions = new AtomicInteger(1);
+        MockProducer<String, byte[]> producer = new MockProducer<String, byte[]>(true, new StringSerializer(),
+                new ByteArraySerializer())
+        {
+            // Like the producer's metadata after the topic was given more partitions
+            @Override
+            public synchronized List<PartitionInfo> partitionsFor(String topic)
+            {
+                List<PartitionInfo> infos = new ArrayList<>();
+                for (int i = 0; i < partitions.get(); i++)
+                    infos.add(new PartitionInfo(topic, i, null, null, null));
+                return infos;
+            }
+        };
+        JobCreator creator = new JobCreator(topicName, 100, 1024 * 1024, 20, JobBatch.Compression.NONE, producer);
+
+        // A customer the producer puts somewhere other than partition 0 once there are 4 partitions
+        int customer = 0;
+        while (Utils.toPositive(Utils.murmur2(Integer.toString(customer).getBytes(StandardCharsets.UTF_8))) % 4 == 0)
+            customer++;
+        int moved = Utils.toPositive(Utils.murmur2(Integer.toString(customer).getBytes(StandardCharsets.UTF_8))) % 4;
+
+        creator.sendJob(job(customer)).get(5, TimeUnit.SECONDS);
+        assertEquals(Integer.valueOf(0), producer.history().get(0).partition());
+
+        // The lingerer picks up the new partitions and the customer's next envelope follows the producer
+        partitions.set(4);
+        Thread.sleep(200);
+        creator.sendJob(job(customer)).get(5, TimeUnit.SECONDS);
+        assertEquals(Integer.valueOf(moved), producer.history().get(1).partition());
+
+        creator.close();
+
+        System.out.println("JobCreator follows added partitions passed!");
+    }
 }
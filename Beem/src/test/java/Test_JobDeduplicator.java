@@ -0,0 +1,166 @@
+import static org.junit.Assert.*;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Test_JobDeduplicator
+{
+    AtomicLong now = new AtomicLong(0);
+
+    private String job(int i)
+    {
+        return "{\"job_type\":\"delivery\",\"customer_id\":" + i + ",\"school\":\"Texas A&M University\"," +
+                "\"from_city\":\"College Station\",\"from_state\":\"TX\",\"item_size\":2}";
+    }
+
+    @Test
+    public void testDuplicates()
+    {
+        JobDeduplicator dedup = new JobDeduplicator(10000, 0.001, 60000, now::get);
+
+        long fingerprint = JobDeduplicator.fingerprint(job(1));
+        assertFalse(dedup.isDuplicate(fingerprint));
+        dedup.add(fingerprint);
+
+        assertTrue(dedup.isDuplicate(JobDeduplicator.fingerprint(job(1))));
+        assertFalse(dedup.isDuplicate(JobDeduplicator.fingerprint(job(2))));
+
+        System.out.println("Duplicates passed!");
+    }
+
+    @Test
+    public void testWindow()
+    {
+        JobDeduplicator dedup = new JobDeduplicator(10000, 0.001, 60000, now::get);
+        long fingerprint = JobDeduplicator.fingerprint(job(1));
+        dedup.add(fingerprint);
+
+        // Remembered for at least one window
+        now.set(59999);
+        assertTrue(dedup.isDuplicate(fingerprint));
+        now.set(60000);
+        assertTrue(dedup.isDuplicate(fingerprint));
+
+        // And forgotten after two
+        now.set(120000);
+        assertFalse(dedup.isDuplicate(fingerprint));
+
+        // Idle for longer than two windows forgets everything at once
+        dedup.add(fingerprint);
+        now.set(1000000);
+        assertFalse(dedup.isDuplicate(fingerprint));
+
+        System.out.println("Window passed!");
+    }
+
+    @Test
+    public void testFalsePositiveRate()
+    {
+        int expected = 100000;
+        JobDeduplicator dedup = new JobDeduplicator(expected, 0.01, 60000, now::get);
+
+        for (int i = 0; i < expected; i++)
+            dedup.add(JobDeduplicator.fingerprint(job(i)));
+        for (int i = 0; i < expected; i++)
+            assertTrue(dedup.isDuplicate(JobDeduplicator.fingerprint(job(i))));
+
+        int falsePositives = 0;
+        for (int i = expected; i < 2 * expected; i++)
+        {
+            if (dedup.isDuplicate(JobDeduplicator.fingerprint(job(i))))
+                falsePositives++;
+        }
+
+        double rate = (double) falsePositives / expected;
+        assertTrue("False positive rate was " + rate, rate < 0.015);
+
+        String[] jobs = new String[100];
+        for (int i = 0; i < jobs.length; i++)
+            jobs[i] = job(i);
+
+        // Warm up first so we time the compiled code
+        for (int i = 0; i < expected; i++)
+            dedup.isDuplicate(JobDeduplicator.fingerprint(jobs[i % jobs.length]));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < expected; i++)
+            dedup.isDuplicate(JobDeduplicator.fingerprint(jobs[i % jobs.length]));
+        System.out.printf("False positive rate %.4f, %d ns per lookup, %d KB%n", rate,
+                (System.nanoTime() - start) / expected, dedup.getMemoryBytes() / 1024);
+
+        System.out.println("False positive rate passed!");
+    }
+
+    @Test
+    public void testBytes()
+    {
+        JobDeduplicator dedup = new JobDeduplicator(10000, 0.001, 60000, now::get);
+
+        dedup.add(JobDeduplicator.fingerprint(job(1).getBytes(StandardCharsets.UTF_8)));
+        assertTrue(dedup.isDuplicate(JobDeduplicator.fingerprint(job(1).getBytes(StandardCharsets.UTF_8))));
+
+        // Every job up to 2000 gets its own fingerprint, even the ones that only differ in a single byte
+        Set<Long> fingerprints = new HashSet<>();
+        for (int i = 0; i < 2000; i++)
+            assertTrue(fingerprints.add(JobDeduplicator.fingerprint(job(i).getBytes(StandardCharsets.UTF_8))));
+
+        System.out.println("fingerprint(byte[]) passed!");
+    }
+
+    @Test
+    public void testSeed()
+    {
+        // The city topic has 10 jobs, the window starts at the 4th one
+        String topic = "college-station-tx-delivery";
+        TopicPartition partition = new TopicPartition(topic, 0);
+        MockConsumer<String, byte[]> consumer = new MockConsumer<String, byte[]>(OffsetResetStrategy.EARLIEST)
+        {
+            @Override
+            public synchronized Map<TopicPartition, OffsetAndTimestamp> offsetsForTimes(Map<TopicPartition, Long> times)
+            {
+                assertEquals(Long.valueOf(40000), times.get(partition));
+                Map<TopicPartition, OffsetAndTimestamp> offsets = new HashMap<>();
+                offsets.put(partition, new OffsetAndTimestamp(4, 40000));
+                return offsets;
+            }
+        };
+        consumer.updatePartitions(topic, Collections.singletonList(new PartitionInfo(topic, 0, null, null, null)));
+        consumer.updateEndOffsets(Collections.singletonMap(partition, 10L));
+        consumer.schedulePollTask(() -> {
+            for (int i = 4; i < 10; i++)
+                consumer.addRecord(new ConsumerRecord<>(topic, 0, i, null, job(i).getBytes(StandardCharsets.UTF_8)));
+        });
+
+        now.set(100000);
+        JobDeduplicator dedup = new JobDeduplicator(10000, 0.001, 60000, now::get);
+        assertEquals(6, dedup.seed(consumer, Collections.singletonList(topic), 5000));
+
+        // The jobs sent inside the window are dropped when the restarted router sees them again, older ones aren't
+        for (int i = 4; i < 10; i++)
+            assertTrue(dedup.isDuplicate(JobDeduplicator.fingerprint(job(i).getBytes(StandardCharsets.UTF_8))));
+        assertFalse(dedup.isDuplicate(JobDeduplicator.fingerprint(job(3).getBytes(StandardCharsets.UTF_8))));
+
+        // Nothing to read, nothing remembered
+        assertEquals(0, dedup.seed(consumer, Collections.singletonList("austin-tx-delivery"), 5000));
+
+        System.out.println("seed() passed!");
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testBadRate()
+    {
+        new JobDeduplicator(1000, 1.5, 60000);
+    }
+}
@@ -0,0 +1,134 @@
+import static org.junit.Assert.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class Test_JobJsonCodec
+{
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private Object[] jobs()
+    {
+        DeliveryJob odd = new DeliveryJob(-5, "Caf\u00e9 \"U\"", "1 Main St, Boston, MA 02134", "5 Elm St, Houston, TX 77002",
+                "Line\nbreak\t\\ and \u2603", null, DeliveryJob.Sizes.LARGE);
+
+        RideShareJob ride = Test_BinaryJobCodec.rideShareJob();
+        ride.setTo_latitude(-0.0000001);
+        ride.setFrom_longitude(179.99999999999997);
+
+        return new Object[] { Test_BinaryJobCodec.deliveryJob(), Test_BinaryJobCodec.rideShareJob(), odd, ride,
+                new DeliveryJob(), new RideShareJob() };
+    }
+
+    @Test
+    public void testSameBytes() throws IOException
+    {
+        for (Object job : jobs())
+        {
+            assertArrayEquals(this.mapper.writeValueAsBytes(job), JobJsonCodec.toJson(job));
+            assertEquals(this.mapper.writerWithDefaultPrettyPrinter().writeValueAsString(job),
+                    JobJsonCodec.toPrettyJson(job));
+        }
+
+        System.out.println("toJson() same bytes as ObjectMapper passed!");
+    }
+
+    @Test
+    public void testRead() throws IOException
+    {
+        for (Object job : jobs())
+        {
+            byte[] json = this.mapper.writeValueAsBytes(job);
+            Object read = JobJsonCodec.fromJson(json, job.getClass());
+            assertArrayEquals(json, this.mapper.writeValueAsBytes(read));
+        }
+
+        System.out.println("fromJson() passed!");
+    }
+
+    @Test
+    public void testReadLikeObjectMapper() throws IOException
+    {
+        // Not the JSON we write, these have to come out exactly like ObjectMapper reads them
+        String[] deliveries = {
+                "{\"customer_id\":\"12\",\"item_size\":\"2\"}",
+                "{\"customer_id\":1.7}",
+                "{\"to_city\":\"Nowhere\",\"to_address\":\"1 A St, Austin, TX 78758\",\"to_state\":\"CA\"}",
+                "{\"from_address\":\"1 A St, Austin, TX 78758\"}",
+                "{\"job_type\":\"delivery\"} {\"job_type\":\"other\"}"
+        };
+        for (String json : deliveries)
+        {
+            byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+            assertEquals(json, this.mapper.readValue(bytes, DeliveryJob.class).toString(),
+                    JobJsonCodec.fromJson(bytes, DeliveryJob.class).toString());
+        }
+
+        String[] rides = {
+                "{\"to_latitude\":\"30.5\",\"num_passengers\":3}",
+                "{\"pickup_time\":\"2026-10-18\",\"dropoff_time\":null}"
+        };
+        for (String json : rides)
+        {
+            byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+            assertEquals(json, this.mapper.readValue(bytes, RideShareJob.class).toString(),
+                    JobJsonCodec.fromJson(bytes, RideShareJob.class).toString());
+        }
+
+        System.out.println("fromJson() reads like ObjectMapper passed!");
+    }
+
+    @Test
+    public void testReadErrors()
+    {
+        String[] bad = {
+                "{\"city\":\"Austin\"}", // unknown field
+                "{\"job_type\":\"delivery\",\"customer_id\":5", // cut off
+                "{\"item_size\":\"huge\"}",
+                "[]"
+        };
+
+        for (String json : bad)
+        {
+            try
+            {
+                JobJsonCodec.fromJson(json.getBytes(StandardCharsets.UTF_8), DeliveryJob.class);
+                fail("Should have thrown for " + json);
+            }
+            catch (IOException e)
+            {
+                // Expected
+            }
+        }
+
+        try
+        {
+            JobJsonCodec.fromJson("{\"to_latitude\":95}".getBytes(StandardCharsets.UTF_8), RideShareJob.class);
+            fail("Should have thrown for a latitude off the map");
+        }
+        catch (IOException e)
+        {
+            // Expected
+        }
+
+        System.out.println("fromJson() errors passed!");
+    }
+
+    @Test
+    public void testSerdes()
+    {
+        DeliveryJob job = Test_BinaryJobCodec.deliveryJob();
+        byte[] json = new KafkaJsonSerializer<DeliveryJob>().serialize("t", job);
+        assertEquals(job.toString(), new KafkaJsonDeserializer<DeliveryJob>(DeliveryJob.class).deserialize("t", json)
+                .toString());
+
+        // Anything that isn't a job still goes through the ObjectMapper
+        byte[] list = new KafkaJsonSerializer<Object>().serialize("t", Arrays.asList(1, 2));
+        assertEquals("[1,2]", new String(list, StandardCharsets.UTF_8));
+
+        System.out.println("Kafka serdes passed!");
+    }
+}
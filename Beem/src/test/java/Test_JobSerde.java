@@ -0,0 +1,126 @@
+import static org.junit.Assert.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.Serde;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+public class Test_JobSerde
+{
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void testMixedTopic() throws IOException
+    {
+        Serde<Object> serde = new JobSerde();
+        JobSerde binary = new JobSerde();
+        binary.configure(Collections.singletonMap(JobSerde.BINARY_CONFIG, "true"), false);
+        assertTrue(binary.isBinary());
+
+        Object[] jobs = { Test_BinaryJobCodec.deliveryJob(), Test_BinaryJobCodec.rideShareJob() };
+        for (Object job : jobs)
+        {
+            byte[] json = serde.serializer().serialize("t", job);
+            assertArrayEquals(this.mapper.writeValueAsBytes(job), json);
+
+            Object read = serde.deserializer().deserialize("t", json);
+            assertEquals(job.getClass(), read.getClass());
+            assertEquals(job.toString(), read.toString());
+
+            // The same deserializer reads jobs in the binary format
+            read = serde.deserializer().deserialize("t", binary.serialize("t", job));
+            assertEquals(job.toString(), read.toString());
+        }
+
+        assertNull(serde.serializer().serialize("t", null));
+        assertNull(serde.deserializer().deserialize("t", null));
+
+        System.out.println("JobSerde mixed topic passed!");
+    }
+
+    @Test
+    public void testJobTypeCase() throws IOException
+    {
+        // RideShareJob writes both "rideShare" and "RideShare"
+        String json = this.mapper.writeValueAsString(Test_BinaryJobCodec.rideShareJob());
+        assertTrue(json.startsWith("{\"job_type\":\"rideShare\""));
+        for (String jobType : new String[] { "rideShare", "RideShare", "RIDESHARE" })
+        {
+            String ride = json.replace("\"rideShare\"", "\"" + jobType + "\"");
+            Object read = JobJsonCodec.fromJson(ride.getBytes(StandardCharsets.UTF_8));
+            assertTrue(read instanceof RideShareJob);
+            assertEquals(this.mapper.readValue(ride, RideShareJob.class).toString(), read.toString());
+        }
+
+        assertEquals(DeliveryJob.class, JobJsonCodec.typeOf("Delivery"));
+        assertNull(JobJsonCodec.typeOf("pizza"));
+
+        System.out.println("fromJson() job_type case passed!");
+    }
+
+    @Test
+    public void testJobTypeNotFirst() throws IOException
+    {
+        // Not written by us, the job_type has to be found before the job can be read
+        String json = "{\"customer_id\":7,\"to_city\":\"Austin\",\"job_type\":\"delivery\",\"item_size\":1}";
+        Object read = JobJsonCodec.fromJson(json.getBytes(StandardCharsets.UTF_8));
+        assertEquals(this.mapper.readValue(json, DeliveryJob.class).toString(), read.toString());
+
+        System.out.println("fromJson() job_type not first passed!");
+    }
+
+    @Test
+    public void testErrors()
+    {
+        JobSerde serde = new JobSerde();
+        String[] bad = {
+                "{\"job_type\":\"pizza\",\"customer_id\":5}",
+                "{\"customer_id\":5}",
+                "{\"job_type\":null,\"customer_id\":0}",
+                "{\"job_type\":\"delivery\",\"customer_id\":5",
+                "{\"job_type\":\"delivery\",\"city\":\"Austin\"}",
+                "[]"
+        };
+
+        for (String json : bad)
+        {
+            try
+            {
+                serde.deserialize("t", json.getBytes(StandardCharsets.UTF_8));
+                fail("Should have thrown for " + json);
+            }
+            catch (SerializationException e)
+            {
+                // Expected
+            }
+        }
+
+        try
+        {
+            serde.serialize("t", "not a job");
+            fail("Should have thrown for something that isn't a job");
+        }
+        catch (SerializationException e)
+        {
+            // Expected
+        }
+
+        System.out.println("JobSerde errors passed!");
+    }
+
+    @Test
+    public void testHeaders()
+    {
+        RecordHeaders headers = new RecordHeaders();
+        new JobSerde().serialize("t", headers, Test_BinaryJobCodec.deliveryJob());
+        assertNotNull(headers.lastHeader(RoutingHeaders.JOB_TYPE));
+        assertEquals("delivery", new String(headers.lastHeader(RoutingHeaders.JOB_TYPE).value(),
+                StandardCharsets.UTF_8));
+
+        System.out.println("JobSerde headers passed!");
+    }
+}
@@ -0,0 +1,135 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class Test_JobView
+{
+    private final KafkaJsonSerializer<Object> json = new KafkaJsonSerializer<>();
+    private final BinaryJobCodec<Object> binary = new BinaryJobCodec<>();
+
+    @Test
+    public void testDeliveryJob()
+    {
+        DeliveryJob job = Test_BinaryJobCodec.deliveryJob();
+
+        for (byte[] bytes : new byte[][] { json.serialize("t", job), binary.serialize("t", job) })
+        {
+            JobView view = new JobView(bytes);
+            assertEquals(job.getJob_type(), view.getJob_type());
+            assertEquals(job.getCustomer_id(), view.getCustomer_id());
+            assertEquals(job.getItem_size(), view.getItem_size());
+            assertEquals(job.getFrom_city(), view.getFrom_city());
+            assertEquals(job.getFrom_state(), view.getFrom_state());
+            assertEquals(job.getFrom_zipcode(), view.getFrom_zipcode());
+            assertEquals(job.getTo_zipcode(), view.getTo_zipcode());
+            assertEquals(job.getInstructions(), view.getString(JobView.Field.INSTRUCTIONS));
+            assertFalse(view.has(JobView.Field.NUM_PASSENGERS));
+            assertEquals(DeliveryJob.class, view.getJobClass());
+            assertEquals(job.toString(), view.toJob().toString());
+        }
+
+        System.out.println("DeliveryJob view passed!");
+    }
+
+    @Test
+    public void testRideShareJob()
+    {
+        RideShareJob job = Test_BinaryJobCodec.rideShareJob();
+        job.setDropoff_time(null);
+
+        for (byte[] bytes : new byte[][] { json.serialize("t", job), binary.serialize("t", job) })
+        {
+            JobView view = new JobView(bytes);
+            assertEquals(job.getNum_passengers(), view.getNum_passengers());
+            assertEquals(job.getFrom_latitude(), view.getDouble(JobView.Field.FROM_LATITUDE), 0.0);
+            assertEquals(job.getTo_longitude(), view.getDouble(JobView.Field.TO_LONGITUDE), 0.0);
+            assertEquals(job.getPickup_time(), view.getDate(JobView.Field.PICKUP_TIME));
+            assertNull(view.getDate(JobView.Field.DROPOFF_TIME));
+            assertFalse(view.has(JobView.Field.DROPOFF_TIME));
+            assertEquals(RideShareJob.class, view.getJobClass());
+            assertEquals(job.toString(), view.toJob().toString());
+        }
+
+        System.out.println("RideShareJob view passed!");
+    }
+
+    @Test
+    public void testReset()
+    {
+        JobView view = new JobView();
+        view.reset(json.serialize("t", Test_BinaryJobCodec.deliveryJob()));
+        assertEquals(2, view.getItem_size());
+
+        // Same view, a different job in the other format
+        view.reset(binary.serialize("t", Test_BinaryJobCodec.rideShareJob()));
+        assertEquals(2, view.getNum_passengers());
+        assertFalse(view.has(JobView.Field.ITEM_SIZE));
+        assertEquals(0, view.getItem_size());
+
+        System.out.println("reset() passed!");
+    }
+
+    @Test
+    public void testJsonWeDidntWrite()
+    {
+        String text = "{ \"notes\" : {\"item_size\": 9, \"x\": [1, \"}\"]},\n\"item_size\" : \"3\", "
+                + "\"customer_id\":-42, \"to_city\":\"Caf\\u00e9 \\\"U\\\"\", \"from_city\": null, "
+                + "\"tags\":[\"a\",{\"b\":\"]\"}], \"item_size\": 4}";
+        JobView view = new JobView(text.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(4, view.getItem_size()); // the last one wins, the nested one doesn't count
+        assertEquals(-42, view.getCustomer_id());
+        assertEquals("Caf\u00e9 \"U\"", view.getTo_city());
+        assertNull(view.getFrom_city());
+        assertFalse(view.has(JobView.Field.FROM_CITY));
+        assertNull(view.getJob_type());
+        assertNull(view.getJobClass());
+
+        // A number sent as text is read like ObjectMapper reads it
+        assertEquals(3, new JobView("{\"item_size\":\"3\"}".getBytes(StandardCharsets.UTF_8)).getItem_size());
+
+        System.out.println("JSON we didn't write passed!");
+    }
+
+    @Test
+    public void testBadJobs()
+    {
+        byte[] encoded = binary.serialize("t", Test_BinaryJobCodec.deliveryJob());
+        byte[][] bad = {
+                "{\"item_size\":2".getBytes(StandardCharsets.UTF_8),
+                "[1]".getBytes(StandardCharsets.UTF_8),
+                "{\"to_city\":\"Austin}".getBytes(StandardCharsets.UTF_8),
+                Arrays.copyOf(encoded, encoded.length - 2),
+                { BinaryJobCodec.MAGIC, 2, 1 }
+        };
+
+        for (byte[] job : bad)
+        {
+            try
+            {
+                new JobView(job).getItem_size();
+                fail("Should have thrown for " + new String(job, StandardCharsets.UTF_8));
+            }
+            catch (IllegalArgumentException e)
+            {
+                // Expected
+            }
+        }
+
+        try
+        {
+            new JobView(encoded).getString(JobView.Field.ITEM_SIZE);
+            fail("Should have thrown for a number read as text");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // Expected
+        }
+
+        assertNull(new JobView.ViewDeserializer().deserialize("t", null));
+
+        System.out.println("Bad jobs passed!");
+    }
+}
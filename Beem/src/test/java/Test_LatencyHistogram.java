@@ -0,0 +1,61 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class Test_LatencyHistogram
+{
+    LatencyHistogram histogram = new LatencyHistogram();
+
+    @Test
+    public void testBuckets()
+    {
+        // Every value lands in a bucket whose top is at or above it and within 12.5%
+        for (long micros = 0; micros < 1000000; micros += 7)
+        {
+            long top = LatencyHistogram.upperBoundOf(LatencyHistogram.bucketFor(micros));
+            assertTrue(top >= micros);
+            assertTrue(top <= micros + Math.max(0, micros / 8));
+        }
+
+        assertTrue(LatencyHistogram.bucketFor(Long.MAX_VALUE) < histogram.getSnapshot().length);
+
+        System.out.println("bucketFor() passed!");
+    }
+
+    @Test
+    public void testPercentiles()
+    {
+        // 1ms for 990 jobs and 100ms for 10 of them
+        for (int i = 0; i < 990; i++)
+            histogram.recordNanos(1000000);
+        for (int i = 0; i < 10; i++)
+            histogram.recordNanos(100000000);
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(100000, histogram.getMaxMicros());
+        assertEquals(1000, histogram.getPercentileMicros(50), 1000 / 8);
+        assertEquals(1000, histogram.getPercentileMicros(99), 1000 / 8);
+        assertEquals(100000, histogram.getPercentileMicros(99.9));
+        assertEquals((990 * 1000 + 10 * 100000) / 1000.0, histogram.getMeanMicros(), 0.001);
+
+        System.out.println("getPercentileMicros() passed!");
+    }
+
+    @Test
+    public void testEmpty()
+    {
+        assertEquals(0, histogram.getPercentileMicros(99));
+        assertEquals(0, histogram.getMeanMicros(), 0);
+
+        // Clocks going backwards count as 0
+        histogram.recordNanos(-5000);
+        assertEquals(0, histogram.getPercentileMicros(100));
+
+        System.out.println("Empty histogram passed!");
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testInvalidPercentile()
+    {
+        histogram.getPercentileMicros(101);
+    }
+}
@@ -0,0 +1,168 @@
+import static org.junit.Assert.*;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Test_ReplayRouter
+{
+    private static final AtomicInteger replays = new AtomicInteger();
+
+    TopicPartition first = new TopicPartition("texas-am-university", 0);
+    TopicPartition second = new TopicPartition("texas-am-university", 1);
+
+    /**
+     * A replay of both partitions, 3 jobs each, with one thread per partition and no broker behind it.
+     */
+    private ReplayRouter replay(MockProducer<String, byte[]> producer)
+    {
+        String appName = "test-replay-router-" + replays.incrementAndGet();
+        Map<String, Integer> topics = new HashMap<>();
+        topics.put("texas-am-university", 2);
+        topics.put("austin-tx-delivery", 1);
+        topics.put(appName + "-dead-letter", 1);
+        SchoolToCityStream router = new SchoolToCityStream("TX", "Texas A&M University",
+                Collections.singletonList("texas-am-university"), new TopicMetadataCache(null, () -> topics, 60000),
+                props -> new MockProducer<>(true, new StringSerializer(), new ByteArraySerializer()),
+                appName);
+
+        return new ReplayRouter(router, 2, producer, () -> {
+            MockConsumer<String, byte[]> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+            consumer.schedulePollTask(() -> {
+                for (TopicPartition partition : consumer.assignment())
+                    for (int i = 0; i < 3; i++)
+                        consumer.addRecord(new ConsumerRecord<>(partition.topic(), partition.partition(), i, null,
+                                ("{\"job_type\":\"delivery\",\"customer_id\":" + i + ",\"from_city\":\"Austin\"," +
+                                        "\"from_state\":\"TX\"}").getBytes(StandardCharsets.UTF_8)));
+            });
+            return consumer;
+        });
+    }
+
+    private void start(ReplayRouter replay)
+    {
+        Map<TopicPartition, Long> starts = new HashMap<>();
+        starts.put(first, 0L);
+        starts.put(second, 0L);
+        Map<TopicPartition, Long> ends = new HashMap<>();
+        ends.put(first, 3L);
+        ends.put(second, 3L);
+
+        replay.start(starts, ends);
+    }
+
+    @Test
+    public void testReplaysEverything() throws InterruptedException
+    {
+        MockProducer<String, byte[]> producer = new MockProducer<>(true, new StringSerializer(), new ByteArraySerializer());
+        ReplayRouter replay = replay(producer);
+        start(replay);
+
+        assertTrue(replay.awaitCompletion(10, TimeUnit.SECONDS));
+        assertEquals(6, replay.getReplayed());
+        assertEquals(6, producer.history().size());
+        assertTrue(replay.getUnfinishedPartitions().isEmpty());
+
+        replay.close();
+        System.out.println("replay of every partition passed!");
+    }
+
+    @Test
+    public void testWorkerFailure() throws InterruptedException
+    {
+        // The producer gets closed under the thread replaying the first partition
+        MockProducer<String, byte[]> producer = new MockProducer<String, byte[]>(true, new StringSerializer(),
+                new ByteArraySerializer())
+        {
+            @Override
+            public synchronized Future<RecordMetadata> send(ProducerRecord<String, byte[]> record, Callback callback)
+            {
+                if (Thread.currentThread().getName().equals("replay-0"))
+                    throw new IllegalStateException("Cannot perform operation after producer has been closed");
+                return super.send(record, callback);
+            }
+        };
+        ReplayRouter replay = replay(producer);
+        start(replay);
+
+        try
+        {
+            replay.awaitCompletion(10, TimeUnit.SECONDS);
+            fail("The replay should have failed");
+        }
+        catch (IllegalStateException e)
+        {
+            assertTrue(e.getCause().getMessage().startsWith("Cannot perform operation"));
+        }
+
+        // The other thread still finished its partition, the failed one isn't counted as done
+        assertEquals(1, replay.getUnfinishedPartitions().size());
+        assertEquals(3, producer.history().size());
+
+        replay.close();
+        System.out.println("replay worker failure passed!");
+    }
+
+    @Test
+    public void testStartOffsets()
+    {
+        Map<TopicPartition, Long> endOffsets = new HashMap<>();
+        endOffsets.put(first, 500L);
+        endOffsets.put(second, 800L);
+
+        // Nothing in the second partition is newer than the timestamp
+        Map<TopicPartition, OffsetAndTimestamp> found = new HashMap<>();
+        found.put(first, new OffsetAndTimestamp(120L, 1571400000000L));
+        found.put(second, null);
+
+        Map<TopicPartition, Long> starts = ReplayRouter.startOffsets(found, endOffsets);
+        assertEquals(120L, (long) starts.get(first));
+        assertEquals(800L, (long) starts.get(second));
+
+        System.out.println("startOffsets() passed!");
+    }
+
+    @Test
+    public void testSplit()
+    {
+        List<TopicPartition> partitions = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            partitions.add(new TopicPartition("texas-am-university", i));
+
+        List<List<TopicPartition>> shares = ReplayRouter.split(partitions, 4);
+        assertEquals(4, shares.size());
+
+        Set<TopicPartition> seen = new HashSet<>();
+        for (List<TopicPartition> share : shares)
+        {
+            assertTrue(share.size() == 2 || share.size() == 3);
+            seen.addAll(share);
+        }
+        assertEquals(10, seen.size());
+
+        // Never more threads than partitions
+        assertEquals(2, ReplayRouter.split(partitions.subList(0, 2), 8).size());
+
+        System.out.println("split() passed!");
+    }
+}
@@ -0,0 +1,65 @@
+import static org.junit.Assert.*;
+
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+public class Test_RouterMetrics
+{
+    // None of the router's parts are needed to record
+    RouterMetrics metrics = new RouterMetrics("test-router", null, null, null, null);
+
+    @Test
+    public void testRecording()
+    {
+        metrics.recordAck("austin-tx-delivery", System.nanoTime());
+        metrics.recordAck("austin-tx-delivery", System.nanoTime());
+        metrics.recordAck("houston-tx-delivery", System.nanoTime());
+        metrics.recordSendError();
+        metrics.recordRetry();
+        metrics.recordDeadLetter();
+        metrics.getSchoolThroughput().record("texas-am-university");
+
+        assertEquals(3, metrics.getRecordsRouted());
+        assertEquals(2L, (long) metrics.getRecordsByDestination().get("austin-tx-delivery"));
+        assertEquals(1L, (long) metrics.getRecordsBySchool().get("texas-am-university"));
+        assertEquals(1, metrics.getSendErrors());
+        assertEquals(1, metrics.getRetries());
+        assertEquals(1, metrics.getDeadLetters());
+        assertEquals("CLOSED", metrics.getCircuitBreakerState());
+
+        System.out.println("RouterMetrics recording passed!");
+    }
+
+    @Test
+    public void testConsumerLag()
+    {
+        // The mock consumer doesn't have fetch metrics so there is no lag to report
+        MockConsumer<String, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        metrics.registerConsumer(consumer);
+        assertTrue(metrics.getConsumerLag().isEmpty());
+        metrics.unregisterConsumer(consumer);
+
+        System.out.println("getConsumerLag() passed!");
+    }
+
+    @Test
+    public void testJmx() throws Exception
+    {
+        metrics.recordAck("austin-tx-delivery", System.nanoTime());
+        metrics.register();
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("Beem:type=SchoolToCityStream,name=\"test-router\"");
+        assertEquals(1L, server.getAttribute(name, "RecordsRouted"));
+
+        metrics.unregister();
+        assertFalse(server.isRegistered(name));
+
+        System.out.println("RouterMetrics JMX passed!");
+    }
+}
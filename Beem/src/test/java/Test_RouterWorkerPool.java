@@ -0,0 +1,185 @@
+import static org.junit.Assert.*;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class Test_RouterWorkerPool
+{
+    private int topicPartitions;
+
+    /**
+     * Knows the partition count and nothing else, there is no broker behind it.
+     */
+    private SchoolToCityStream router()
+    {
+        return new SchoolToCityStream()
+        {
+            @Override
+            public int getSchoolPartitionCount()
+            {
+                return topicPartitions;
+            }
+
+            @Override
+            public void flush() {}
+
+            @Override
+            public void closeClients() {}
+        };
+    }
+
+    /**
+     * A pool whose workers don't poll, the test plays the group coordinator and hands out their partitions.
+     */
+    private RouterWorkerPool pool(int maxWorkers)
+    {
+        SchoolToCityStream router = router();
+        return new RouterWorkerPool(router, maxWorkers)
+        {
+            @Override
+            RouterWorker newWorker(int id)
+            {
+                RouterWorkerPool pool = this;
+                CountDownLatch stopped = new CountDownLatch(1);
+                return new RouterWorker(id, router, pool, new MockConsumer<>(OffsetResetStrategy.EARLIEST))
+                {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            stopped.await();
+                        }
+                        catch (InterruptedException e)
+                        {
+                            Thread.currentThread().interrupt();
+                        }
+                        pool.workerStopped(this);
+                    }
+
+                    @Override
+                    public void shutdown()
+                    {
+                        super.shutdown();
+                        stopped.countDown();
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Rebalances the group the way the eager protocol does: every member gives up its partitions, then the
+     * partitions are dealt out round robin. Keeps going while the membership changes.
+     * @return The number of rebalances it took for the group to settle.
+     */
+    private int rebalance(List<RouterWorkerPool> processes, int maxRounds)
+    {
+        List<RouterWorker> members = new ArrayList<>();
+        for (int round = 1; round <= maxRounds; round++)
+        {
+            members.clear();
+            for (RouterWorkerPool process : processes)
+                members.addAll(process.getActiveWorkers());
+
+            for (RouterWorker member : members)
+                member.onPartitionsRevoked(new ArrayList<>());
+
+            List<List<TopicPartition>> assignments = new ArrayList<>();
+            for (int i = 0; i < members.size(); i++)
+                assignments.add(new ArrayList<>());
+            for (int p = 0; p < this.topicPartitions; p++)
+                assignments.get(p % members.size()).add(new TopicPartition("texas-am-university", p));
+
+            for (int i = 0; i < members.size(); i++)
+                members.get(i).onPartitionsAssigned(assignments.get(i));
+
+            List<RouterWorker> after = new ArrayList<>();
+            for (RouterWorkerPool process : processes)
+                after.addAll(process.getActiveWorkers());
+            if (after.equals(members))
+                return round;
+        }
+
+        fail("The group never settled after " + maxRounds + " rebalances, " + members.size() + " members");
+        return maxRounds;
+    }
+
+    @Test
+    public void testSizedFromOwnPartitions()
+    {
+        this.topicPartitions = 8;
+        RouterWorkerPool first = pool(8);
+        RouterWorkerPool second = pool(8);
+        first.start();
+        second.start();
+
+        rebalance(Arrays.asList(first, second), 10);
+
+        // Each process got half of the partitions, so half as many workers as the topic has partitions
+        assertEquals(4, first.getNumWorkers());
+        assertEquals(4, second.getNumWorkers());
+        for (RouterWorkerPool process : Arrays.asList(first, second))
+            for (RouterWorker worker : process.getActiveWorkers())
+                assertEquals(1, worker.getNumPartitions());
+
+        first.shutdown();
+        second.shutdown();
+        System.out.println("pool sized from its own partitions passed!");
+    }
+
+    @Test
+    public void testNoRebalanceStorm()
+    {
+        // One process already uses every partition when another one joins the group
+        this.topicPartitions = 6;
+        RouterWorkerPool first = pool(16);
+        first.start();
+        rebalance(Arrays.asList(first), 10);
+        assertEquals(6, first.getNumWorkers());
+
+        RouterWorkerPool second = pool(16);
+        second.start();
+        rebalance(Arrays.asList(first, second), 10);
+
+        // Somebody came back empty and retired, nobody got started again to take its place
+        assertTrue(first.getNumWorkers() + second.getNumWorkers() <= 7);
+        for (RouterWorkerPool process : Arrays.asList(first, second))
+            for (RouterWorker worker : process.getActiveWorkers())
+                assertTrue(worker.getNumPartitions() > 0 || process.getNumWorkers() == 1);
+
+        // The topic grows, so there is room for workers again
+        this.topicPartitions = 12;
+        rebalance(Arrays.asList(first, second), 10);
+        assertEquals(12, first.getNumWorkers() + second.getNumWorkers());
+
+        first.shutdown();
+        second.shutdown();
+        System.out.println("no rebalance storm passed!");
+    }
+
+    @Test
+    public void testLastWorkerStays()
+    {
+        // Another process owns the only partition, this one keeps a worker around to take over
+        this.topicPartitions = 1;
+        RouterWorkerPool first = pool(4);
+        RouterWorkerPool second = pool(4);
+        first.start();
+        second.start();
+
+        rebalance(Arrays.asList(first, second), 10);
+        assertEquals(1, first.getNumWorkers());
+        assertEquals(1, second.getNumWorkers());
+
+        first.shutdown();
+        second.shutdown();
+        System.out.println("last worker stays passed!");
+    }
+}
@@ -0,0 +1,202 @@
+import static org.junit.Assert.*;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+
+public class Test_RoutingExtractor
+{
+    String job = "{\"job_type\":\"delivery\",\"customer_id\":123456789,\"school\":\"Texas A&M University\"," +
+            "\"city\":\"College Station\",\"state\":\"TX\",\"notes\":{\"city\":\"Austin\"},\"tags\":[\"fragile\"]," +
+            "\"item_size\":2}";
+
+    @Test
+    public void testExtract()
+    {
+        RoutingExtractor extractor = new RoutingExtractor();
+        RoutingFields fields = extractor.extract(job);
+
+        assertEquals("123456789", fields.getCustomer_id());
+        assertEquals("College Station", fields.getCity());
+        assertEquals("TX", fields.getState());
+        assertEquals("delivery", fields.getJob_type());
+
+        System.out.println("extract() passed!");
+    }
+
+    @Test
+    public void testMatchesTwoParsePath()
+    {
+        // The old path parsed the whole job with JSONObject, we should get the exact same key and topic
+        JSONObject json = new JSONObject(job);
+        String key = json.get("customer_id").toString();
+        String topic = SchoolToCityStream.buildTopicName(json.get("city").toString(),
+                json.get("state").toString(), json.get("job_type").toString());
+
+        RoutingFields fields = new RoutingExtractor().extract(job);
+
+        assertEquals(key, fields.getCustomer_id());
+        assertEquals(topic, SchoolToCityStream.buildTopicName(fields.getCity(), fields.getState(),
+                fields.getJob_type()));
+        assertEquals("college station-tx-delivery", topic);
+
+        System.out.println("extract() matches the JSONObject path!");
+    }
+
+    @Test
+    public void testReuse()
+    {
+        RoutingExtractor extractor = new RoutingExtractor();
+        extractor.extract(job);
+
+        RoutingFields fields = extractor.extract(
+                "{\"job_type\":\"rideShare\",\"customer_id\":42,\"city\":\"Austin\",\"state\":\"TX\"}");
+
+        assertEquals("42", fields.getCustomer_id());
+        assertEquals("Austin", fields.getCity());
+        assertEquals("rideShare", fields.getJob_type());
+
+        System.out.println("extract() reuse passed!");
+    }
+
+    @Test
+    public void testFromCityFallback()
+    {
+        // What DeliveryJob actually serializes, there is no city or state field
+        RoutingFields fields = new RoutingExtractor().extract(RouterBenchmark.sampleJob());
+
+        assertEquals("Austin", fields.getCity());
+        assertEquals("TX", fields.getState());
+        assertEquals("delivery", fields.getJob_type());
+
+        System.out.println("extract() falls back to from_city!");
+    }
+
+    @Test
+    public void testCoordinates()
+    {
+        RoutingFields fields = new RoutingExtractor().extract("{\"job_type\":\"rideShare\",\"customer_id\":7," +
+                "\"from_latitude\":30.62,\"from_longitude\":-96.33,\"from_city\":\"Bryan\",\"from_state\":\"TX\"}");
+        assertTrue(fields.hasCoordinates());
+        assertEquals(30.62, fields.getFrom_latitude(), 0.0);
+        assertEquals(-96.33, fields.getFrom_longitude(), 0.0);
+
+        // A RideShareJob made without coordinates serializes them as 0
+        fields = new RoutingExtractor().extract("{\"job_type\":\"rideShare\",\"customer_id\":7," +
+                "\"from_latitude\":0.0,\"from_longitude\":0.0,\"from_city\":\"Bryan\",\"from_state\":\"TX\"}");
+        assertFalse(fields.hasCoordinates());
+
+        assertFalse(new RoutingExtractor().extract(job).hasCoordinates());
+
+        System.out.println("extract() coordinates passed!");
+    }
+
+    @Test
+    public void testExtractBytes()
+    {
+        RoutingExtractor extractor = new RoutingExtractor();
+        RoutingFields fields = extractor.extract(job.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("123456789", fields.getCustomer_id());
+        assertEquals("College Station", fields.getCity());
+        assertEquals("TX", fields.getState());
+        assertEquals("delivery", fields.getJob_type());
+
+        // The binary format gets the same fields as its JSON
+        RideShareJob ride = Test_BinaryJobCodec.rideShareJob();
+        RoutingExtractor jsonExtractor = new RoutingExtractor();
+        jsonExtractor.require(true, true);
+        RoutingFields json = jsonExtractor.extract(new KafkaJsonSerializer<RideShareJob>().serialize("t", ride));
+        fields = extractor.extract(new BinaryJobCodec<RideShareJob>().serialize("t", ride));
+
+        assertEquals(json.getCustomer_id(), fields.getCustomer_id());
+        assertEquals(json.getCity(), fields.getCity());
+        assertEquals(json.getState(), fields.getState());
+        assertEquals(json.getJob_type(), fields.getJob_type());
+        assertEquals(json.getFrom_zipcode(), fields.getFrom_zipcode());
+        assertEquals(json.getFrom_latitude(), fields.getFrom_latitude(), 0.0);
+        assertEquals(json.getFrom_longitude(), fields.getFrom_longitude(), 0.0);
+
+        System.out.println("extract(byte[]) passed!");
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testMalformedBinaryJob()
+    {
+        new RoutingExtractor().extract(new byte[] { BinaryJobCodec.MAGIC, BinaryJobCodec.VERSION, 1, 5 });
+    }
+
+    @Test (expected = NoSuchElementException.class)
+    public void testMissingField()
+    {
+        new RoutingExtractor().extract("{\"job_type\":\"delivery\",\"customer_id\":42,\"to_city\":\"Austin\"}");
+    }
+
+    @Test
+    public void testNullField()
+    {
+        String[] nulls = {
+                "{\"job_type\":\"delivery\",\"customer_id\":\"c1\",\"from_city\":null,\"from_state\":\"TX\"}",
+                "{\"job_type\":\"delivery\",\"customer_id\":null,\"from_city\":\"Austin\",\"from_state\":\"TX\"}",
+                "{\"job_type\":null,\"customer_id\":\"c1\",\"city\":\"Austin\",\"state\":\"TX\"}",
+                "{\"job_type\":\"delivery\",\"customer_id\":\"c1\",\"city\":\"Austin\",\"state\":null}"
+        };
+
+        for (String json : nulls)
+        {
+            try
+            {
+                new RoutingExtractor().extract(json);
+                fail("Should have thrown for " + json);
+            }
+            catch (NoSuchElementException e)
+            {
+                // Expected, the job gets dead-lettered instead of going to a "null" city
+            }
+        }
+
+        // A null city still falls back to from_city
+        RoutingFields fields = new RoutingExtractor().extract("{\"job_type\":\"delivery\",\"customer_id\":\"c1\"," +
+                "\"city\":null,\"from_city\":\"Austin\",\"from_state\":\"TX\",\"from_latitude\":null}");
+        assertEquals("Austin", fields.getCity());
+        assertFalse(fields.hasCoordinates());
+
+        System.out.println("extract() null fields passed!");
+    }
+
+    @Test
+    public void testStopsEarly()
+    {
+        // Cut off after the routing fields, so only a scan that stops at them gets through it
+        String job = "{\"job_type\":\"delivery\",\"customer_id\":1,\"from_city\":\"Austin\",\"from_state\":\"TX\"," +
+                "\"from_zipcode\":\"78758\",\"from_latitude\":";
+        RoutingExtractor extractor = new RoutingExtractor();
+        assertEquals("Austin", extractor.extract(job).getCity());
+        assertNull(extractor.extract(job).getFrom_zipcode());
+
+        // Partitioning by zip code keeps going until the zip code
+        extractor.require(false, true);
+        assertEquals("78758", extractor.extract(job).getFrom_zipcode());
+
+        // Routing by coordinates has to read on, and finds the job is broken
+        extractor.require(true, true);
+        try
+        {
+            extractor.extract(job);
+            fail("Should have kept scanning for the coordinates");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // Expected
+        }
+
+        System.out.println("extract() stops at the fields it needs passed!");
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testMalformedJob()
+    {
+        new RoutingExtractor().extract("{\"job_type\":\"delivery\",");
+    }
+}
@@ -0,0 +1,121 @@
+import static org.junit.Assert.*;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class Test_RoutingHeaders
+{
+    @Test
+    public void testSameAsPayload()
+    {
+        KafkaJsonSerializer<Object> serializer = new KafkaJsonSerializer<>();
+        RoutingExtractor extractor = new RoutingExtractor();
+        extractor.require(true, true); // the headers carry every field, so scan the payload for every one too
+
+        for (Object job : new Object[] { Test_BinaryJobCodec.deliveryJob(), Test_BinaryJobCodec.rideShareJob(),
+                new RideShareJob(7, "Texas A&M University", "1 A St, Austin, TX 78758", "2 B St, Bryan, TX 77801", 1) })
+        {
+            Headers headers = new RecordHeaders();
+            byte[] json = serializer.serialize("t", headers, job);
+
+            RoutingFields payload = extractor.extract(json);
+            RoutingFields stamped = new RoutingFields();
+            assertTrue(RoutingHeaders.read(headers, stamped));
+
+            assertEquals(payload.getCustomer_id(), stamped.getCustomer_id());
+            assertEquals(payload.getJob_type(), stamped.getJob_type());
+            assertEquals(payload.getCity(), stamped.getCity());
+            assertEquals(payload.getState(), stamped.getState());
+            assertEquals(payload.getFrom_zipcode(), stamped.getFrom_zipcode());
+            assertEquals(payload.hasCoordinates(), stamped.hasCoordinates());
+            if (payload.hasCoordinates())
+            {
+                assertEquals(payload.getFrom_latitude(), stamped.getFrom_latitude(), 0.000001);
+                assertEquals(payload.getFrom_longitude(), stamped.getFrom_longitude(), 0.000001);
+            }
+        }
+
+        // The binary format stamps the same headers
+        Headers headers = new RecordHeaders();
+        RideShareJob ride = Test_BinaryJobCodec.rideShareJob();
+        new BinaryJobCodec<Object>().serialize("t", headers, ride);
+        assertEquals(Geohash.encode(ride.getFrom_latitude(), ride.getFrom_longitude(), Geohash.MAX_PRECISION),
+                text(headers, RoutingHeaders.GEOHASH));
+
+        System.out.println("Headers match the payload passed!");
+    }
+
+    @Test
+    public void testExtractPrefersHeaders()
+    {
+        Headers headers = new RecordHeaders();
+        RoutingHeaders.stamp(headers, Test_BinaryJobCodec.deliveryJob());
+
+        // The payload isn't even read, garbage is fine
+        RoutingFields fields = new RoutingExtractor().extract(headers, new byte[] { '{' });
+        assertEquals("123456789", fields.getCustomer_id());
+        assertEquals("Austin", fields.getCity());
+        assertEquals("TX", fields.getState());
+
+        System.out.println("extract() routes on the headers passed!");
+    }
+
+    @Test
+    public void testFallsBackToPayload()
+    {
+        byte[] json = new KafkaJsonSerializer<Object>().serialize("t", Test_BinaryJobCodec.deliveryJob());
+        RoutingExtractor extractor = new RoutingExtractor();
+
+        // A legacy record without headers, and one with only some of them
+        assertEquals("Austin", extractor.extract(new RecordHeaders(), json).getCity());
+
+        Headers partial = new RecordHeaders();
+        partial.add(RoutingHeaders.CITY, "Houston".getBytes(StandardCharsets.UTF_8));
+        RoutingFields fields = extractor.extract(partial, json);
+        assertEquals("Austin", fields.getCity());
+        assertEquals("123456789", fields.getCustomer_id());
+
+        // A geohash we didn't stamp doesn't count either
+        Headers headers = new RecordHeaders();
+        RoutingHeaders.stamp(headers, Test_BinaryJobCodec.deliveryJob());
+        headers.add(RoutingHeaders.GEOHASH, "9vk1".getBytes(StandardCharsets.UTF_8));
+        assertFalse(RoutingHeaders.read(headers, new RoutingFields()));
+
+        System.out.println("extract() falls back to the payload passed!");
+    }
+
+    @Test
+    public void testStampReplaces()
+    {
+        Headers headers = new RecordHeaders();
+        headers.add("trace.id", "abc".getBytes(StandardCharsets.UTF_8));
+        RoutingHeaders.stamp(headers, Test_BinaryJobCodec.rideShareJob());
+        RoutingHeaders.stamp(headers, Test_BinaryJobCodec.deliveryJob());
+
+        assertEquals(1, count(headers, RoutingHeaders.CUSTOMER_ID));
+        assertEquals(0, count(headers, RoutingHeaders.GEOHASH)); // a DeliveryJob has no coordinates
+        assertEquals("delivery", text(headers, RoutingHeaders.JOB_TYPE));
+        assertEquals("abc", text(headers, "trace.id"));
+
+        assertFalse(RoutingHeaders.stamp(headers, "not a job"));
+
+        System.out.println("stamp() replaces old headers passed!");
+    }
+
+    private static int count(Headers headers, String key)
+    {
+        int count = 0;
+        for (Header ignored : headers.headers(key))
+            count++;
+
+        return count;
+    }
+
+    private static String text(Headers headers, String key)
+    {
+        return new String(headers.lastHeader(key).value(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,131 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class Test_RoutingTable
+{
+    private static final String TABLE = "{"
+            + "\"aliases\": {\"St. Louis\": \"Saint Louis\"},"
+            + "\"merges\": {\"Bryan, TX\": \"College Station, TX\", \"Texarkana, Arkansas\": \"Texarkana, TX\"},"
+            + "\"job_types\": {\"courier\": \"delivery\"},"
+            + "\"clusters\": {\"east\": \"east-kafka:9092\", \"west\": \"west-kafka:9092\"},"
+            + "\"state_clusters\": {\"NY\": \"east\"},"
+            + "\"job_type_clusters\": {\"delivery\": \"west\"}"
+            + "}";
+
+    @Test
+    public void testDefault()
+    {
+        RoutingTable.Route route = RoutingTable.DEFAULT.route("College Station ", "TX", "rideShare");
+        assertEquals("college station-tx-rideshare", route.getTopic());
+        assertNull(route.getCluster());
+        assertSame(RoutingTable.DEFAULT, route.getTable());
+
+        System.out.println("DEFAULT passed!");
+    }
+
+    @Test
+    public void testRoute()
+    {
+        RoutingTable table = RoutingTable.parse(TABLE);
+
+        assertEquals("college station-tx-rideshare", table.route("Bryan", "TX", "rideShare").getTopic());
+        assertEquals("college station-tx-rideshare", table.route(" BRYAN ", "tx", "RideShare").getTopic());
+        assertEquals("bryan-oh-rideshare", table.route("Bryan", "OH", "rideShare").getTopic()); // only in texas
+        assertEquals("texarkana-tx-rideshare", table.route("Texarkana", "AR", "rideShare").getTopic());
+        assertEquals("saint louis-mo-rideshare", table.route("St. Louis", "MO", "rideShare").getTopic());
+        assertEquals("austin-tx-delivery", table.route("Austin", "TX", "courier").getTopic());
+
+        // The state's cluster comes before the job type's
+        assertEquals("east-kafka:9092", table.route("Albany", "NY", "courier").getCluster());
+        assertEquals("west-kafka:9092", table.route("Austin", "TX", "courier").getCluster());
+        assertNull(table.route("Austin", "TX", "rideShare").getCluster());
+
+        System.out.println("route() passed!");
+    }
+
+    @Test
+    public void testParseErrors()
+    {
+        String[] bad = {
+                "not json",
+                "[]",
+                "{\"aliases\": []}",
+                "{\"aliases\": {\"St. Louis\": 5}}",
+                "{\"merges\": {\"Bryan\": \"College Station, TX\"}}",
+                "{\"merges\": {\"Bryan, XX\": \"College Station, TX\"}}",
+                "{\"state_clusters\": {\"NY\": \"east\"}}"
+        };
+
+        for (String json : bad)
+        {
+            try
+            {
+                RoutingTable.parse(json);
+                fail("Should have thrown for " + json);
+            }
+            catch (IllegalArgumentException e)
+            {
+                // Expected
+            }
+        }
+
+        assertNull(RoutingTable.parse("{}").route("Austin", "TX", "delivery").getCluster());
+
+        System.out.println("parse() errors passed!");
+    }
+
+    @Test
+    public void testResolverSwap()
+    {
+        TopicResolver resolver = new TopicResolver(16);
+        RoutingTable first = RoutingTable.DEFAULT;
+        RoutingTable second = RoutingTable.parse(TABLE);
+
+        assertEquals("bryan-tx-delivery", resolver.resolve("Bryan", "TX", "delivery", first).getTopic());
+        assertEquals("bryan-tx-delivery", resolver.resolve("Bryan", "TX", "delivery", first).getTopic());
+        assertEquals(1, resolver.getHits());
+
+        // Routes cached from the old table don't count once the table is swapped
+        RoutingTable.Route route = resolver.resolve("Bryan", "TX", "delivery", second);
+        assertEquals("college station-tx-delivery", route.getTopic());
+        assertEquals("west-kafka:9092", route.getCluster());
+        assertEquals(2, resolver.getMisses());
+        assertSame(route, resolver.resolve("Bryan", "TX", "delivery", second));
+
+        System.out.println("TopicResolver swap passed!");
+    }
+
+    @Test
+    public void testWatcherReload() throws IOException
+    {
+        Path dir = Files.createTempDirectory("routing-table");
+        Path file = dir.resolve("Routing Table.json");
+        Files.write(file, "{\"merges\": {\"Bryan, TX\": \"College Station, TX\"}}".getBytes(StandardCharsets.UTF_8));
+
+        AtomicReference<RoutingTable> loaded = new AtomicReference<>();
+        try (RoutingTableWatcher watcher = new RoutingTableWatcher(file, loaded::set))
+        {
+            watcher.reload();
+            RoutingTable table = loaded.get();
+            assertEquals("college station-tx-delivery", table.route("Bryan", "TX", "delivery").getTopic());
+
+            // A half written file is skipped and the old table stays
+            Files.write(file, "{\"merges\": {".getBytes(StandardCharsets.UTF_8));
+            watcher.reload();
+            assertSame(table, loaded.get());
+        }
+        finally
+        {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+        }
+
+        System.out.println("RoutingTableWatcher reload() passed!");
+    }
+}
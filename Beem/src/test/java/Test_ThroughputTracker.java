@@ -0,0 +1,39 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.Map;
+
+public class Test_ThroughputTracker
+{
+    ThroughputTracker tracker = new ThroughputTracker();
+
+    @Test
+    public void testCounts()
+    {
+        for (int i = 0; i < 5; i++)
+            tracker.record("texas-am-university");
+        tracker.record("ut-austin-university");
+
+        Map<String, Long> counts = tracker.getCounts();
+        assertEquals(5L, (long) counts.get("texas-am-university"));
+        assertEquals(1L, (long) counts.get("ut-austin-university"));
+
+        System.out.println("getCounts() passed!");
+    }
+
+    @Test
+    public void testRatesOnlySinceLastCall() throws InterruptedException
+    {
+        for (int i = 0; i < 100; i++)
+            tracker.record("texas-am-university");
+
+        Thread.sleep(10);
+        assertTrue(tracker.getRates().get("texas-am-university") > 0);
+
+        // Nothing new was routed so the next rate should be 0
+        Thread.sleep(10);
+        assertEquals(0.0, tracker.getRates().get("texas-am-university"), 0.0);
+
+        System.out.println("getRates() passed!");
+    }
+}
@@ -0,0 +1,85 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Test_TopicMetadataCache
+{
+    Map<String, Integer> brokerTopics = new ConcurrentHashMap<>();
+    AtomicInteger fetches = new AtomicInteger(0);
+    Runnable duringFetch = () -> { };
+
+    private TopicMetadataCache newCache(long ttlMs)
+    {
+        return new TopicMetadataCache(null, () -> {
+            fetches.incrementAndGet();
+            Map<String, Integer> topics = new HashMap<>(brokerTopics);
+            duringFetch.run();
+            return topics;
+        }, ttlMs);
+    }
+
+    @Test
+    public void testFetchesOnceAtStartup()
+    {
+        brokerTopics.put("texas-am-university", 4);
+        brokerTopics.put("austin-tx-delivery", 1);
+
+        TopicMetadataCache cache = newCache(60000);
+        assertEquals(1, fetches.get());
+        assertTrue(cache.contains("austin-tx-delivery"));
+        assertEquals(4, cache.getPartitionCount("texas-am-university"));
+        assertEquals(0, cache.getPartitionCount("houston-tx-delivery"));
+
+        // Reads never go back to the broker
+        for (int i = 0; i < 100; i++)
+            cache.contains("houston-tx-delivery");
+        assertEquals(1, fetches.get());
+
+        cache.close();
+        System.out.println("TopicMetadataCache startup passed!");
+    }
+
+    @Test
+    public void testMarkCreatedSurvivesRefresh()
+    {
+        TopicMetadataCache cache = newCache(60000);
+
+        cache.markCreated("houston-tx-delivery", 1);
+        assertTrue(cache.contains("houston-tx-delivery"));
+
+        // Created while the broker was answering a refresh that didn't know about it yet
+        duringFetch = () -> cache.markCreated("waco-tx-delivery", 1);
+        cache.refresh();
+        assertTrue(cache.contains("waco-tx-delivery"));
+
+        // Created before the refresh started, so the broker knows best (someone deleted it)
+        duringFetch = () -> { };
+        assertFalse(cache.contains("houston-tx-delivery"));
+
+        brokerTopics.put("waco-tx-delivery", 3);
+        cache.refresh();
+        assertEquals(3, cache.getPartitionCount("waco-tx-delivery"));
+
+        cache.close();
+        System.out.println("markCreated() passed!");
+    }
+
+    @Test
+    public void testBackgroundRefresh() throws InterruptedException
+    {
+        TopicMetadataCache cache = newCache(10);
+
+        brokerTopics.put("dallas-tx-delivery", 2);
+        for (int i = 0; i < 200 && !cache.contains("dallas-tx-delivery"); i++)
+            Thread.sleep(10);
+
+        assertTrue(cache.contains("dallas-tx-delivery"));
+
+        cache.close();
+        System.out.println("Background refresh passed!");
+    }
+}
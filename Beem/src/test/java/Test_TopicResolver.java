@@ -0,0 +1,71 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class Test_TopicResolver
+{
+    @Test
+    public void testResolve()
+    {
+        TopicResolver resolver = new TopicResolver(16);
+
+        String topic = resolver.resolve("College Station ", "TX", "rideShare");
+        assertEquals("college station-tx-rideshare", topic);
+        assertEquals(SchoolToCityStream.buildTopicName("College Station ", "TX", "rideShare"), topic);
+
+        System.out.println("resolve() passed!");
+    }
+
+    @Test
+    public void testCanonicalName()
+    {
+        TopicResolver resolver = new TopicResolver(16);
+
+        // Different String objects with the same contents should get back the exact same topic name
+        String first = resolver.resolve(new String("Austin"), new String("TX"), new String("delivery"));
+        String second = resolver.resolve(new String("Austin"), new String("TX"), new String("delivery"));
+        assertSame(first, second);
+
+        // Different raw values that end up as the same topic still get the same canonical name
+        String third = resolver.resolve("AUSTIN", "tx", "Delivery");
+        assertSame(first, third);
+
+        System.out.println("resolve() canonical name passed!");
+    }
+
+    @Test
+    public void testHitRate()
+    {
+        TopicResolver resolver = new TopicResolver(16);
+        assertEquals(0.0, resolver.getHitRate(), 0.0);
+
+        resolver.resolve("Austin", "TX", "delivery");
+        resolver.resolve("Austin", "TX", "delivery");
+        resolver.resolve("Austin", "TX", "delivery");
+        resolver.resolve("Waco", "TX", "delivery");
+
+        assertEquals(2, resolver.getMisses());
+        assertEquals(2, resolver.getHits());
+        assertEquals(0.5, resolver.getHitRate(), 0.0001);
+
+        System.out.println("getHitRate() passed!");
+    }
+
+    @Test
+    public void testBounded()
+    {
+        TopicResolver resolver = new TopicResolver(4);
+
+        for (int i = 0; i < 100; i++)
+            assertEquals("city" + i + "-tx-delivery", resolver.resolve("City" + i, "TX", "delivery"));
+
+        assertTrue(resolver.getSize() <= 4);
+
+        System.out.println("resolve() stays bounded!");
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testInvalidSize()
+    {
+        new TopicResolver(0);
+    }
+}
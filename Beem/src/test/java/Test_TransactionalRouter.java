@@ -0,0 +1,216 @@
+import static org.junit.Assert.*;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.ProducerFencedException;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+public class Test_TransactionalRouter
+{
+    private static final AtomicInteger routers = new AtomicInteger();
+    private static final String SCHOOL = "texas-am-university";
+
+    private final TopicPartition partition = new TopicPartition(SCHOOL, 0);
+    private final AtomicReference<String> failKey = new AtomicReference<>(); // the job whose send fails, once
+    private final MockProducer<String, byte[]> producer = new MockProducer<String, byte[]>(true, new StringSerializer(),
+            new ByteArraySerializer())
+    {
+        // Like a send that failed on the broker in a way we can recover from by aborting
+        @Override
+        public synchronized Future<RecordMetadata> send(ProducerRecord<String, byte[]> record, Callback callback)
+        {
+            String key = failKey.get();
+            if (key != null && key.equals(record.key()) && failKey.compareAndSet(key, null))
+                throw new KafkaException("The city broker went away");
+            return super.send(record, callback);
+        }
+    };
+    private final MockConsumer<String, byte[]> consumer = new MockConsumer<String, byte[]>(OffsetResetStrategy.EARLIEST)
+    {
+        // Stays open so the test can still look at where it was rewound to
+        @Override
+        public synchronized void close(Duration timeout)
+        {
+        }
+
+        @Override
+        public synchronized void close()
+        {
+        }
+    };
+    private final String appName = "test-transactional-router-" + routers.incrementAndGet();
+    private final AtomicReference<Throwable> died = new AtomicReference<>();
+    private SchoolToCityStream router;
+    private TransactionalRouter txRouter;
+    private Thread thread;
+
+    private void start(int maxBatchRecords)
+    {
+        Map<String, Integer> topics = new HashMap<>();
+        topics.put(SCHOOL, 1);
+        topics.put("austin-tx-delivery", 1);
+        topics.put(this.appName + "-dead-letter", 1);
+
+        this.router = new SchoolToCityStream("TX", "Texas A&M University",
+                Collections.singletonList(SCHOOL), new TopicMetadataCache(null, () -> topics, 60000),
+                props -> new MockProducer<>(true, new StringSerializer(), new ByteArraySerializer()), this.appName);
+        this.txRouter = new TransactionalRouter(this.router, this.appName + "-0", maxBatchRecords, 60000, this.consumer,
+                this.producer);
+
+        this.consumer.schedulePollTask(() -> {
+            this.consumer.rebalance(Collections.singletonList(this.partition));
+            this.consumer.updateBeginningOffsets(Collections.singletonMap(this.partition, 0L));
+        });
+
+        this.thread = new Thread(this.txRouter, "test-transactional-router");
+        this.thread.setUncaughtExceptionHandler((thread, e) -> this.died.set(e));
+        this.thread.start();
+    }
+
+    @After
+    public void stop() throws InterruptedException
+    {
+        this.txRouter.shutdown();
+        this.thread.join(10000);
+    }
+
+    private void poll(long offset, String... jobs)
+    {
+        this.consumer.schedulePollTask(() -> {
+            for (int i = 0; i < jobs.length; i++)
+                this.consumer.addRecord(new ConsumerRecord<String, byte[]>(SCHOOL, 0, offset + i, null,
+                        jobs[i].getBytes(StandardCharsets.UTF_8)));
+        });
+    }
+
+    private static String job(int customer)
+    {
+        return "{\"job_type\":\"delivery\",\"customer_id\":" + customer + ",\"from_city\":\"Austin\",\"from_state\":\"TX\"}";
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException
+    {
+        for (int i = 0; i < 500 && !condition.getAsBoolean(); i++)
+            Thread.sleep(10);
+
+        assertTrue(condition.getAsBoolean());
+    }
+
+    private OffsetAndMetadata lastCommitted()
+    {
+        List<Map<String, Map<TopicPartition, OffsetAndMetadata>>> commits = this.producer.consumerGroupOffsetsHistory();
+        return commits.isEmpty() ? null : commits.get(commits.size() - 1).get(this.appName).get(this.partition);
+    }
+
+    @Test
+    public void testCommitsJobsWithOffsets() throws InterruptedException
+    {
+        start(3);
+        poll(0, job(0), job(1), job(2));
+
+        // Three jobs fill the transaction, the jobs and the offset after them are committed together
+        await(() -> this.producer.history().size() == 3);
+        assertTrue(this.producer.transactionInitialized());
+        assertTrue(this.producer.transactionCommitted());
+        assertEquals(3, lastCommitted().offset());
+        assertEquals("austin-tx-delivery", this.producer.history().get(0).topic());
+        assertEquals("0", this.producer.history().get(0).key());
+
+        // Every job the broker answered shows up in the router's metrics like one it sent itself
+        RouterMetrics metrics = this.router.getMetrics();
+        assertEquals(3, metrics.getRecordsRouted());
+        assertEquals(Long.valueOf(3), metrics.getRecordsByDestination().get("austin-tx-delivery"));
+        assertEquals(0, metrics.getSendErrors());
+
+        // Shutting down commits the open transaction
+        poll(3, job(3));
+        await(() -> this.consumer.position(this.partition) == 4);
+        stop();
+        assertEquals(4, this.producer.history().size());
+        assertEquals(4, lastCommitted().offset());
+        assertTrue(this.producer.closed());
+
+        System.out.println("TransactionalRouter commits jobs with offsets passed!");
+    }
+
+    @Test
+    public void testAbortRewinds() throws InterruptedException
+    {
+        start(3);
+        poll(0, job(0), job(1), job(2));
+        await(() -> this.producer.history().size() == 3);
+
+        // The second job fails, so the first one is thrown away with it and the partition is rewound to it
+        this.failKey.set("4");
+        poll(3, job(3), job(4));
+        await(this.producer::transactionAborted);
+        assertEquals(3, this.consumer.position(this.partition));
+        assertEquals(3, this.producer.history().size());
+        assertEquals(3, lastCommitted().offset());
+
+        // Routed again from where we were rewound to
+        poll(3, job(3), job(4), job(5));
+        await(() -> this.producer.history().size() == 6);
+        assertEquals(6, lastCommitted().offset());
+        assertEquals("3", this.producer.history().get(3).key());
+
+        System.out.println("TransactionalRouter abort rewinds passed!");
+    }
+
+    @Test
+    public void testDeadLetterInTransaction() throws InterruptedException
+    {
+        start(2);
+        poll(0, "{\"job_type\":\"delivery\",", job(1));
+
+        // The dead letter and the job commit with the offsets that skip past both
+        await(() -> this.producer.history().size() == 2);
+        assertEquals(this.appName + "-dead-letter", this.producer.history().get(0).topic());
+        assertEquals("austin-tx-delivery", this.producer.history().get(1).topic());
+        assertEquals(2, lastCommitted().offset());
+        assertEquals(1, this.router.getMetrics().getDeadLetters());
+        assertEquals(1, this.router.getMetrics().getRecordsRouted());
+
+        System.out.println("TransactionalRouter dead letters passed!");
+    }
+
+    @Test
+    public void testFenced() throws InterruptedException
+    {
+        start(3);
+        await(() -> this.consumer.assignment().contains(this.partition));
+
+        // Another instance took over our transactional id, we have to stop instead of aborting and going on
+        this.producer.fenceProducer();
+        poll(0, job(0));
+        this.thread.join(10000);
+
+        assertFalse(this.thread.isAlive());
+        assertTrue(this.died.get() instanceof ProducerFencedException);
+        assertTrue(this.producer.closed());
+        assertTrue(this.producer.history().isEmpty());
+
+        System.out.println("TransactionalRouter fenced passed!");
+    }
+}